@@ -0,0 +1,63 @@
+package org.example.ftp.bench;
+
+import org.example.ftp.server.auth.Permission;
+import org.example.ftp.server.fs.AccessControl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AccessControl.can for home (no DB), /shared (global permissions row) and another user's
+ * folder (shared_folders lookup, scales with "shares").
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessControlBench {
+
+    @State(Scope.Benchmark)
+    public static class Paths {
+        Path home;
+        Path shared;
+        Path otherUser;
+
+        @Setup
+        public void setUp(ServerFixture f) {
+            home = f.session.getHomeDirectory().resolve("docs/report.txt");
+            shared = f.session.getSharedDirectory().resolve("pub/readme.txt");
+            otherUser = f.ftpRoot.resolve("users").resolve(f.sharedPath.substring(1));
+        }
+    }
+
+    @Benchmark
+    public boolean home(ServerFixture f, Paths p) {
+        return AccessControl.can(f.session, p.home, Permission.WRITE);
+    }
+
+    @Benchmark
+    public boolean shared(ServerFixture f, Paths p) {
+        return AccessControl.can(f.session, p.shared, Permission.READ);
+    }
+
+    @Benchmark
+    public boolean otherUserRead(ServerFixture f, Paths p) {
+        return AccessControl.can(f.session, p.otherUser, Permission.READ);
+    }
+
+    @Benchmark
+    public boolean otherUserWrite(ServerFixture f, Paths p) {
+        return AccessControl.can(f.session, p.otherUser, Permission.WRITE);
+    }
+}
@@ -0,0 +1,142 @@
+package org.example.ftp.bench;
+
+import org.example.ftp.common.protocol.FtpCodec;
+import org.example.ftp.common.protocol.FtpCommand;
+import org.example.ftp.common.protocol.FtpResponse;
+import org.example.ftp.common.protocol.FtpVerb;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Control-line handling before and after FtpCodec.
+ *
+ * {@code string*}: what the server did per line before — BufferedReader.readLine over the socket
+ * stream, indexOf/substring/toUpperCase, HashMap lookup by verb String, reply written as
+ * toProtocolString() and encoded by the PrintWriter. {@code codec*}: decode from the read buffer
+ * into the reused FtpCommand, EnumMap lookup, reply encoded into a reused ByteBuffer.
+ *
+ * Run with {@code -prof gc} to see the allocation difference. The codec itself is fuzz-checked
+ * by FtpCodecFuzzTest in ftp-common.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandCodecBench {
+
+    @Param({"NOOP", "RETR /alice/docs/report-2024.pdf", "STOR /alice/Фото/отпуск 2024.jpg"})
+    public String line;
+
+    private final Map<String, Object> byName = new HashMap<>();
+    private final Map<FtpVerb, Object> byVerb = new EnumMap<>(FtpVerb.class);
+
+    private BufferedReader reader;
+    private ByteBuffer wire;
+    private final FtpCodec codec = new FtpCodec();
+    private final FtpCommand command = new FtpCommand();
+
+    private final FtpResponse reply = FtpResponse.ok(257, "\"/alice/docs\" is the current directory");
+    private final ByteBuffer replyBuffer = ByteBuffer.allocate(1024);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (FtpVerb v : FtpVerb.values()) {
+            if (v == FtpVerb.UNKNOWN) continue;
+            byName.put(v.name(), v);
+            byVerb.put(v, v);
+        }
+        byte[] bytes = (line + "\r\n").getBytes(StandardCharsets.UTF_8);
+        reader = new BufferedReader(new InputStreamReader(new Repeating(bytes), StandardCharsets.UTF_8));
+        wire = ByteBuffer.wrap(bytes);
+    }
+
+    @Benchmark
+    public void stringDecode(Blackhole bh) throws IOException {
+        String l = reader.readLine();
+        int space = l.indexOf(' ');
+        String verb = space > 0 ? l.substring(0, space).toUpperCase() : l.toUpperCase();
+        bh.consume(byName.get(verb));
+        bh.consume(space > 0 ? l.substring(space + 1) : null);
+    }
+
+    @Benchmark
+    public void codecDecode(Blackhole bh) {
+        wire.clear();
+        codec.decodeCommand(wire, command);
+        bh.consume(byVerb.get(command.verb()));
+        bh.consume(command.argument());
+    }
+
+    /** Verb only: commands whose argument is never looked at (NOOP, PWD, PASV, QUIT...). */
+    @Benchmark
+    public Object codecDecodeVerbOnly() {
+        wire.clear();
+        codec.decodeCommand(wire, command);
+        return byVerb.get(command.verb());
+    }
+
+    @Benchmark
+    public byte[] stringEncodeReply() {
+        return reply.toProtocolString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int codecEncodeReply() {
+        replyBuffer.clear();
+        codec.encodeReply(reply, replyBuffer);
+        return replyBuffer.position();
+    }
+
+    /** Endless stream of the same line, standing in for the socket. */
+    private static final class Repeating extends InputStream {
+        private final byte[] data;
+        private int pos;
+
+        Repeating(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read() {
+            int b = data[pos] & 0xFF;
+            pos = (pos + 1) % data.length;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            int n = 0;
+            while (n < len) {
+                int chunk = Math.min(len - n, data.length - pos);
+                System.arraycopy(data, pos, b, off + n, chunk);
+                n += chunk;
+                pos = (pos + chunk) % data.length;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.example.ftp.bench;
+
+import org.example.ftp.server.command.handler.CommandDispatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CommandDispatcher.dispatch end to end for commands without a data connection: verb lookup,
+ * visitor pipeline (metrics), timing in AbstractCommandHandler and the handler itself.
+ * Commands that change session state (CWD, USER) are left out so threads can share the session.
+ *
+ * The console echo of the command log is off: inside a JMH fork stdout is piped to the host VM
+ * and would dominate the score (the in-memory ring buffer is still written).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dftp.log.console=false")
+@State(Scope.Benchmark)
+public class CommandDispatcherBench {
+
+    private final CommandDispatcher dispatcher = new CommandDispatcher();
+
+    @Benchmark
+    public Object noop(ServerFixture f) {
+        return dispatcher.dispatch(f.session, "NOOP");
+    }
+
+    @Benchmark
+    public Object pwd(ServerFixture f) {
+        return dispatcher.dispatch(f.session, "PWD");
+    }
+
+    @Benchmark
+    public Object type(ServerFixture f) {
+        return dispatcher.dispatch(f.session, "type I");
+    }
+
+    @Benchmark
+    public Object unknown(ServerFixture f) {
+        return dispatcher.dispatch(f.session, "XCRC file.bin");
+    }
+
+    /** Dispatch + serialization, i.e. FtpSession.handle minus the socket write. */
+    @Benchmark
+    public String pwdToWire(ServerFixture f) {
+        return dispatcher.dispatch(f.session, "PWD").toProtocolString();
+    }
+}
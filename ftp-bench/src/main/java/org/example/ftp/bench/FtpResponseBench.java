@@ -0,0 +1,54 @@
+package org.example.ftp.bench;
+
+import org.example.ftp.common.protocol.FtpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FtpResponse.toProtocolString for a single-line reply and a FEAT-style multi-line reply,
+ * plus build + serialize (what every handler does per command).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FtpResponseBench {
+
+    private final FtpResponse single = FtpResponse.ok(257, "\"/alice/docs\" is current directory");
+    private final FtpResponse multi = FtpResponse.builder()
+            .code(211)
+            .line("Features:")
+            .line(" EPSV")
+            .line(" MLSD")
+            .line(" PASV")
+            .line(" SIZE")
+            .line(" UTF8")
+            .line("End")
+            .build();
+
+    @Benchmark
+    public String singleLine() {
+        return single.toProtocolString();
+    }
+
+    @Benchmark
+    public String multiLine() {
+        return multi.toProtocolString();
+    }
+
+    @Benchmark
+    public String buildAndSerialize() {
+        return FtpResponse.ok(200, "Command okay.").toProtocolString();
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.ftp.bench;
+
+import org.example.ftp.server.fs.ListFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * One LIST listing: ListFormatter.format for every entry of a directory with "dirSize" entries
+ * (every 10th a sub-directory). Score is per listing, not per line.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListFormatterBench {
+
+    @Param({"10", "100", "1000"})
+    public int dirSize;
+
+    private Path dir;
+    private List<Path> entries;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("ftp-bench-list-");
+        byte[] payload = new byte[1024];
+        for (int i = 0; i < dirSize; i++) {
+            if (i % 10 == 0) {
+                Files.createDirectory(dir.resolve("dir" + i));
+            } else {
+                Files.write(dir.resolve("file" + i + ".bin"), payload);
+            }
+        }
+        try (Stream<Path> s = Files.list(dir)) {
+            entries = s.toList();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        ServerFixture.deleteTree(dir);
+    }
+
+    @Benchmark
+    public void formatListing(Blackhole bh) {
+        for (Path p : entries) {
+            bh.consume(ListFormatter.format(p));
+        }
+    }
+
+    /** Same, including the directory scan LIST does. */
+    @Benchmark
+    public void listAndFormat(Blackhole bh) throws Exception {
+        try (Stream<Path> s = Files.list(dir)) {
+            s.forEach(p -> bh.consume(ListFormatter.format(p)));
+        }
+    }
+
+    @Benchmark
+    public String formatVirtualDirectory() {
+        return ListFormatter.formatDirectory("shared");
+    }
+}
@@ -0,0 +1,49 @@
+package org.example.ftp.bench;
+
+import org.example.ftp.server.fs.PathResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PathResolver.resolve for the path shapes clients send: relative, absolute in home, /shared,
+ * and another user's shared folder (DB lookups, scales with "shares").
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathResolverBench {
+
+    @Benchmark
+    public Object relative(ServerFixture f) {
+        return PathResolver.resolve(f.session, "docs/report.txt");
+    }
+
+    @Benchmark
+    public Object absoluteHome(ServerFixture f) {
+        return PathResolver.resolve(f.session, "/alice/docs/report.txt");
+    }
+
+    @Benchmark
+    public Object sharedDir(ServerFixture f) {
+        return PathResolver.resolve(f.session, "/shared/pub/readme.txt");
+    }
+
+    @Benchmark
+    public Object otherUserShare(ServerFixture f) {
+        try {
+            return PathResolver.resolve(f.session, f.sharedPath);
+        } catch (SecurityException denied) {
+            // shares=0: measures the denied path
+            return denied;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.example.ftp.bench;
+
+import org.example.ftp.server.transfer.RateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RateLimiter.acquire per transfer buffer. One limiter is shared by all benchmark threads
+ * (like the global upload/download limiters), so run with -t N to see contention.
+ *
+ * limit=0 is the "unlimited" fast path; the large limit never throttles, so the score is pure
+ * bookkeeping overhead (128-byte chunks under the monitor) rather than sleeping.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RateLimiterBench {
+
+    @Param({"0", "1000000000000"})
+    public long limit;
+
+    @Param({"1460", "8192"})
+    public int chunk;
+
+    private RateLimiter limiter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        limiter = new RateLimiter(limit);
+    }
+
+    @Benchmark
+    public void acquire() {
+        limiter.acquire(chunk);
+    }
+}
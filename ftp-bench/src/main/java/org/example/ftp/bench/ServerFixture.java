@@ -0,0 +1,115 @@
+package org.example.ftp.bench;
+
+import org.example.ftp.server.auth.AuthService;
+import org.example.ftp.server.auth.PermissionService;
+import org.example.ftp.server.auth.Sha256PasswordHasher;
+import org.example.ftp.server.auth.db.SqliteFolderPermissionRepository;
+import org.example.ftp.server.auth.db.SqliteFolderRepository;
+import org.example.ftp.server.auth.db.SqlitePermissionsRepository;
+import org.example.ftp.server.auth.db.SqliteSharedFolderRepository;
+import org.example.ftp.server.auth.db.SqliteUserRepository;
+import org.example.ftp.server.connection.ConnectionLimiter;
+import org.example.ftp.server.db.Db;
+import org.example.ftp.server.session.FtpSession;
+import org.example.ftp.server.session.FtpSessionBuilder;
+import org.example.ftp.server.stats.StatsService;
+import org.example.ftp.server.stats.db.SqliteStatsRepository;
+import org.example.ftp.server.transfer.RateLimiter;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * An authenticated session for user "alice" on a temp ftp-root, backed by an in-memory SQLite DB
+ * with the real schema. "bob" shares {@code shares} folders (/bob/share0..N-1) with alice, so the
+ * DB-backed paths (other user's folders) scale with the share count.
+ */
+@State(Scope.Benchmark)
+public class ServerFixture {
+
+    @Param({"0", "10", "100"})
+    public int shares;
+
+    public Path ftpRoot;
+    public FtpSession session;
+    /** A path inside one of bob's folders shared with alice (or bob's home if nothing is shared). */
+    public String sharedPath;
+
+    private Connection keepAlive;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ftpRoot = Files.createTempDirectory("ftp-bench-");
+
+        // Shared-cache in-memory DB lives as long as at least one connection is open
+        String url = "jdbc:sqlite:file:bench-" + System.nanoTime() + "?mode=memory&cache=shared";
+        keepAlive = DriverManager.getConnection(url);
+        Db db = new Db(url);
+        db.initSchema();
+
+        var userRepo = new SqliteUserRepository(db);
+        var authService = new AuthService(userRepo, new Sha256PasswordHasher());
+        authService.createUser("alice", "pw");
+        authService.createUser("bob", "pw");
+        // Re-run the migrations so both users get their global permission rows
+        db.initSchema();
+
+        long aliceId = userRepo.findByUsername("alice").orElseThrow().id();
+        long bobId = userRepo.findByUsername("bob").orElseThrow().id();
+        var sharedFolderRepo = new SqliteSharedFolderRepository(db);
+        for (int i = 0; i < shares; i++) {
+            Files.createDirectories(ftpRoot.resolve("users").resolve("bob").resolve("share" + i));
+            sharedFolderRepo.create(bobId, aliceId, "share" + i, "/bob/share" + i, true, i % 2 == 0, false);
+        }
+        sharedPath = shares > 0 ? "/bob/share" + (shares / 2) + "/file.txt" : "/bob";
+
+        session = FtpSessionBuilder.create()
+                .output(OutputStream.nullOutputStream())
+                .ftpRoot(ftpRoot)
+                .authService(authService)
+                .permissionService(new PermissionService(new SqlitePermissionsRepository(db)))
+                .statsService(new StatsService(new SqliteStatsRepository(db)))
+                .connectionLimiter(new ConnectionLimiter(20))
+                .globalUploadRateLimiter(new RateLimiter(0))
+                .globalDownloadRateLimiter(new RateLimiter(0))
+                .userRepository(userRepo)
+                .folderRepository(new SqliteFolderRepository(db))
+                .folderPermissionRepository(new SqliteFolderPermissionRepository(db))
+                .sharedFolderRepository(sharedFolderRepo)
+                .build();
+        session.authenticate("alice");
+        Files.createDirectories(session.getHomeDirectory().resolve("docs"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (keepAlive != null) {
+            keepAlive.close();
+        }
+        deleteTree(ftpRoot);
+    }
+
+    static void deleteTree(Path root) throws IOException {
+        if (root == null || !Files.exists(root)) return;
+        try (Stream<Path> s = Files.walk(root)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException ignored) {
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package org.example.ftp.common.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pooled FTP client for one server and account.
+ *
+ * <pre>{@code
+ * try (FtpClient ftp = FtpClient.builder()
+ *         .host("127.0.0.1").port(2121)
+ *         .credentials("bob", "secret")
+ *         .maxConnections(8)
+ *         .build()) {
+ *     ftp.upload(Path.of("a.bin"), "/bob/a.bin");
+ *     List<FtpTransferResult> r = ftp.downloadAll(Map.of("/bob/a.bin", Path.of("copy.bin")));
+ * }
+ * }</pre>
+ *
+ * Multi-file transfers run one file per pooled connection, up to {@code maxConnections} at once.
+ */
+public final class FtpClient implements Closeable {
+
+    /** Work done on a borrowed connection. */
+    @FunctionalInterface
+    public interface ConnectionCallback<T> {
+        T apply(FtpConnection connection) throws IOException;
+    }
+
+    private final FtpConnectionPool pool;
+    private final ExecutorService transfers;
+
+    private FtpClient(Builder b) {
+        InetSocketAddress address = new InetSocketAddress(b.host, b.port);
+        String username = b.username;
+        String password = b.password;
+        Duration timeout = b.timeout;
+        this.pool = new FtpConnectionPool(() -> {
+            FtpConnection c = FtpConnection.open(address, timeout);
+            try {
+                c.login(username, password);
+                return c;
+            } catch (IOException | RuntimeException e) {
+                c.close();
+                throw e;
+            }
+        }, b.maxConnections, b.keepAlive);
+
+        AtomicInteger seq = new AtomicInteger();
+        this.transfers = Executors.newFixedThreadPool(b.maxConnections, r -> {
+            Thread t = new Thread(r, "ftp-client-transfer-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Runs {@code work} on a pooled connection. A refused command ({@link FtpClientException})
+     * returns the connection to the pool; any other failure closes it.
+     */
+    public <T> T execute(ConnectionCallback<T> work) throws IOException {
+        FtpConnection c = pool.borrow();
+        boolean healthy = false;
+        try {
+            T result = work.apply(c);
+            healthy = true;
+            return result;
+        } catch (FtpClientException e) {
+            healthy = c.isOpen();
+            throw e;
+        } finally {
+            if (healthy) {
+                pool.release(c);
+            } else {
+                pool.invalidate(c);
+            }
+        }
+    }
+
+    public long download(String remotePath, Path local) throws IOException {
+        return execute(c -> c.download(remotePath, local));
+    }
+
+    public long upload(Path local, String remotePath) throws IOException {
+        return execute(c -> c.upload(local, remotePath));
+    }
+
+    /** MLSD lines of a directory. */
+    public List<String> mlsd(String remoteDir) throws IOException {
+        return execute(c -> c.list("MLSD " + remoteDir));
+    }
+
+    /**
+     * Downloads every entry (remote path to local file) in parallel.
+     *
+     * @return one result per entry, in the map's iteration order
+     */
+    public List<FtpTransferResult> downloadAll(Map<String, Path> remoteToLocal) throws IOException {
+        List<Future<FtpTransferResult>> futures = new ArrayList<>(remoteToLocal.size());
+        for (Map.Entry<String, Path> e : remoteToLocal.entrySet()) {
+            futures.add(transfers.submit(() -> timed(e.getKey(), e.getValue(), () -> download(e.getKey(), e.getValue()))));
+        }
+        return collect(futures);
+    }
+
+    /**
+     * Uploads every entry (local file to remote path) in parallel.
+     *
+     * @return one result per entry, in the map's iteration order
+     */
+    public List<FtpTransferResult> uploadAll(Map<Path, String> localToRemote) throws IOException {
+        List<Future<FtpTransferResult>> futures = new ArrayList<>(localToRemote.size());
+        for (Map.Entry<Path, String> e : localToRemote.entrySet()) {
+            futures.add(transfers.submit(() -> timed(e.getValue(), e.getKey(), () -> upload(e.getKey(), e.getValue()))));
+        }
+        return collect(futures);
+    }
+
+    public FtpConnectionPool pool() {
+        return pool;
+    }
+
+    @Override
+    public void close() {
+        transfers.shutdownNow();
+        pool.close();
+    }
+
+    @FunctionalInterface
+    private interface Transfer {
+        long run() throws IOException;
+    }
+
+    private static FtpTransferResult timed(String remote, Path local, Transfer transfer) {
+        long start = System.nanoTime();
+        try {
+            long bytes = transfer.run();
+            return new FtpTransferResult(remote, local, bytes, System.nanoTime() - start, null);
+        } catch (IOException e) {
+            return new FtpTransferResult(remote, local, 0, System.nanoTime() - start, e);
+        }
+    }
+
+    private static List<FtpTransferResult> collect(List<Future<FtpTransferResult>> futures) throws IOException {
+        List<FtpTransferResult> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<FtpTransferResult> f : futures) {
+                results.add(f.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for transfers");
+        } catch (ExecutionException | CancellationException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw new IOException("Transfer task failed", e);
+        }
+    }
+
+    public static final class Builder {
+        private String host;
+        private int port = 2121;
+        private String username;
+        private String password;
+        private int maxConnections = 4;
+        private Duration keepAlive = Duration.ofSeconds(30);
+        private Duration timeout = Duration.ofSeconds(30);
+
+        private Builder() {
+        }
+
+        public Builder host(String host) {
+            this.host = host;
+            return this;
+        }
+
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder credentials(String username, String password) {
+            this.username = username;
+            this.password = password;
+            return this;
+        }
+
+        /** Pool size, which is also the parallelism of multi-file transfers. */
+        public Builder maxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        /** NOOP interval for idle pooled connections, {@link Duration#ZERO} to disable. */
+        public Builder keepAlive(Duration keepAlive) {
+            this.keepAlive = keepAlive;
+            return this;
+        }
+
+        /** Longest wait for any server activity (connect, reply, data). */
+        public Builder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        public FtpClient build() {
+            if (host == null) throw new IllegalStateException("host is required");
+            if (username == null || password == null) throw new IllegalStateException("credentials are required");
+            if (maxConnections < 1) throw new IllegalStateException("maxConnections must be >= 1");
+            if (keepAlive == null || keepAlive.isNegative()) throw new IllegalStateException("keepAlive must be >= 0");
+            if (timeout == null || timeout.isZero() || timeout.isNegative()) throw new IllegalStateException("timeout must be > 0");
+            return new FtpClient(this);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.example.ftp.common.client;
+
+import org.example.ftp.common.protocol.FtpResponse;
+
+import java.io.IOException;
+
+/**
+ * The server refused a command. The control connection itself is still usable, unlike after a
+ * plain {@link IOException}.
+ */
+public class FtpClientException extends IOException {
+
+    private final String command;
+    private final FtpResponse response;
+
+    public FtpClientException(String command, FtpResponse response) {
+        super(command + " -> " + response.getCode() + " " + String.join(" / ", response.getLines()));
+        this.command = command;
+        this.response = response;
+    }
+
+    /** Verb of the refused command (arguments, e.g. a password, are not kept). */
+    public String getCommand() {
+        return command;
+    }
+
+    public FtpResponse getResponse() {
+        return response;
+    }
+
+    public int getCode() {
+        return response.getCode();
+    }
+}
@@ -0,0 +1,450 @@
+package org.example.ftp.common.client;
+
+import org.example.ftp.common.protocol.FtpCodec;
+import org.example.ftp.common.protocol.FtpResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One logged-in control connection (passive mode only).
+ *
+ * Control and data channels are non-blocking and share one {@link Selector}, which gives every
+ * wait a timeout (blocking socket channels ignore SO_TIMEOUT) and lets a transfer react to
+ * whichever side speaks first: the server sends 150 before RETR/STOR data, but LIST/MLSD go
+ * straight to the data and answer 226 afterwards. File bodies move with
+ * {@link FileChannel#transferTo}/{@link FileChannel#transferFrom}, so uploads are sendfile(2) on
+ * Linux and no byte is copied through the Java heap either way.
+ *
+ * Not thread-safe: one caller at a time (see {@link FtpConnectionPool}). After any
+ * {@link IOException} other than {@link FtpClientException} the control stream is in an unknown
+ * state and the connection should be closed.
+ */
+public final class FtpConnection implements Closeable {
+
+    private static final int CONTROL_BUFFER = 8 * 1024;
+    private static final int MAX_LINE = 1024 * 1024;
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+
+    /** Moves the next piece of a transfer; returns bytes moved, 0 if the socket is not ready, -1 at EOF. */
+    @FunctionalInterface
+    private interface Step {
+        long transfer(SocketChannel data, long position) throws IOException;
+    }
+
+    private final long timeoutMillis;
+    private final SocketChannel control;
+    private final Selector selector;
+    private final SelectionKey controlKey;
+    private final FtpReplyParser parser = new FtpReplyParser();
+    private final FtpCodec codec = new FtpCodec();
+    private final ByteBuffer out = ByteBuffer.allocate(CONTROL_BUFFER);
+    private final ByteBuffer probe = ByteBuffer.allocate(1);
+
+    private ByteBuffer in = ByteBuffer.allocate(CONTROL_BUFFER).flip();
+    private volatile long lastUsedNanos = System.nanoTime();
+
+    private FtpConnection(SocketChannel control, Selector selector, long timeoutMillis) throws IOException {
+        this.control = control;
+        this.selector = selector;
+        this.timeoutMillis = timeoutMillis;
+        this.controlKey = control.register(selector, 0);
+    }
+
+    /** Connects and reads the 220 greeting (421 when the server is full). */
+    public static FtpConnection open(InetSocketAddress address, Duration timeout) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        Selector selector = null;
+        FtpConnection c = null;
+        try {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            selector = Selector.open();
+            c = new FtpConnection(channel, selector, Math.max(1, timeout.toMillis()));
+            if (!channel.connect(address)) {
+                c.await(c.controlKey, SelectionKey.OP_CONNECT, null, 0);
+                channel.finishConnect();
+            }
+            FtpResponse greeting = c.readReply();
+            if (greeting.getCode() != 220) {
+                throw new FtpClientException("CONNECT", greeting);
+            }
+            return c;
+        } catch (IOException | RuntimeException e) {
+            if (c != null) {
+                c.close();
+            } else {
+                channel.close();
+                if (selector != null) selector.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * USER, PASS and TYPE I in a single write (one round trip instead of three).
+     * A 230 straight after USER is accepted too; the PASS reply is then ignored.
+     */
+    public void login(String username, String password) throws IOException {
+        List<FtpResponse> r = pipeline(List.of("USER " + username, "PASS " + password, "TYPE I"));
+        FtpResponse user = r.get(0);
+        if (user.getCode() != 331 && user.getCode() != 230) {
+            throw new FtpClientException("USER", user);
+        }
+        if (user.getCode() == 331 && r.get(1).getCode() != 230) {
+            throw new FtpClientException("PASS", r.get(1));
+        }
+        if (r.get(2).getCode() != 200) {
+            throw new FtpClientException("TYPE", r.get(2));
+        }
+    }
+
+    /** Sends one command and returns its reply, whatever the code. */
+    public FtpResponse command(String line) throws IOException {
+        send(List.of(line));
+        return readReply();
+    }
+
+    /**
+     * Writes all commands at once, then reads one reply per command. Only for commands without
+     * a data connection; the server still runs them strictly in order, so a failing command does
+     * not stop the following ones.
+     */
+    public List<FtpResponse> pipeline(List<String> lines) throws IOException {
+        send(lines);
+        List<FtpResponse> replies = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            replies.add(readReply());
+        }
+        return replies;
+    }
+
+    public void noop() throws IOException {
+        FtpResponse r = command("NOOP");
+        if (r.getCode() != 200) throw new FtpClientException("NOOP", r);
+    }
+
+    /** RETR into a local file (created or truncated). */
+    public long download(String remotePath, Path local) throws IOException {
+        try (FileChannel file = FileChannel.open(local,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return receive("RETR " + remotePath, (data, pos) -> {
+                long n = file.transferFrom(data, pos, TRANSFER_CHUNK);
+                if (n > 0) return n;
+                // transferFrom reports EOF and "nothing yet" alike as 0
+                probe.clear();
+                int p = data.read(probe);
+                if (p > 0) {
+                    probe.flip();
+                    file.write(probe, pos);
+                }
+                return p;
+            });
+        }
+    }
+
+    /**
+     * Runs a listing command ("LIST /dir", "MLSD", "NLST ...") and returns its lines.
+     */
+    public List<String> list(String command) throws IOException {
+        ByteArrayOutputStream listing = new ByteArrayOutputStream();
+        ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+        receive(command, (data, pos) -> {
+            buf.clear();
+            int n = data.read(buf);
+            if (n > 0) listing.write(buf.array(), 0, n);
+            return n;
+        });
+        List<String> lines = new ArrayList<>();
+        for (String line : listing.toString(StandardCharsets.UTF_8).split("\r?\n")) {
+            if (!line.isEmpty()) lines.add(line);
+        }
+        return lines;
+    }
+
+    /** STOR a local file. */
+    public long upload(Path local, String remotePath) throws IOException {
+        try (FileChannel file = FileChannel.open(local, StandardOpenOption.READ)) {
+            long size = file.size();
+            return store("STOR " + remotePath, size, (data, pos) -> file.transferTo(pos, size - pos, data));
+        }
+    }
+
+    /** Nanoseconds since the last command was sent. */
+    public long idleNanos() {
+        return System.nanoTime() - lastUsedNanos;
+    }
+
+    public boolean isOpen() {
+        return control.isOpen();
+    }
+
+    /** QUIT (best effort) and close. */
+    public void quit() {
+        try {
+            command("QUIT");
+        } catch (IOException ignored) {
+        }
+        close();
+    }
+
+    @Override
+    public void close() {
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+        }
+        try {
+            control.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // ===== Data connections =====
+
+    private long receive(String command, Step step) throws IOException {
+        String verb = verb(command);
+        try (SocketChannel data = openPassive()) {
+            SelectionKey dataKey = data.keyFor(selector);
+            send(List.of(command));
+
+            FtpResponse done = null;
+            SelectionKey first = in.hasRemaining()
+                    ? controlKey
+                    : await(controlKey, SelectionKey.OP_READ, dataKey, SelectionKey.OP_READ);
+            if (first == controlKey) {
+                FtpResponse r = readReply();
+                if (isFailure(r)) throw new FtpClientException(verb, r);
+                if (!isPreliminary(r)) done = r; // completed without a 1xx, data is (being) closed
+            }
+
+            long total = 0;
+            while (true) {
+                long n = step.transfer(data, total);
+                if (n < 0) break;
+                if (n > 0) {
+                    total += n;
+                } else {
+                    await(dataKey, SelectionKey.OP_READ, null, 0);
+                }
+            }
+            data.close();
+
+            if (done == null) done = readFinalReply();
+            if (isFailure(done)) throw new FtpClientException(verb, done);
+            return total;
+        }
+    }
+
+    private long store(String command, long size, Step step) throws IOException {
+        String verb = verb(command);
+        try (SocketChannel data = openPassive()) {
+            SelectionKey dataKey = data.keyFor(selector);
+            FtpResponse r = command(command);
+            if (!isPreliminary(r)) throw new FtpClientException(verb, r);
+
+            long pos = 0;
+            try {
+                while (pos < size) {
+                    long n = step.transfer(data, pos);
+                    if (n > 0) {
+                        pos += n;
+                        continue;
+                    }
+                    // Socket full: wait for room, or for the server to give up on us (e.g. disk full)
+                    if (await(dataKey, SelectionKey.OP_WRITE, controlKey, SelectionKey.OP_READ) == controlKey) {
+                        FtpResponse early = readFinalReply();
+                        throw new FtpClientException(verb, early);
+                    }
+                }
+            } catch (FtpClientException e) {
+                throw e;
+            } catch (IOException e) {
+                // Reset by the server: its reply says why
+                FtpResponse reason = readFinalReply();
+                FtpClientException ex = new FtpClientException(verb, reason);
+                ex.addSuppressed(e);
+                throw ex;
+            }
+            data.close();
+
+            FtpResponse done = readFinalReply();
+            if (isFailure(done)) throw new FtpClientException(verb, done);
+            return pos;
+        }
+    }
+
+    /**
+     * PASV and connect; the data channel joins this connection's selector. The address in the
+     * 227 reply is ignored (servers behind NAT report a useless one), only the port is used.
+     */
+    private SocketChannel openPassive() throws IOException {
+        FtpResponse r = command("PASV");
+        if (r.getCode() != 227) throw new FtpClientException("PASV", r);
+        int port = pasvPort(r.getLines().get(0));
+
+        InetSocketAddress peer = (InetSocketAddress) control.getRemoteAddress();
+        SocketChannel data = SocketChannel.open();
+        try {
+            data.configureBlocking(false);
+            SelectionKey key = data.register(selector, 0);
+            if (!data.connect(new InetSocketAddress(peer.getAddress(), port))) {
+                await(key, SelectionKey.OP_CONNECT, null, 0);
+                data.finishConnect();
+            }
+            return data;
+        } catch (IOException e) {
+            data.close();
+            throw e;
+        }
+    }
+
+    static int pasvPort(String text) throws ProtocolException {
+        int open = text.indexOf('(');
+        int close = text.indexOf(')', open + 1);
+        if (open < 0 || close < 0) throw new ProtocolException("Malformed PASV reply: " + text);
+        String[] p = text.substring(open + 1, close).split(",");
+        if (p.length != 6) throw new ProtocolException("Malformed PASV reply: " + text);
+        try {
+            return Integer.parseInt(p[4].trim()) * 256 + Integer.parseInt(p[5].trim());
+        } catch (NumberFormatException e) {
+            throw new ProtocolException("Malformed PASV reply: " + text);
+        }
+    }
+
+    // ===== Control channel =====
+
+    private void send(List<String> lines) throws IOException {
+        out.clear();
+        for (String line : lines) {
+            if (!codec.encodeCommand(line, out)) {
+                flush();
+                if (!codec.encodeCommand(line, out)) {
+                    throw new IllegalArgumentException("Command longer than " + out.capacity() + " bytes");
+                }
+            }
+        }
+        lastUsedNanos = System.nanoTime();
+        flush();
+    }
+
+    private void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            if (control.write(out) == 0) {
+                await(controlKey, SelectionKey.OP_WRITE, null, 0);
+            }
+        }
+        out.clear();
+    }
+
+    /** The next complete reply. */
+    public FtpResponse readReply() throws IOException {
+        while (true) {
+            FtpResponse r = parser.accept(readLine());
+            if (r != null) return r;
+        }
+    }
+
+    /** Skips 1xx replies still queued behind the data. */
+    private FtpResponse readFinalReply() throws IOException {
+        FtpResponse r = readReply();
+        while (isPreliminary(r)) {
+            r = readReply();
+        }
+        return r;
+    }
+
+    private String readLine() throws IOException {
+        while (true) {
+            for (int i = in.position(); i < in.limit(); i++) {
+                if (in.get(i) == '\n') {
+                    int start = in.position();
+                    int end = i > start && in.get(i - 1) == '\r' ? i - 1 : i;
+                    String line = new String(in.array(), in.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+                    in.position(i + 1);
+                    return line;
+                }
+            }
+            fill();
+        }
+    }
+
+    private void fill() throws IOException {
+        if (in.position() == 0 && in.limit() == in.capacity()) {
+            if (in.capacity() >= MAX_LINE) throw new ProtocolException("Reply line longer than " + MAX_LINE + " bytes");
+            in = ByteBuffer.allocate(in.capacity() * 2).put(in).flip();
+        }
+        in.compact();
+        int n;
+        try {
+            while ((n = control.read(in)) == 0) {
+                await(controlKey, SelectionKey.OP_READ, null, 0);
+            }
+        } finally {
+            in.flip();
+        }
+        if (n < 0) throw new EOFException("Control connection closed by server");
+    }
+
+    /**
+     * Waits until {@code a} (or {@code b}, if given) is ready for the given operations.
+     *
+     * @return the ready key, {@code a} if both are
+     */
+    private SelectionKey await(SelectionKey a, int opsA, SelectionKey b, int opsB) throws IOException {
+        a.interestOps(opsA);
+        if (b != null) b.interestOps(opsB);
+        try {
+            long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+            while (true) {
+                long left = (deadline - System.nanoTime()) / 1_000_000L;
+                if (left <= 0) throw new SocketTimeoutException("No server activity for " + timeoutMillis + " ms");
+                selector.select(left);
+                Set<SelectionKey> ready = selector.selectedKeys();
+                try {
+                    if (ready.contains(a) && (a.readyOps() & opsA) != 0) return a;
+                    if (b != null && ready.contains(b) && (b.readyOps() & opsB) != 0) return b;
+                } finally {
+                    ready.clear();
+                }
+                if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Interrupted");
+            }
+        } finally {
+            if (a.isValid()) a.interestOps(0);
+            if (b != null && b.isValid()) b.interestOps(0);
+        }
+    }
+
+    private static boolean isPreliminary(FtpResponse r) {
+        return r.getCode() < 200;
+    }
+
+    private static boolean isFailure(FtpResponse r) {
+        return r.getCode() >= 400;
+    }
+
+    private static String verb(String command) {
+        int sp = command.indexOf(' ');
+        return sp > 0 ? command.substring(0, sp) : command;
+    }
+}
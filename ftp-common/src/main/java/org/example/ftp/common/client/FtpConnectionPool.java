@@ -0,0 +1,157 @@
+package org.example.ftp.common.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logged-in connections to one server/account, at most {@code maxSize} in use at a time.
+ *
+ * Idle connections are reused most-recent-first and get a NOOP once they have been idle for the
+ * keep-alive interval, so the server's idle timeout does not close them under us; a connection
+ * that fails the NOOP is dropped.
+ */
+public final class FtpConnectionPool implements Closeable {
+
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        /** Opens and logs in a new connection. */
+        FtpConnection open() throws IOException;
+    }
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long keepAliveNanos;
+    private final Semaphore permits;
+    private final Deque<FtpConnection> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService keepAlive;
+    private volatile boolean closed;
+
+    /**
+     * @param keepAlive NOOP interval for idle connections, {@link Duration#ZERO} to disable
+     */
+    public FtpConnectionPool(ConnectionFactory factory, int maxSize, Duration keepAlive) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be >= 1");
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.keepAliveNanos = keepAlive.toNanos();
+        this.permits = new Semaphore(maxSize, true);
+
+        if (keepAliveNanos > 0) {
+            this.keepAlive = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ftp-client-keepalive");
+                t.setDaemon(true);
+                return t;
+            });
+            long tick = Math.max(1, keepAlive.toMillis() / 2);
+            this.keepAlive.scheduleWithFixedDelay(this::pingIdle, tick, tick, TimeUnit.MILLISECONDS);
+        } else {
+            this.keepAlive = null;
+        }
+    }
+
+    /** Waits for a free slot, then hands out an idle connection or opens a new one. */
+    public FtpConnection borrow() throws IOException {
+        if (closed) throw new IOException("Connection pool is closed");
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection");
+        }
+        try {
+            while (true) {
+                FtpConnection c;
+                synchronized (idle) {
+                    c = idle.pollFirst();
+                }
+                if (c == null) return factory.open();
+                if (c.isOpen()) return c;
+            }
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /** Gives a healthy connection back. */
+    public void release(FtpConnection c) {
+        try {
+            offer(c, true);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /** Closes a connection whose state is unknown (I/O error, timeout) and frees its slot. */
+    public void invalidate(FtpConnection c) {
+        try {
+            c.close();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public int idleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (keepAlive != null) keepAlive.shutdownNow();
+        List<FtpConnection> toClose;
+        synchronized (idle) {
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+        }
+        toClose.forEach(FtpConnection::quit);
+    }
+
+    private void offer(FtpConnection c, boolean mostRecent) {
+        if (!c.isOpen()) return;
+        boolean kept = false;
+        synchronized (idle) {
+            // A NOOP in flight can briefly let one more connection exist than the pool size
+            if (!closed && idle.size() < maxSize) {
+                if (mostRecent) idle.addFirst(c);
+                else idle.addLast(c);
+                kept = true;
+            }
+        }
+        if (!kept) c.quit();
+    }
+
+    private void pingIdle() {
+        List<FtpConnection> due = new ArrayList<>();
+        synchronized (idle) {
+            for (FtpConnection c : idle) {
+                if (c.idleNanos() >= keepAliveNanos) due.add(c);
+            }
+            idle.removeAll(due);
+        }
+        for (FtpConnection c : due) {
+            try {
+                c.noop();
+                offer(c, false);
+            } catch (IOException e) {
+                c.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.ftp.common.client;
+
+import org.example.ftp.common.protocol.FtpResponse;
+
+import java.net.ProtocolException;
+
+/**
+ * Incremental reply parser: feed it control lines (without CRLF) and it yields an
+ * {@link FtpResponse} once a reply is complete, so {@code toProtocolString()} gives back the
+ * exact wire text.
+ *
+ * Multi-line replies (RFC 959 4.2) start with {@code "ddd-"} and end with {@code "ddd "}; the lines
+ * in between are kept verbatim, even when they start with digits.
+ */
+public final class FtpReplyParser {
+
+    private FtpResponse.Builder pending;
+    private String endPrefix;
+
+    /**
+     * @return the finished reply, or {@code null} while a multi-line reply is still open
+     */
+    public FtpResponse accept(String line) throws ProtocolException {
+        if (pending != null) {
+            if (line.startsWith(endPrefix)) {
+                FtpResponse reply = pending.line(line.substring(4)).build();
+                pending = null;
+                return reply;
+            }
+            pending.line(line);
+            return null;
+        }
+
+        int code = parseCode(line);
+        char sep = line.length() > 3 ? line.charAt(3) : ' ';
+        String text = line.length() > 4 ? line.substring(4) : "";
+        if (sep == '-') {
+            pending = FtpResponse.builder().code(code).line(text);
+            endPrefix = line.substring(0, 3) + " ";
+            return null;
+        }
+        if (sep != ' ') {
+            throw new ProtocolException("Malformed reply: " + line);
+        }
+        return FtpResponse.builder().code(code).line(text).build();
+    }
+
+    /** True between the first and the last line of a multi-line reply. */
+    public boolean inProgress() {
+        return pending != null;
+    }
+
+    public void reset() {
+        pending = null;
+        endPrefix = null;
+    }
+
+    private static int parseCode(String line) throws ProtocolException {
+        if (line.length() < 3) {
+            throw new ProtocolException("Malformed reply: " + line);
+        }
+        int code = 0;
+        for (int i = 0; i < 3; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new ProtocolException("Malformed reply: " + line);
+            }
+            code = code * 10 + (c - '0');
+        }
+        if (code < 100 || code > 599) {
+            throw new ProtocolException("Reply code out of range: " + line);
+        }
+        return code;
+    }
+}
@@ -0,0 +1,21 @@
+package org.example.ftp.common.client;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Outcome of one file of a multi-file transfer; a failed file does not fail the others.
+ *
+ * @param error {@code null} on success
+ */
+public record FtpTransferResult(String remotePath, Path localPath, long bytes, long nanos, IOException error) {
+
+    public boolean isOk() {
+        return error == null;
+    }
+
+    /** Bytes per second, 0 for failed or instant transfers. */
+    public double throughput() {
+        return error == null && nanos > 0 ? bytes * 1e9 / nanos : 0;
+    }
+}
@@ -0,0 +1,228 @@
+package org.example.ftp.common.protocol;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Byte-level control channel codec for one connection (not thread-safe): decodes command lines
+ * into a reused {@link FtpCommand} and encodes replies (server) or commands (client) straight
+ * into a {@link ByteBuffer}, without intermediate Strings for ASCII text.
+ *
+ * Line rules on decode:
+ * <ul>
+ *   <li>a line ends at LF; a CR right before it is dropped, so bare LF is accepted too;</li>
+ *   <li>CR NUL is a literal CR (Telnet), any other lone CR is kept as is;</li>
+ *   <li>Telnet commands are removed: IAC IAC is a literal 0xFF, IAC WILL/WONT/DO/DONT opt is
+ *       dropped with its option, any other IAC x (e.g. the IP/DM sent before ABOR) as a pair;</li>
+ *   <li>a line longer than the limit (or spanning more than twice the limit in raw bytes) is
+ *       reported once as {@link FtpCommand#isTooLong()} and the rest of it is skipped up to its
+ *       LF, so a read buffer larger than {@code 2 * maxLineLength} can never fill up.</li>
+ * </ul>
+ */
+public final class FtpCodec {
+
+    public static final int DEFAULT_MAX_LINE = 4096;
+
+    private static final int IAC = 0xFF;
+    private static final int WILL = 251;
+    private static final int DONT = 254;
+
+    private final int maxLineLength;
+    private final CharsetEncoder utf8 = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    // Inside an over-long line, dropping bytes up to the next LF
+    private boolean discarding;
+
+    public FtpCodec() {
+        this(DEFAULT_MAX_LINE);
+    }
+
+    public FtpCodec(int maxLineLength) {
+        this.maxLineLength = maxLineLength;
+    }
+
+    /**
+     * Decodes the next complete line from {@code in} (between position and limit).
+     *
+     * @return {@code true} with {@code into} filled and {@code in} positioned after the line;
+     *         {@code false} if more bytes are needed ({@code in} is left untouched unless part of
+     *         an over-long line was skipped)
+     */
+    public boolean decodeCommand(ByteBuffer in, FtpCommand into) {
+        int limit = in.limit();
+        if (discarding && !skipLine(in)) {
+            return false;
+        }
+
+        byte[] dst = into.buffer(Math.min(limit - in.position(), maxLineLength) + 1);
+        int start = in.position();
+        int n = 0;
+        int i = start;
+        while (i < limit) {
+            if (i - start >= 2 * maxLineLength) {
+                // Telnet noise that never adds up to a line must not fill the caller's buffer either
+                return tooLong(in, i, into);
+            }
+            int b = in.get(i) & 0xFF;
+            if (b == '\n') {
+                in.position(i + 1);
+                into.parse(n);
+                return true;
+            }
+            if (b == IAC) {
+                if (i + 1 >= limit) return false;
+                int cmd = in.get(i + 1) & 0xFF;
+                if (cmd == IAC) {
+                    i += 2; // escaped 0xFF, kept below
+                } else if (cmd >= WILL && cmd <= DONT) {
+                    if (i + 2 >= limit) return false;
+                    i += 3;
+                    continue;
+                } else {
+                    i += 2;
+                    continue;
+                }
+            } else if (b == '\r') {
+                if (i + 1 >= limit) return false;
+                int next = in.get(i + 1);
+                if (next == '\n') {
+                    i++;
+                    continue;
+                }
+                i += next == 0 ? 2 : 1;
+            } else {
+                i++;
+            }
+
+            if (n == maxLineLength) {
+                return tooLong(in, i, into);
+            }
+            dst[n++] = (byte) b;
+        }
+        return false;
+    }
+
+    /**
+     * Encodes a reply in wire format (same bytes as {@link FtpResponse#toProtocolString()} in UTF-8).
+     *
+     * @return {@code false} if it does not fit in {@code out} (whose position is then unchanged)
+     */
+    public boolean encodeReply(FtpResponse reply, ByteBuffer out) {
+        int start = out.position();
+        try {
+            List<String> lines = reply.getLines();
+            int code = reply.getCode();
+            int last = lines.size() - 1;
+            for (int i = 0; i <= last; i++) {
+                if (i == 0 || i == last) {
+                    putCode(code, out);
+                    out.put((byte) (i == last ? ' ' : '-'));
+                }
+                putText(lines.get(i), out);
+                out.put((byte) '\r').put((byte) '\n');
+            }
+            return true;
+        } catch (BufferOverflowException e) {
+            out.position(start);
+            return false;
+        }
+    }
+
+    /**
+     * Encodes one command line plus CRLF (client side).
+     *
+     * @return {@code false} if it does not fit in {@code out} (whose position is then unchanged)
+     * @throws IllegalArgumentException if the line contains CR or LF
+     */
+    public boolean encodeCommand(CharSequence line, ByteBuffer out) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\r' || c == '\n') throw new IllegalArgumentException("Command must not contain CR/LF");
+        }
+        int start = out.position();
+        try {
+            putText(line, out);
+            out.put((byte) '\r').put((byte) '\n');
+            return true;
+        } catch (BufferOverflowException e) {
+            out.position(start);
+            return false;
+        }
+    }
+
+    private boolean tooLong(ByteBuffer in, int position, FtpCommand into) {
+        in.position(position);
+        into.markTooLong();
+        discarding = true;
+        skipLine(in);
+        return true;
+    }
+
+    /**
+     * Drops bytes up to and including the next LF outside a Telnet command (an option byte may
+     * be 10); false if the buffer ran out first.
+     */
+    private boolean skipLine(ByteBuffer in) {
+        int limit = in.limit();
+        int i = in.position();
+        while (i < limit) {
+            int b = in.get(i) & 0xFF;
+            if (b == '\n') {
+                in.position(i + 1);
+                discarding = false;
+                return true;
+            }
+            if (b == IAC) {
+                if (i + 1 >= limit) break;
+                int cmd = in.get(i + 1) & 0xFF;
+                int len = cmd >= WILL && cmd <= DONT ? 3 : 2;
+                if (i + len > limit) break;
+                i += len;
+            } else {
+                i++;
+            }
+        }
+        // Keep an incomplete Telnet command for the next call
+        in.position(i);
+        return false;
+    }
+
+    private static void putCode(int code, ByteBuffer out) {
+        if (code >= 100 && code <= 999) {
+            out.put((byte) ('0' + code / 100))
+                    .put((byte) ('0' + code / 10 % 10))
+                    .put((byte) ('0' + code % 10));
+        } else {
+            putAscii(Integer.toString(code), out);
+        }
+    }
+
+    private void putText(CharSequence s, ByteBuffer out) {
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                // Non-ASCII tail goes through the encoder
+                utf8.reset();
+                CoderResult r = utf8.encode(CharBuffer.wrap(s, i, len), out, true);
+                if (r.isOverflow() || utf8.flush(out).isOverflow()) throw new BufferOverflowException();
+                return;
+            }
+            out.put((byte) c);
+        }
+    }
+
+    private static void putAscii(String s, ByteBuffer out) {
+        for (int i = 0; i < s.length(); i++) {
+            out.put((byte) s.charAt(i));
+        }
+    }
+}
@@ -1,4 +1,110 @@
-package org.example.protocol;
+package org.example.ftp.common.protocol;
 
-public class FtpCommand {
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * One decoded command line: verb plus an argument slice over the line bytes.
+ *
+ * Mutable and meant to be reused for every line of a connection ({@link FtpCodec#decodeCommand}
+ * overwrites it); the argument is only turned into a {@code String} when asked for. The argument
+ * is everything after the first space, kept verbatim (file names may start or end with spaces).
+ */
+public final class FtpCommand {
+
+    private byte[] line = new byte[128];
+    private int length;
+    private int verbStart;
+    private int verbEnd;
+    private int argStart = -1;
+    private FtpVerb verb = FtpVerb.UNKNOWN;
+    private boolean tooLong;
+
+    private String argument;
+    private String text;
+
+    /** Decodes a single line (without CRLF); convenience for callers that already have a String. */
+    public static FtpCommand of(String line) {
+        FtpCommand c = new FtpCommand();
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, c.buffer(bytes.length), 0, bytes.length);
+        c.parse(bytes.length);
+        return c;
+    }
+
+    public FtpVerb verb() {
+        return verb;
+    }
+
+    /** Blank line (also true for an over-long one, see {@link #isTooLong()}). */
+    public boolean isEmpty() {
+        return verbEnd == verbStart;
+    }
+
+    /** The line exceeded the codec's limit and was dropped. */
+    public boolean isTooLong() {
+        return tooLong;
+    }
+
+    /** Verb as sent, upper-cased (for unknown verbs; allocates). */
+    public String verbText() {
+        return new String(line, verbStart, verbEnd - verbStart, StandardCharsets.UTF_8).toUpperCase(Locale.ROOT);
+    }
+
+    public boolean hasArgument() {
+        return argStart >= 0;
+    }
+
+    public int argumentLength() {
+        return argStart < 0 ? 0 : length - argStart;
+    }
+
+    /** Everything after the first space, or {@code null}. Decoded once per line. */
+    public String argument() {
+        if (argStart < 0) return null;
+        if (argument == null) {
+            argument = new String(line, argStart, length - argStart, StandardCharsets.UTF_8);
+        }
+        return argument;
+    }
+
+    /** The line as received, without leading blanks and CRLF. */
+    @Override
+    public String toString() {
+        if (text == null) {
+            text = new String(line, verbStart, length - verbStart, StandardCharsets.UTF_8);
+        }
+        return text;
+    }
+
+    // ===== Filled by FtpCodec =====
+
+    /** Line storage with room for at least {@code capacity} bytes (contents kept). */
+    byte[] buffer(int capacity) {
+        if (line.length < capacity) {
+            line = Arrays.copyOf(line, Math.max(capacity, line.length * 2));
+        }
+        return line;
+    }
+
+    void parse(int length) {
+        this.length = length;
+        this.tooLong = false;
+        this.argument = null;
+        this.text = null;
+
+        int i = 0;
+        while (i < length && line[i] == ' ') i++;
+        verbStart = i;
+        while (i < length && line[i] != ' ') i++;
+        verbEnd = i;
+        argStart = i < length ? i + 1 : -1;
+        verb = verbEnd > verbStart ? FtpVerb.lookup(line, verbStart, verbEnd - verbStart) : FtpVerb.UNKNOWN;
+    }
+
+    void markTooLong() {
+        parse(0);
+        tooLong = true;
+    }
 }
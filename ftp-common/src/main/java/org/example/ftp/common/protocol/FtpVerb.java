@@ -0,0 +1,67 @@
+package org.example.ftp.common.protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Command verbs (RFC 959 plus the extensions in use: RFC 2389, 2428, 3659 and the server's own
+ * LOGS). Anything else decodes to {@link #UNKNOWN}.
+ */
+public enum FtpVerb {
+
+    ABOR, ACCT, ALLO, APPE, AUTH, CDUP, CWD, DELE, EPRT, EPSV, FEAT, HELP, LIST, LOGS, MDTM,
+    MKD, MLSD, MLST, MODE, NLST, NOOP, OPTS, PASS, PASV, PORT, PWD, QUIT, REIN, REST, RETR,
+    RMD, RNFR, RNTO, SITE, SIZE, SMNT, STAT, STOR, STOU, STRU, SYST, TYPE, USER,
+    XCUP, XCWD, XMKD, XPWD, XRMD,
+
+    UNKNOWN;
+
+    // Verbs packed big-endian into an int (3-4 ASCII letters), sorted for binary search
+    private static final int[] KEYS;
+    private static final FtpVerb[] BY_KEY;
+
+    static {
+        FtpVerb[] known = Arrays.copyOf(values(), values().length - 1);
+        long[] pairs = new long[known.length];
+        for (int i = 0; i < known.length; i++) {
+            byte[] name = known[i].name().getBytes(StandardCharsets.US_ASCII);
+            pairs[i] = ((long) pack(name, 0, name.length) << 32) | known[i].ordinal();
+        }
+        Arrays.sort(pairs);
+        KEYS = new int[pairs.length];
+        BY_KEY = new FtpVerb[pairs.length];
+        FtpVerb[] all = values();
+        for (int i = 0; i < pairs.length; i++) {
+            KEYS[i] = (int) (pairs[i] >>> 32);
+            BY_KEY[i] = all[(int) pairs[i]];
+        }
+    }
+
+    /**
+     * Case-insensitive lookup straight from the line bytes, without allocating.
+     */
+    public static FtpVerb lookup(byte[] bytes, int offset, int length) {
+        if (length < 3 || length > 4) return UNKNOWN;
+        int key = pack(bytes, offset, length);
+        if (key == 0) return UNKNOWN;
+        int i = Arrays.binarySearch(KEYS, key);
+        return i >= 0 ? BY_KEY[i] : UNKNOWN;
+    }
+
+    public static FtpVerb lookup(String verb) {
+        byte[] b = verb.getBytes(StandardCharsets.ISO_8859_1);
+        return lookup(b, 0, b.length);
+    }
+
+    /** Upper-cased letters packed into an int, 0 if any byte is not a letter. */
+    private static int pack(byte[] bytes, int offset, int length) {
+        int key = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int c = bytes[i];
+            if (c >= 'a' && c <= 'z') c -= 'a' - 'A';
+            if (c < 'A' || c > 'Z') return 0;
+            key = (key << 8) | c;
+        }
+        return key;
+    }
+}
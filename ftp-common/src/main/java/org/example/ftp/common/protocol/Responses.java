@@ -52,6 +52,16 @@ public final class Responses {
         return ok(226, "Directory send OK.");
     }
 
+    /** Recursive listing cut short by the server's depth or entry limit. */
+    public static FtpResponse listingTruncated() {
+        return ok(226, "Directory send OK; listing truncated by the server's depth or entry limit.");
+    }
+
+    /** Directory archive cut short by the server's depth or entry limit. */
+    public static FtpResponse archiveTruncated() {
+        return ok(226, "Transfer complete; archive truncated by the server's depth or entry limit.");
+    }
+
     public static FtpResponse connectionClosedTransferAborted() {
         return error(426, "Connection closed; transfer aborted.");
     }
@@ -84,6 +94,25 @@ public final class Responses {
         return error(500, "Empty command");
     }
 
+    public static FtpResponse commandTooLong() {
+        return error(500, "Command line too long.");
+    }
+
+    /** Login refused under load; 421 also closes the control connection. */
+    public static FtpResponse serverBusy(int retryAfterSeconds) {
+        return error(421, "Server busy, try again in " + retryAfterSeconds + " seconds.");
+    }
+
+    /** Transient refusal of a file action under load; the session stays open. */
+    public static FtpResponse busyTryLater(int retryAfterSeconds) {
+        return error(450, "Server busy, try again in " + retryAfterSeconds + " seconds.");
+    }
+
+    /** Upload refused or cut off because the user's quota is used up. */
+    public static FtpResponse storageExceeded() {
+        return error(552, "Requested file action aborted. Exceeded storage allocation.");
+    }
+
     public static FtpResponse goodbye() {
         return ok(221, "Goodbye.");
     }
@@ -0,0 +1,225 @@
+package org.example.ftp.common.protocol;
+
+import org.example.ftp.common.client.FtpReplyParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Randomized cross-check of {@link FtpCodec} against a plain String model of the same rules.
+ *
+ * Command side: random lines (known and unknown verbs, any case, UTF-8 and binary arguments,
+ * embedded CR, 0xFF, over-long lines) are put on the wire with Telnet escaping, random Telnet
+ * commands and CRLF or bare LF, then fed to the decoder in random chunk sizes through a buffer
+ * handled like the server's read loop. Reply side: random replies must encode to exactly the
+ * bytes of {@code toProtocolString()} and parse back to the same code and lines.
+ *
+ * Fixed seed and size, so a failure is reproducible; the message names the failing line.
+ */
+class FtpCodecFuzzTest {
+
+    private static final long SEED = 42;
+    private static final int LINES = 20_000;
+    private static final int MAX_LINE = 256; // small, so over-long lines come up often
+    private static final String[] VERBS = {
+            "USER", "PASS", "LIST", "RETR", "STOR", "CWD", "PWD", "NOOP", "MLSD", "XCRC", "SIZE", "LOGS", "AB", "RNFRX"
+    };
+
+    @Test
+    void decodesRandomCommandStreams() {
+        checkCommands(new Random(SEED), LINES);
+    }
+
+    @Test
+    void encodesAndParsesRandomReplies() throws ProtocolException {
+        checkReplies(new Random(SEED), LINES);
+    }
+
+    // ===== Commands =====
+
+    private record Expected(byte[] content, boolean tooLong) {}
+
+    private static void checkCommands(Random rnd, int count) {
+        List<Expected> expected = new ArrayList<>(count);
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            byte[] content = randomLine(rnd);
+            boolean noise = rnd.nextInt(200) == 0;
+            expected.add(new Expected(content, content.length > MAX_LINE || noise));
+            if (noise) {
+                // Only Telnet commands: no content at all, but too many raw bytes for one line
+                for (int k = 0; k < MAX_LINE + 1; k++) {
+                    wire.write(0xFF);
+                    wire.write(246); // AYT
+                }
+            }
+            writeWire(rnd, content, wire);
+        }
+
+        byte[] stream = wire.toByteArray();
+        FtpCodec codec = new FtpCodec(MAX_LINE);
+        FtpCommand cmd = new FtpCommand();
+        ByteBuffer buf = ByteBuffer.allocate(3 * MAX_LINE).flip();
+        int fed = 0;
+        int line = 0;
+        while (line < expected.size()) {
+            if (!codec.decodeCommand(buf, cmd)) {
+                if (fed == stream.length) fail("Decoder stuck before line " + line);
+                buf.compact();
+                int n = Math.min(Math.min(1 + rnd.nextInt(64), buf.remaining()), stream.length - fed);
+                if (n == 0) fail("Read buffer filled up at line " + line);
+                buf.put(stream, fed, n);
+                fed += n;
+                buf.flip();
+                continue;
+            }
+            verify(line, expected.get(line), cmd);
+            line++;
+        }
+        if (fed != stream.length || buf.hasRemaining()) {
+            fail("Trailing bytes after the last line");
+        }
+    }
+
+    private static byte[] randomLine(Random rnd) {
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        int lead = rnd.nextInt(10) == 0 ? 1 + rnd.nextInt(2) : 0;
+        for (int i = 0; i < lead; i++) b.write(' ');
+        if (rnd.nextInt(50) != 0) {
+            String verb = VERBS[rnd.nextInt(VERBS.length)];
+            if (rnd.nextBoolean()) verb = verb.toLowerCase(Locale.ROOT);
+            b.writeBytes(verb.getBytes(StandardCharsets.US_ASCII));
+        }
+        if (rnd.nextInt(4) != 0) {
+            b.write(' ');
+            int len = rnd.nextInt(20) == 0 ? MAX_LINE - 10 + rnd.nextInt(40) : rnd.nextInt(40);
+            switch (rnd.nextInt(3)) {
+                case 0 -> b.writeBytes(randomText(rnd, len).getBytes(StandardCharsets.UTF_8));
+                case 1 -> {
+                    for (int i = 0; i < len; i++) {
+                        int c;
+                        do {
+                            c = rnd.nextInt(256);
+                        } while (c == '\n');
+                        b.write(c);
+                    }
+                }
+                default -> {
+                    for (int i = 0; i < len; i++) b.write("ab /._-\rÿ".charAt(rnd.nextInt(9)));
+                }
+            }
+        }
+        return b.toByteArray();
+    }
+
+    /** Telnet-escapes {@code content} into {@code wire}, sprinkling Telnet commands, then ends the line. */
+    private static void writeWire(Random rnd, byte[] content, ByteArrayOutputStream wire) {
+        for (int i = 0; i < content.length; i++) {
+            if (rnd.nextInt(30) == 0) {
+                wire.write(0xFF);
+                int cmd = 240 + rnd.nextInt(15); // 240..254, never IAC itself
+                wire.write(cmd);
+                if (cmd >= 251) wire.write(rnd.nextInt(256)); // option byte, may even be LF
+            }
+            int c = content[i] & 0xFF;
+            if (c == 0xFF) {
+                wire.write(0xFF);
+                wire.write(0xFF);
+            } else if (c == '\r') {
+                int next = i + 1 < content.length ? content[i + 1] & 0xFF : -1;
+                wire.write('\r');
+                // A bare CR is only unambiguous before something other than LF/NUL/Telnet
+                if (next == -1 || next == '\n' || next == 0 || next == 0xFF || rnd.nextBoolean()) wire.write(0);
+            } else {
+                wire.write(c);
+            }
+        }
+        if (rnd.nextBoolean()) wire.write('\r');
+        wire.write('\n');
+    }
+
+    private static void verify(int line, Expected e, FtpCommand cmd) {
+        if (e.tooLong()) {
+            check(cmd.isTooLong(), line, "expected an over-long line");
+            return;
+        }
+        check(!cmd.isTooLong(), line, "unexpected over-long line");
+
+        String s = new String(e.content(), StandardCharsets.UTF_8);
+        int i = 0;
+        while (i < s.length() && s.charAt(i) == ' ') i++;
+        String stripped = s.substring(i);
+        int space = stripped.indexOf(' ');
+        String verbText = space >= 0 ? stripped.substring(0, space) : stripped;
+        String argument = space >= 0 ? stripped.substring(space + 1) : null;
+
+        check(cmd.isEmpty() == verbText.isEmpty(), line, "isEmpty");
+        check(cmd.verb() == modelVerb(verbText), line, "verb " + cmd.verb() + " for '" + verbText + "'");
+        check(Objects.equals(cmd.argument(), argument), line, "argument '" + cmd.argument() + "' vs '" + argument + "'");
+        check(cmd.toString().equals(stripped), line, "text");
+    }
+
+    private static FtpVerb modelVerb(String text) {
+        String upper = text.toUpperCase(Locale.ROOT);
+        if (!upper.matches("[A-Z]{3,4}")) return FtpVerb.UNKNOWN;
+        return Arrays.stream(FtpVerb.values()).filter(v -> v.name().equals(upper)).findFirst().orElse(FtpVerb.UNKNOWN);
+    }
+
+    // ===== Replies =====
+
+    private static void checkReplies(Random rnd, int count) throws ProtocolException {
+        FtpCodec codec = new FtpCodec();
+        FtpReplyParser parser = new FtpReplyParser();
+        ByteBuffer out = ByteBuffer.allocate(16);
+        for (int i = 0; i < count; i++) {
+            FtpResponse.Builder b = FtpResponse.builder().code(100 + rnd.nextInt(500));
+            int lines = rnd.nextInt(8) == 0 ? 2 + rnd.nextInt(4) : 1;
+            for (int k = 0; k < lines; k++) {
+                String text = randomText(rnd, rnd.nextInt(60));
+                // Middle lines of a multi-line reply start with a space (RFC 959 4.2)
+                b.line(k > 0 && k < lines - 1 ? " " + text : text);
+            }
+            FtpResponse reply = b.build();
+
+            out.clear();
+            while (!codec.encodeReply(reply, out)) {
+                check(out.position() == 0, i, "position moved on overflow");
+                out = ByteBuffer.allocate(out.capacity() * 2);
+            }
+            byte[] encoded = Arrays.copyOf(out.array(), out.position());
+            check(Arrays.equals(encoded, reply.toProtocolString().getBytes(StandardCharsets.UTF_8)), i, "reply bytes");
+
+            FtpResponse parsed = null;
+            for (String l : new String(encoded, StandardCharsets.UTF_8).split("\r\n")) {
+                parsed = parser.accept(l);
+            }
+            check(parsed != null && parsed.getCode() == reply.getCode() && parsed.getLines().equals(reply.getLines()),
+                    i, "reply round trip");
+        }
+    }
+
+    private static String randomText(Random rnd, int len) {
+        String alphabet = "abcXYZ 0123/._-ÄöüßФото文件😀";
+        StringBuilder sb = new StringBuilder(len);
+        while (sb.length() < len) {
+            int cp = alphabet.codePointAt(alphabet.offsetByCodePoints(0, rnd.nextInt(alphabet.codePointCount(0, alphabet.length()))));
+            sb.appendCodePoint(cp);
+        }
+        return sb.toString();
+    }
+
+    private static void check(boolean ok, int index, String what) {
+        if (!ok) fail("#" + index + ": " + what);
+    }
+}
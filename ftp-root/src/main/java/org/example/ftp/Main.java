@@ -1,17 +1,33 @@
 package org.example.ftp;
 
-//TIP To <b>Run</b> code, press <shortcut actionId="Run"/> or
-// click the <icon src="AllIcons.Actions.Execute"/> icon in the gutter.
+import org.example.ftp.loadgen.LoadGenConfig;
+import org.example.ftp.loadgen.LoadGenerator;
+
+/**
+ * Load generator CLI (see {@link LoadGenConfig#usage()}):
+ * java -jar ftp-root/target/ftp-loadgen.jar --clients 50 --duration 60 --scenario mixed
+ */
 public class Main {
     public static void main(String[] args) {
-        //TIP Press <shortcut actionId="ShowIntentionActions"/> with your caret at the highlighted text
-        // to see how IntelliJ IDEA suggests fixing it.
-        System.out.printf("Hello and welcome!");
+        LoadGenConfig cfg;
+        try {
+            cfg = LoadGenConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            if (e.getMessage() != null && !e.getMessage().isEmpty()) {
+                System.err.println(e.getMessage());
+                System.err.println();
+            }
+            System.err.println(LoadGenConfig.usage());
+            System.exit(2);
+            return;
+        }
 
-        for (int i = 1; i <= 5; i++) {
-            //TIP Press <shortcut actionId="Debug"/> to start debugging your code. We have set one <icon src="AllIcons.Debugger.Db_set_breakpoint"/> breakpoint
-            // for you, but you can always add more by pressing <shortcut actionId="ToggleLineBreakpoint"/>.
-            System.out.println("i = " + i);
+        try {
+            new LoadGenerator(cfg).run();
+        } catch (Exception e) {
+            System.err.println("Load test failed: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,342 @@
+package org.example.ftp.loadgen;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Minimal blocking FTP client for the load generator (one per simulated client, run on a
+ * virtual thread, so blocking I/O is cheap). Passive mode only; the data connection always goes
+ * to the control connection's host, whatever address PASV reports.
+ */
+final class FtpTestClient implements Closeable {
+
+    record Reply(int code, String text) {}
+
+    /** Server answered with a code the operation did not expect. */
+    static final class UnexpectedReplyException extends IOException {
+        final String command;
+        final int code;
+
+        UnexpectedReplyException(String command, Reply reply) {
+            super(command + " -> " + reply.code() + " " + reply.text());
+            this.command = command;
+            this.code = reply.code();
+        }
+    }
+
+    /** Result of a data command: payload size and command-sent to first payload byte. */
+    record Transfer(long bytes, long timeToFirstByteNanos) {}
+
+    /** What an upload command sends over the data connection. */
+    interface Body {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static final int BUFFER = 64 * 1024;
+
+    private final String host;
+    private final int timeoutMillis;
+    private final Socket control;
+    private final BufferedReader in;
+    private final Writer out;
+
+    private FtpTestClient(String host, int port, int timeoutMillis) throws IOException {
+        this.host = host;
+        this.timeoutMillis = timeoutMillis;
+        this.control = new Socket();
+        try {
+            control.setTcpNoDelay(true);
+            control.setSoTimeout(timeoutMillis);
+            control.connect(new InetSocketAddress(host, port), timeoutMillis);
+            this.in = new BufferedReader(new InputStreamReader(control.getInputStream(), StandardCharsets.UTF_8));
+            this.out = new OutputStreamWriter(control.getOutputStream(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            control.close();
+            throw e;
+        }
+    }
+
+    /** Connects and consumes the 220 banner. */
+    static FtpTestClient connect(String host, int port, int timeoutMillis) throws IOException {
+        FtpTestClient c = new FtpTestClient(host, port, timeoutMillis);
+        try {
+            c.expect("CONNECT", c.readReply(), 220);
+        } catch (IOException e) {
+            c.close();
+            throw e;
+        }
+        return c;
+    }
+
+    void login(String user, String password) throws IOException {
+        expect("USER", command("USER " + user), 331, 230);
+        expect("PASS", command("PASS " + password), 230);
+    }
+
+    Reply command(String line) throws IOException {
+        out.write(line);
+        out.write("\r\n");
+        out.flush();
+        return readReply();
+    }
+
+    /** A command that may send 1xx progress replies before its final one (SITE RMTREE). */
+    Reply commandFinal(String line) throws IOException {
+        Reply r = command(line);
+        while (r.code() >= 100 && r.code() < 200) {
+            r = readReply();
+        }
+        return r;
+    }
+
+    Reply readReply() throws IOException {
+        String line = in.readLine();
+        if (line == null) throw new IOException("Control connection closed");
+        if (line.length() < 3) throw new IOException("Malformed reply: " + line);
+
+        int code = Integer.parseInt(line.substring(0, 3));
+        if (line.length() > 3 && line.charAt(3) == '-') {
+            String end = line.substring(0, 3) + " ";
+            StringBuilder text = new StringBuilder(line.substring(4));
+            String next;
+            while ((next = in.readLine()) != null) {
+                text.append('\n').append(next);
+                if (next.startsWith(end)) break;
+            }
+            return new Reply(code, text.toString());
+        }
+        return new Reply(code, line.length() > 4 ? line.substring(4) : "");
+    }
+
+    static Reply expect(String command, Reply reply, int... codes) throws UnexpectedReplyException {
+        for (int c : codes) {
+            if (reply.code() == c) return reply;
+        }
+        throw new UnexpectedReplyException(command, reply);
+    }
+
+    /** PASV and connect the data socket (the server accepts it when the transfer command arrives). */
+    Socket openData() throws IOException {
+        Reply r = expect("PASV", command("PASV"), 227);
+        String t = r.text();
+        int open = t.indexOf('(');
+        int close = t.indexOf(')', open + 1);
+        if (open < 0 || close < 0) throw new IOException("Malformed PASV reply: " + t);
+        String[] p = t.substring(open + 1, close).split(",");
+        int port = Integer.parseInt(p[4].trim()) * 256 + Integer.parseInt(p[5].trim());
+
+        Socket data = new Socket();
+        try {
+            data.setSoTimeout(timeoutMillis);
+            data.connect(new InetSocketAddress(host, port), timeoutMillis);
+        } catch (IOException e) {
+            data.close();
+            throw e;
+        }
+        return data;
+    }
+
+    /**
+     * RETR / LIST / MLSD into the void.
+     *
+     * The data connection is drained on its own virtual thread while the control replies are read:
+     * the server may skip the 1xx preliminary reply and only answer 226 after the data (LIST/MLSD
+     * do), and waiting for a reply first would then deadlock on a listing bigger than the socket
+     * buffers.
+     *
+     * @param bytesPerSecond read rate cap (slow reader), 0 = as fast as possible
+     */
+    Transfer download(String command, long bytesPerSecond) throws IOException {
+        return receive(command, bytesPerSecond, null);
+    }
+
+    /** LIST / MLSD whose lines the caller needs (e.g. to walk a tree). */
+    List<String> listing(String command) throws IOException {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        receive(command, 0, sink);
+        return sink.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+
+    private Transfer receive(String command, long bytesPerSecond, OutputStream sink) throws IOException {
+        String verb = verb(command);
+        try (Socket data = openData()) {
+            long start = System.nanoTime();
+            Drain drain = new Drain(data, start, bytesPerSecond, sink);
+
+            Reply reply = command(command);
+            if (reply.code() == 150 || reply.code() == 125) {
+                // A throttled read can outlast any control timeout; the run's cut-off closes it instead
+                if (bytesPerSecond > 0) control.setSoTimeout(0);
+                try {
+                    reply = readReply();
+                } finally {
+                    if (bytesPerSecond > 0) control.setSoTimeout(timeoutMillis);
+                }
+            }
+            if (reply.code() != 226 && reply.code() != 250) {
+                data.close(); // unblocks the drain
+                drain.await();
+                throw new UnexpectedReplyException(verb, reply);
+            }
+            drain.await();
+            if (drain.error != null) throw drain.error;
+            return new Transfer(drain.total, drain.firstByte);
+        }
+    }
+
+    /** Reads one data connection to EOF, optionally at a capped rate, into the void or a sink. */
+    private static final class Drain {
+        private final Thread thread;
+        volatile long total;
+        volatile long firstByte;
+        volatile IOException error;
+
+        Drain(Socket data, long start, long bytesPerSecond, OutputStream sink) {
+            thread = Thread.ofVirtual().start(() -> {
+                try {
+                    byte[] buf = new byte[bytesPerSecond > 0 ? 4096 : BUFFER];
+                    InputStream is = data.getInputStream();
+                    long t = 0;
+                    int n;
+                    while ((n = is.read(buf)) != -1) {
+                        if (firstByte == 0) firstByte = System.nanoTime() - start;
+                        if (sink != null) sink.write(buf, 0, n);
+                        t += n;
+                        total = t;
+                        if (bytesPerSecond > 0) {
+                            long dueNanos = t * 1_000_000_000L / bytesPerSecond;
+                            long aheadMillis = (dueNanos - (System.nanoTime() - start)) / 1_000_000;
+                            if (aheadMillis > 0) {
+                                sleep(aheadMillis);
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    error = e;
+                }
+            });
+        }
+
+        void await() throws IOException {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted");
+            }
+        }
+    }
+
+    /** STOR {@code size} bytes taken (cyclically) from {@code payload}. */
+    Transfer upload(String path, long size, byte[] payload) throws IOException {
+        try (Socket data = openData()) {
+            long start = System.nanoTime();
+            expect("STOR", command("STOR " + path), 150, 125);
+
+            OutputStream os = data.getOutputStream();
+            long firstByte = 0;
+            long left = size;
+            while (left > 0) {
+                int n = (int) Math.min(left, payload.length);
+                os.write(payload, 0, n);
+                if (firstByte == 0) firstByte = System.nanoTime() - start;
+                left -= n;
+            }
+            os.flush();
+            data.close();
+            expect("STOR", readReply(), 226, 250);
+            return new Transfer(size, firstByte);
+        }
+    }
+
+    /**
+     * A command that takes its input over the data connection (SITE UNTAR): 1xx, the body, then
+     * the final reply. If the server stops reading early, its reply is the error, not the broken pipe.
+     */
+    Reply send(String command, Body body) throws IOException {
+        String verb = verb(command);
+        try (Socket data = openData()) {
+            expect(verb, command(command), 150, 125);
+            try {
+                OutputStream os = new BufferedOutputStream(data.getOutputStream(), BUFFER);
+                body.writeTo(os);
+                os.flush();
+            } catch (IOException e) {
+                data.close();
+                Reply reply = readReply();
+                if (reply.code() != 226 && reply.code() != 250) throw new UnexpectedReplyException(verb, reply);
+                throw e;
+            }
+            data.close();
+            return expect(verb, readReply(), 226, 250);
+        }
+    }
+
+    /**
+     * Starts a RETR, reads the first chunk, then resets both connections (no ABOR, no QUIT).
+     */
+    long dropDuringDownload(String path) throws IOException {
+        Socket data = openData();
+        try {
+            expect("RETR", command("RETR " + path), 150, 125);
+            int n = data.getInputStream().read(new byte[BUFFER]);
+            return Math.max(0, n);
+        } finally {
+            abort(data);
+            abort(control);
+        }
+    }
+
+    void quit() {
+        try {
+            command("QUIT");
+        } catch (IOException ignored) {
+        }
+        close();
+    }
+
+    @Override
+    public void close() {
+        try {
+            control.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static void abort(Socket s) {
+        try {
+            s.setSoLinger(true, 0); // RST instead of FIN
+        } catch (IOException ignored) {
+        }
+        try {
+            s.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static String verb(String command) {
+        int sp = command.indexOf(' ');
+        return sp > 0 ? command.substring(0, sp) : command;
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted");
+        }
+    }
+}
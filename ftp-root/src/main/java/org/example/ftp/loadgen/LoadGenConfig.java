@@ -0,0 +1,239 @@
+package org.example.ftp.loadgen;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command-line options of the load generator (see {@link #usage()}).
+ */
+public final class LoadGenConfig {
+
+    /** One weighted choice, e.g. an operation ("retr=4") or a file size ("1m=15"). */
+    public record Weighted<T>(T value, int weight) {}
+
+    public int clients = 20;
+    public int durationSeconds = 30;
+    public int rampSeconds = 0;
+    public int thinkMillis = 0;
+    public int users = 0; // 0 = min(clients, 10)
+    public int dirSize = 100;
+    public long slowReaderBytesPerSecond = 64 * 1024;
+    public int timeoutMillis = 30_000;
+    // Synthetic tree of the tree scenarios (rmtree, archive, untar)
+    public int treeFiles = 0; // 0 = the scenario's default
+    public int treeDirs = 100;
+    public long treeFileSize = 4 * 1024;
+
+    public String scenario = "mixed";
+    public List<Weighted<Op>> mix;
+    public List<Weighted<Long>> sizes = parseSizes("4k=50,64k=30,1m=15,16m=5");
+
+    // Local (child JVM) server
+    public List<String> serverJvmArgs = new ArrayList<>();
+    public Integer maxConnections;
+    public long rateLimit = 0; // global upload/download limit for the run, 0 = unlimited
+    public boolean keepRoot;
+
+    // External server instead of a local one
+    public String host;
+    public int port = 2121;
+    public String user;
+    public String password;
+    public String metricsUrl;
+
+    public Path jsonReport;
+
+    public boolean isExternal() {
+        return host != null;
+    }
+
+    public int effectiveUsers() {
+        return users > 0 ? users : Math.min(clients, 10);
+    }
+
+    public static LoadGenConfig parse(String[] args) {
+        LoadGenConfig c = new LoadGenConfig();
+        String mixArg = null;
+
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            switch (a) {
+                case "-h", "--help" -> throw new IllegalArgumentException("");
+                case "--clients", "-c" -> c.clients = Integer.parseInt(value(args, ++i, a));
+                case "--duration", "-d" -> c.durationSeconds = Integer.parseInt(value(args, ++i, a));
+                case "--ramp" -> c.rampSeconds = Integer.parseInt(value(args, ++i, a));
+                case "--think-ms" -> c.thinkMillis = Integer.parseInt(value(args, ++i, a));
+                case "--users" -> c.users = Integer.parseInt(value(args, ++i, a));
+                case "--dir-size" -> c.dirSize = Integer.parseInt(value(args, ++i, a));
+                case "--slow-rate" -> c.slowReaderBytesPerSecond = parseBytes(value(args, ++i, a));
+                case "--timeout-ms" -> c.timeoutMillis = Integer.parseInt(value(args, ++i, a));
+                case "--tree-files" -> c.treeFiles = Integer.parseInt(value(args, ++i, a));
+                case "--tree-dirs" -> c.treeDirs = Integer.parseInt(value(args, ++i, a));
+                case "--tree-file-size" -> c.treeFileSize = parseBytes(value(args, ++i, a));
+                case "--scenario", "-s" -> c.scenario = value(args, ++i, a);
+                case "--mix" -> mixArg = value(args, ++i, a);
+                case "--sizes" -> c.sizes = parseSizes(value(args, ++i, a));
+                case "--server-jvm" -> c.serverJvmArgs.addAll(List.of(value(args, ++i, a).trim().split("\\s+")));
+                case "--max-connections" -> c.maxConnections = Integer.parseInt(value(args, ++i, a));
+                case "--rate-limit" -> c.rateLimit = parseBytes(value(args, ++i, a));
+                case "--keep-root" -> c.keepRoot = true;
+                case "--host" -> c.host = value(args, ++i, a);
+                case "--port" -> c.port = Integer.parseInt(value(args, ++i, a));
+                case "--user" -> c.user = value(args, ++i, a);
+                case "--pass" -> c.password = value(args, ++i, a);
+                case "--metrics-url" -> c.metricsUrl = value(args, ++i, a);
+                case "--json" -> c.jsonReport = Path.of(value(args, ++i, a));
+                default -> throw new IllegalArgumentException("Unknown option: " + a);
+            }
+        }
+
+        c.mix = parseMix(mixArg != null ? mixArg : scenarioMix(c.scenario));
+        if (c.treeFiles == 0) c.treeFiles = scenarioTreeFiles(c.scenario);
+        if (c.treeFiles < 1 || c.treeDirs < 1) throw new IllegalArgumentException("--tree-files and --tree-dirs must be >= 1");
+        if (c.clients < 1) throw new IllegalArgumentException("--clients must be >= 1");
+        if (c.durationSeconds < 1) throw new IllegalArgumentException("--duration must be >= 1");
+        if (c.isExternal() && (c.user == null || c.password == null)) {
+            throw new IllegalArgumentException("--host requires --user and --pass (an existing account)");
+        }
+        return c;
+    }
+
+    private static String scenarioMix(String scenario) {
+        return switch (scenario.toLowerCase(Locale.ROOT)) {
+            case "mixed" -> "list=2,mlsd=1,retr=4,stor=2,login=1";
+            case "login-storm" -> "login=1";
+            case "connect-storm" -> "connect=1";
+            case "list-poll" -> "list=2,mlsd=1";
+            case "transfer" -> "retr=1,stor=1";
+            case "slow-readers" -> "slow=1,retr=1";
+            case "churn" -> "drop=2,login=1,retr=1";
+            case "idle-storm" -> "idle=1";
+            case "copy" -> "copy=1,relay=1";
+            case "rmtree" -> "rmtree=1,deltree=1";
+            case "archive" -> "archive=1,walk=1";
+            case "untar" -> "untar=1,unzip=1,storeach=1";
+            default -> throw new IllegalArgumentException("Unknown scenario: " + scenario);
+        };
+    }
+
+    private static int scenarioTreeFiles(String scenario) {
+        return switch (scenario.toLowerCase(Locale.ROOT)) {
+            case "rmtree" -> 100_000;
+            case "untar" -> 50_000;
+            default -> 10_000;
+        };
+    }
+
+    static List<Weighted<Op>> parseMix(String spec) {
+        List<Weighted<Op>> out = new ArrayList<>();
+        for (var e : parseWeights(spec).entrySet()) {
+            out.add(new Weighted<>(Op.parse(e.getKey()), e.getValue()));
+        }
+        if (out.stream().mapToInt(Weighted::weight).sum() <= 0) {
+            throw new IllegalArgumentException("--mix needs at least one positive weight");
+        }
+        return out;
+    }
+
+    static List<Weighted<Long>> parseSizes(String spec) {
+        List<Weighted<Long>> out = new ArrayList<>();
+        for (var e : parseWeights(spec).entrySet()) {
+            out.add(new Weighted<>(parseBytes(e.getKey()), e.getValue()));
+        }
+        if (out.stream().mapToInt(Weighted::weight).sum() <= 0) {
+            throw new IllegalArgumentException("--sizes needs at least one positive weight");
+        }
+        return out;
+    }
+
+    /** "a=1,b=3" (a missing weight means 1). */
+    private static Map<String, Integer> parseWeights(String spec) {
+        Map<String, Integer> out = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String p = part.trim();
+            if (p.isEmpty()) continue;
+            int eq = p.indexOf('=');
+            String key = eq < 0 ? p : p.substring(0, eq).trim();
+            int weight = eq < 0 ? 1 : Integer.parseInt(p.substring(eq + 1).trim());
+            if (weight < 0) throw new IllegalArgumentException("Negative weight: " + p);
+            out.put(key, weight);
+        }
+        return out;
+    }
+
+    /** 512, 4k, 64K, 1m, 2g (binary units). */
+    static long parseBytes(String s) {
+        String v = s.trim().toLowerCase(Locale.ROOT);
+        long mul = 1;
+        if (v.endsWith("k")) mul = 1024;
+        else if (v.endsWith("m")) mul = 1024 * 1024;
+        else if (v.endsWith("g")) mul = 1024L * 1024 * 1024;
+        if (mul > 1) v = v.substring(0, v.length() - 1);
+        return Long.parseLong(v) * mul;
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) throw new IllegalArgumentException("Missing value for " + option);
+        return args[i];
+    }
+
+    public static String usage() {
+        return """
+                Usage: java -jar ftp-root/target/ftp-loadgen.jar [options]
+
+                Drives N concurrent FTP clients (virtual threads) over loopback. By default it starts
+                its own server in a child JVM on a throwaway ftp-root with free ports, seeds users and
+                files, and removes everything afterwards.
+
+                Load:
+                  -c, --clients N         concurrent clients (default 20)
+                  -d, --duration S        measured run time in seconds (default 30)
+                      --ramp S            spread client starts over S seconds (default 0)
+                      --think-ms MS       pause between operations per client (default 0)
+                  -s, --scenario NAME     mixed | login-storm | connect-storm | list-poll | transfer |
+                                          slow-readers | churn | idle-storm | copy | rmtree | archive |
+                                          untar
+                      --mix SPEC          explicit operation weights, overrides --scenario, e.g.
+                                          "retr=4,stor=2,list=2,mlsd=1,login=1,slow=0,drop=0"
+                      --sizes SPEC        file size distribution (size=weight), default "4k=50,64k=30,1m=15,16m=5"
+                      --slow-rate BYTES   read rate of slow readers (default 64k per second)
+                      --dir-size N        entries in each user's "dir" folder used by LIST/MLSD (default 100)
+                      --users N           distinct accounts (default min(clients, 10))
+                      --timeout-ms MS     socket timeout (default 30000)
+                      --tree-files N      files in the synthetic tree (default 100000 for rmtree,
+                                          50000 for untar, else 10000)
+                      --tree-dirs N       directories they are spread over (default 100)
+                      --tree-file-size B  size of each of them (default 4k)
+
+                Local server:
+                      --server-jvm "ARGS" extra JVM args for the server, e.g. "-Xmx256m" or
+                                          "-Dftp.acceptors=4 -Dftp.acceptBacklog=4096"
+                      --max-connections N global connection limit (default 2 * clients + 10)
+                      --rate-limit BYTES  global upload/download limit per second (default 0 = unlimited)
+                      --keep-root         keep the temp ftp-root (and server.log) after the run
+
+                External server (skips the local one; files are uploaded before the run):
+                      --host H --port P --user U --pass P
+                      --metrics-url URL   Prometheus endpoint for server threads/heap, e.g. http://H:9090/metrics
+
+                Output:
+                      --json FILE         also write the report as JSON
+
+                Operations: connect (banner only, then close), login (connect, USER/PASS, QUIT),
+                            list, mlsd, retr, stor,
+                            slow (RETR read at --slow-rate), drop (RETR, then close both sockets mid-transfer),
+                            idle (login, PASV, then silence until the server's 421; IDLE latency = time to reap),
+                            copy (SITE COPY of a seed file), relay (RETR of a seed file, then STOR of its size),
+                            rmtree (upload a synthetic tree with SITE UNTAR, then SITE RMTREE it),
+                            deltree (the same tree deleted with MLSD -R, DELE per file, RMD per directory),
+                            archive (RETR of the client's synthetic tree as a ZIP),
+                            walk (the same tree downloaded with MLSD -R and a RETR per file),
+                            untar / unzip (a synthetic tree uploaded with SITE UNTAR / SITE UNZIP),
+                            storeach (the same tree uploaded with an MKD per directory and a STOR per file)
+                """;
+    }
+}
@@ -0,0 +1,610 @@
+package org.example.ftp.loadgen;
+
+import org.example.ftp.server.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs one load test: N simulated clients on virtual threads, each looping over weighted random
+ * operations on its own persistent session (LOGIN and DROP use fresh connections), then prints
+ * throughput, per-command latency percentiles, errors and server threads/heap.
+ */
+public final class LoadGenerator {
+
+    /** Every account's working folder (seed files, "dir" for listings, uploads). */
+    static final String BASE_DIR = "loadgen";
+    /** Below BASE_DIR: where the tree operations upload their synthetic trees. */
+    static final String TREES_DIR = "trees";
+    /** Uploads overwrite one of this many names per client, so disk usage stays bounded. */
+    private static final int UPLOAD_SLOTS = 4;
+    /** After the deadline, in-flight operations get this long before their sockets are closed. */
+    private static final long GRACE_MS = 5_000;
+    private static final Pattern RETRY_HINT = Pattern.compile("try again in (\\d+) second");
+
+    private final LoadGenConfig cfg;
+    private final LoadStats stats = new LoadStats();
+    private final byte[] payload = new byte[256 * 1024];
+    private final int mixTotal;
+    private final int sizesTotal;
+    private final SyntheticTree tree;
+    private final AtomicLong treeSeq = new AtomicLong();
+    // Each client's own tree for ARCHIVE/WALK, uploaded on first use (only that client touches its slot)
+    private String[] clientTrees;
+
+    private String host;
+    private int port;
+    private List<String> users;
+    private String password;
+
+    // Connection each client is currently using (closed forcibly after the grace period)
+    private AtomicReferenceArray<FtpTestClient> current;
+
+    public LoadGenerator(LoadGenConfig cfg) {
+        this.cfg = cfg;
+        this.mixTotal = cfg.mix.stream().mapToInt(LoadGenConfig.Weighted::weight).sum();
+        this.sizesTotal = cfg.sizes.stream().mapToInt(LoadGenConfig.Weighted::weight).sum();
+        this.tree = new SyntheticTree(cfg.treeDirs, cfg.treeFiles, cfg.treeFileSize);
+        ThreadLocalRandom.current().nextBytes(payload);
+    }
+
+    static String seedName(long size) {
+        return "seed-" + size + ".bin";
+    }
+
+    public void run() throws Exception {
+        LocalServer local = null;
+        ServerProbe probe = null;
+        try {
+            String metricsUrl;
+            if (cfg.isExternal()) {
+                host = cfg.host;
+                port = cfg.port;
+                users = List.of(cfg.user);
+                password = cfg.password;
+                metricsUrl = cfg.metricsUrl;
+                System.out.println("Seeding " + BASE_DIR + "/ on " + host + ":" + port + " ...");
+                seedRemote();
+            } else {
+                System.out.println("Starting local server ...");
+                local = LocalServer.start(cfg);
+                host = "127.0.0.1";
+                port = local.ftpPort;
+                users = local.usernames;
+                password = LocalServer.PASSWORD;
+                metricsUrl = local.metricsUrl();
+                System.out.println("Server on 127.0.0.1:" + port + " (admin " + local.adminPort + "), root " + local.root);
+            }
+
+            if (metricsUrl != null) {
+                probe = new ServerProbe(metricsUrl);
+                probe.sampleOnce(); // baseline before any client connects
+            }
+
+            System.out.printf(Locale.ROOT, "Running %d clients for %d s, mix %s%n",
+                    cfg.clients, cfg.durationSeconds, describeMix());
+
+            long elapsedNanos = drive();
+
+            if (probe != null) {
+                probe.sampleOnce();
+            }
+            Report report = new Report(cfg, stats, probe, elapsedNanos);
+            System.out.println(report.text());
+            if (cfg.jsonReport != null) {
+                Files.writeString(cfg.jsonReport, report.json(), StandardCharsets.UTF_8);
+                System.out.println("JSON report: " + cfg.jsonReport.toAbsolutePath());
+            }
+        } finally {
+            if (probe != null) probe.close();
+            if (local != null) local.close();
+        }
+    }
+
+    /** @return measured wall time in nanoseconds */
+    private long drive() throws InterruptedException {
+        current = new AtomicReferenceArray<>(cfg.clients);
+        clientTrees = new String[cfg.clients];
+        long start = System.nanoTime();
+        long deadline = start + cfg.durationSeconds * 1_000_000_000L;
+
+        List<Thread> threads = new ArrayList<>(cfg.clients);
+        for (int i = 0; i < cfg.clients; i++) {
+            final int idx = i;
+            long startDelayMs = cfg.rampSeconds > 0 ? (long) cfg.rampSeconds * 1000 * i / cfg.clients : 0;
+            threads.add(Thread.ofVirtual().name("loadgen-client-" + i).start(() -> runClient(idx, startDelayMs, deadline)));
+        }
+
+        long graceEnd = deadline + GRACE_MS * 1_000_000L;
+        long now;
+        while ((now = System.nanoTime()) < deadline) {
+            Thread.sleep(Math.min(1000, Math.max(1, (deadline - now) / 1_000_000)));
+        }
+        stats.stop();
+        long elapsed = System.nanoTime() - start;
+
+        for (Thread t : threads) {
+            long left = Math.max(1, (graceEnd - System.nanoTime()) / 1_000_000);
+            t.join(left);
+        }
+        // Slow readers / hung transfers: cut them off
+        for (int i = 0; i < cfg.clients; i++) {
+            FtpTestClient c = current.get(i);
+            if (c != null) c.close();
+        }
+        for (Thread t : threads) {
+            t.join(5_000);
+        }
+        return elapsed;
+    }
+
+    private void runClient(int idx, long startDelayMs, long deadline) {
+        SplittableRandom rnd = new SplittableRandom(0x5EED + idx);
+        String user = users.get(idx % users.size());
+        FtpTestClient session = null;
+        int uploads = 0;
+
+        try {
+            if (startDelayMs > 0) Thread.sleep(startDelayMs);
+
+            while (System.nanoTime() < deadline) {
+                Op op = pickOp(rnd);
+                try {
+                    switch (op) {
+                        case CONNECT -> connectOnce(idx);
+                        case LOGIN -> loginOnce(idx, user);
+                        case DROP -> drop(idx, user, pickSize(rnd));
+                        case IDLE -> idleOnce(idx, user);
+                        default -> {
+                            if (session == null) {
+                                session = openSession(idx, user);
+                            }
+                            runOnSession(session, op, rnd, idx, "up-" + idx + "-" + (uploads++ % UPLOAD_SLOTS) + ".bin");
+                        }
+                    }
+                    stats.completed(op);
+                } catch (IOException e) {
+                    stats.error(op, e);
+                    if (session != null) {
+                        session.close();
+                        session = null;
+                    }
+                    backOff(e, deadline);
+                }
+                if (cfg.thinkMillis > 0) Thread.sleep(cfg.thinkMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (session != null) {
+                if (stats.isStopped()) {
+                    session.quit();
+                } else {
+                    long t0 = System.nanoTime();
+                    session.quit();
+                    stats.record("QUIT", System.nanoTime() - t0);
+                }
+            }
+            current.set(idx, null);
+        }
+    }
+
+    /** A well-behaved client honours the server's "try again in N seconds" (overload shedding). */
+    private static void backOff(IOException e, long deadline) throws InterruptedException {
+        if (!(e instanceof FtpTestClient.UnexpectedReplyException r) || (r.code != 421 && r.code != 450)) return;
+        Matcher m = RETRY_HINT.matcher(String.valueOf(e.getMessage()));
+        if (!m.find()) return;
+        long sleepMs = Math.min(Long.parseLong(m.group(1)) * 1000, (deadline - System.nanoTime()) / 1_000_000);
+        if (sleepMs > 0) Thread.sleep(sleepMs);
+    }
+
+    private FtpTestClient openSession(int idx, String user) throws IOException {
+        long t0 = System.nanoTime();
+        FtpTestClient c = FtpTestClient.connect(host, port, cfg.timeoutMillis);
+        current.set(idx, c);
+        long t1 = System.nanoTime();
+        stats.record("CONNECT", t1 - t0);
+        try {
+            c.login(user, password);
+            long t2 = System.nanoTime();
+            stats.record("LOGIN", t2 - t1);
+            FtpTestClient.expect("CWD", c.command("CWD " + BASE_DIR), 250);
+            stats.record("CWD", System.nanoTime() - t2);
+            FtpTestClient.expect("TYPE", c.command("TYPE I"), 200);
+            return c;
+        } catch (IOException e) {
+            c.close();
+            throw e;
+        }
+    }
+
+    private void runOnSession(FtpTestClient s, Op op, SplittableRandom rnd, int idx, String uploadName) throws IOException {
+        long t0 = System.nanoTime();
+        switch (op) {
+            case LIST, MLSD -> {
+                FtpTestClient.Transfer t = s.download(op.name() + " dir", 0);
+                stats.record(op.name(), System.nanoTime() - t0);
+                stats.recordTimeToFirstByte(op.name(), t.timeToFirstByteNanos());
+            }
+            case RETR, SLOW -> {
+                long rate = op == Op.SLOW ? cfg.slowReaderBytesPerSecond : 0;
+                FtpTestClient.Transfer t = s.download("RETR " + seedName(pickSize(rnd)), rate);
+                stats.record(op.name(), System.nanoTime() - t0);
+                stats.recordTimeToFirstByte(op.name(), t.timeToFirstByteNanos());
+                stats.downloaded(t.bytes());
+            }
+            case STOR -> {
+                FtpTestClient.Transfer t = s.upload(uploadName, pickSize(rnd), payload);
+                stats.record("STOR", System.nanoTime() - t0);
+                stats.uploaded(t.bytes());
+            }
+            case COPY -> {
+                // One target per client, overwritten every time: copies of big files must not fill the disk
+                String source = seedName(pickSize(rnd));
+                FtpTestClient.expect("SITE COPY", s.command("SITE COPY " + source + " copy-" + idx + ".bin"), 250);
+                stats.record("SITE COPY", System.nanoTime() - t0);
+            }
+            case RELAY -> {
+                long size = pickSize(rnd);
+                FtpTestClient.Transfer down = s.download("RETR " + seedName(size), 0);
+                FtpTestClient.Transfer up = s.upload("relay-" + idx + ".bin", down.bytes(), payload);
+                stats.record("RELAY", System.nanoTime() - t0);
+                stats.downloaded(down.bytes());
+                stats.uploaded(up.bytes());
+            }
+            case RMTREE -> {
+                String dir = uploadTree(s);
+                long t1 = System.nanoTime();
+                FtpTestClient.expect("SITE RMTREE", s.commandFinal("SITE RMTREE " + dir), 250);
+                stats.record("SITE RMTREE", System.nanoTime() - t1);
+            }
+            case DELTREE -> {
+                String dir = uploadTree(s);
+                long t1 = System.nanoTime();
+                deleteTree(s, dir);
+                stats.record("DELE-WALK", System.nanoTime() - t1);
+            }
+            case ARCHIVE -> {
+                if (clientTrees[idx] == null) clientTrees[idx] = uploadTree(s);
+                long t1 = System.nanoTime();
+                FtpTestClient.Transfer t = s.download("RETR " + clientTrees[idx], 0);
+                stats.record("RETR-DIR", System.nanoTime() - t1);
+                stats.downloaded(t.bytes());
+            }
+            case WALK -> {
+                if (clientTrees[idx] == null) clientTrees[idx] = uploadTree(s);
+                long t1 = System.nanoTime();
+                stats.downloaded(downloadTree(s, clientTrees[idx]));
+                stats.record("RETR-WALK", System.nanoTime() - t1);
+            }
+            case UNTAR, UNZIP, STOREACH -> {
+                String dir = TREES_DIR + "/t" + treeSeq.incrementAndGet();
+                switch (op) {
+                    case UNTAR -> s.send("SITE UNTAR " + dir, out -> tree.writeTar(out, payload));
+                    case UNZIP -> s.send("SITE UNZIP " + dir, out -> tree.writeZip(out, payload));
+                    default -> storeTree(s, dir);
+                }
+                stats.record(op == Op.STOREACH ? "STOR-EACH" : "SITE " + op.name(), System.nanoTime() - t0);
+                stats.uploaded((long) tree.files * tree.fileSize);
+                // Not measured: only keeps the disk from filling up
+                FtpTestClient.expect("SITE RMTREE", s.commandFinal("SITE RMTREE " + dir), 250);
+            }
+            default -> throw new IllegalStateException(op.name());
+        }
+    }
+
+    /** Uploads a fresh copy of the synthetic tree (TREE-UPLOAD row) and returns its path. */
+    private String uploadTree(FtpTestClient s) throws IOException {
+        String dir = TREES_DIR + "/t" + treeSeq.incrementAndGet();
+        long t0 = System.nanoTime();
+        s.send("SITE UNTAR " + dir, out -> tree.writeTar(out, payload));
+        stats.record("TREE-UPLOAD", System.nanoTime() - t0);
+        stats.uploaded((long) tree.files * tree.fileSize);
+        return dir;
+    }
+
+    /** What a client without SITE RMTREE does: list the whole tree, then one command per entry. */
+    private static void deleteTree(FtpTestClient s, String dir) throws IOException {
+        List<String> dirs = new ArrayList<>();
+        for (String line : s.listing("MLSD -R " + dir)) {
+            int sep = line.indexOf("; ");
+            if (sep < 0) continue;
+            String path = dir + "/" + line.substring(sep + 2);
+            if (line.startsWith("type=dir;")) {
+                dirs.add(path);
+            } else {
+                FtpTestClient.expect("DELE", s.command("DELE " + path), 250);
+            }
+        }
+        // Deepest first, the root last
+        dirs.sort(Comparator.comparingInt((String p) -> p.length()).reversed());
+        dirs.add(dir);
+        for (String d : dirs) {
+            FtpTestClient.expect("RMD", s.command("RMD " + d), 250);
+        }
+    }
+
+    /** What a client without SITE UNTAR does: create every directory, then one STOR per file. */
+    private void storeTree(FtpTestClient s, String dir) throws IOException {
+        FtpTestClient.expect("MKD", s.command("MKD " + dir), 257);
+        for (int d = 0; d < tree.dirs; d++) {
+            FtpTestClient.expect("MKD", s.command("MKD " + dir + "/" + SyntheticTree.dirName(d)), 257);
+        }
+        for (int i = 0; i < tree.files; i++) {
+            s.upload(dir + "/" + tree.fileName(i), tree.fileSize, payload);
+        }
+    }
+
+    /** What a client without directory RETR does: list the whole tree, then one RETR per file. */
+    private static long downloadTree(FtpTestClient s, String dir) throws IOException {
+        long bytes = 0;
+        for (String line : s.listing("MLSD -R " + dir)) {
+            int sep = line.indexOf("; ");
+            if (sep < 0 || !line.startsWith("type=file;")) continue;
+            bytes += s.download("RETR " + dir + "/" + line.substring(sep + 2), 0).bytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Reconnect storm unit: TCP connect up to the 220 banner (CONNECT latency is time-to-banner,
+     * its rate/s the server's accept rate), then an abrupt close.
+     */
+    private void connectOnce(int idx) throws IOException {
+        long t0 = System.nanoTime();
+        FtpTestClient c = FtpTestClient.connect(host, port, cfg.timeoutMillis);
+        stats.record("CONNECT", System.nanoTime() - t0);
+        c.close();
+    }
+
+    /** Login storm unit: connect, authenticate, quit. */
+    private void loginOnce(int idx, String user) throws IOException {
+        long t0 = System.nanoTime();
+        FtpTestClient c = FtpTestClient.connect(host, port, cfg.timeoutMillis);
+        FtpTestClient previous = current.getAndSet(idx, c);
+        try {
+            long t1 = System.nanoTime();
+            stats.record("CONNECT", t1 - t0);
+            c.login(user, password);
+            long t2 = System.nanoTime();
+            stats.record("LOGIN", t2 - t1);
+            FtpTestClient.expect("QUIT", c.command("QUIT"), 221);
+            long t3 = System.nanoTime();
+            stats.record("QUIT", t3 - t2);
+            stats.record("LOGIN-CYCLE", t3 - t0);
+        } finally {
+            c.close();
+            current.compareAndSet(idx, c, previous);
+        }
+    }
+
+    /** Abrupt disconnect in the middle of a download. */
+    private void drop(int idx, String user, long size) throws IOException {
+        long t0 = System.nanoTime();
+        FtpTestClient c = FtpTestClient.connect(host, port, cfg.timeoutMillis);
+        FtpTestClient previous = current.getAndSet(idx, c);
+        try {
+            c.login(user, password);
+            FtpTestClient.expect("CWD", c.command("CWD " + BASE_DIR), 250);
+            FtpTestClient.expect("TYPE", c.command("TYPE I"), 200);
+            stats.downloaded(c.dropDuringDownload(seedName(size)));
+            stats.record("DROP", System.nanoTime() - t0);
+        } finally {
+            c.close();
+            current.compareAndSet(idx, c, previous);
+        }
+    }
+
+    /**
+     * Idle-timeout unit: log in and open a PASV listener, then say nothing. The server must answer
+     * 421 and close (the listener goes earlier, on the data-connect timeout); IDLE latency is the
+     * time from the last command to the 421. A session still open at the client's socket timeout
+     * is an error, so run with {@code --timeout-ms} above the server's ftp.idleTimeoutMs.
+     */
+    private void idleOnce(int idx, String user) throws IOException {
+        FtpTestClient c = FtpTestClient.connect(host, port, cfg.timeoutMillis);
+        FtpTestClient previous = current.getAndSet(idx, c);
+        try {
+            c.login(user, password);
+            FtpTestClient.expect("PASV", c.command("PASV"), 227);
+            long t0 = System.nanoTime();
+            FtpTestClient.expect("IDLE", c.readReply(), 421);
+            stats.record("IDLE", System.nanoTime() - t0);
+        } finally {
+            c.close();
+            current.compareAndSet(idx, c, previous);
+        }
+    }
+
+    /** External server: create loadgen/, loadgen/dir/ and the seed files over FTP (idempotent). */
+    private void seedRemote() throws IOException {
+        FtpTestClient c = FtpTestClient.connect(host, port, cfg.timeoutMillis);
+        try {
+            c.login(users.get(0), password);
+            c.command("MKD " + BASE_DIR);
+            FtpTestClient.expect("CWD", c.command("CWD " + BASE_DIR), 250);
+            FtpTestClient.expect("TYPE", c.command("TYPE I"), 200);
+            c.command("MKD dir");
+            c.command("MKD " + TREES_DIR);
+            for (var size : cfg.sizes) {
+                c.upload(seedName(size.value()), size.value(), payload);
+            }
+            byte[] small = "entry\n".getBytes(StandardCharsets.US_ASCII);
+            for (int i = 0; i < cfg.dirSize; i++) {
+                c.upload("dir/entry-" + i + ".txt", small.length, small);
+            }
+        } finally {
+            c.quit();
+        }
+    }
+
+    private Op pickOp(SplittableRandom rnd) {
+        int r = rnd.nextInt(mixTotal);
+        for (var w : cfg.mix) {
+            r -= w.weight();
+            if (r < 0) return w.value();
+        }
+        return cfg.mix.get(0).value();
+    }
+
+    private long pickSize(SplittableRandom rnd) {
+        int r = rnd.nextInt(sizesTotal);
+        for (var w : cfg.sizes) {
+            r -= w.weight();
+            if (r < 0) return w.value();
+        }
+        return cfg.sizes.get(0).value();
+    }
+
+    private String describeMix() {
+        StringBuilder sb = new StringBuilder();
+        for (var w : cfg.mix) {
+            if (w.weight() == 0) continue;
+            if (sb.length() > 0) sb.append(',');
+            sb.append(w.value().name().toLowerCase(Locale.ROOT)).append('=').append(w.weight());
+        }
+        return sb.toString();
+    }
+
+    /** Text and JSON rendering of one run's results. */
+    static final class Report {
+        private final LoadGenConfig cfg;
+        private final LoadStats stats;
+        private final ServerProbe probe;
+        private final double seconds;
+
+        Report(LoadGenConfig cfg, LoadStats stats, ServerProbe probe, long elapsedNanos) {
+            this.cfg = cfg;
+            this.stats = stats;
+            this.probe = probe;
+            this.seconds = elapsedNanos / 1e9;
+        }
+
+        String text() {
+            StringBuilder sb = new StringBuilder(2048);
+            sb.append('\n');
+            sb.append(String.format(Locale.ROOT, "Operations: %d in %.1f s (%.1f/s), errors: %d%n",
+                    stats.operations(), seconds, stats.operations() / seconds, stats.totalErrors()));
+            sb.append(String.format(Locale.ROOT, "Download:   %s (%s/s)%n",
+                    bytes(stats.bytesDownloaded()), bytes((long) (stats.bytesDownloaded() / seconds))));
+            sb.append(String.format(Locale.ROOT, "Upload:     %s (%s/s)%n",
+                    bytes(stats.bytesUploaded()), bytes((long) (stats.bytesUploaded() / seconds))));
+
+            sb.append(String.format(Locale.ROOT, "%n%-12s %9s %9s %9s %9s %9s %9s %9s%n",
+                    "latency", "count", "rate/s", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+            appendTable(sb, stats.latencySnapshot());
+
+            Map<String, LatencyHistogram.Snapshot> ttfb = stats.timeToFirstByteSnapshot();
+            if (!ttfb.isEmpty()) {
+                sb.append(String.format(Locale.ROOT, "%n%-12s %9s %9s %9s %9s %9s %9s %9s%n",
+                        "first byte", "count", "rate/s", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+                appendTable(sb, ttfb);
+            }
+
+            Map<String, Long> errors = stats.errorCounts();
+            if (!errors.isEmpty()) {
+                sb.append("\nErrors:\n");
+                errors.forEach((k, v) -> sb.append(String.format(Locale.ROOT, "  %-32s %d%n", k, v)));
+            }
+
+            if (probe != null && probe.last() != null) {
+                ServerProbe.Sample first = probe.first();
+                ServerProbe.Sample last = probe.last();
+                sb.append(String.format(Locale.ROOT,
+                        "%nServer: threads peak %d (now %d), heap peak %s of %s (now %s), control connections peak %d, GC %.2f s during run%n",
+                        probe.peakThreads(), last.threads(),
+                        bytes(probe.peakHeap()), last.heapMax() > 0 ? bytes(last.heapMax()) : "unbounded",
+                        bytes(last.heapUsed()), probe.peakConnections(),
+                        last.gcSeconds() - first.gcSeconds()));
+                sb.append(String.format(Locale.ROOT,
+                        "Leak check: threads %d at start, %d now; open fds %d at start, peak %d, %d now; control connections now %d%n",
+                        first.threads(), last.threads(), first.openFds(), probe.peakFds(), last.openFds(),
+                        last.controlConnections()));
+            } else if (probe != null) {
+                sb.append("\nServer: metrics endpoint not reachable\n");
+            }
+            return sb.toString();
+        }
+
+        private void appendTable(StringBuilder sb, Map<String, LatencyHistogram.Snapshot> rows) {
+            rows.forEach((name, s) -> sb.append(String.format(Locale.ROOT,
+                    "%-12s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    name, s.getCount(), s.getCount() / seconds, s.getMeanMicros() / 1000.0,
+                    s.percentileMicros(0.50) / 1000.0, s.percentileMicros(0.90) / 1000.0,
+                    s.percentileMicros(0.99) / 1000.0, s.getMaxMicros() / 1000.0)));
+        }
+
+        String json() {
+            StringBuilder sb = new StringBuilder(4096);
+            sb.append("{\"clients\":").append(cfg.clients)
+                    .append(",\"seconds\":").append(String.format(Locale.ROOT, "%.3f", seconds))
+                    .append(",\"scenario\":\"").append(cfg.scenario).append('"')
+                    .append(",\"operations\":").append(stats.operations())
+                    .append(",\"errors\":").append(stats.totalErrors())
+                    .append(",\"bytesDownloaded\":").append(stats.bytesDownloaded())
+                    .append(",\"bytesUploaded\":").append(stats.bytesUploaded())
+                    .append(",\"latency\":");
+            appendJson(sb, stats.latencySnapshot());
+            sb.append(",\"ttfb\":");
+            appendJson(sb, stats.timeToFirstByteSnapshot());
+            sb.append(",\"errorCounts\":{");
+            boolean first = true;
+            for (var e : stats.errorCounts().entrySet()) {
+                if (!first) sb.append(',');
+                first = false;
+                sb.append('"').append(e.getKey()).append("\":").append(e.getValue());
+            }
+            sb.append('}');
+            if (probe != null && probe.last() != null) {
+                sb.append(",\"server\":{\"peakThreads\":").append(probe.peakThreads())
+                        .append(",\"peakHeapBytes\":").append(probe.peakHeap())
+                        .append(",\"peakControlConnections\":").append(probe.peakConnections())
+                        .append(",\"threadsAtStart\":").append(probe.first().threads())
+                        .append(",\"threadsAtEnd\":").append(probe.last().threads())
+                        .append(",\"openFdsAtStart\":").append(probe.first().openFds())
+                        .append(",\"openFdsAtEnd\":").append(probe.last().openFds())
+                        .append(",\"gcSeconds\":").append(String.format(Locale.ROOT, "%.3f",
+                                probe.last().gcSeconds() - probe.first().gcSeconds()))
+                        .append('}');
+            }
+            return sb.append("}\n").toString();
+        }
+
+        private static void appendJson(StringBuilder sb, Map<String, LatencyHistogram.Snapshot> rows) {
+            sb.append('{');
+            boolean first = true;
+            for (var e : rows.entrySet()) {
+                LatencyHistogram.Snapshot s = e.getValue();
+                if (!first) sb.append(',');
+                first = false;
+                sb.append('"').append(e.getKey()).append("\":{\"count\":").append(s.getCount())
+                        .append(",\"meanUs\":").append(Math.round(s.getMeanMicros()))
+                        .append(",\"p50Us\":").append(s.percentileMicros(0.50))
+                        .append(",\"p90Us\":").append(s.percentileMicros(0.90))
+                        .append(",\"p99Us\":").append(s.percentileMicros(0.99))
+                        .append(",\"maxUs\":").append(s.getMaxMicros())
+                        .append('}');
+            }
+            sb.append('}');
+        }
+
+        private static String bytes(long b) {
+            if (b < 1024) return b + " B";
+            if (b < 1024 * 1024) return String.format(Locale.ROOT, "%.1f KB", b / 1024.0);
+            if (b < 1024L * 1024 * 1024) return String.format(Locale.ROOT, "%.1f MB", b / (1024.0 * 1024));
+            return String.format(Locale.ROOT, "%.2f GB", b / (1024.0 * 1024 * 1024));
+        }
+    }
+}
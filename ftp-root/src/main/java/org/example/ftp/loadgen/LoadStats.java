@@ -0,0 +1,105 @@
+package org.example.ftp.loadgen;
+
+import org.example.ftp.server.metrics.LatencyHistogram;
+
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client-side results, shared by all simulated clients (lock-free recording).
+ * Nothing is recorded once {@link #stop()} was called, so the window is exactly the run time.
+ */
+final class LoadStats {
+
+    private final ConcurrentHashMap<String, LatencyHistogram> latency = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> ttfb = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final LongAdder operations = new LongAdder();
+    private final LongAdder bytesDownloaded = new LongAdder();
+    private final LongAdder bytesUploaded = new LongAdder();
+    private volatile boolean stopped;
+
+    void stop() {
+        stopped = true;
+    }
+
+    boolean isStopped() {
+        return stopped;
+    }
+
+    /** Latency of one command/operation, keyed by its name (CONNECT, LOGIN, RETR, ...). */
+    void record(String name, long nanos) {
+        if (stopped) return;
+        latency.computeIfAbsent(name, k -> new LatencyHistogram()).recordNanos(nanos);
+    }
+
+    void recordTimeToFirstByte(String name, long nanos) {
+        if (stopped || nanos <= 0) return;
+        ttfb.computeIfAbsent(name, k -> new LatencyHistogram()).recordNanos(nanos);
+    }
+
+    void completed(Op op) {
+        if (!stopped) operations.increment();
+    }
+
+    void downloaded(long bytes) {
+        if (!stopped) bytesDownloaded.add(bytes);
+    }
+
+    void uploaded(long bytes) {
+        if (!stopped) bytesUploaded.add(bytes);
+    }
+
+    /** "RETR 550", "STOR SocketTimeoutException", ... */
+    void error(Op op, Exception e) {
+        if (stopped) return;
+        String key;
+        if (e instanceof FtpTestClient.UnexpectedReplyException r) {
+            key = r.command + " " + r.code;
+        } else if (e instanceof SocketTimeoutException) {
+            key = op + " timeout";
+        } else {
+            key = op + " " + e.getClass().getSimpleName();
+        }
+        errors.computeIfAbsent(key, k -> new LongAdder()).increment();
+    }
+
+    long operations() {
+        return operations.sum();
+    }
+
+    long bytesDownloaded() {
+        return bytesDownloaded.sum();
+    }
+
+    long bytesUploaded() {
+        return bytesUploaded.sum();
+    }
+
+    Map<String, LatencyHistogram.Snapshot> latencySnapshot() {
+        return snapshot(latency);
+    }
+
+    Map<String, LatencyHistogram.Snapshot> timeToFirstByteSnapshot() {
+        return snapshot(ttfb);
+    }
+
+    Map<String, Long> errorCounts() {
+        Map<String, Long> out = new TreeMap<>();
+        errors.forEach((k, v) -> out.put(k, v.sum()));
+        return out;
+    }
+
+    long totalErrors() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    private static Map<String, LatencyHistogram.Snapshot> snapshot(Map<String, LatencyHistogram> m) {
+        Map<String, LatencyHistogram.Snapshot> out = new TreeMap<>();
+        m.forEach((k, v) -> out.put(k, v.snapshot()));
+        return out;
+    }
+}
@@ -0,0 +1,210 @@
+package org.example.ftp.loadgen;
+
+import org.example.ftp.server.FtpServerMain;
+import org.example.ftp.server.auth.AuthService;
+import org.example.ftp.server.auth.Sha256PasswordHasher;
+import org.example.ftp.server.auth.db.SqliteUserRepository;
+import org.example.ftp.server.db.Db;
+import org.example.ftp.server.db.SqliteServerSettingsRepository;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * A throwaway server for one run: temp ftp-root with pre-created accounts and seed files,
+ * started as a child JVM on free loopback ports, so its threads and heap are measured apart
+ * from the load generator's own.
+ */
+final class LocalServer implements AutoCloseable {
+
+    static final String PASSWORD = "loadgen";
+    private static final long START_TIMEOUT_MS = 30_000;
+
+    final Path root;
+    final int ftpPort;
+    final int adminPort;
+    final List<String> usernames = new ArrayList<>();
+
+    private final boolean keepRoot;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final Thread shutdownHook = new Thread(this::close, "loadgen-server-cleanup");
+    private Process process;
+
+    private LocalServer(Path root, int ftpPort, int adminPort, boolean keepRoot) {
+        this.root = root;
+        this.ftpPort = ftpPort;
+        this.adminPort = adminPort;
+        this.keepRoot = keepRoot;
+    }
+
+    static LocalServer start(LoadGenConfig cfg) throws Exception {
+        Path root = Files.createTempDirectory("ftp-loadgen-");
+        LocalServer server = new LocalServer(root, freePort(), freePort(), cfg.keepRoot);
+        // Ctrl+C must not leave a server process behind
+        Runtime.getRuntime().addShutdownHook(server.shutdownHook);
+        try {
+            server.prepare(cfg);
+            server.launch(cfg);
+            return server;
+        } catch (Exception e) {
+            server.close();
+            throw e;
+        }
+    }
+
+    String metricsUrl() {
+        return "http://127.0.0.1:" + adminPort + "/metrics";
+    }
+
+    /** Accounts, server settings and files, written before the server starts. */
+    private void prepare(LoadGenConfig cfg) throws IOException {
+        Db db = new Db(root.resolve("ftp.db"));
+        db.initSchema();
+
+        AuthService auth = new AuthService(new SqliteUserRepository(db), new Sha256PasswordHasher());
+        for (int i = 0; i < cfg.effectiveUsers(); i++) {
+            String name = "load" + i;
+            auth.createUser(name, PASSWORD);
+            usernames.add(name);
+        }
+        // Migrations add the global permission rows for the new accounts
+        db.initSchema();
+
+        int maxConnections = cfg.maxConnections != null ? cfg.maxConnections : cfg.clients * 2 + 10;
+        new SqliteServerSettingsRepository(db).save(maxConnections, null, cfg.rateLimit, cfg.rateLimit);
+
+        // One copy of each seed file, hard-linked into every home (real data, no disk blow-up)
+        Path seeds = Files.createDirectories(root.resolve("seed"));
+        for (var size : cfg.sizes) {
+            writeRandom(seeds.resolve(LoadGenerator.seedName(size.value())), size.value());
+        }
+        for (String user : usernames) {
+            Path base = Files.createDirectories(root.resolve("users").resolve(user).resolve(LoadGenerator.BASE_DIR));
+            for (var size : cfg.sizes) {
+                String name = LoadGenerator.seedName(size.value());
+                linkOrCopy(seeds.resolve(name), base.resolve(name));
+            }
+            Files.createDirectories(base.resolve(LoadGenerator.TREES_DIR));
+            Path dir = Files.createDirectories(base.resolve("dir"));
+            for (int i = 0; i < cfg.dirSize; i++) {
+                Files.writeString(dir.resolve("entry-" + i + ".txt"), "entry " + i + "\n");
+            }
+        }
+    }
+
+    private void launch(LoadGenConfig cfg) throws Exception {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> cmd = new ArrayList<>();
+        cmd.add(java);
+        // Every client comes from 127.0.0.1: per-address caps off unless --server-jvm sets them
+        cmd.add("-Dftp.perIp.max=0");
+        cmd.add("-Dftp.perIp.rate=0");
+        cmd.add("-Dftp.preAuth.max=0");
+        // IDLE waits for the reaper: short timeouts so a run sees several rounds (overridable too)
+        if (cfg.mix.stream().anyMatch(w -> w.value() == Op.IDLE && w.weight() > 0)) {
+            cmd.add("-Dftp.idleTimeoutMs=10000");
+            cmd.add("-Dftp.data.connectTimeoutMs=3000");
+        }
+        cmd.addAll(cfg.serverJvmArgs);
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add("-Djava.awt.headless=true");
+        cmd.add("-Dftp.root=" + root);
+        cmd.add("-Dftp.port=" + ftpPort);
+        cmd.add("-Dadmin.port=" + adminPort);
+        cmd.add("-Dftp.openBrowser=false");
+        cmd.add("-Dftp.log.console=false");
+        cmd.add(FtpServerMain.class.getName());
+
+        process = new ProcessBuilder(cmd)
+                .redirectErrorStream(true)
+                .redirectOutput(root.resolve("server.log").toFile())
+                .start();
+
+        long deadline = System.currentTimeMillis() + START_TIMEOUT_MS;
+        while (true) {
+            if (!process.isAlive()) {
+                throw new IOException("Server exited with code " + process.exitValue() + ", see " + root.resolve("server.log"));
+            }
+            try {
+                FtpTestClient.connect("127.0.0.1", ftpPort, 1000).quit();
+                return;
+            } catch (IOException notYet) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IOException("Server did not start within " + START_TIMEOUT_MS + " ms, see " + root.resolve("server.log"));
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) return;
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException alreadyShuttingDown) {
+        }
+        if (process != null) {
+            process.destroy();
+            try {
+                if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                    process.destroyForcibly().waitFor(5, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (keepRoot) {
+            System.out.println("ftp-root kept at " + root);
+            return;
+        }
+        try (Stream<Path> s = Files.walk(root)) {
+            s.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException ignored) {
+                }
+            });
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket s = new ServerSocket(0)) {
+            s.setReuseAddress(true);
+            return s.getLocalPort();
+        }
+    }
+
+    private static void writeRandom(Path file, long size) throws IOException {
+        byte[] buf = new byte[64 * 1024];
+        ThreadLocalRandom.current().nextBytes(buf);
+        try (RandomAccessFile f = new RandomAccessFile(file.toFile(), "rw")) {
+            long left = size;
+            while (left > 0) {
+                int n = (int) Math.min(left, buf.length);
+                f.write(buf, 0, n);
+                left -= n;
+            }
+        }
+    }
+
+    private static void linkOrCopy(Path target, Path link) throws IOException {
+        try {
+            Files.createLink(link, target);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(target, link);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.ftp.loadgen;
+
+import java.util.Locale;
+
+/**
+ * What a simulated client does in one iteration.
+ */
+public enum Op {
+    /** New control connection: wait for the 220 banner, then close without a command. */
+    CONNECT,
+    /** New control connection: banner, USER/PASS, QUIT. */
+    LOGIN,
+    /** PASV + LIST of the seeded directory on the client's persistent session. */
+    LIST,
+    /** PASV + MLSD of the seeded directory. */
+    MLSD,
+    /** PASV + RETR of a seeded file picked from the size distribution. */
+    RETR,
+    /** PASV + STOR of a file picked from the size distribution (overwrites one of a few names). */
+    STOR,
+    /** RETR read at the slow-reader rate: holds a server transfer open for a long time. */
+    SLOW,
+    /** New connection, start a RETR, then close both sockets without ABOR/QUIT. */
+    DROP,
+    /** New connection, log in, PASV, then stay silent until the server times the session out (421). */
+    IDLE,
+    /** SITE COPY of a seed file picked from the size distribution, on the server. */
+    COPY,
+    /** The same copy through the client: RETR of the seed file, then STOR of as many bytes. */
+    RELAY,
+    /** Upload a synthetic tree (one SITE UNTAR, not measured), then SITE RMTREE it. */
+    RMTREE,
+    /** The same tree deleted by a client: MLSD -R, a DELE per file, an RMD per directory. */
+    DELTREE,
+    /** RETR of the client's synthetic tree (uploaded once) as one ZIP archive. */
+    ARCHIVE,
+    /** The same tree downloaded file by file: MLSD -R, then a PASV + RETR per file. */
+    WALK,
+    /** SITE UNTAR of a fresh synthetic tree, generated as the upload goes (removed afterwards, not measured). */
+    UNTAR,
+    /** The same as a ZIP: SITE UNZIP. */
+    UNZIP,
+    /** The same tree uploaded by a client without them: an MKD per directory, a PASV + STOR per file. */
+    STOREACH;
+
+    static Op parse(String s) {
+        try {
+            return valueOf(s.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown operation: " + s);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.ftp.loadgen;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Samples the server's Prometheus endpoint (/metrics) once per second during the run:
+ * live threads, heap, control connections, open file descriptors and GC time, with peaks.
+ */
+final class ServerProbe implements AutoCloseable {
+
+    record Sample(long threads, long heapUsed, long heapMax, long controlConnections, long openFds, double gcSeconds) {}
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+    private final URI uri;
+    private final Thread thread;
+
+    private volatile Sample first;
+    private volatile Sample last;
+    private volatile long peakThreads;
+    private volatile long peakHeap;
+    private volatile long peakConnections;
+    private volatile long peakFds;
+    private volatile int failures;
+
+    ServerProbe(String metricsUrl) {
+        this.uri = URI.create(metricsUrl);
+        this.thread = Thread.ofPlatform().daemon().name("loadgen-probe").start(this::loop);
+    }
+
+    private void loop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            sampleOnce();
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    void sampleOnce() {
+        try {
+            HttpResponse<String> r = http.send(
+                    HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(5)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (r.statusCode() != 200) {
+                failures++;
+                return;
+            }
+            Sample s = parse(r.body());
+            if (first == null) first = s;
+            last = s;
+            peakThreads = Math.max(peakThreads, s.threads());
+            peakHeap = Math.max(peakHeap, s.heapUsed());
+            peakConnections = Math.max(peakConnections, s.controlConnections());
+            peakFds = Math.max(peakFds, s.openFds());
+        } catch (IOException e) {
+            failures++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static Sample parse(String text) {
+        long threads = 0, heapUsed = 0, heapMax = 0, connections = 0, fds = 0;
+        double gc = 0;
+        for (String line : text.split("\n")) {
+            if (line.isEmpty() || line.charAt(0) == '#') continue;
+            int sp = line.lastIndexOf(' ');
+            if (sp < 0) continue;
+            String name = line.substring(0, sp);
+            double value;
+            try {
+                value = Double.parseDouble(line.substring(sp + 1).trim());
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (name.equals("jvm_threads_live")) threads = (long) value;
+            else if (name.equals("jvm_memory_used_bytes{area=\"heap\"}")) heapUsed = (long) value;
+            else if (name.equals("jvm_memory_max_bytes{area=\"heap\"}")) heapMax = (long) value;
+            else if (name.equals("ftp_control_connections")) connections = (long) value;
+            else if (name.equals("process_open_fds")) fds = (long) value;
+            else if (name.startsWith("jvm_gc_collection_seconds_total")) gc += value;
+        }
+        return new Sample(threads, heapUsed, heapMax, connections, fds, gc);
+    }
+
+    Sample first() { return first; }
+
+    Sample last() { return last; }
+
+    long peakThreads() { return peakThreads; }
+
+    long peakHeap() { return peakHeap; }
+
+    long peakConnections() { return peakConnections; }
+
+    long peakFds() { return peakFds; }
+
+    int failures() { return failures; }
+
+    @Override
+    public void close() {
+        thread.interrupt();
+    }
+}
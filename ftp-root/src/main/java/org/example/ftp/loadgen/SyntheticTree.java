@@ -0,0 +1,117 @@
+package org.example.ftp.loadgen;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * The tree the tree operations work on: {@code files} files of {@code fileSize} bytes, spread
+ * evenly over {@code dirs} directories ({@code d0/f0.bin}, {@code d1/f1.bin}, ...). It is never
+ * on the client's disk: it is generated into a tar or ZIP stream, so a whole tree reaches the
+ * server in one SITE UNTAR/UNZIP, or file by file for STOR.
+ */
+final class SyntheticTree {
+
+    private static final int BLOCK = 512;
+    private static final byte[] MAGIC = {'u', 's', 't', 'a', 'r', 0, '0', '0'};
+    private static final byte[] ZEROS = new byte[BLOCK];
+
+    final int dirs;
+    final int files;
+    final long fileSize;
+
+    SyntheticTree(int dirs, int files, long fileSize) {
+        this.dirs = Math.max(1, dirs);
+        this.files = Math.max(0, files);
+        this.fileSize = Math.max(0, fileSize);
+    }
+
+    static String dirName(int d) {
+        return "d" + d;
+    }
+
+    /** Relative path of file {@code i}; files go round-robin over the directories. */
+    String fileName(int i) {
+        return dirName(i % dirs) + "/f" + i + ".bin";
+    }
+
+    /** Writes the tree as a plain ustar archive, file contents taken (cyclically) from {@code payload}. */
+    void writeTar(OutputStream out, byte[] payload) throws IOException {
+        byte[] header = new byte[BLOCK];
+        long mtime = System.currentTimeMillis() / 1000;
+        for (int d = 0; d < dirs; d++) {
+            out.write(tarHeader(header, dirName(d) + "/", 0, mtime, '5', 0755));
+        }
+        for (int i = 0; i < files; i++) {
+            out.write(tarHeader(header, fileName(i), fileSize, mtime, '0', 0644));
+            writeContent(out, fileSize, payload);
+            int rest = (int) (fileSize % BLOCK);
+            if (rest != 0) out.write(ZEROS, 0, BLOCK - rest);
+        }
+        out.write(ZEROS);
+        out.write(ZEROS);
+    }
+
+    /** The same tree as a ZIP (deflated at level 1, as the server's own archives), left unclosed. */
+    void writeZip(OutputStream out, byte[] payload) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        zip.setLevel(1);
+        for (int d = 0; d < dirs; d++) {
+            zip.putNextEntry(new ZipEntry(dirName(d) + "/"));
+            zip.closeEntry();
+        }
+        for (int i = 0; i < files; i++) {
+            zip.putNextEntry(new ZipEntry(fileName(i)));
+            writeContent(zip, fileSize, payload);
+            zip.closeEntry();
+        }
+        zip.finish();
+    }
+
+    static void writeContent(OutputStream out, long size, byte[] payload) throws IOException {
+        long left = size;
+        while (left > 0) {
+            int n = (int) Math.min(left, payload.length);
+            out.write(payload, 0, n);
+            left -= n;
+        }
+    }
+
+    // Names here are short ASCII: no pax headers needed
+    private static byte[] tarHeader(byte[] header, String name, long size, long mtime, char type, int mode) {
+        Arrays.fill(header, (byte) 0);
+        byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+        octal(header, mode, 100, 8);
+        octal(header, 0, 108, 8);
+        octal(header, 0, 116, 8);
+        octal(header, size, 124, 12);
+        octal(header, mtime, 136, 12);
+        header[156] = (byte) type;
+        System.arraycopy(MAGIC, 0, header, 257, MAGIC.length);
+
+        // Checksum: sum of the header with the checksum field taken as spaces
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long sum = 0;
+        for (byte b : header) {
+            sum += b & 0xff;
+        }
+        octal(header, sum, 148, 7);
+        header[155] = ' ';
+        return header;
+    }
+
+    // NUL-terminated, zero-padded octal
+    private static void octal(byte[] header, long value, int offset, int length) {
+        String s = Long.toOctalString(value);
+        int digits = length - 1;
+        for (int i = 0; i < digits; i++) {
+            int from = s.length() - digits + i;
+            header[offset + i] = (byte) (from < 0 ? '0' : s.charAt(from));
+        }
+        header[offset + digits] = 0;
+    }
+}
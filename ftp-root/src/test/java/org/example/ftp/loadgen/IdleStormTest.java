@@ -0,0 +1,160 @@
+package org.example.ftp.loadgen;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The idle-storm scenario as a test: 5000 logged-in sessions, each with an open PASV listener,
+ * opened within 10 s and then silent. Every one of them must get the reaper's 421, and once they are gone the
+ * server's thread and file descriptor counts (from its /metrics) must be back at the baseline
+ * taken before the storm.
+ *
+ * Tagged {@code stress} and skipped by a plain {@code mvn test}: it holds about 10k descriptors
+ * in the child server (raise {@code ulimit -n}) and takes over a minute. Run it with
+ * {@code mvn -Pstress test -pl ftp-root -am}.
+ */
+@Tag("stress")
+class IdleStormTest {
+
+    private static final int SESSIONS = 5000;
+    private static final int IDLE_TIMEOUT_MS = 20_000;
+    // Connects are spread over this long (like the loadgen's --ramp): all at once overflows the
+    // kernel's accept queue, and a client whose handshake was dropped there never gets a banner
+    private static final long RAMP_MS = 10_000;
+    // Logging in 5000 sessions on a small machine takes a while; the 421 may come well after PASV
+    private static final int CLIENT_TIMEOUT_MS = 120_000;
+    private static final long SETTLE_MS = 30_000;
+
+    @Test
+    void everyIdleSessionIsReapedAndNothingLeaks() throws Exception {
+        LoadGenConfig cfg = LoadGenConfig.parse(new String[]{
+                "--clients", String.valueOf(SESSIONS),
+                "--scenario", "idle-storm",
+                "--sizes", "4k=1",
+                "--dir-size", "0",
+                "--timeout-ms", String.valueOf(CLIENT_TIMEOUT_MS),
+                "--server-jvm", "-Dftp.idleTimeoutMs=" + IDLE_TIMEOUT_MS + " -Dftp.overload.enabled=false"
+        });
+
+        try (LocalServer server = LocalServer.start(cfg);
+             ServerProbe probe = new ServerProbe(server.metricsUrl())) {
+            // One full round first, so that lazily started pools are part of the baseline
+            Map<Integer, Long> warmUp = storm(server, 1);
+            assertEquals(Map.of(421, 1L), warmUp, "warm-up session");
+            ServerProbe.Sample baseline = settle(probe, null);
+
+            Map<Integer, Long> outcomes = storm(server, SESSIONS);
+            assertEquals(Map.of(421, (long) SESSIONS), outcomes, "reply that ended each session (-1: none)");
+            assertTrue(probe.peakConnections() >= SESSIONS / 2,
+                    "sessions were not idle at the same time (peak " + probe.peakConnections() + ")");
+
+            ServerProbe.Sample after = settle(probe, baseline);
+            System.out.println("IdleStormTest: " + SESSIONS + " sessions reaped with 421; server threads "
+                    + baseline.threads() + " -> " + probe.peakThreads() + " peak -> " + after.threads()
+                    + ", open fds " + baseline.openFds() + " -> " + probe.peakFds() + " peak -> " + after.openFds());
+            assertTrue(after.threads() <= baseline.threads(),
+                    "server threads " + baseline.threads() + " -> " + after.threads());
+            assertTrue(baseline.openFds() > 0, "process_open_fds missing from /metrics");
+            assertTrue(after.openFds() <= baseline.openFds(),
+                    "server open fds " + baseline.openFds() + " -> " + after.openFds());
+            assertEquals(0, after.controlConnections(), "control connections left");
+        }
+    }
+
+    /**
+     * Opens {@code count} sessions (login, PASV, then silence) and waits for each to end.
+     *
+     * @return how many sessions ended with which reply code; -1 for a session that ended without
+     * one (closed, timed out, or a login/PASV that failed)
+     */
+    private static Map<Integer, Long> storm(LocalServer server, int count) throws Exception {
+        Map<Integer, LongAdder> codes = new ConcurrentHashMap<>();
+        List<String> failures = new ArrayList<>();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> done = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String user = server.usernames.get(i % server.usernames.size());
+                long delayMs = RAMP_MS * i / count;
+                done.add(clients.submit(() -> {
+                    Thread.sleep(delayMs);
+                    int code = idleSession(server, user, failures);
+                    codes.computeIfAbsent(code, k -> new LongAdder()).increment();
+                    return null;
+                }));
+            }
+            for (Future<?> f : done) {
+                f.get();
+            }
+        }
+        Map<Integer, Long> out = new TreeMap<>();
+        codes.forEach((k, v) -> out.put(k, v.sum()));
+        if (!failures.isEmpty()) {
+            Map<String, Integer> byMessage = new TreeMap<>();
+            for (String f : failures) byMessage.merge(f, 1, Integer::sum);
+            System.out.println("IdleStormTest: " + failures.size() + " failures: " + byMessage);
+        }
+        return out;
+    }
+
+    private static int idleSession(LocalServer server, String user, List<String> failures) {
+        FtpTestClient c = null;
+        String stage = "connect";
+        try {
+            c = FtpTestClient.connect("127.0.0.1", server.ftpPort, CLIENT_TIMEOUT_MS);
+            stage = "login";
+            c.login(user, LocalServer.PASSWORD);
+            stage = "PASV";
+            FtpTestClient.expect("PASV", c.command("PASV"), 227);
+            stage = "idle";
+            return c.readReply().code();
+        } catch (IOException e) {
+            synchronized (failures) {
+                failures.add(stage + ": " + e);
+            }
+            return e instanceof FtpTestClient.UnexpectedReplyException r ? r.code : -1;
+        } finally {
+            if (c != null) c.close();
+        }
+    }
+
+    /**
+     * Samples until the server's thread and fd counts stop moving (or drop to {@code target}),
+     * for at most {@link #SETTLE_MS}.
+     */
+    private static ServerProbe.Sample settle(ServerProbe probe, ServerProbe.Sample target) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + SETTLE_MS;
+        ServerProbe.Sample previous = null;
+        while (true) {
+            Thread.sleep(1000);
+            probe.sampleOnce();
+            ServerProbe.Sample s = probe.last();
+            if (s != null && target != null
+                    && s.threads() <= target.threads() && s.openFds() <= target.openFds()
+                    && s.controlConnections() == 0) {
+                return s;
+            }
+            if (s != null && target == null && previous != null
+                    && s.threads() == previous.threads() && s.openFds() == previous.openFds()) {
+                return s;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                return s;
+            }
+            previous = s;
+        }
+    }
+}
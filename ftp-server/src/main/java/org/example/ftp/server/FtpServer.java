@@ -1,5 +1,8 @@
 package org.example.ftp.server;
 
+import org.example.ftp.common.protocol.FtpCodec;
+import org.example.ftp.common.protocol.FtpCommand;
+import org.example.ftp.common.protocol.FtpResponse;
 import org.example.ftp.server.auth.AuthService;
 import org.example.ftp.server.auth.PermissionService;
 import org.example.ftp.server.auth.Sha256PasswordHasher;
@@ -8,35 +11,53 @@ import org.example.ftp.server.auth.db.SqliteFolderRepository;
 import org.example.ftp.server.auth.db.SqlitePermissionsRepository;
 import org.example.ftp.server.auth.db.SqliteSharedFolderRepository;
 import org.example.ftp.server.auth.db.SqliteUserRepository;
+import org.example.ftp.server.connection.AcceptorGroup;
+import org.example.ftp.server.connection.AdmissionController;
+import org.example.ftp.server.connection.IdleReaper;
 import org.example.ftp.server.connection.ConnectionLimiter;
+import org.example.ftp.server.connection.OverloadController;
 import org.example.ftp.server.db.Db;
 import org.example.ftp.server.db.SqliteServerSettingsRepository;
+import org.example.ftp.server.fs.DiskUsage;
+import org.example.ftp.server.fs.db.SqliteDiskUsageRepository;
+import org.example.ftp.server.fs.log.AuditLogWriter;
+import org.example.ftp.server.fs.log.ServerLogService;
 import org.example.ftp.server.http.AdminHttpServer;
 import org.example.ftp.server.http.AdminTokenService;
 import org.example.ftp.server.session.ActiveSessionRegistry;
+import org.example.ftp.server.session.SessionInfo;
 import org.example.ftp.server.session.FtpSession;
 import org.example.ftp.server.session.FtpSessionBuilder;
 import org.example.ftp.server.stats.StatsService;
+import org.example.ftp.server.stats.TrafficRollup;
+import org.example.ftp.server.stats.TransferLedger;
 import org.example.ftp.server.stats.db.SqliteStatsRepository;
+import org.example.ftp.server.stats.db.SqliteTrafficRepository;
+import org.example.ftp.server.stats.db.SqliteTransferRepository;
 import org.example.ftp.server.transfer.RateLimiter;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.awt.Desktop;
+import java.io.OutputStream;
+import java.net.InetAddress;
 import java.net.SocketException;
-import java.net.ServerSocket;
 import java.net.Socket;
-import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 
 public class FtpServer {
 
+    private static final byte[] GREETING = "220 FTP Server Ready\r\n".getBytes(StandardCharsets.US_ASCII);
+    // Read buffer of a control connection; more than twice FtpCodec.DEFAULT_MAX_LINE, so it never fills
+    private static final int CONTROL_BUFFER = 3 * FtpCodec.DEFAULT_MAX_LINE;
+
     private final int port;
 
     private AuthService authService;
@@ -45,6 +66,7 @@ public class FtpServer {
     private RateLimiter globalUploadRateLimiter;
     private RateLimiter globalDownloadRateLimiter;
     private StatsService statsService;
+    private DiskUsage diskUsage;
     
     private SqliteUserRepository userRepo;
     private SqliteFolderRepository folderRepo;
@@ -53,6 +75,9 @@ public class FtpServer {
 
     private final int adminPort;
     private final ActiveSessionRegistry sessionRegistry = new ActiveSessionRegistry();
+    private final AdmissionController admission = AdmissionController.fromSystemProperties();
+    private final OverloadController overload = OverloadController.fromSystemProperties();
+    private final IdleReaper reaper = IdleReaper.fromSystemProperties(admission.getLoginTimeoutMillis());
     private AdminTokenService adminTokenService;
 
     public FtpServer(int port) {
@@ -67,12 +92,25 @@ public class FtpServer {
     public void start() throws Exception {
         Path ftpRoot = resolveFtpRoot();
         Files.createDirectories(ftpRoot);
+        // Once here rather than in every FtpSession (i.e. on every accepted connection)
+        Files.createDirectories(ftpRoot.resolve("shared"));
+
+        // Persistent command/transfer history (ServerLogService only keeps the last lines in memory)
+        if (Boolean.parseBoolean(System.getProperty("ftp.audit.enabled", "true"))) {
+            try {
+                ServerLogService.setAuditLog(AuditLogWriter.open(ftpRoot.resolve("audit")));
+            } catch (IOException e) {
+                System.out.println("Audit log disabled: " + e.getMessage());
+            }
+        }
 
         Db db = new Db(ftpRoot.resolve("ftp.db"));
         db.initSchema();
 
         var statsRepo = new SqliteStatsRepository(db);
-        this.statsService = new StatsService(statsRepo);
+        TrafficRollup traffic = TrafficRollup.fromSystemProperties(new SqliteTrafficRepository(db));
+        TransferLedger ledger = TransferLedger.fromSystemProperties(new SqliteTransferRepository(db));
+        this.statsService = new StatsService(statsRepo, traffic, ledger);
 
         var userRepo = new SqliteUserRepository(db);
         var permRepo = new SqlitePermissionsRepository(db);
@@ -101,11 +139,16 @@ public class FtpServer {
         this.folderPermRepo = new SqliteFolderPermissionRepository(db);
         this.userRepo = userRepo;
         this.sharedFolderRepo = new SqliteSharedFolderRepository(db);
+        this.diskUsage = DiskUsage.fromSystemProperties(ftpRoot, new SqliteDiskUsageRepository(db));
 
         // Helpful to debug "IDE works but packaged app doesn't" — often different ftp-root/db
         System.out.println("Resolved ftp-root: " + ftpRoot.toAbsolutePath().normalize());
         System.out.println("Resolved ftp-db  : " + ftpRoot.resolve("ftp.db").toAbsolutePath().normalize());
 
+        // Bound before the admin UI comes up: a taken port fails fast, and clients connecting from
+        // here on wait in the backlog instead of being refused
+        AcceptorGroup acceptors = AcceptorGroup.bind(port, AcceptorGroup.Options.fromSystemProperties());
+
         AdminHttpServer.start(
                 this.authService,
                 this.connectionLimiter,
@@ -122,21 +165,43 @@ public class FtpServer {
                 this.sharedFolderRepo,
                 settingsRepo,
                 ftpRoot,
-                this.adminPort
+                this.adminPort,
+                this.overload,
+                this.diskUsage
         );
+        overload.start();
+        reaper.start();
+        traffic.start();
+        ledger.start();
+        diskUsage.start();
+
+        System.out.println("FTP Server starting on port " + acceptors.getLocalPort() + " (" + acceptors.describe() + ")");
+        System.out.println("Timeouts: " + reaper.describe());
+        ProcessHandle.current().info().startInstant().ifPresent(t ->
+                System.out.println("Ready to accept after " + Duration.between(t, Instant.now()).toMillis() + " ms"));
+
+        // Convenience: open browser UI on startup (best-effort, off the accept path).
+        // Defaults to on only where there is a desktop; -Dftp.openBrowser=false for unattended runs
+        if (Boolean.parseBoolean(System.getProperty("ftp.openBrowser", Boolean.toString(hasDesktop())))) {
+            openBrowserSilently("http://localhost:" + this.adminPort + "/");
+        }
 
-        // Convenience: open browser UI on startup (best-effort, no crash on failure)
-        openBrowserSilently("http://localhost:" + this.adminPort + "/");
-
-        System.out.println("FTP Server starting on port " + port);
+        // AppCDS training run (see pom.xml): one loopback session through the normal path, then exit
+        if (Boolean.getBoolean("ftp.exitAfterStartup")) {
+            Thread t = new Thread(() -> trainingSession(acceptors.getLocalPort()), "startup-training");
+            t.setDaemon(true);
+            t.start();
+        }
 
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
-            while (true) {
-                Socket client = serverSocket.accept();
-                new Thread(() -> handleClient(client, ftpRoot)).start();
-            }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        try (acceptors) {
+            acceptors.run(client -> {
+                AdmissionController.Ticket ticket = admission.admit(client.getInetAddress());
+                if (!ticket.isAdmitted()) {
+                    reject(client, ticket.rejection());
+                    return;
+                }
+                new Thread(() -> handleClient(client, ticket, ftpRoot)).start();
+            });
         }
     }
 
@@ -280,48 +345,81 @@ public class FtpServer {
         }
     }
 
+    private static boolean hasDesktop() {
+        String os = System.getProperty("os.name", "").toLowerCase();
+        if (os.contains("win") || os.contains("mac")) return true;
+        return System.getenv("DISPLAY") != null || System.getenv("WAYLAND_DISPLAY") != null;
+    }
+
+    // Platform launcher instead of java.awt.Desktop: loading AWT alone costs a few hundred ms of startup
     private static void openBrowserSilently(String url) {
+        String os = System.getProperty("os.name", "").toLowerCase();
+        List<String> cmd;
+        if (os.contains("win")) {
+            cmd = List.of("rundll32", "url.dll,FileProtocolHandler", url);
+        } else if (os.contains("mac")) {
+            cmd = List.of("open", url);
+        } else {
+            cmd = List.of("xdg-open", url);
+        }
         try {
-            URI uri = URI.create(url);
-
-            if (Desktop.isDesktopSupported()) {
-                Desktop d = Desktop.getDesktop();
-                if (d.isSupported(Desktop.Action.BROWSE)) {
-                    d.browse(uri);
-                    return;
-                }
-            }
+            new ProcessBuilder(cmd)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+        } catch (Exception ignored) {
+        }
+    }
 
-            try {
-                new ProcessBuilder("rundll32", "url.dll,FileProtocolHandler", url)
-                        .inheritIO()
-                        .start();
-            } catch (Exception ignored) {
+    private static void trainingSession(int port) {
+        int status = 0;
+        try (Socket s = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            s.setSoTimeout(10_000);
+            BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+            OutputStream out = s.getOutputStream();
+            in.readLine();
+            for (String line : List.of("SYST", "FEAT", "NOOP", "QUIT")) {
+                out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                String reply;
+                do {
+                    reply = in.readLine();
+                } while (reply != null && (reply.length() < 4 || reply.charAt(3) == '-'));
             }
+        } catch (IOException e) {
+            System.out.println("Startup training session failed: " + e.getMessage());
+            status = 1;
+        }
+        System.exit(status);
+    }
 
-        } catch (Exception ignored) {
+    /** Turned away on the acceptor thread: a single 421 into an empty send buffer, then close. */
+    private static void reject(Socket socket, AdmissionController.Rejection rejection) {
+        try (socket) {
+            socket.getOutputStream().write(("421 " + rejection.message() + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException ignored) {
         }
     }
 
-    private void handleClient(Socket socket, Path ftpRoot) {
+    private void handleClient(Socket socket, AdmissionController.Ticket ticket, Path ftpRoot) {
         FtpSession session = null;
+        SessionInfo info = null;
+        IdleReaper.Watch watch = null;
+        boolean loggedIn = false;
 
         try (
+                ticket;
                 socket;
-                PrintWriter out = new PrintWriter(
-                        new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8),
-                        true
-                );
-                BufferedReader in = new BufferedReader(
-                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)
-                )
+                OutputStream out = socket.getOutputStream();
+                InputStream in = socket.getInputStream()
         ) {
-            sessionRegistry.register(socket);
-            out.print("220 FTP Server Ready\r\n");
+            info = sessionRegistry.register(socket);
+            out.write(GREETING);
             out.flush();
 
             session = FtpSessionBuilder.create()
-                    .writer(out)
+                    .output(out)
+                    .input(in)
                     .ftpRoot(ftpRoot)
                     .authService(authService)
                     .permissionService(permissionService)
@@ -333,27 +431,52 @@ public class FtpServer {
                     .folderRepository(folderRepo)
                     .folderPermissionRepository(folderPermRepo)
                     .sharedFolderRepository(sharedFolderRepo)
+                    .sessionInfo(info)
+                    .overloadController(overload)
+                    .diskUsage(diskUsage)
                     .build();
+            watch = reaper.watch(socket, session);
+
+            FtpCodec codec = new FtpCodec();
+            FtpCommand command = new FtpCommand();
+            ByteBuffer buf = ByteBuffer.allocate(CONTROL_BUFFER).flip();
 
             while (true) {
-                final String line;
-                try {
-                    line = in.readLine();
-                } catch (SocketException se) {
-                    // Normal scenario: client closed the connection abruptly (Windows message: "host program closed...")
-                    if (isClientDisconnect(se)) {
+                if (!codec.decodeCommand(buf, command)) {
+                    buf.compact();
+                    final int n;
+                    try {
+                        // Input a long command looked through for ABOR comes first
+                        int ahead = session.takeReadAhead(buf.array(), buf.position(), buf.remaining());
+                        n = ahead > 0 ? ahead : in.read(buf.array(), buf.position(), buf.remaining());
+                    } catch (SocketException se) {
+                        // Normal scenario: client closed the connection abruptly (Windows message: "host program closed...")
+                        if (isClientDisconnect(se)) {
+                            break;
+                        }
+                        throw se;
+                    } finally {
+                        buf.flip();
+                    }
+
+                    if (n < 0) {
+                        // EOF -> client closed connection, or IdleReaper shut our input
+                        FtpResponse expired = session.getExpiryReply();
+                        if (expired != null) {
+                            session.sendResponse(expired);
+                        }
                         break;
                     }
-                    throw se;
+                    buf.limit(buf.limit() + n);
+                    continue;
                 }
 
-                if (line == null) {
-                    // EOF -> client closed connection
-                    break;
-                }
+                // Pipelined input goes with the command: a long one (SITE RMTREE) must see an ABOR in it
+                session.pushBack(buf.array(), buf.position(), buf.remaining());
+                buf.position(buf.limit());
 
                 try {
-                    session.handle(line);
+                    session.handle(command);
                 } catch (Throwable t) {
                     // Do not kill the whole server; just end this client session.
                     t.printStackTrace();
@@ -363,6 +486,10 @@ public class FtpServer {
                 if (session.isCloseRequested()) {
                     break;
                 }
+                if (!loggedIn && session.isAuthenticated()) {
+                    loggedIn = true;
+                    ticket.authenticated();
+                }
             }
 
         } catch (IOException e) {
@@ -370,7 +497,13 @@ public class FtpServer {
                 e.printStackTrace();
             }
         } finally {
-            sessionRegistry.unregister(socket);
+            if (watch != null) {
+                watch.cancel();
+            }
+            if (session != null) {
+                session.closeDataChannels();
+            }
+            sessionRegistry.unregister(info);
             if (session != null && session.isAuthenticated()) {
                 connectionLimiter.release(session.getUsername());
             }
@@ -3,6 +3,10 @@ package org.example.ftp.server;
 public class FtpServerMain {
 
     public static void main(String[] args) {
+        // Nothing here needs a display; keeps any library that touches AWT from initialising a toolkit
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true");
+        }
         trySetConsoleTitle();
         try {
             int ftpPort = Integer.getInteger("ftp.port", 2121);
@@ -1,8 +1,10 @@
 package org.example.ftp.server.auth;
 
 import org.example.ftp.server.auth.db.SqliteUserRepository;
+import org.example.ftp.server.db.Page;
 
 import java.util.List;
+import java.util.Optional;
 
 public class AuthService {
 
@@ -44,6 +46,15 @@ public class AuthService {
         return users.findAll();
     }
 
+    public Optional<User> findUser(String username) {
+        return users.findByUsername(username);
+    }
+
+    /** See {@link SqliteUserRepository#findPage}. */
+    public Page<User> findUsersPage(String prefix, String upper, String after, int limit) {
+        return users.findPage(prefix, upper, after, limit);
+    }
+
     public void createUser(String username, String password) {
         if (users.findByUsername(username).isPresent()) {
             throw new IllegalArgumentException("User already exists");
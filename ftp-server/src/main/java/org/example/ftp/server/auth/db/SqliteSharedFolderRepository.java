@@ -44,6 +44,22 @@ public class SqliteSharedFolderRepository {
         return out;
     }
 
+    /** A shared folder with both usernames resolved (null for a user that no longer exists). */
+    public record Named(SharedFolder folder, String ownerUsername, String userToShareUsername) {}
+
+    /** Like {@link #findAll()}, with the usernames joined in one query. */
+    public List<Named> findAllNamed() {
+        String sql = """
+            SELECT sf.id, sf.owner_user_id, sf.user_to_share_id, sf.folder_name, sf.folder_path, sf.r, sf.w, sf.e,
+                   o.username AS owner_username, t.username AS share_username
+            FROM shared_folders sf
+            LEFT JOIN users o ON o.id = sf.owner_user_id
+            LEFT JOIN users t ON t.id = sf.user_to_share_id
+            ORDER BY sf.folder_path
+            """;
+        return db.queryList(sql, rs -> new Named(map(rs), rs.getString("owner_username"), rs.getString("share_username")));
+    }
+
     public List<SharedFolder> findByUserToShare(long userToShareId) {
         String sql = """
             SELECT id, owner_user_id, user_to_share_id, folder_name, folder_path, r, w, e
@@ -2,6 +2,7 @@ package org.example.ftp.server.auth.db;
 
 import org.example.ftp.server.auth.User;
 import org.example.ftp.server.db.Db;
+import org.example.ftp.server.db.Page;
 
 import java.sql.*;
 import java.util.ArrayList;
@@ -105,6 +106,35 @@ public class SqliteUserRepository {
         return result;
     }
 
+    /**
+     * Keyset page in username order, optionally restricted to a username prefix. Both bounds are
+     * plain comparisons, so SQLite walks the UNIQUE(username) index instead of scanning.
+     *
+     * @param prefix username prefix, or null
+     * @param after  continue after this username (exclusive), or null for the first page
+     * @param upper  exclusive upper bound of the prefix range (see PageRequest), or null
+     */
+    public Page<User> findPage(String prefix, String upper, String after, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT id, username, password_hash, enabled FROM users WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if (prefix != null) {
+            sql.append(" AND username >= ?");
+            params.add(prefix);
+            if (upper != null) {
+                sql.append(" AND username < ?");
+                params.add(upper);
+            }
+        }
+        if (after != null) {
+            sql.append(" AND username > ?");
+            params.add(after);
+        }
+        sql.append(" ORDER BY username LIMIT ?");
+        params.add(limit + 1);
+
+        List<User> rows = db.queryList(sql.toString(), this::mapRow, params.toArray());
+        return Page.of(rows, limit, User::username);
+    }
 
     private User mapRow(ResultSet rs) throws SQLException {
         return new User(
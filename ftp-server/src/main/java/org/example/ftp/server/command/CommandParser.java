@@ -1,4 +0,0 @@
-package org.example.ftp.server.command;
-
-public class CommandParser {
-}
@@ -1,44 +1,78 @@
 package org.example.ftp.server.command.handler;
 
+import org.example.ftp.common.protocol.FtpCommand;
 import org.example.ftp.common.protocol.FtpResponse;
+import org.example.ftp.common.protocol.FtpVerb;
 import org.example.ftp.common.protocol.Responses;
 import org.example.ftp.server.command.FtpCommandHandler;
 import org.example.ftp.server.command.visitor.CommandVisitor;
+import org.example.ftp.server.command.visitor.MetricsVisitor;
 import org.example.ftp.server.fs.log.ServerLogService;
 import org.example.ftp.server.session.FtpSession;
+import org.example.ftp.server.session.SessionInfo;
 import org.example.ftp.server.session.memento.SessionMemento;
+import org.example.ftp.server.stats.db.SqliteTransferRepository;
+import org.example.ftp.server.stats.db.SqliteTransferRepository.Transfer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
 
 public abstract class AbstractCommandHandler implements FtpCommandHandler {
 
-    public final FtpResponse handle(FtpSession session, String commandLine) {
+    public final FtpResponse handle(FtpSession session, FtpCommand command) {
 
-        if (commandLine == null || commandLine.isBlank()) {
+        if (command == null || command.isEmpty()) {
             return Responses.emptyCommand();
         }
 
-        log(session, commandLine);
-
-        SessionMemento snapshot = session.save();
-
-        if (!checkState(session)) {
-            return notAllowed();
+        long start = session.beginCommand();
+        SessionInfo info = session.getInfo();
+        String safeCmd = safeCommandLine(command);
+        if (info != null) {
+            info.onCommandStart(safeCmd);
         }
-
         try {
-            return execute(session, extractArgument(commandLine));
-        } catch (Exception e) {
-            session.restore(snapshot);
-            return Responses.requestedActionAbortedLocalError();
+            log(session, safeCmd);
+
+            SessionMemento snapshot = session.save();
+
+            // RNFR only holds for the command right after it
+            if (command.verb() != FtpVerb.RNTO) {
+                session.takeRenameFrom();
+            }
+
+            // Taken before execute(): a failed PASS clears the pending username, but is charged to it
+            String user = session.getUsername() != null ? session.getUsername() : session.getPendingUsername();
+            FtpResponse response;
+            if (!checkState(session)) {
+                response = notAllowed();
+            } else {
+                try {
+                    response = execute(session, command.argument());
+                } catch (Exception e) {
+                    session.restore(snapshot);
+                    response = Responses.requestedActionAbortedLocalError();
+                }
+            }
+            if (response != null && response.getCode() >= 400 && session.getStatsService() != null) {
+                session.getStatsService().onCommandFailed(user);
+            }
+            return response;
+        } finally {
+            if (info != null) {
+                info.onCommandEnd();
+            }
+            MetricsVisitor.recordLatency(getCommandName(), System.nanoTime() - start);
+            long firstByte = session.getFirstDataByteNanos();
+            if (firstByte != 0) {
+                MetricsVisitor.recordTimeToFirstByte(getCommandName(), firstByte - start);
+            }
         }
     }
 
-    protected void log(FtpSession session, String commandLine) {
-        String safeCmd = commandLine == null ? "" : commandLine.trim();
-        // Never log plaintext passwords
-        if (safeCmd.regionMatches(true, 0, "PASS", 0, 4)) {
-            safeCmd = "PASS ******";
-        }
-
+    /** @param safeCmd command line with the password already masked */
+    protected void log(FtpSession session, String safeCmd) {
         String safeUser =
                 session == null
                         ? "unknown-session"
@@ -51,6 +85,93 @@ public abstract class AbstractCommandHandler implements FtpCommandHandler {
         ServerLogService.log(safeUser + " >> " + safeCmd);
     }
 
+    /** Command line as it may be shown anywhere (logs, admin API): never with a plaintext password. */
+    protected static String safeCommandLine(FtpCommand command) {
+        if (command.verb() == FtpVerb.PASS) {
+            return "PASS ******";
+        }
+        return command.toString().trim();
+    }
+
+    /**
+     * Transfer outcome line (also lands in the persistent audit log when it is enabled) and its
+     * row in the transfer ledger. The transfer is timed from the start of the command.
+     *
+     * @param direction SqliteTransferRepository.UP or DOWN
+     * @param outcome   see {@link #transferOutcome}
+     */
+    protected void logTransfer(FtpSession session, String argument, Path file, String direction,
+                               long bytes, String outcome) {
+        ServerLogService.log(session.getUsername() + " << " + getCommandName() + " " + argument
+                + " bytes=" + bytes + " " + outcome);
+
+        if (session.getStatsService() == null) return;
+        long durationMs = (System.nanoTime() - session.getCommandStartNanos()) / 1_000_000;
+        SessionInfo info = session.getInfo();
+        String remote = info == null ? null : info.getRemoteAddress();
+        if (remote != null && remote.startsWith("/")) {
+            remote = remote.substring(1);
+        }
+        session.getStatsService().onTransfer(new Transfer(
+                0,
+                Objects.requireNonNullElse(session.getUsername(), ""),
+                ledgerPath(session, file),
+                direction,
+                bytes,
+                System.currentTimeMillis() - durationMs,
+                durationMs,
+                outcome,
+                remote
+        ));
+    }
+
+    /**
+     * @param completed every byte was moved
+     * @param failed    no data connection, or an I/O error that was not the client going away
+     */
+    protected static String transferOutcome(FtpSession session, boolean completed, boolean failed) {
+        if (completed) return SqliteTransferRepository.OK;
+        return failed && !session.isTransferAbortRequested()
+                ? SqliteTransferRepository.FAILED
+                : SqliteTransferRepository.ABORTED;
+    }
+
+    /** An I/O error that means the other end closed or reset the data connection. */
+    protected static boolean clientWentAway(IOException e) {
+        String msg = e.getMessage();
+        return msg != null && (msg.contains("closed") || msg.contains("reset") || msg.contains("Broken pipe"));
+    }
+
+    /**
+     * Splits {@code ls}-style options off a LIST/MLSD argument, "-lR docs" into "-lR" and "docs".
+     * Clients send them although RFC 959 has none; a name starting with '-' cannot be listed.
+     *
+     * @return the options ("" if none) and the path (null for the working directory)
+     */
+    protected static String[] splitListOptions(String argument) {
+        if (argument == null) return new String[]{"", null};
+        String rest = argument.trim();
+        StringBuilder options = new StringBuilder();
+        while (rest.length() > 1 && rest.charAt(0) == '-') {
+            int end = rest.indexOf(' ');
+            options.append(end < 0 ? rest : rest.substring(0, end));
+            rest = end < 0 ? "" : rest.substring(end + 1).trim();
+        }
+        return new String[]{options.toString(), rest.isEmpty() ? null : rest};
+    }
+
+    // Server-side location, "/users/alice/a.txt": what the client called it depends on its cwd
+    private static String ledgerPath(FtpSession session, Path file) {
+        Path root = session.getFtpRoot().toAbsolutePath().normalize();
+        Path abs = file.toAbsolutePath().normalize();
+        if (!abs.startsWith(root)) return abs.toString();
+        StringBuilder sb = new StringBuilder();
+        for (Path part : root.relativize(abs)) {
+            sb.append('/').append(part);
+        }
+        return sb.length() == 0 ? "/" : sb.toString();
+    }
+
     @Override
     public void accept(CommandVisitor visitor) {
         visitor.visit(this);
@@ -69,9 +190,4 @@ public abstract class AbstractCommandHandler implements FtpCommandHandler {
     protected abstract FtpResponse execute(FtpSession session, String argument);
 
     protected abstract FtpResponse notAllowed();
-
-    protected String extractArgument(String commandLine) {
-        int idx = commandLine.indexOf(' ');
-        return idx > 0 ? commandLine.substring(idx + 1) : null;
-    }
 }
\ No newline at end of file
@@ -1,19 +1,21 @@
 package org.example.ftp.server.command.handler;
 
+import org.example.ftp.common.protocol.FtpCommand;
 import org.example.ftp.common.protocol.FtpResponse;
+import org.example.ftp.common.protocol.FtpVerb;
 import org.example.ftp.common.protocol.Responses;
 import org.example.ftp.server.command.visitor.LoggingVisitor;
 import org.example.ftp.server.command.visitor.MetricsVisitor;
 import org.example.ftp.server.command.visitor.VisitorPipeline;
 import org.example.ftp.server.session.FtpSession;
 
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 
 public class CommandDispatcher {
 
-    private final Map<String, AbstractCommandHandler> handlers = new HashMap<>();
+    private final Map<FtpVerb, AbstractCommandHandler> handlers = new EnumMap<>(FtpVerb.class);
 
     private final VisitorPipeline visitorPipeline = new VisitorPipeline(
             // Metrics are always on; debug logging is controlled by -Dftp.debug=true
@@ -23,47 +25,52 @@ public class CommandDispatcher {
     );
 
     public CommandDispatcher() {
-        handlers.put("USER", new UserCommandHandler());
-        handlers.put("PASS", new PassCommandHandler());
-        handlers.put("PWD",  new PwdCommandHandler());
-        handlers.put("QUIT", new QuitCommandHandler());
-        handlers.put("TYPE", new TypeCommandHandler());
-        handlers.put("NOOP", new NoopCommandHandler());
-        handlers.put("ABOR", new AborCommandHandler());
-        handlers.put("PASV", new PasvCommandHandler());
-        handlers.put("LIST", new ListCommandHandler());
-        handlers.put("CWD", new CwdCommandHandler());
-        handlers.put("CDUP", new CdupCommandHandler());
-        handlers.put("RETR", new RetrCommandHandler());
-        handlers.put("STOR", new StorCommandHandler());
-        handlers.put("MKD", new MkdCommandHandler());
-        handlers.put("MLSD", new MlsdCommandHandler());
-        handlers.put("DELE", new DeleCommandHandler());
-        handlers.put("RMD", new RmdCommandHandler());
-        handlers.put("LOGS", new LogsCommandHandler());
-        handlers.put("EPSV", new EpsvCommandHandler());
-        handlers.put("EPRT", new EpsvCommandHandler());
-        handlers.put("OPTS", new OptsCommandHandler());
-        handlers.put("FEAT", new FeatCommandHandler());
-        handlers.put("SYST", new SystCommandHandler());
+        handlers.put(FtpVerb.USER, new UserCommandHandler());
+        handlers.put(FtpVerb.PASS, new PassCommandHandler());
+        handlers.put(FtpVerb.PWD, new PwdCommandHandler());
+        handlers.put(FtpVerb.QUIT, new QuitCommandHandler());
+        handlers.put(FtpVerb.TYPE, new TypeCommandHandler());
+        handlers.put(FtpVerb.NOOP, new NoopCommandHandler());
+        handlers.put(FtpVerb.ABOR, new AborCommandHandler());
+        handlers.put(FtpVerb.PASV, new PasvCommandHandler());
+        handlers.put(FtpVerb.LIST, new ListCommandHandler());
+        handlers.put(FtpVerb.CWD, new CwdCommandHandler());
+        handlers.put(FtpVerb.CDUP, new CdupCommandHandler());
+        handlers.put(FtpVerb.RETR, new RetrCommandHandler());
+        handlers.put(FtpVerb.STOR, new StorCommandHandler());
+        handlers.put(FtpVerb.MKD, new MkdCommandHandler());
+        handlers.put(FtpVerb.MLSD, new MlsdCommandHandler());
+        handlers.put(FtpVerb.DELE, new DeleCommandHandler());
+        handlers.put(FtpVerb.RMD, new RmdCommandHandler());
+        handlers.put(FtpVerb.RNFR, new RnfrCommandHandler());
+        handlers.put(FtpVerb.RNTO, new RntoCommandHandler());
+        handlers.put(FtpVerb.SITE, new SiteCommandHandler());
+        handlers.put(FtpVerb.LOGS, new LogsCommandHandler());
+        handlers.put(FtpVerb.EPSV, new EpsvCommandHandler());
+        handlers.put(FtpVerb.EPRT, new EpsvCommandHandler());
+        handlers.put(FtpVerb.OPTS, new OptsCommandHandler());
+        handlers.put(FtpVerb.FEAT, new FeatCommandHandler());
+        handlers.put(FtpVerb.SYST, new SystCommandHandler());
     }
 
+    /** String entry point (decodes the line first); the connection loop uses the codec directly. */
     public FtpResponse dispatch(FtpSession session, String line) {
-
-        if (line == null || line.isBlank()) {
+        if (line == null) {
             return Responses.emptyCommand();
         }
+        return dispatch(session, FtpCommand.of(line));
+    }
 
-        String command;
-        int space = line.indexOf(' ');
+    public FtpResponse dispatch(FtpSession session, FtpCommand command) {
 
-        if (space > 0) {
-            command = line.substring(0, space).toUpperCase();
-        } else {
-            command = line.toUpperCase();
+        if (command.isTooLong()) {
+            return Responses.commandTooLong();
+        }
+        if (command.isEmpty()) {
+            return Responses.emptyCommand();
         }
 
-        AbstractCommandHandler handler = handlers.get(command);
+        AbstractCommandHandler handler = handlers.get(command.verb());
 
         if (handler == null) {
             return Responses.notImplemented();
@@ -71,6 +78,6 @@ public class CommandDispatcher {
 
         visitorPipeline.accept(handler);
 
-        return handler.handle(session, line);
+        return handler.handle(session, command);
     }
-}
\ No newline at end of file
+}
@@ -3,6 +3,7 @@ package org.example.ftp.server.command.handler;
 import org.example.ftp.common.protocol.FtpResponse;
 import org.example.ftp.server.auth.Permission;
 import org.example.ftp.server.fs.AccessControl;
+import org.example.ftp.server.fs.DiskUsage;
 import org.example.ftp.server.fs.PathResolver;
 import org.example.ftp.server.session.FtpSession;
 
@@ -44,7 +45,10 @@ public class DeleCommandHandler extends AbstractCommandHandler {
         }
 
         try {
+            long size = Files.size(target);
             Files.delete(target);
+            DiskUsage usage = session.getDiskUsage();
+            usage.add(usage.ownerOf(target), -size, -1, 0);
             return FtpResponse.ok(250, "File deleted.");
         } catch (Exception e) {
             return FtpResponse.error(550, "Delete failed.");
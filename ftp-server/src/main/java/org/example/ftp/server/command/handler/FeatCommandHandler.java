@@ -16,6 +16,8 @@ public class FeatCommandHandler extends AbstractCommandHandler {
                 .code(211)
                 .line("Features:")
                 .line(" UTF8")
+                .line(" MLSD -R")
+                .line(" LIST -R")
                 .line("End")
                 .build();
     }
@@ -26,6 +28,8 @@ public class FeatCommandHandler extends AbstractCommandHandler {
                 .code(211)
                 .line("Features:")
                 .line(" UTF8")
+                .line(" MLSD -R")
+                .line(" LIST -R")
                 .line("End")
                 .build();
     }
@@ -6,8 +6,10 @@ import org.example.ftp.server.auth.Permission;
 import org.example.ftp.server.fs.ListFormatter;
 import org.example.ftp.server.fs.AccessControl;
 import org.example.ftp.server.fs.PathResolver;
+import org.example.ftp.server.fs.TreeWalker;
 import org.example.ftp.server.session.FtpSession;
 
+import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.Socket;
@@ -15,6 +17,7 @@ import java.net.SocketTimeoutException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 public class ListCommandHandler extends AbstractCommandHandler {
@@ -36,9 +39,12 @@ public class ListCommandHandler extends AbstractCommandHandler {
             return Responses.usePasvFirst();
         }
 
+        String[] options = splitListOptions(argument);
+        boolean recursive = options[0].indexOf('R') >= 0;
+
         Path dir;
         try {
-            dir = PathResolver.resolve(session, argument);
+            dir = PathResolver.resolve(session, options[1]);
         } catch (SecurityException e) {
             return Responses.accessDenied();
         }
@@ -47,17 +53,19 @@ public class ListCommandHandler extends AbstractCommandHandler {
             return Responses.permissionDenied();
         }
 
+        TreeWalker.Result walked = null;
         try (
-                Socket dataConnection = session.getPassiveDataSocket().accept();
+                Socket dataConnection = session.acceptDataConnection();
                 PrintWriter out = new PrintWriter(
                         new OutputStreamWriter(dataConnection.getOutputStream(), StandardCharsets.UTF_8),
-                        true
+                        !recursive
                 )
         ) {
             Path home = session.getHomeDirectory().normalize().toAbsolutePath();
             Path shared = session.getSharedDirectory().normalize().toAbsolutePath();
             Path requested = dir.normalize().toAbsolutePath();
 
+            Predicate<Path> show;
             // Если запрашивается home directory, показываем только реальное содержимое
             // НЕ показываем виртуальные папки владельцев - они должны быть только в разделе user-to-user в UI
             if (requested.equals(home)) {
@@ -66,48 +74,42 @@ public class ListCommandHandler extends AbstractCommandHandler {
                 Path ftpRoot = session.getFtpRoot().normalize().toAbsolutePath();
                 Path usersDir = ftpRoot.resolve("users").normalize().toAbsolutePath();
                 String currentUsername = session.getUsername();
-                
-                try (Stream<Path> stream = Files.list(dir)) {
-                    stream
-                        .filter(p -> {
-                            Path normalized = p.normalize().toAbsolutePath();
-                            
-                            // Показываем только файлы/папки, которые находятся строго в home directory пользователя
-                            // Исключаем папки других пользователей
-                            if (normalized.startsWith(usersDir)) {
-                                Path relative = usersDir.relativize(normalized);
-                                if (relative.getNameCount() > 0) {
-                                    String firstComponent = relative.getName(0).toString();
-                                    // Показываем только если это папка текущего пользователя или его подпапка
-                                    if (!firstComponent.equals(currentUsername)) {
-                                        // Это папка другого пользователя - не показываем
-                                        return false;
-                                    }
-                                }
+
+                show = p -> {
+                    Path normalized = p.normalize().toAbsolutePath();
+
+                    // Показываем только файлы/папки, которые находятся строго в home directory пользователя
+                    // Исключаем папки других пользователей
+                    if (normalized.startsWith(usersDir)) {
+                        Path relative = usersDir.relativize(normalized);
+                        if (relative.getNameCount() > 0) {
+                            String firstComponent = relative.getName(0).toString();
+                            // Показываем только если это папка текущего пользователя или его подпапка
+                            if (!firstComponent.equals(currentUsername)) {
+                                // Это папка другого пользователя - не показываем
+                                return false;
                             }
-                            
-                            // Показываем только если путь находится в home directory пользователя
-                            return normalized.startsWith(home);
-                        })
-                        .map(ListFormatter::format)
-                        .forEach(out::println);
-                }
-                out.flush();
+                        }
+                    }
+
+                    // Показываем только если путь находится в home directory пользователя
+                    return normalized.startsWith(home);
+                };
             }
             // Если запрашивается /shared, показываем физические файлы и папки
             // (глобальное право READ уже проверено выше, поэтому здесь мы можем показывать всё)
-            else if (requested.equals(shared)) {
-                try (Stream<Path> stream = Files.list(dir)) {
-                    stream.map(ListFormatter::format).forEach(out::println);
-                }
-                out.flush();
-            }
             // Для всех остальных директорий показываем обычный список
             // Если это папка другого пользователя, AccessControl уже проверил доступ через shared_folders
             // Поэтому показываем все содержимое (доступ уже разрешен)
             else {
+                show = p -> true;
+            }
+
+            if (recursive) {
+                walked = listRecursive(session, dir, show, out);
+            } else {
                 try (Stream<Path> stream = Files.list(dir)) {
-                    stream.map(ListFormatter::format).forEach(out::println);
+                    stream.filter(show).map(ListFormatter::format).forEach(line -> writeLine(session, out, line));
                 }
                 out.flush();
             }
@@ -122,7 +124,39 @@ public class ListCommandHandler extends AbstractCommandHandler {
             } catch (Exception ignored) {}
         }
 
-        return Responses.directorySendOk();
+        return walked != null && walked.truncated() ? Responses.listingTruncated() : Responses.directorySendOk();
+    }
+
+    /**
+     * {@code ls -lR} layout: a ".:" / "./sub:" header per directory, its entries, a blank line.
+     * Written and flushed a directory at a time; subdirectories the user may not read are shown
+     * but not entered.
+     */
+    private static TreeWalker.Result listRecursive(FtpSession session, Path dir, Predicate<Path> show,
+                                                   PrintWriter out) throws IOException {
+        Predicate<Path> enter = AccessControl.sameBelow(session, dir)
+                ? p -> true
+                : p -> AccessControl.can(session, p, Permission.READ);
+        return TreeWalker.fromSystemProperties().walk(dir, show, enter, listing -> {
+            if (listing.depth() > 0) {
+                out.println();
+            }
+            out.println(listing.relative().isEmpty() ? ".:" : "./" + listing.relative() + ":");
+            for (TreeWalker.Entry e : listing.entries()) {
+                out.println(ListFormatter.format(e.name(), e.attrs()));
+            }
+            out.flush();
+            // PrintWriter swallows write errors: a client that went away must end the walk
+            if (out.checkError()) {
+                throw new IOException("Data connection closed");
+            }
+            session.markFirstDataByte();
+        });
+    }
+
+    private static void writeLine(FtpSession session, PrintWriter out, String line) {
+        out.println(line);
+        session.markFirstDataByte();
     }
 
     @Override
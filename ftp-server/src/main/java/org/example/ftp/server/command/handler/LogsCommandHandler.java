@@ -1,11 +1,33 @@
 package org.example.ftp.server.command.handler;
 
 import org.example.ftp.common.protocol.FtpResponse;
+import org.example.ftp.common.protocol.Responses;
 import org.example.ftp.server.fs.log.ServerLogService;
 import org.example.ftp.server.session.FtpSession;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * LOGS [since [limit]]
+ *
+ * Returns buffered server log lines with seq &gt; since (cursor), at most limit of them.
+ * Without arguments returns the latest page. Every line is prefixed with "#seq " and the
+ * last reply line carries the cursor for the next call ("End next=N").
+ *
+ * If PASV was issued before LOGS, the lines are streamed over the data connection
+ * (150 ... 226) instead of being packed into one multi-line control reply.
+ */
 public class LogsCommandHandler extends AbstractCommandHandler {
 
+    private static final int DEFAULT_LIMIT = Integer.getInteger("ftp.logs.pageSize", 100);
+    private static final int MAX_LIMIT = Integer.getInteger("ftp.log.max", 2000);
+
     @Override
     public String getCommandName() {
         return "LOGS";
@@ -19,25 +41,84 @@ public class LogsCommandHandler extends AbstractCommandHandler {
     @Override
     protected FtpResponse execute(FtpSession session, String argument) {
 
-        var logs = ServerLogService.getLogs();
+        Long since = null;
+        int limit = DEFAULT_LIMIT;
+
+        if (argument != null && !argument.isBlank()) {
+            String[] parts = argument.trim().split("\\s+");
+            try {
+                since = Long.parseLong(parts[0]);
+                if (parts.length > 1) {
+                    limit = Integer.parseInt(parts[1]);
+                }
+            } catch (NumberFormatException e) {
+                return Responses.syntaxErrorInParameters();
+            }
+            if (since < 0 || limit < 1) {
+                return Responses.syntaxErrorInParameters();
+            }
+        }
+        limit = Math.min(limit, MAX_LIMIT);
+
+        List<ServerLogService.Entry> logs = since == null
+                ? ServerLogService.getTail(limit)
+                : ServerLogService.getSince(since, limit);
+
+        long next = logs.isEmpty()
+                ? (since == null ? ServerLogService.getLastSeq() : Math.min(since, ServerLogService.getLastSeq()))
+                : logs.get(logs.size() - 1).seq();
+
+        if (session.getPassiveDataSocket() != null) {
+            return streamOverDataConnection(session, logs, next);
+        }
 
         FtpResponse.Builder b = FtpResponse.builder().code(200);
 
         if (logs.isEmpty()) {
-            b.line("No logs.");
+            b.line("No logs. next=" + next);
         } else {
             b.line("Server logs:");
-            for (String line : logs) {
-                b.line(line);
+            for (ServerLogService.Entry e : logs) {
+                b.line(formatEntry(e));
             }
-            b.line("End");
+            b.line("End next=" + next);
         }
 
         return b.build();
     }
 
+    private FtpResponse streamOverDataConnection(FtpSession session, List<ServerLogService.Entry> logs, long next) {
+        session.sendResponse(Responses.ok(150, "Opening data connection for logs."));
+
+        try (
+                Socket dataConnection = session.acceptDataConnection();
+                Writer out = new BufferedWriter(
+                        new OutputStreamWriter(dataConnection.getOutputStream(), StandardCharsets.UTF_8)
+                )
+        ) {
+            for (ServerLogService.Entry e : logs) {
+                out.write(formatEntry(e));
+                out.write("\r\n");
+            }
+            out.flush();
+            session.markFirstDataByte();
+        } catch (IOException e) {
+            return Responses.connectionClosedTransferAborted();
+        } finally {
+            try {
+                session.closePassiveDataSocket();
+            } catch (IOException ignored) {}
+        }
+
+        return Responses.ok(226, "Logs sent. next=" + next);
+    }
+
+    private static String formatEntry(ServerLogService.Entry e) {
+        return "#" + e.seq() + " " + e.line();
+    }
+
     @Override
     protected FtpResponse notAllowed() {
         return FtpResponse.needLogin();
     }
-}
\ No newline at end of file
+}
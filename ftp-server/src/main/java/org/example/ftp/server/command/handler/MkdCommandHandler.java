@@ -3,6 +3,7 @@ package org.example.ftp.server.command.handler;
 import org.example.ftp.common.protocol.FtpResponse;
 import org.example.ftp.server.auth.Permission;
 import org.example.ftp.server.fs.AccessControl;
+import org.example.ftp.server.fs.DiskUsage;
 import org.example.ftp.server.fs.PathResolver;
 import org.example.ftp.server.session.FtpSession;
 
@@ -40,7 +41,10 @@ public class MkdCommandHandler extends AbstractCommandHandler {
         }
 
         try {
+            int created = DiskUsage.missingDirs(dir);
             Files.createDirectories(dir);
+            DiskUsage usage = session.getDiskUsage();
+            usage.add(usage.ownerOf(dir), 0, 0, created);
         } catch (Exception e) {
             return FtpResponse.error(550, "Failed to create directory.");
         }
@@ -5,8 +5,10 @@ import org.example.ftp.common.protocol.Responses;
 import org.example.ftp.server.auth.Permission;
 import org.example.ftp.server.fs.AccessControl;
 import org.example.ftp.server.fs.PathResolver;
+import org.example.ftp.server.fs.TreeWalker;
 import org.example.ftp.server.session.FtpSession;
 
+import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.Socket;
@@ -14,9 +16,11 @@ import java.net.SocketTimeoutException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 public class MlsdCommandHandler extends AbstractCommandHandler {
@@ -40,9 +44,12 @@ public class MlsdCommandHandler extends AbstractCommandHandler {
             return Responses.usePasvFirst();
         }
 
+        String[] options = splitListOptions(argument);
+        boolean recursive = options[0].indexOf('R') >= 0;
+
         Path dir;
         try {
-            dir = PathResolver.resolve(session, argument);
+            dir = PathResolver.resolve(session, options[1]);
         } catch (SecurityException e) {
             return Responses.accessDenied();
         }
@@ -56,11 +63,12 @@ public class MlsdCommandHandler extends AbstractCommandHandler {
         Path requested = dir.normalize().toAbsolutePath();
         boolean listingHomeRoot = requested.equals(home);
 
+        TreeWalker.Result walked = null;
         try (
-                Socket dataConnection = session.getPassiveDataSocket().accept();
+                Socket dataConnection = session.acceptDataConnection();
                 PrintWriter out = new PrintWriter(
                         new OutputStreamWriter(dataConnection.getOutputStream(), StandardCharsets.UTF_8),
-                        true
+                        !recursive
                 )
         ) {
             // НЕ показываем виртуальные папки владельцев в home directory
@@ -89,39 +97,48 @@ public class MlsdCommandHandler extends AbstractCommandHandler {
                 }
             }
 
-            try (Stream<Path> stream = Files.list(dir)) {
-                stream
-                    .filter(p -> {
-                        if (isHomeDirectory) {
-                            Path normalized = p.normalize().toAbsolutePath();
-                            String fileName = p.getFileName().toString();
-                            
-                            // Исключаем виртуальные папки владельцев (они уже показаны выше)
-                            if (virtualOwnerNames.contains(fileName)) {
+            Predicate<Path> show = p -> {
+                if (isHomeDirectory) {
+                    Path normalized = p.normalize().toAbsolutePath();
+                    String fileName = p.getFileName().toString();
+                    
+                    // Исключаем виртуальные папки владельцев (они уже показаны выше)
+                    if (virtualOwnerNames.contains(fileName)) {
+                        return false;
+                    }
+                    
+                    // Показываем только файлы/папки, которые находятся строго в home directory пользователя
+                    // Исключаем папки других пользователей
+                    if (normalized.startsWith(usersDir)) {
+                        Path relative = usersDir.relativize(normalized);
+                        if (relative.getNameCount() > 0) {
+                            String firstComponent = relative.getName(0).toString();
+                            // Показываем только если это папка текущего пользователя или его подпапка
+                            if (!firstComponent.equals(currentUsername)) {
+                                // Это папка другого пользователя - не показываем
                                 return false;
                             }
-                            
-                            // Показываем только файлы/папки, которые находятся строго в home directory пользователя
-                            // Исключаем папки других пользователей
-                            if (normalized.startsWith(usersDir)) {
-                                Path relative = usersDir.relativize(normalized);
-                                if (relative.getNameCount() > 0) {
-                                    String firstComponent = relative.getName(0).toString();
-                                    // Показываем только если это папка текущего пользователя или его подпапка
-                                    if (!firstComponent.equals(currentUsername)) {
-                                        // Это папка другого пользователя - не показываем
-                                        return false;
-                                    }
-                                }
-                            }
-                            
-                            // Показываем только если путь находится в home directory пользователя
-                            return normalized.startsWith(home);
                         }
-                        // Для других директорий показываем все
-                        return true;
-                    })
-                    .forEach(p -> out.println(toMlsdLine(p, p.getFileName().toString())));
+                    }
+                    
+                    // Показываем только если путь находится в home directory пользователя
+                    return normalized.startsWith(home);
+                }
+                // Для других директорий показываем все
+                return true;
+            };
+
+            if (recursive) {
+                walked = listRecursive(session, dir, show, out);
+            } else {
+                try (Stream<Path> stream = Files.list(dir)) {
+                    stream
+                        .filter(show)
+                        .forEach(p -> {
+                            out.println(toMlsdLine(p, p.getFileName().toString()));
+                            session.markFirstDataByte();
+                        });
+                }
             }
 
         } catch (SocketTimeoutException e) {
@@ -134,7 +151,38 @@ public class MlsdCommandHandler extends AbstractCommandHandler {
             } catch (Exception ignored) {}
         }
 
-        return Responses.directorySendOk();
+        return walked != null && walked.truncated() ? Responses.listingTruncated() : Responses.directorySendOk();
+    }
+
+    /**
+     * The whole subtree in one listing: one line per entry below {@code dir}, named by its path
+     * relative to it ("sub/deeper/file"), written and flushed a directory at a time.
+     */
+    private TreeWalker.Result listRecursive(FtpSession session, Path dir, Predicate<Path> show,
+                                            PrintWriter out) throws IOException {
+        Predicate<Path> enter = AccessControl.sameBelow(session, dir)
+                ? p -> true
+                : p -> AccessControl.can(session, p, Permission.READ);
+        return TreeWalker.fromSystemProperties().walk(dir, show, enter, listing -> {
+            String prefix = listing.relative().isEmpty() ? "" : listing.relative() + "/";
+            for (TreeWalker.Entry e : listing.entries()) {
+                out.println(toMlsdLine(prefix + e.name(), e.attrs()));
+            }
+            out.flush();
+            // PrintWriter swallows write errors: a client that went away must end the walk
+            if (out.checkError()) {
+                throw new IOException("Data connection closed");
+            }
+            session.markFirstDataByte();
+        });
+    }
+
+    private static String toMlsdLine(String name, BasicFileAttributes attrs) {
+        boolean isDir = attrs.isDirectory();
+        return "type=" + (isDir ? "dir" : "file")
+                + ";modify=" + MLSD_TIME.format(attrs.lastModifiedTime().toInstant())
+                + ";size=" + (isDir ? 0L : attrs.size())
+                + "; " + name;
     }
 
     private String toMlsdLine(Path path, String name) {
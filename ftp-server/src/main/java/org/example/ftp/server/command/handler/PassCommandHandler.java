@@ -3,6 +3,7 @@ package org.example.ftp.server.command.handler;
 import org.example.ftp.common.protocol.FtpReplyCode;
 import org.example.ftp.common.protocol.FtpResponse;
 import org.example.ftp.common.protocol.Responses;
+import org.example.ftp.server.connection.OverloadController;
 import org.example.ftp.server.session.FtpSession;
 import org.example.ftp.server.session.UnauthenticatedState;
 
@@ -24,6 +25,15 @@ public class PassCommandHandler extends AbstractCommandHandler {
             return Responses.loginWithUserFirst();
         }
 
+        // Shed before the password check: under load the DB lookup is part of the problem
+        OverloadController overload = session.getOverloadController();
+        if (!overload.admitLogin()) {
+            session.requestClose();
+            session.setPendingUsername(null);
+            session.setState(new UnauthenticatedState());
+            return Responses.serverBusy(overload.retryAfterSeconds());
+        }
+
         String username = session.getPendingUsername();
         String password = argument == null ? "" : argument;
 
@@ -40,15 +50,21 @@ public class PassCommandHandler extends AbstractCommandHandler {
             return Responses.error(421, "Too many connections.");
         }
 
-        session.authenticate(username);
+        try {
+            session.authenticate(username);
 
-        // Ensure user has permissions row in database (create if missing)
-        // This is critical for global permissions to work
-        if (session.getPermissionService().getPermissions(username) == null) {
-            session.getPermissionService().setPermissions(username, true, true, true);
-        }
+            // Ensure user has permissions row in database (create if missing)
+            // This is critical for global permissions to work
+            if (session.getPermissionService().getPermissions(username) == null) {
+                session.getPermissionService().setPermissions(username, true, true, true);
+            }
 
-        session.getStatsService().onLogin(username);
+            session.getStatsService().onLogin(username);
+        } catch (RuntimeException e) {
+            // The session is rolled back to unauthenticated (451), so nothing would release the slot later
+            session.getConnectionLimiter().release(username);
+            throw e;
+        }
 
         return Responses.ok(FtpReplyCode.USER_LOGGED_IN.getCode(), "User logged in, proceed.");
     }
@@ -5,20 +5,37 @@ import org.example.ftp.common.protocol.Responses;
 import org.example.ftp.server.auth.Permission;
 import org.example.ftp.server.fs.AccessControl;
 import org.example.ftp.server.fs.PathResolver;
+import org.example.ftp.server.fs.TreeArchiver;
+import org.example.ftp.server.fs.log.ServerLogService;
+import org.example.ftp.server.metrics.ServerMetrics;
 import org.example.ftp.server.session.FtpSession;
+import org.example.ftp.server.session.SessionInfo;
+import org.example.ftp.server.stats.db.SqliteTransferRepository;
 import org.example.ftp.server.transfer.RateLimiter;
 import org.example.ftp.server.transfer.ThrottledInputStream;
+import org.example.ftp.server.transfer.ThrottledOutputStream;
 
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.util.function.Predicate;
 
+/**
+ * RETR: a file, or a directory as one archive. {@code RETR dir} sends a ZIP of it; {@code RETR
+ * dir.zip} or {@code RETR dir.tar}, when no such file exists but {@code dir} does, picks the format.
+ */
 public class RetrCommandHandler extends AbstractCommandHandler {
 
+    // Between the archive writer and the data connection: ZIP deflates in 512-byte pieces
+    private static final int ARCHIVE_BUFFER = 64 * 1024;
+
     @Override
     public String getCommandName() {
         return "RETR";
@@ -51,6 +68,20 @@ public class RetrCommandHandler extends AbstractCommandHandler {
             return Responses.permissionDenied();
         }
 
+        if (Files.isDirectory(file)) {
+            return retrieveArchive(session, argument, file, TreeArchiver.Format.ZIP);
+        }
+        if (!Files.exists(file)) {
+            // "docs.zip" / "docs.tar" for a directory "docs" that has no such file next to it
+            String name = file.getFileName() == null ? "" : file.getFileName().toString();
+            TreeArchiver.Format format = TreeArchiver.Format.ofName(name);
+            if (format != null) {
+                Path dir = file.resolveSibling(name.substring(0, name.length() - format.extension().length()));
+                if (Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+                    return retrieveArchive(session, argument, dir, format);
+                }
+            }
+        }
         if (!Files.exists(file) || !Files.isRegularFile(file)) {
             return Responses.fileNotFound();
         }
@@ -59,22 +90,29 @@ public class RetrCommandHandler extends AbstractCommandHandler {
         session.clearTransferAbort();
         session.setActiveTransferThread(Thread.currentThread());
         boolean transferCompleted = false;
+        boolean inFlight = false;
+        boolean failed = false;
+        SessionInfo info = session.getInfo();
+        long bytes = 0;
         
         try {
             // Отправляем ответ 150 ДО вызова accept(), чтобы клиент знал, что нужно подключиться
             session.sendResponse(Responses.ok(150, "Opening data connection."));
             
             try (
-                    Socket dataConnection = session.getPassiveDataSocket().accept();
+                    Socket dataConnection = session.acceptDataConnection();
                     InputStream rawIn = Files.newInputStream(file);
                     InputStream in = wrapInputWithLimiter(session, rawIn);
                     OutputStream out = dataConnection.getOutputStream()
             ) {
-                session.setActiveDataConnection(dataConnection);
+                ServerMetrics.DOWNLOADS_IN_FLIGHT.incrementAndGet();
+                inFlight = true;
+                if (info != null) {
+                    info.beginTransfer(getCommandName(), argument, Files.size(file));
+                }
                 // Используем буферизованное чтение/запись вместо transferTo для правильной работы rate limiting
                 // Используем меньший буфер для более точного контроля скорости
                 byte[] buffer = new byte[4096];
-                long bytes = 0;
                 int bytesRead;
                 
                 try {
@@ -88,6 +126,12 @@ public class RetrCommandHandler extends AbstractCommandHandler {
                             break;
                         }
                         out.write(buffer, 0, bytesRead);
+                        session.markFirstDataByte();
+                        session.markDataActivity();
+                        ServerMetrics.BYTES_DOWNLOADED.add(bytesRead);
+                        if (info != null) {
+                            info.onTransferBytes(bytesRead, false);
+                        }
                         bytes += bytesRead;
                     }
                     if (!session.isTransferAbortRequested()) {
@@ -114,15 +158,26 @@ public class RetrCommandHandler extends AbstractCommandHandler {
 
         } catch (SocketTimeoutException e) {
             // Client didn't open data connection in time
+            failed = true;
             return Responses.connectionClosedTransferAborted();
         } catch (IOException e) {
+            // A write failing mid-transfer (broken pipe) is the client going away, not a failure
+            failed = !inFlight || !clientWentAway(e);
             return Responses.connectionClosedTransferAborted();
         } finally {
+            if (inFlight) {
+                ServerMetrics.DOWNLOADS_IN_FLIGHT.decrementAndGet();
+                if (info != null) {
+                    info.endTransfer();
+                }
+            }
             session.setActiveDataConnection(null);
             session.clearActiveTransferThread(Thread.currentThread());
             try {
                 session.closePassiveDataSocket();
             } catch (IOException ignored) {}
+            logTransfer(session, argument, file, SqliteTransferRepository.DOWN, bytes,
+                    transferOutcome(session, transferCompleted, failed));
         }
 
         if (transferCompleted) {
@@ -132,6 +187,96 @@ public class RetrCommandHandler extends AbstractCommandHandler {
         }
     }
 
+    /**
+     * A directory as one archive, written to the data connection while the tree is walked
+     * ({@link TreeArchiver}). Subdirectories need READ as for {@code MLSD -R}; ABOR is looked for
+     * between files, as the session thread is busy here.
+     */
+    private FtpResponse retrieveArchive(FtpSession session, String argument, Path dir, TreeArchiver.Format format) {
+        if (!AccessControl.can(session, dir, Permission.READ)) {
+            return Responses.permissionDenied();
+        }
+        Predicate<Path> enter = AccessControl.sameBelow(session, dir)
+                ? p -> true
+                : p -> AccessControl.can(session, p, Permission.READ);
+
+        session.clearTransferAbort();
+        session.setActiveTransferThread(Thread.currentThread());
+        boolean inFlight = false;
+        boolean failed = false;
+        SessionInfo info = session.getInfo();
+        long[] bytes = new long[1];
+        TreeArchiver.Result archived = null;
+
+        try {
+            session.sendResponse(Responses.ok(150, "Opening data connection for "
+                    + dir.getFileName() + format.extension() + "."));
+
+            try (Socket dataConnection = session.acceptDataConnection()) {
+                ServerMetrics.DOWNLOADS_IN_FLIGHT.incrementAndGet();
+                inFlight = true;
+                if (info != null) {
+                    info.beginTransfer(getCommandName(), argument, -1);
+                }
+                OutputStream socketOut = dataConnection.getOutputStream();
+                RateLimiter limiter = session.getDownloadRateLimiter();
+                if (limiter != null) {
+                    socketOut = new ThrottledOutputStream(socketOut, limiter);
+                }
+                OutputStream counted = new FilterOutputStream(socketOut) {
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                        session.markFirstDataByte();
+                        session.markDataActivity();
+                        ServerMetrics.BYTES_DOWNLOADED.add(len);
+                        if (info != null) {
+                            info.onTransferBytes(len, false);
+                        }
+                        bytes[0] += len;
+                    }
+                };
+                OutputStream buffered = new BufferedOutputStream(counted, ARCHIVE_BUFFER);
+                archived = TreeArchiver.fromSystemProperties(format).write(dir, enter, buffered, () -> {
+                    if (!session.isTransferAbortRequested() && session.abortSent()) {
+                        session.requestTransferAbort();
+                    }
+                    return session.isTransferAbortRequested();
+                });
+                buffered.flush();
+                session.getStatsService().onDownload(session.getUsername(), bytes[0]);
+            }
+        } catch (SocketTimeoutException e) {
+            failed = true;
+        } catch (IOException e) {
+            failed = !inFlight || !(clientWentAway(e) || session.isTransferAbortRequested());
+            if (failed && inFlight) {
+                ServerLogService.log(session.getUsername() + " << RETR " + argument + " archive failed: " + e.getMessage());
+            }
+        } finally {
+            if (inFlight) {
+                ServerMetrics.DOWNLOADS_IN_FLIGHT.decrementAndGet();
+                if (info != null) {
+                    info.endTransfer();
+                }
+            }
+            session.setActiveDataConnection(null);
+            session.clearActiveTransferThread(Thread.currentThread());
+            // An ABOR seen between files interrupted this thread, which goes on with the next command
+            Thread.interrupted();
+            try {
+                session.closePassiveDataSocket();
+            } catch (IOException ignored) {}
+            logTransfer(session, argument, dir, SqliteTransferRepository.DOWN, bytes[0],
+                    transferOutcome(session, archived != null, failed));
+        }
+
+        if (archived == null) {
+            return Responses.connectionClosedTransferAborted();
+        }
+        return archived.truncated() ? Responses.archiveTruncated() : Responses.transferComplete();
+    }
+
     private InputStream wrapInputWithLimiter(FtpSession session, InputStream in) {
         // Download limiter
         RateLimiter limiter = session.getDownloadRateLimiter();
@@ -3,6 +3,7 @@ package org.example.ftp.server.command.handler;
 import org.example.ftp.common.protocol.FtpResponse;
 import org.example.ftp.server.auth.Permission;
 import org.example.ftp.server.fs.AccessControl;
+import org.example.ftp.server.fs.DiskUsage;
 import org.example.ftp.server.fs.PathResolver;
 import org.example.ftp.server.session.FtpSession;
 
@@ -56,6 +57,8 @@ public class RmdCommandHandler extends AbstractCommandHandler {
         } catch (Exception e) {
             return FtpResponse.error(550, "Remove directory failed.");
         }
+        DiskUsage usage = session.getDiskUsage();
+        usage.add(usage.ownerOf(target), 0, 0, -1);
 
         return FtpResponse.ok(250, "Directory deleted.");
     }
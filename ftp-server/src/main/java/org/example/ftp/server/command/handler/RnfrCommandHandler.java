@@ -0,0 +1,59 @@
+package org.example.ftp.server.command.handler;
+
+import org.example.ftp.common.protocol.FtpResponse;
+import org.example.ftp.server.auth.Permission;
+import org.example.ftp.server.fs.AccessControl;
+import org.example.ftp.server.fs.PathResolver;
+import org.example.ftp.server.session.FtpSession;
+
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+
+/**
+ * First half of a rename: checks the source and remembers it for the RNTO that must follow.
+ * Moving something out of a folder takes the same permission as deleting it there (EXECUTE).
+ */
+public class RnfrCommandHandler extends AbstractCommandHandler {
+
+    @Override
+    public String getCommandName() {
+        return "RNFR";
+    }
+
+    @Override
+    protected boolean checkState(FtpSession session) {
+        return super.checkState(session);
+    }
+
+    @Override
+    protected FtpResponse execute(FtpSession session, String argument) {
+
+        if (argument == null || argument.isBlank()) {
+            return FtpResponse.error(501, "File name required.");
+        }
+
+        Path source;
+        try {
+            source = PathResolver.resolve(session, argument);
+        } catch (SecurityException e) {
+            return FtpResponse.error(550, "Access denied.");
+        }
+
+        if (AccessControl.isFixed(session, source) || !AccessControl.can(session, source, Permission.EXECUTE)) {
+            return FtpResponse.error(550, "Permission denied.");
+        }
+
+        if (!Files.exists(source, LinkOption.NOFOLLOW_LINKS)) {
+            return FtpResponse.error(550, "File not found.");
+        }
+
+        session.setRenameFrom(source);
+        return FtpResponse.ok(350, "Ready for RNTO.");
+    }
+
+    @Override
+    protected FtpResponse notAllowed() {
+        return FtpResponse.needLogin();
+    }
+}
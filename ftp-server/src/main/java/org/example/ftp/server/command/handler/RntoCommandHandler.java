@@ -0,0 +1,144 @@
+package org.example.ftp.server.command.handler;
+
+import org.example.ftp.common.protocol.FtpResponse;
+import org.example.ftp.common.protocol.Responses;
+import org.example.ftp.server.auth.Permission;
+import org.example.ftp.server.fs.AccessControl;
+import org.example.ftp.server.fs.DiskUsage;
+import org.example.ftp.server.fs.PathResolver;
+import org.example.ftp.server.session.FtpSession;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Objects;
+
+/**
+ * Second half of a rename: moves the RNFR path to the argument, which needs WRITE there (as
+ * for STOR). The move is a single rename(2) on the same file system; across file systems the
+ * JDK copies and deletes, which works for files and empty directories only. An existing file
+ * at the target is replaced, an existing directory is not.
+ *
+ * Moving between two users' trees moves the usage with it, and is refused with 552 if it
+ * would put the new owner over quota.
+ */
+public class RntoCommandHandler extends AbstractCommandHandler {
+
+    @Override
+    public String getCommandName() {
+        return "RNTO";
+    }
+
+    @Override
+    protected boolean checkState(FtpSession session) {
+        return super.checkState(session);
+    }
+
+    @Override
+    protected FtpResponse execute(FtpSession session, String argument) {
+
+        Path source = session.takeRenameFrom();
+        if (source == null) {
+            return FtpResponse.error(503, "RNFR required first.");
+        }
+
+        if (argument == null || argument.isBlank()) {
+            return FtpResponse.error(501, "File name required.");
+        }
+
+        Path target;
+        try {
+            target = PathResolver.resolve(session, argument);
+        } catch (SecurityException e) {
+            return FtpResponse.error(550, "Access denied.");
+        }
+
+        if (AccessControl.isFixed(session, target) || !AccessControl.can(session, target, Permission.WRITE)) {
+            return FtpResponse.error(550, "Permission denied.");
+        }
+
+        Path from = source.normalize().toAbsolutePath();
+        Path to = target.normalize().toAbsolutePath();
+        if (to.equals(from)) {
+            return FtpResponse.ok(250, "Rename successful.");
+        }
+        if (to.startsWith(from)) {
+            return FtpResponse.error(550, "Cannot move a directory into itself.");
+        }
+        if (!Files.isDirectory(to.getParent())) {
+            return FtpResponse.error(550, "Target directory not found.");
+        }
+        if (!Files.exists(from, LinkOption.NOFOLLOW_LINKS)) {
+            return FtpResponse.error(550, "File not found.");
+        }
+        boolean directory = Files.isDirectory(from, LinkOption.NOFOLLOW_LINKS);
+        if (Files.isDirectory(to, LinkOption.NOFOLLOW_LINKS) || (directory && Files.exists(to, LinkOption.NOFOLLOW_LINKS))) {
+            return FtpResponse.error(550, "Target already exists.");
+        }
+
+        DiskUsage usage = session.getDiskUsage();
+        String fromOwner = usage.ownerOf(from);
+        String toOwner = usage.ownerOf(to);
+        try {
+            long replaced = Files.isRegularFile(to, LinkOption.NOFOLLOW_LINKS) ? Files.size(to) : -1;
+
+            // Charged to the new owner before the move, so that two moves cannot both squeeze in
+            DiskUsage.Usage moved = null;
+            if (!Objects.equals(fromOwner, toOwner)) {
+                moved = measure(from, directory);
+                long remaining = usage.add(toOwner, moved.bytes(), moved.files(), moved.dirs());
+                if (remaining < -Math.max(0, replaced) && moved.bytes() > 0) {
+                    usage.add(toOwner, -moved.bytes(), -moved.files(), -moved.dirs());
+                    return Responses.storageExceeded();
+                }
+            }
+
+            try {
+                move(from, to);
+            } catch (IOException e) {
+                if (moved != null) {
+                    usage.add(toOwner, -moved.bytes(), -moved.files(), -moved.dirs());
+                }
+                return FtpResponse.error(550, "Rename failed.");
+            }
+
+            if (moved != null) {
+                usage.add(fromOwner, -moved.bytes(), -moved.files(), -moved.dirs());
+            }
+            if (replaced >= 0) {
+                usage.add(toOwner, -replaced, -1, 0);
+            }
+        } catch (IOException e) {
+            return FtpResponse.error(550, "Rename failed.");
+        }
+
+        return FtpResponse.ok(250, "Rename successful.");
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Another file system
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static DiskUsage.Usage measure(Path path, boolean directory) throws IOException {
+        if (directory) {
+            DiskUsage.Usage below = DiskUsage.measure(path);
+            return new DiskUsage.Usage(below.bytes(), below.files(), below.dirs() + 1, null);
+        }
+        return Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)
+                ? new DiskUsage.Usage(Files.size(path), 1, 0, null)
+                : new DiskUsage.Usage(0, 0, 0, null);
+    }
+
+    @Override
+    protected FtpResponse notAllowed() {
+        return FtpResponse.needLogin();
+    }
+}
@@ -0,0 +1,425 @@
+package org.example.ftp.server.command.handler;
+
+import org.example.ftp.common.protocol.FtpResponse;
+import org.example.ftp.common.protocol.Responses;
+import org.example.ftp.server.auth.Permission;
+import org.example.ftp.server.fs.AccessControl;
+import org.example.ftp.server.fs.DiskUsage;
+import org.example.ftp.server.fs.PathResolver;
+import org.example.ftp.server.fs.TreeArchiver;
+import org.example.ftp.server.fs.TreeDeleter;
+import org.example.ftp.server.fs.TreeExtractor;
+import org.example.ftp.server.fs.log.ServerLogService;
+import org.example.ftp.server.metrics.ServerMetrics;
+import org.example.ftp.server.session.FtpSession;
+import org.example.ftp.server.session.SessionInfo;
+import org.example.ftp.server.stats.db.SqliteTransferRepository;
+import org.example.ftp.server.transfer.RateLimiter;
+import org.example.ftp.server.transfer.ThrottledInputStream;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * SITE subcommands: file operations done on the server, without moving the data through the
+ * client.
+ *
+ * SITE COPY &lt;source&gt; &lt;target&gt;: copies a file (READ on the source, WRITE on the target, a
+ * target directory means "into it").
+ *
+ * SITE RMTREE &lt;dir&gt;: deletes a directory with everything in it (EXECUTE, as for DELE/RMD,
+ * on every directory removed). A 150 line reports progress every {@code ftp.rmtree.progressMs}
+ * (default 2000); ABOR stops it, keeping what was not deleted yet.
+ *
+ * SITE UNTAR &lt;dir&gt; / SITE UNZIP &lt;dir&gt;: like STOR (after PASV), but the upload is a tar
+ * (optionally gzipped) or ZIP archive, extracted into a new directory as it arrives. The tree
+ * is built in a hidden directory next to {@code dir} and renamed to {@code dir} once the whole
+ * archive is in, so {@code dir} never shows a partial tree; on any error nothing is left. Needs
+ * WRITE on every directory written to, and counts against the quota as it is written.
+ *
+ * Names with spaces go in double quotes.
+ */
+public class SiteCommandHandler extends AbstractCommandHandler {
+
+    // Per transferTo call, so that a huge copy is not one unbounded syscall
+    private static final long COPY_CHUNK = 64L * 1024 * 1024;
+    private static final long RMTREE_PROGRESS_MILLIS = Math.max(100, Long.getLong("ftp.rmtree.progressMs", 2000L));
+    // How often a running RMTREE looks for ABOR
+    private static final long RMTREE_POLL_MILLIS = 100;
+
+    @Override
+    public String getCommandName() {
+        return "SITE";
+    }
+
+    @Override
+    protected boolean checkState(FtpSession session) {
+        return super.checkState(session);
+    }
+
+    @Override
+    protected FtpResponse execute(FtpSession session, String argument) {
+        List<String> args = splitArgs(argument);
+        if (args.isEmpty()) {
+            return FtpResponse.error(501, "SITE subcommand required.");
+        }
+        return switch (args.get(0).toUpperCase(Locale.ROOT)) {
+            case "COPY" -> copy(session, args);
+            case "RMTREE" -> rmtree(session, args);
+            case "UNTAR" -> extract(session, args, TreeArchiver.Format.TAR);
+            case "UNZIP" -> extract(session, args, TreeArchiver.Format.ZIP);
+            default -> Responses.notImplemented();
+        };
+    }
+
+    private FtpResponse copy(FtpSession session, List<String> args) {
+        if (args.size() != 3) {
+            return FtpResponse.error(501, "Usage: SITE COPY <source> <target>");
+        }
+
+        Path source;
+        Path target;
+        try {
+            source = PathResolver.resolve(session, args.get(1));
+            target = PathResolver.resolve(session, args.get(2));
+        } catch (SecurityException e) {
+            return FtpResponse.error(550, "Access denied.");
+        }
+        if (Files.isDirectory(target)) {
+            target = target.resolve(source.getFileName());
+        }
+
+        if (!AccessControl.can(session, source, Permission.READ)
+                || AccessControl.isFixed(session, target)
+                || !AccessControl.can(session, target, Permission.WRITE)) {
+            return FtpResponse.error(550, "Permission denied.");
+        }
+        if (!Files.isRegularFile(source)) {
+            return FtpResponse.error(550, "Not a file.");
+        }
+        if (target.normalize().toAbsolutePath().equals(source.normalize().toAbsolutePath())) {
+            return FtpResponse.error(550, "Source and target are the same file.");
+        }
+        if (!Files.isDirectory(target.getParent()) || Files.isDirectory(target)) {
+            return FtpResponse.error(550, "Target directory not found.");
+        }
+
+        // Charged up front, so that concurrent copies and uploads cannot both squeeze in
+        DiskUsage usage = session.getDiskUsage();
+        String owner = usage.ownerOf(target);
+        long size;
+        long replaced;
+        try {
+            size = Files.size(source);
+            replaced = Files.isRegularFile(target, LinkOption.NOFOLLOW_LINKS) ? Files.size(target) : -1;
+        } catch (IOException e) {
+            return FtpResponse.error(550, "Copy failed.");
+        }
+        long charge = size - Math.max(0, replaced);
+        int newFiles = replaced >= 0 ? 0 : 1;
+        if (usage.add(owner, charge, newFiles, 0) < 0 && charge > 0) {
+            usage.add(owner, -charge, -newFiles, 0);
+            return Responses.storageExceeded();
+        }
+
+        long copied;
+        try {
+            copied = copyFile(source, target);
+        } catch (IOException e) {
+            usage.add(owner, -charge, -newFiles, 0);
+            return FtpResponse.error(550, "Copy failed.");
+        }
+        if (copied != size) {
+            // The source changed while it was copied
+            usage.add(owner, copied - size, 0, 0);
+        }
+
+        ServerLogService.log(session.getUsername() + " << SITE COPY " + args.get(1) + " " + args.get(2)
+                + " bytes=" + copied);
+        return FtpResponse.ok(250, "Copied " + copied + " bytes.");
+    }
+
+    private FtpResponse rmtree(FtpSession session, List<String> args) {
+        if (args.size() != 2) {
+            return FtpResponse.error(501, "Usage: SITE RMTREE <directory>");
+        }
+
+        Path dir;
+        try {
+            dir = PathResolver.resolve(session, args.get(1));
+        } catch (SecurityException e) {
+            return FtpResponse.error(550, "Access denied.");
+        }
+
+        if (AccessControl.isFixed(session, dir) || !AccessControl.can(session, dir, Permission.EXECUTE)) {
+            return FtpResponse.error(550, "Permission denied.");
+        }
+        if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+            return FtpResponse.error(550, "Not a directory.");
+        }
+
+        // Inside the home directory and /shared the answer is the same for every subdirectory
+        TreeDeleter deleter = new TreeDeleter(dir, AccessControl.sameBelow(session, dir)
+                ? null
+                : p -> AccessControl.can(session, p, Permission.EXECUTE));
+        session.clearTransferAbort();
+        session.sendResponse(FtpResponse.ok(150, "Removing " + args.get(1) + "."));
+        deleter.start();
+        try {
+            long nextProgress = System.nanoTime() + RMTREE_PROGRESS_MILLIS * 1_000_000;
+            while (!deleter.await(RMTREE_POLL_MILLIS)) {
+                if (!deleter.isAborted() && (session.abortSent() || session.isTransferAbortRequested())) {
+                    deleter.abort();
+                }
+                if (System.nanoTime() - nextProgress >= 0) {
+                    nextProgress += RMTREE_PROGRESS_MILLIS * 1_000_000;
+                    session.sendResponse(FtpResponse.ok(150, deleter.entries() + " entries removed."));
+                }
+            }
+        } catch (InterruptedException e) {
+            // Session killed from the admin API
+            deleter.abort();
+            Thread.currentThread().interrupt();
+        } finally {
+            // Aborted tasks stop at their next entry; the counters are final after that
+            deleter.join();
+            DiskUsage usage = session.getDiskUsage();
+            usage.add(usage.ownerOf(dir), -deleter.bytes(), -deleter.files(), -deleter.dirs());
+        }
+
+        String summary = deleter.files() + " files, " + deleter.dirs() + " directories";
+        ServerLogService.log(session.getUsername() + " << SITE RMTREE " + args.get(1) + " removed " + summary
+                + (deleter.kept() > 0 ? ", kept " + deleter.kept() : "") + (deleter.isAborted() ? " (aborted)" : ""));
+        if (deleter.isAborted()) {
+            return FtpResponse.error(426, "RMTREE aborted after removing " + summary + ".");
+        }
+        if (deleter.kept() > 0) {
+            return FtpResponse.error(550, "Removed " + summary + "; " + deleter.kept() + " entries could not be removed.");
+        }
+        return FtpResponse.ok(250, "Removed " + summary + ".");
+    }
+
+    private FtpResponse extract(FtpSession session, List<String> args, TreeArchiver.Format format) {
+        String verb = args.get(0).toUpperCase(Locale.ROOT);
+        if (args.size() != 2) {
+            return FtpResponse.error(501, "Usage: SITE " + verb + " <directory>");
+        }
+        if (session.getPassiveDataSocket() == null) {
+            return Responses.usePasvFirst();
+        }
+
+        Path target;
+        try {
+            target = PathResolver.resolve(session, args.get(1));
+        } catch (SecurityException e) {
+            return FtpResponse.error(550, "Access denied.");
+        }
+        if (AccessControl.isFixed(session, target) || !AccessControl.can(session, target, Permission.WRITE)) {
+            return FtpResponse.error(550, "Permission denied.");
+        }
+        if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            return FtpResponse.error(550, "Target already exists.");
+        }
+        if (!Files.isDirectory(target.getParent())) {
+            return FtpResponse.error(550, "Target directory not found.");
+        }
+        if (!session.getOverloadController().admitUpload()) {
+            return Responses.busyTryLater(session.getOverloadController().retryAfterSeconds());
+        }
+        DiskUsage usage = session.getDiskUsage();
+        String owner = usage.ownerOf(target);
+        if (usage.remaining(owner) <= 0) {
+            return Responses.storageExceeded();
+        }
+
+        // Inside the home directory and /shared the answer is the same for every subdirectory
+        Predicate<Path> mayWrite = AccessControl.sameBelow(session, target)
+                ? null
+                : relative -> AccessControl.can(session, target.resolve(relative), Permission.WRITE);
+        Path staging = target.resolveSibling("." + target.getFileName() + ".extract-" + Long.toHexString(System.nanoTime()));
+        try {
+            Files.createDirectory(staging);
+        } catch (IOException e) {
+            return FtpResponse.error(550, "Cannot create " + args.get(1) + ".");
+        }
+        usage.add(owner, 0, 0, 1);
+
+        session.clearTransferAbort();
+        session.setActiveTransferThread(Thread.currentThread());
+        session.sendResponse(Responses.ok(150, "Opening data connection for " + verb + " " + args.get(1) + "."));
+
+        SessionInfo info = session.getInfo();
+        long[] received = new long[1];
+        boolean inFlight = false;
+        boolean failed = false;
+        TreeExtractor.Result extracted = null;
+        FtpResponse reply = null;
+        try (Socket dataConnection = session.acceptDataConnection()) {
+            ServerMetrics.UPLOADS_IN_FLIGHT.incrementAndGet();
+            inFlight = true;
+            if (info != null) {
+                info.beginTransfer(getCommandName(), verb + " " + args.get(1), -1);
+            }
+            InputStream socketIn = dataConnection.getInputStream();
+            RateLimiter limiter = session.getUploadRateLimiter();
+            if (limiter != null) {
+                socketIn = new ThrottledInputStream(socketIn, limiter);
+            }
+            InputStream counted = new FilterInputStream(socketIn) {
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n = in.read(b, off, len);
+                    if (n > 0) {
+                        session.markFirstDataByte();
+                        session.markDataActivity();
+                        ServerMetrics.BYTES_UPLOADED.add(n);
+                        if (info != null) {
+                            info.onTransferBytes(n, true);
+                        }
+                        received[0] += n;
+                    }
+                    return n;
+                }
+            };
+            extracted = TreeExtractor.fromSystemProperties(format).extract(counted, staging, mayWrite,
+                    (bytes, files, dirs) -> usage.add(owner, bytes, files, dirs) >= 0 || bytes <= 0,
+                    () -> {
+                        if (!session.isTransferAbortRequested() && session.abortSent()) {
+                            session.requestTransferAbort();
+                        }
+                        return session.isTransferAbortRequested();
+                    });
+            // Whatever follows the archive (zip comment, tar padding to a record) is read, not left unread
+            counted.transferTo(OutputStream.nullOutputStream());
+
+            // Published as a whole; rename() would also replace an empty directory made meanwhile
+            if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+                reply = FtpResponse.error(550, "Target already exists.");
+            } else {
+                Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+                session.getStatsService().onUpload(session.getUsername(), received[0]);
+            }
+        } catch (TreeExtractor.RejectedException e) {
+            failed = true;
+            reply = switch (e.reason()) {
+                case QUOTA -> Responses.storageExceeded();
+                case PERMISSION -> FtpResponse.error(550, e.getMessage() + ".");
+                case NAME -> FtpResponse.error(553, e.getMessage() + ".");
+                case LIMIT -> FtpResponse.error(552, e.getMessage() + ".");
+            };
+        } catch (SocketTimeoutException e) {
+            failed = true;
+        } catch (IOException e) {
+            failed = !inFlight || !(clientWentAway(e) || session.isTransferAbortRequested());
+            if (failed && inFlight) {
+                reply = FtpResponse.error(451, verb + " failed: " + e.getMessage() + ".");
+            }
+        } finally {
+            if (inFlight) {
+                ServerMetrics.UPLOADS_IN_FLIGHT.decrementAndGet();
+                if (info != null) {
+                    info.endTransfer();
+                }
+            }
+            session.setActiveDataConnection(null);
+            session.clearActiveTransferThread(Thread.currentThread());
+            // An ABOR seen between entries interrupted this thread, which goes on with the next command
+            Thread.interrupted();
+            try {
+                session.closePassiveDataSocket();
+            } catch (IOException ignored) {}
+
+            boolean published = !Files.exists(staging, LinkOption.NOFOLLOW_LINKS);
+            if (!published) {
+                // Everything extracted so far goes, and with it what was charged for it
+                TreeDeleter deleter = new TreeDeleter(staging, null);
+                deleter.start();
+                deleter.join();
+                usage.add(owner, -deleter.bytes(), -deleter.files(), -deleter.dirs());
+                extracted = null;
+            }
+            logTransfer(session, verb + " " + args.get(1), target, SqliteTransferRepository.UP, received[0],
+                    transferOutcome(session, published, failed));
+        }
+
+        if (extracted == null) {
+            return reply != null ? reply : Responses.connectionClosedTransferAborted();
+        }
+        ServerLogService.log(session.getUsername() + " << SITE " + verb + " " + args.get(1) + " extracted "
+                + extracted.files() + " files, " + extracted.dirs() + " directories, bytes=" + extracted.bytes());
+        return FtpResponse.ok(226, "Extracted " + extracted.files() + " files, " + extracted.dirs() + " directories.");
+    }
+
+    /**
+     * Copies into a hidden temporary file next to {@code target} and renames it into place, so
+     * that the target never shows a partial copy. FileChannel.transferTo between two files stays
+     * in the kernel (sendfile/copy_file_range), no data passes through the heap.
+     */
+    static long copyFile(Path source, Path target) throws IOException {
+        Path tmp = target.resolveSibling("." + target.getFileName() + ".copy-" + Long.toHexString(System.nanoTime()));
+        try {
+            long position = 0;
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long size = in.size();
+                while (position < size) {
+                    long n = in.transferTo(position, Math.min(COPY_CHUNK, size - position), out);
+                    if (n <= 0) break; // truncated meanwhile
+                    position += n;
+                }
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return position;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Splits on spaces; a double-quoted part is one argument and may contain spaces. */
+    static List<String> splitArgs(String argument) {
+        List<String> args = new ArrayList<>();
+        if (argument == null) return args;
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        boolean any = false;
+        for (int i = 0; i < argument.length(); i++) {
+            char c = argument.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                any = true;
+            } else if (c == ' ' && !quoted) {
+                if (any) {
+                    args.add(current.toString());
+                    current.setLength(0);
+                    any = false;
+                }
+            } else {
+                current.append(c);
+                any = true;
+            }
+        }
+        if (any) {
+            args.add(current.toString());
+        }
+        return args;
+    }
+
+    @Override
+    protected FtpResponse notAllowed() {
+        return FtpResponse.needLogin();
+    }
+}
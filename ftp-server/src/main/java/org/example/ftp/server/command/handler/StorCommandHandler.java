@@ -4,8 +4,12 @@ import org.example.ftp.common.protocol.FtpResponse;
 import org.example.ftp.common.protocol.Responses;
 import org.example.ftp.server.auth.Permission;
 import org.example.ftp.server.fs.AccessControl;
+import org.example.ftp.server.fs.DiskUsage;
 import org.example.ftp.server.fs.PathResolver;
+import org.example.ftp.server.metrics.ServerMetrics;
 import org.example.ftp.server.session.FtpSession;
+import org.example.ftp.server.session.SessionInfo;
+import org.example.ftp.server.stats.db.SqliteTransferRepository;
 import org.example.ftp.server.transfer.RateLimiter;
 import org.example.ftp.server.transfer.ThrottledInputStream;
 
@@ -51,9 +55,24 @@ public class StorCommandHandler extends AbstractCommandHandler {
             return Responses.permissionDenied();
         }
 
+        // Running transfers continue; only new uploads are turned away while overloaded
+        if (!session.getOverloadController().admitUpload()) {
+            return Responses.busyTryLater(session.getOverloadController().retryAfterSeconds());
+        }
+
+        // O(1) quota check; the upload replaces what is there, so an overwrite may use that space
+        DiskUsage usage = session.getDiskUsage();
+        String owner = usage.ownerOf(target);
+        long replaced = owner != null && Files.isRegularFile(target) ? sizeOrZero(target) : -1;
+        if (usage.remaining(owner) <= -Math.max(0, replaced)) {
+            return Responses.storageExceeded();
+        }
+
         try {
             if (target.getParent() != null) {
+                int created = DiskUsage.missingDirs(target.getParent());
                 Files.createDirectories(target.getParent());
+                usage.add(owner, 0, 0, created);
             }
 
             // Отправляем ответ 150 ДО вызова accept(), чтобы клиент знал, что нужно подключиться
@@ -68,18 +87,25 @@ public class StorCommandHandler extends AbstractCommandHandler {
 
         boolean transferCompleted = false;
         boolean wasAborted = false;
+        boolean failed = false;
+        boolean overQuota = false;
         boolean eofReceived = false; // Отслеживаем, был ли получен EOF (успешное завершение передачи)
         OutputStream fileOutputStream = null;
         Socket activeDataConn = null;
+        boolean opened = false;
         long bytes = 0;
+        SessionInfo info = session.getInfo();
         
         try (
-                Socket dataConnection = session.getPassiveDataSocket().accept();
+                Socket dataConnection = session.acceptDataConnection();
                 InputStream rawIn = dataConnection.getInputStream();
                 InputStream in = wrapInputWithLimiter(session, rawIn)
         ) {
             activeDataConn = dataConnection;
-            session.setActiveDataConnection(dataConnection);
+            ServerMetrics.UPLOADS_IN_FLIGHT.incrementAndGet();
+            if (info != null) {
+                info.beginTransfer(getCommandName(), argument, -1);
+            }
 
             // Создаем поток файла отдельно, чтобы иметь контроль над его закрытием
             fileOutputStream = Files.newOutputStream(
@@ -87,6 +113,9 @@ public class StorCommandHandler extends AbstractCommandHandler {
                     StandardOpenOption.CREATE,
                     StandardOpenOption.TRUNCATE_EXISTING
             );
+            // Truncated (or created): from here on the file is charged as it grows
+            usage.add(owner, -Math.max(0, replaced), replaced < 0 ? 1 : 0, 0);
+            opened = true;
             // Устанавливаем короткий таймаут на сокет для частой проверки состояния
             dataConnection.setSoTimeout(50); // 50мс таймаут для частой проверки состояния
             // Используем буферизованное чтение/запись вместо transferTo для правильной работы rate limiting
@@ -130,8 +159,20 @@ public class StorCommandHandler extends AbstractCommandHandler {
                         continue;
                     }
                     
+                    session.markFirstDataByte();
+                    session.markDataActivity();
                     fileOutputStream.write(buffer, 0, bytesRead);
+                    ServerMetrics.BYTES_UPLOADED.add(bytesRead);
+                    if (info != null) {
+                        info.onTransferBytes(bytesRead, true);
+                    }
                     bytes += bytesRead;
+                    if (usage.add(owner, bytesRead, 0, 0) < 0) {
+                        overQuota = true;
+                        wasAborted = true;
+                        failed = true;
+                        break;
+                    }
                 }
             } catch (IOException e) {
                 // Если соединение закрыто клиентом (отмена), это нормально
@@ -160,6 +201,7 @@ public class StorCommandHandler extends AbstractCommandHandler {
             // Client didn't open data connection in time
             wasAborted = true;
             transferCompleted = false;
+            failed = true;
         } catch (IOException e) {
             // Если EOF был получен (передача завершена успешно), игнорируем ошибки закрытия соединения
             if (eofReceived && transferCompleted) {
@@ -181,11 +223,16 @@ public class StorCommandHandler extends AbstractCommandHandler {
                 } else {
                     wasAborted = true;
                     transferCompleted = false;
+                    failed = true;
                 }
             }
         } finally {
             // Clear active data connection reference
             if (activeDataConn != null) {
+                ServerMetrics.UPLOADS_IN_FLIGHT.decrementAndGet();
+                if (info != null) {
+                    info.endTransfer();
+                }
                 session.clearActiveDataConnection(activeDataConn);
             }
             session.clearActiveTransferThread(Thread.currentThread());
@@ -207,9 +254,17 @@ public class StorCommandHandler extends AbstractCommandHandler {
             // Удаляем файл если передача была прервана (не блокируем поток на секунды)
             if (!transferCompleted || wasAborted) {
                 deletePartialFileAsync(target);
+                if (opened) {
+                    usage.add(owner, -bytes, -1, 0);
+                }
             }
+            logTransfer(session, argument, target, SqliteTransferRepository.UP, bytes,
+                    transferOutcome(session, transferCompleted && !wasAborted, failed));
         }
 
+        if (overQuota) {
+            return Responses.storageExceeded();
+        }
         if (wasAborted || !transferCompleted) {
             return Responses.connectionClosedTransferAborted();
         }
@@ -217,6 +272,14 @@ public class StorCommandHandler extends AbstractCommandHandler {
         return Responses.transferComplete();
     }
 
+    private static long sizeOrZero(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
     private InputStream wrapInputWithLimiter(FtpSession session, InputStream in) {
         // Upload limiter
         RateLimiter limiter = session.getUploadRateLimiter();
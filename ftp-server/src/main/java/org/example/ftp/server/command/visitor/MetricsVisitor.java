@@ -1,6 +1,7 @@
 package org.example.ftp.server.command.visitor;
 
 import org.example.ftp.server.command.handler.AbstractCommandHandler;
+import org.example.ftp.server.metrics.LatencyHistogram;
 
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -12,19 +13,78 @@ public class MetricsVisitor implements CommandVisitor {
 
     private static final ConcurrentHashMap<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
 
+    // Per-command timings, recorded by AbstractCommandHandler.handle():
+    // LATENCY = whole command (incl. data transfer), TTFB = command start -> first data byte.
+    private static final ConcurrentHashMap<String, LatencyHistogram> LATENCY = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, LatencyHistogram> TTFB = new ConcurrentHashMap<>();
+
+    // Live read-only views for exporters that must not copy on every scrape
+    private static final Map<String, LongAdder> COUNTERS_VIEW = Collections.unmodifiableMap(COUNTERS);
+    private static final Map<String, LatencyHistogram> LATENCY_VIEW = Collections.unmodifiableMap(LATENCY);
+    private static final Map<String, LatencyHistogram> TTFB_VIEW = Collections.unmodifiableMap(TTFB);
+
     @Override
     public void visit(AbstractCommandHandler handler) {
         String key = handler.getCommandName();
         COUNTERS.computeIfAbsent(key, k -> new LongAdder()).increment();
     }
 
+    public static void recordLatency(String command, long nanos) {
+        histogram(LATENCY, command).recordNanos(nanos);
+    }
+
+    public static void recordTimeToFirstByte(String command, long nanos) {
+        histogram(TTFB, command).recordNanos(nanos);
+    }
+
+    private static LatencyHistogram histogram(ConcurrentHashMap<String, LatencyHistogram> map, String command) {
+        LatencyHistogram h = map.get(command);
+        return h != null ? h : map.computeIfAbsent(command, k -> new LatencyHistogram());
+    }
+
     public static Map<String, Long> snapshot() {
         Map<String, Long> out = new LinkedHashMap<>();
         COUNTERS.keySet().stream().sorted().forEach(cmd -> out.put(cmd, COUNTERS.get(cmd).sum()));
         return Collections.unmodifiableMap(out);
     }
 
+    /**
+     * @param window true = only what was recorded since the previous windowed read (reset-on-read)
+     */
+    public static Map<String, LatencyHistogram.Snapshot> latencySnapshot(boolean window) {
+        return snapshotOf(LATENCY, window);
+    }
+
+    public static Map<String, LatencyHistogram.Snapshot> timeToFirstByteSnapshot(boolean window) {
+        return snapshotOf(TTFB, window);
+    }
+
+    private static Map<String, LatencyHistogram.Snapshot> snapshotOf(
+            ConcurrentHashMap<String, LatencyHistogram> map, boolean window) {
+        Map<String, LatencyHistogram.Snapshot> out = new LinkedHashMap<>();
+        map.keySet().stream().sorted().forEach(cmd -> {
+            LatencyHistogram h = map.get(cmd);
+            out.put(cmd, window ? h.snapshotWindow() : h.snapshot());
+        });
+        return Collections.unmodifiableMap(out);
+    }
+
+    public static Map<String, LongAdder> counters() {
+        return COUNTERS_VIEW;
+    }
+
+    public static Map<String, LatencyHistogram> latencyHistograms() {
+        return LATENCY_VIEW;
+    }
+
+    public static Map<String, LatencyHistogram> timeToFirstByteHistograms() {
+        return TTFB_VIEW;
+    }
+
     public static void reset() {
         COUNTERS.clear();
+        // Histograms are reset in place: handlers may be recording into them right now
+        LATENCY.values().forEach(LatencyHistogram::reset);
+        TTFB.values().forEach(LatencyHistogram::reset);
     }
-}
\ No newline at end of file
+}
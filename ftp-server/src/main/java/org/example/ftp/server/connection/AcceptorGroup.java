@@ -0,0 +1,153 @@
+package org.example.ftp.server.connection;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The FTP control listener: one or more threads blocked in {@code accept()}.
+ *
+ * With {@code ftp.acceptors > 1} and SO_REUSEPORT available (Linux, macOS) every acceptor gets
+ * its own listening socket on the same port and the kernel spreads incoming connections over
+ * them, so a reconnect storm is not serialized behind one accept queue. Without SO_REUSEPORT
+ * (Windows) the acceptors share one socket, which still keeps a slow thread start from holding
+ * up the next accept.
+ *
+ * Tunables:
+ * <ul>
+ *   <li>{@code ftp.acceptors} (default 1);</li>
+ *   <li>{@code ftp.acceptBacklog} (default 1024, capped by the OS, e.g. net.core.somaxconn) per socket;</li>
+ *   <li>{@code ftp.reusePort} (default true) to force the shared-socket mode;</li>
+ *   <li>{@code ftp.tcpNoDelay} (default true) and {@code ftp.keepAlive} (default true), applied
+ *       to every accepted control connection.</li>
+ * </ul>
+ */
+public final class AcceptorGroup implements Closeable {
+
+    public record Options(int acceptors, int backlog, boolean reusePort, boolean tcpNoDelay, boolean keepAlive) {
+
+        public static Options fromSystemProperties() {
+            return new Options(
+                    Math.max(1, Integer.getInteger("ftp.acceptors", 1)),
+                    Math.max(1, Integer.getInteger("ftp.acceptBacklog", 1024)),
+                    Boolean.parseBoolean(System.getProperty("ftp.reusePort", "true")),
+                    Boolean.parseBoolean(System.getProperty("ftp.tcpNoDelay", "true")),
+                    Boolean.parseBoolean(System.getProperty("ftp.keepAlive", "true"))
+            );
+        }
+    }
+
+    private final Options options;
+    private final List<ServerSocket> sockets;
+    private volatile boolean closed;
+
+    private AcceptorGroup(Options options, List<ServerSocket> sockets) {
+        this.options = options;
+        this.sockets = sockets;
+    }
+
+    /** Binds all listening sockets (port 0 = any free port, shared by all of them). */
+    public static AcceptorGroup bind(int port, Options options) throws IOException {
+        List<ServerSocket> sockets = new ArrayList<>();
+        try {
+            ServerSocket first = new ServerSocket();
+            sockets.add(first);
+            boolean reusePort = options.acceptors() > 1 && options.reusePort()
+                    && first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+            if (reusePort) {
+                first.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            first.bind(new InetSocketAddress(port), options.backlog());
+
+            if (reusePort) {
+                for (int i = 1; i < options.acceptors(); i++) {
+                    ServerSocket s = new ServerSocket();
+                    sockets.add(s);
+                    s.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                    s.bind(new InetSocketAddress(first.getLocalPort()), options.backlog());
+                }
+            }
+        } catch (IOException e) {
+            for (ServerSocket s : sockets) {
+                try {
+                    s.close();
+                } catch (IOException ignored) {
+                }
+            }
+            throw e;
+        }
+        return new AcceptorGroup(options, sockets);
+    }
+
+    public int getLocalPort() {
+        return sockets.get(0).getLocalPort();
+    }
+
+    /** Human-readable mode for the startup log. */
+    public String describe() {
+        if (options.acceptors() == 1) {
+            return "1 acceptor, backlog " + options.backlog();
+        }
+        String mode = sockets.size() > 1 ? "SO_REUSEPORT sockets" : "threads on one socket";
+        return options.acceptors() + " acceptors (" + mode + "), backlog " + options.backlog();
+    }
+
+    /**
+     * Accepts until {@link #close()}: the calling thread is the first acceptor, the others are
+     * started here. Each accepted socket gets the TCP options and is handed to {@code handler}
+     * on the accepting thread, so the handler must return quickly.
+     */
+    public void run(Consumer<Socket> handler) {
+        for (int i = 1; i < options.acceptors(); i++) {
+            ServerSocket s = sockets.get(i % sockets.size());
+            Thread t = new Thread(() -> acceptLoop(s, handler), "ftp-acceptor-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+        acceptLoop(sockets.get(0), handler);
+    }
+
+    private void acceptLoop(ServerSocket serverSocket, Consumer<Socket> handler) {
+        while (!closed) {
+            Socket client;
+            try {
+                client = serverSocket.accept();
+            } catch (IOException e) {
+                if (closed || serverSocket.isClosed()) return;
+                // e.g. EMFILE during a storm: keep listening instead of taking the server down
+                System.out.println("Accept failed: " + e.getMessage());
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+            try {
+                client.setTcpNoDelay(options.tcpNoDelay());
+                client.setKeepAlive(options.keepAlive());
+            } catch (IOException e) {
+                // Peer already gone; the session will notice on its first write
+            }
+            handler.accept(client);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (ServerSocket s : sockets) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
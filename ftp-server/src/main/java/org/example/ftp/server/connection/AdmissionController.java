@@ -0,0 +1,218 @@
+package org.example.ftp.server.connection;
+
+import org.example.ftp.server.metrics.ServerMetrics;
+
+import java.net.InetAddress;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits applied right after {@code accept()}, before a connection gets a thread or a session
+ * ({@link ConnectionLimiter} only counts logged-in users, from PASS on).
+ *
+ * <ul>
+ *   <li>{@code ftp.preAuth.max} (default 256): connections that have not logged in yet;</li>
+ *   <li>{@code ftp.perIp.max} (default 32): open connections per remote address;</li>
+ *   <li>{@code ftp.perIp.rate} (default 20, burst {@code 2 * rate}): new connections per second
+ *       per remote address;</li>
+ *   <li>{@code ftp.loginTimeoutMs} (default 30000): time a connection gets to log in.</li>
+ * </ul>
+ * 0 disables a limit. Rejections and login timeouts are counted in {@link ServerMetrics}.
+ */
+public final class AdmissionController {
+
+    public enum Rejection {
+        PRE_AUTH_FULL("Too many unauthenticated connections, try again later."),
+        PER_IP_CONNECTIONS("Too many connections from your address."),
+        PER_IP_RATE("Connecting too fast, try again later.");
+
+        private final String message;
+
+        Rejection(String message) {
+            this.message = message;
+        }
+
+        public String message() {
+            return message;
+        }
+    }
+
+    // Idle per-IP entries are swept every this many admissions
+    private static final int SWEEP_EVERY = 4096;
+
+    private final int maxPreAuth;
+    private final int maxPerIp;
+    private final double ratePerSecond;
+    private final double burst;
+    private final long loginTimeoutMillis;
+
+    private final AtomicInteger preAuth = ServerMetrics.PRE_AUTH_CONNECTIONS;
+    private final Map<InetAddress, IpState> perIp = new ConcurrentHashMap<>();
+    private final AtomicInteger sinceSweep = new AtomicInteger();
+
+    public AdmissionController(int maxPreAuth, int maxPerIp, double ratePerSecond, long loginTimeoutMillis) {
+        this.maxPreAuth = maxPreAuth;
+        this.maxPerIp = maxPerIp;
+        this.ratePerSecond = ratePerSecond;
+        this.burst = Math.max(1, 2 * ratePerSecond);
+        this.loginTimeoutMillis = loginTimeoutMillis;
+    }
+
+    public static AdmissionController fromSystemProperties() {
+        return new AdmissionController(
+                Integer.getInteger("ftp.preAuth.max", 256),
+                Integer.getInteger("ftp.perIp.max", 32),
+                Double.parseDouble(System.getProperty("ftp.perIp.rate", "20")),
+                Long.getLong("ftp.loginTimeoutMs", 30_000L)
+        );
+    }
+
+    /** 0 = no login deadline. */
+    public long getLoginTimeoutMillis() {
+        return loginTimeoutMillis;
+    }
+
+    public int getPreAuthConnections() {
+        return preAuth.get();
+    }
+
+    /**
+     * Admits a new connection or says why not. An admitted connection must be given back with
+     * {@link Ticket#close()}.
+     */
+    public Ticket admit(InetAddress address) {
+        if (sinceSweep.incrementAndGet() >= SWEEP_EVERY) {
+            sinceSweep.set(0);
+            sweep();
+        }
+
+        long now = System.nanoTime();
+        IpState ip;
+        Rejection rejection;
+        while (true) {
+            ip = perIp.computeIfAbsent(address, a -> new IpState(burst, now));
+            synchronized (ip) {
+                if (ip.removed) continue; // lost a race with sweep(): take the fresh entry
+                rejection = ip.tryOpen(now);
+            }
+            break;
+        }
+        if (rejection == null && preAuth.incrementAndGet() > maxPreAuth && maxPreAuth > 0) {
+            preAuth.decrementAndGet();
+            synchronized (ip) {
+                ip.undoOpen();
+            }
+            rejection = Rejection.PRE_AUTH_FULL;
+        }
+
+        if (rejection == null) {
+            return new Ticket(this, ip, null);
+        }
+        switch (rejection) {
+            case PRE_AUTH_FULL -> ServerMetrics.REJECTED_PRE_AUTH.increment();
+            case PER_IP_CONNECTIONS -> ServerMetrics.REJECTED_PER_IP.increment();
+            case PER_IP_RATE -> ServerMetrics.REJECTED_RATE.increment();
+        }
+        return new Ticket(this, ip, rejection);
+    }
+
+    private void sweep() {
+        long now = System.nanoTime();
+        for (Iterator<IpState> it = perIp.values().iterator(); it.hasNext(); ) {
+            IpState s = it.next();
+            synchronized (s) {
+                if (s.connections == 0 && s.refill(now) >= burst) {
+                    s.removed = true;
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /** Connection count and token bucket of one remote address. */
+    private final class IpState {
+        int connections;
+        boolean removed;
+        double tokens;
+        long lastNanos;
+
+        IpState(double tokens, long now) {
+            this.tokens = tokens;
+            this.lastNanos = now;
+        }
+
+        double refill(long now) {
+            if (ratePerSecond > 0) {
+                tokens = Math.min(burst, tokens + (now - lastNanos) / 1e9 * ratePerSecond);
+            }
+            lastNanos = now;
+            return tokens;
+        }
+
+        Rejection tryOpen(long now) {
+            if (maxPerIp > 0 && connections >= maxPerIp) {
+                return Rejection.PER_IP_CONNECTIONS;
+            }
+            if (ratePerSecond > 0) {
+                if (refill(now) < 1) return Rejection.PER_IP_RATE;
+                tokens -= 1;
+            }
+            connections++;
+            return null;
+        }
+
+        // A connection tryOpen() let through was turned away later: give back its slot and its token
+        void undoOpen() {
+            connections--;
+            if (ratePerSecond > 0) {
+                tokens = Math.min(burst, tokens + 1);
+            }
+        }
+    }
+
+    /** One accepted connection's admission; closing it twice is harmless. */
+    public static final class Ticket implements AutoCloseable {
+        private final AdmissionController owner;
+        private final IpState ip;
+        private final Rejection rejection;
+        private boolean preAuthHeld;
+        private boolean closed;
+
+        private Ticket(AdmissionController owner, IpState ip, Rejection rejection) {
+            this.owner = owner;
+            this.ip = ip;
+            this.rejection = rejection;
+            this.preAuthHeld = rejection == null;
+            this.closed = rejection != null;
+        }
+
+        public boolean isAdmitted() {
+            return rejection == null;
+        }
+
+        /** Why the connection was turned away, or null if it was admitted. */
+        public Rejection rejection() {
+            return rejection;
+        }
+
+        /** The session logged in: it no longer counts against {@code ftp.preAuth.max}. */
+        public synchronized void authenticated() {
+            if (preAuthHeld) {
+                preAuthHeld = false;
+                owner.preAuth.decrementAndGet();
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed) return;
+            closed = true;
+            authenticated();
+            synchronized (ip) {
+                ip.connections--;
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package org.example.ftp.server.connection;
+
+import org.example.ftp.common.protocol.FtpResponse;
+import org.example.ftp.server.metrics.ServerMetrics;
+import org.example.ftp.server.session.FtpSession;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closes what a silent client would otherwise hold forever: its thread, its
+ * {@link ConnectionLimiter} slot, its passive listener and its data connection.
+ *
+ * <ul>
+ *   <li>{@code ftp.idleTimeoutMs} (default 300000): no command for this long (transfers in progress
+ *       do not count as idle) gets a 421 and the control connection is closed; the session's
+ *       read loop then releases everything else (5 s later the socket is closed regardless);</li>
+ *   <li>{@code ftp.loginTimeoutMs} (see {@link AdmissionController}): same, for not logging in;</li>
+ *   <li>{@code ftp.data.connectTimeoutMs} (default {@code ftp.data.timeoutMs}, 15000): a PASV
+ *       listener nobody connected to is closed, freeing its port;</li>
+ *   <li>{@code ftp.data.stallTimeoutMs} (default 60000): a data connection that moved no bytes
+ *       for this long is closed; the transfer fails with the usual 426.</li>
+ * </ul>
+ * 0 disables a timeout. All sessions share one {@link TimerWheel} ({@code ftp.reaper.tickMs},
+ * default 250). Sessions only write volatile stamps; each one is looked at on its earliest
+ * deadline, and at least every quarter of the shortest timeout so that a PASV issued after the
+ * last look is noticed in time (a timeout fires at most 25% late).
+ */
+public final class IdleReaper implements AutoCloseable {
+
+    private static final int SLOTS = 512;
+    private static final long CLOSE_GRACE_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final long idleNanos;
+    private final long loginNanos;
+    private final long dataConnectNanos;
+    private final long dataStallNanos;
+    private final long recheckNanos;
+    private final TimerWheel wheel;
+
+    public IdleReaper(long idleMillis, long loginMillis, long dataConnectMillis, long dataStallMillis, long tickMillis) {
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, idleMillis));
+        this.loginNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, loginMillis));
+        this.dataConnectNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, dataConnectMillis));
+        this.dataStallNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, dataStallMillis));
+        long shortest = Long.MAX_VALUE;
+        for (long t : new long[]{idleNanos, loginNanos, dataConnectNanos, dataStallNanos}) {
+            if (t > 0) shortest = Math.min(shortest, t);
+        }
+        this.recheckNanos = shortest == Long.MAX_VALUE ? 0 : Math.max(TimeUnit.MILLISECONDS.toNanos(tickMillis), shortest / 4);
+        this.wheel = new TimerWheel("idle-reaper", tickMillis, SLOTS);
+    }
+
+    public static IdleReaper fromSystemProperties(long loginTimeoutMillis) {
+        return new IdleReaper(
+                Long.getLong("ftp.idleTimeoutMs", 300_000L),
+                loginTimeoutMillis,
+                Long.getLong("ftp.data.connectTimeoutMs", Integer.getInteger("ftp.data.timeoutMs", 15_000)),
+                Long.getLong("ftp.data.stallTimeoutMs", 60_000L),
+                Math.max(10, Long.getLong("ftp.reaper.tickMs", 250L))
+        );
+    }
+
+    public void start() {
+        if (recheckNanos > 0) {
+            wheel.start();
+        }
+    }
+
+    /** Human-readable settings for the startup log. */
+    public String describe() {
+        return "idle " + seconds(idleNanos) + ", login " + seconds(loginNanos)
+                + ", data connect " + seconds(dataConnectNanos) + ", data stall " + seconds(dataStallNanos);
+    }
+
+    private static String seconds(long nanos) {
+        return nanos == 0 ? "off" : TimeUnit.NANOSECONDS.toMillis(nanos) / 1000.0 + " s";
+    }
+
+    /**
+     * Starts watching a session. {@link Watch#cancel()} it when the session ends (the wheel drops
+     * a cancelled watch the next time it comes up).
+     */
+    public Watch watch(Socket control, FtpSession session) {
+        Watch w = new Watch(control, session, System.nanoTime());
+        if (recheckNanos > 0) {
+            wheel.schedule(w, w.started + recheckNanos);
+        }
+        return w;
+    }
+
+    @Override
+    public void close() {
+        wheel.close();
+    }
+
+    public final class Watch implements TimerWheel.Task {
+        private final Socket control;
+        private final FtpSession session;
+        private final long started;
+        private volatile boolean cancelled;
+        // Wheel thread only
+        private long expiredAt;
+
+        private Watch(Socket control, FtpSession session, long started) {
+            this.control = control;
+            this.session = session;
+            this.started = started;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public long run(long now) {
+            if (cancelled || control.isClosed()) return TimerWheel.DONE;
+            if (expiredAt != 0) {
+                // The session thread did not get out on its own (peer not reading our 421, or a
+                // platform where shutdownInput does not wake a blocked read): pull the plug
+                if (now - expiredAt < CLOSE_GRACE_NANOS) return expiredAt + CLOSE_GRACE_NANOS;
+                closeQuietly(control);
+                return TimerWheel.DONE;
+            }
+            long next = now + recheckNanos;
+
+            if (loginNanos > 0 && !session.isAuthenticated()) {
+                long deadline = started + loginNanos;
+                if (now - deadline >= 0) {
+                    ServerMetrics.LOGIN_TIMEOUTS.increment();
+                    return expire(now, "Login timeout, closing control connection.");
+                }
+                next = Math.min(next, deadline);
+            }
+
+            // A running command (e.g. a transfer) is not idleness; data stall covers a hung one
+            if (idleNanos > 0 && !session.isCommandRunning()) {
+                long deadline = session.getLastCommandNanos() + idleNanos;
+                if (now - deadline >= 0) {
+                    ServerMetrics.IDLE_TIMEOUTS.increment();
+                    return expire(now, "Idle timeout (" + TimeUnit.NANOSECONDS.toSeconds(idleNanos)
+                            + " seconds), closing control connection.");
+                }
+                next = Math.min(next, deadline);
+            }
+
+            ServerSocket passive = session.getPassiveDataSocket();
+            if (dataConnectNanos > 0 && passive != null && !passive.isClosed() && !session.isDataConnected()) {
+                long deadline = session.getPassiveOpenedNanos() + dataConnectNanos;
+                if (now - deadline >= 0) {
+                    // Not nulled: the session thread may be about to accept() on it and gets a clean error
+                    ServerMetrics.DATA_CONNECT_TIMEOUTS.increment();
+                    closeQuietly(passive);
+                } else {
+                    next = Math.min(next, deadline);
+                }
+            }
+
+            Socket data = session.getActiveDataConnection();
+            if (dataStallNanos > 0 && data != null && !data.isClosed()) {
+                long deadline = session.getLastDataNanos() + dataStallNanos;
+                if (now - deadline >= 0) {
+                    ServerMetrics.DATA_STALL_TIMEOUTS.increment();
+                    closeQuietly(data);
+                } else {
+                    next = Math.min(next, deadline);
+                }
+            }
+            return next;
+        }
+
+        /*
+         * Never writes from the wheel thread (a peer that stopped reading would block it): the
+         * session gets the reply to send, and shutting down input makes its blocked read return
+         * EOF, so it answers 421 and leaves through its own finally.
+         */
+        private long expire(long now, String message) {
+            session.expireWith(FtpResponse.error(421, message));
+            try {
+                control.shutdownInput();
+            } catch (IOException ignored) {
+            }
+            expiredAt = now;
+            return now + CLOSE_GRACE_NANOS;
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable c) {
+        try {
+            c.close();
+        } catch (Exception ignored) {
+        }
+    }
+}
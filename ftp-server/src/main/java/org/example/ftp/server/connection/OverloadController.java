@@ -0,0 +1,208 @@
+package org.example.ftp.server.connection;
+
+import org.example.ftp.server.command.visitor.MetricsVisitor;
+import org.example.ftp.server.metrics.LatencyHistogram;
+import org.example.ftp.server.metrics.ServerMetrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sheds new work (logins, uploads) while the server is overloaded, so the sessions and transfers
+ * already running keep their latency instead of everyone degrading together.
+ *
+ * Every interval it looks at what happened since the previous tick:
+ * <ul>
+ *   <li>control command latency (everything except data transfers and SITE/LOGS jobs):
+ *       overloaded if more than 1% took longer than {@code ftp.overload.commandP99Ms} (default
+ *       2000), i.e. p99 above it;</li>
+ *   <li>SQLite checkout-to-close time, same rule with {@code ftp.overload.dbP99Ms} (default 1000);</li>
+ *   <li>transfers in flight above {@code ftp.overload.maxTransfers} (default 512).</li>
+ * </ul>
+ * The admitted fraction of new PASS/STOR follows AIMD: halved on every overloaded tick (down to
+ * {@code ftp.overload.minAdmit}, default 0.05), plus 0.1 on every calm one. Rejected requests get
+ * a retry hint of roughly the time to full recovery. {@code ftp.overload.enabled=false} turns it off.
+ */
+public final class OverloadController {
+
+    public enum State { NORMAL, SHEDDING, RECOVERING, DISABLED }
+
+    private static final double SLOW_RATIO = 0.01;
+    // Fewer samples than this in a tick say nothing about the percentile
+    private static final long MIN_SAMPLES = 20;
+    private static final double DECREASE = 0.5;
+    private static final double INCREASE = 0.1;
+
+    /**
+     * Commands whose duration includes a data transfer or a long server-side job (SITE COPY,
+     * RMTREE, UNTAR; LOGS can stream): their latency is not control latency.
+     */
+    private static final Set<String> DATA_COMMANDS =
+            Set.of("RETR", "STOR", "APPE", "STOU", "LIST", "NLST", "MLSD", "SITE", "LOGS");
+
+    private final boolean enabled;
+    private final long commandThresholdMicros;
+    private final long dbThresholdMicros;
+    private final int maxTransfers;
+    private final long intervalMillis;
+    private final double minAdmit;
+
+    // Written by the tick thread only, read by handlers and /api/limits
+    private volatile double admitFraction = 1.0;
+    private volatile State state;
+    private volatile double commandSlowRatio;
+    private volatile double dbSlowRatio;
+    private volatile int transfersInFlight;
+
+    // Cumulative counts at the previous tick: {total, at or below threshold}
+    private final Map<String, long[]> lastCommand = new HashMap<>();
+    private final long[] lastDb = new long[2];
+    // Scratch arrays reused on every tick
+    private final long[] bound = new long[1];
+    private final long[] below = new long[1];
+    private final long[] delta = new long[2];
+
+    private ScheduledExecutorService ticker;
+
+    public OverloadController(boolean enabled, long commandP99Millis, long dbP99Millis, int maxTransfers,
+                              long intervalMillis, double minAdmit) {
+        this.enabled = enabled;
+        this.commandThresholdMicros = commandP99Millis * 1000;
+        this.dbThresholdMicros = dbP99Millis * 1000;
+        this.maxTransfers = maxTransfers;
+        this.intervalMillis = Math.max(100, intervalMillis);
+        this.minAdmit = Math.min(1, Math.max(0.01, minAdmit));
+        this.state = enabled ? State.NORMAL : State.DISABLED;
+    }
+
+    public static OverloadController fromSystemProperties() {
+        return new OverloadController(
+                Boolean.parseBoolean(System.getProperty("ftp.overload.enabled", "true")),
+                Long.getLong("ftp.overload.commandP99Ms", 2000),
+                Long.getLong("ftp.overload.dbP99Ms", 1000),
+                Integer.getInteger("ftp.overload.maxTransfers", 512),
+                Long.getLong("ftp.overload.intervalMs", 1000),
+                Double.parseDouble(System.getProperty("ftp.overload.minAdmit", "0.05"))
+        );
+    }
+
+    /** Never sheds anything (sessions built without a controller, benchmarks). */
+    public static OverloadController disabled() {
+        return new OverloadController(false, 0, 0, 0, 1000, 1);
+    }
+
+    public synchronized void start() {
+        if (!enabled || ticker != null) return;
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "overload-controller");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::tickSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** @return true if a new login may proceed */
+    public boolean admitLogin() {
+        if (admit()) return true;
+        ServerMetrics.SHED_LOGINS.increment();
+        return false;
+    }
+
+    /** @return true if a new upload may start */
+    public boolean admitUpload() {
+        if (admit()) return true;
+        ServerMetrics.SHED_UPLOADS.increment();
+        return false;
+    }
+
+    private boolean admit() {
+        double f = admitFraction;
+        return f >= 1.0 || ThreadLocalRandom.current().nextDouble() < f;
+    }
+
+    /** Seconds until the admitted fraction is back at 1 if the load stays down (at least 1). */
+    public int retryAfterSeconds() {
+        double ticks = Math.ceil((1.0 - admitFraction) / INCREASE);
+        return (int) Math.max(1, Math.ceil(ticks * intervalMillis / 1000.0));
+    }
+
+    public State getState() { return state; }
+
+    public double getAdmitFraction() { return admitFraction; }
+
+    public double getCommandSlowRatio() { return commandSlowRatio; }
+
+    public double getDbSlowRatio() { return dbSlowRatio; }
+
+    public int getTransfersInFlight() { return transfersInFlight; }
+
+    public long getCommandThresholdMillis() { return commandThresholdMicros / 1000; }
+
+    public long getDbThresholdMillis() { return dbThresholdMicros / 1000; }
+
+    public int getMaxTransfers() { return maxTransfers; }
+
+    private void tickSafely() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            // A failed tick must not cancel the schedule
+            System.out.println("Overload controller tick failed: " + e);
+        }
+    }
+
+    void tick() {
+        long slow = 0;
+        long total = 0;
+        for (Map.Entry<String, LatencyHistogram> e : MetricsVisitor.latencyHistograms().entrySet()) {
+            if (DATA_COMMANDS.contains(e.getKey())) continue;
+            long[] last = lastCommand.computeIfAbsent(e.getKey(), k -> new long[2]);
+            delta(e.getValue(), commandThresholdMicros, last);
+            total += delta[0];
+            slow += delta[0] - delta[1];
+        }
+        commandSlowRatio = total == 0 ? 0 : (double) slow / total;
+        boolean commandsSlow = total >= MIN_SAMPLES && commandSlowRatio > SLOW_RATIO;
+
+        delta(ServerMetrics.DB_QUERY, dbThresholdMicros, lastDb);
+        dbSlowRatio = delta[0] == 0 ? 0 : (double) (delta[0] - delta[1]) / delta[0];
+        boolean dbSlow = delta[0] >= MIN_SAMPLES && dbSlowRatio > SLOW_RATIO;
+
+        transfersInFlight = ServerMetrics.UPLOADS_IN_FLIGHT.get() + ServerMetrics.DOWNLOADS_IN_FLIGHT.get();
+        boolean busy = maxTransfers > 0 && transfersInFlight > maxTransfers;
+
+        double f = admitFraction;
+        State s;
+        if (commandsSlow || dbSlow || busy) {
+            f = Math.max(minAdmit, f * DECREASE);
+            s = State.SHEDDING;
+        } else {
+            f = Math.min(1.0, f + INCREASE);
+            s = f >= 1.0 ? State.NORMAL : State.RECOVERING;
+        }
+        if (s != state) {
+            System.out.printf("Overload controller: %s -> %s (admit %.2f, slow commands %.1f%%, slow DB %.1f%%, transfers %d)%n",
+                    state, s, f, commandSlowRatio * 100, dbSlowRatio * 100, transfersInFlight);
+        }
+        admitFraction = f;
+        state = s;
+    }
+
+    /** Sets {@code delta} to {samples since last tick, of which at or below threshold}; updates {@code last}. */
+    private void delta(LatencyHistogram h, long thresholdMicros, long[] last) {
+        bound[0] = thresholdMicros;
+        long count = h.cumulativeCounts(bound, below);
+        // A reset histogram (MetricsVisitor.reset) starts over from zero
+        long dTotal = count >= last[0] ? count - last[0] : count;
+        long dBelow = below[0] >= last[1] && count >= last[0] ? below[0] - last[1] : below[0];
+        last[0] = count;
+        last[1] = below[0];
+        delta[0] = dTotal;
+        delta[1] = Math.min(dTotal, dBelow);
+    }
+}
@@ -0,0 +1,121 @@
+package org.example.ftp.server.connection;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timer wheel: one thread and a ring of slots for any number of timeouts, instead of a
+ * timer (or a socket read timeout) per connection.
+ *
+ * A task sits in the slot of its deadline; when the wheel reaches that slot it runs the task,
+ * which returns its next deadline (or {@link #DONE}). Tasks are expected to look at their own
+ * activity stamps, so activity never touches the wheel: a task visited before its real deadline
+ * simply returns the later one and moves on ("lazy re-arm"). Deadlines further away than one
+ * turn of the wheel park the task in the last slot and are looked at again a turn later.
+ *
+ * Tasks run on the wheel thread and must not block.
+ */
+public final class TimerWheel implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface Task {
+        /**
+         * @param nowNanos current {@link System#nanoTime()}
+         * @return next deadline in {@link System#nanoTime()} terms, or {@link #DONE} to drop the task
+         */
+        long run(long nowNanos);
+    }
+
+    public static final long DONE = Long.MIN_VALUE;
+
+    private record Pending(Task task, long deadline) {}
+
+    private final long tickNanos;
+    private final ArrayDeque<Task>[] slots;
+    private final int mask;
+    private final long origin;
+    // Scheduled from other threads, placed into slots by the wheel thread only
+    private final Queue<Pending> incoming = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+
+    // Wheel thread only: the next tick to process (slot = tick & mask)
+    private long tick;
+    private volatile boolean closed;
+
+    /**
+     * @param tickMillis resolution; deadlines fire up to one tick late
+     * @param slots rounded up to a power of two; one turn = {@code tickMillis * slots}
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(String name, long tickMillis, int slots) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        int n = Integer.highestOneBit(Math.max(2, slots - 1)) << 1;
+        this.slots = new ArrayDeque[n];
+        for (int i = 0; i < n; i++) {
+            this.slots[i] = new ArrayDeque<>();
+        }
+        this.mask = n - 1;
+        this.origin = System.nanoTime();
+        this.thread = new Thread(this::loop, name);
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /** Thread-safe. The task first runs at the first tick at or after {@code deadlineNanos}. */
+    public void schedule(Task task, long deadlineNanos) {
+        incoming.add(new Pending(task, deadlineNanos));
+    }
+
+    private void loop() {
+        while (!closed) {
+            long due = origin + (tick + 1) * tickNanos;
+            long now;
+            while ((now = System.nanoTime()) < due) {
+                LockSupport.parkNanos(due - now);
+                if (closed) return;
+            }
+
+            Pending p;
+            while ((p = incoming.poll()) != null) {
+                place(p.task(), p.deadline());
+            }
+
+            ArrayDeque<Task> slot = slots[(int) (tick & mask)];
+            tick++;
+            Task task;
+            while ((task = slot.poll()) != null) {
+                long next;
+                try {
+                    next = task.run(now);
+                } catch (RuntimeException e) {
+                    // One broken task must not stop the wheel for everybody else
+                    System.out.println("Timer task failed: " + e);
+                    continue;
+                }
+                if (next != DONE) {
+                    place(task, next);
+                }
+            }
+        }
+    }
+
+    // Slot k runs at origin + (k + 1) * tick. Never into the slot being drained (tick - 1):
+    // at least the next one, at most one turn ahead
+    private void place(Task task, long deadline) {
+        long at = Math.floorDiv(deadline - origin + tickNanos - 1, tickNanos) - 1;
+        at = Math.max(tick, Math.min(at, tick + mask - 1));
+        slots[(int) (at & mask)].add(task);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+    }
+}
@@ -0,0 +1,21 @@
+package org.example.ftp.server.db;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated query.
+ *
+ * @param nextKey sort key of the last item, to continue after; null on the last page
+ */
+public record Page<T>(List<T> items, String nextKey) {
+
+    /** Cuts a {@code limit + 1} row result down to {@code limit} and derives the next key. */
+    public static <T> Page<T> of(List<T> rows, int limit, Function<T, String> key) {
+        if (rows.size() <= limit) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new Page<>(items, key.apply(items.get(limit - 1)));
+    }
+}
@@ -0,0 +1,269 @@
+package org.example.ftp.server.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Ordered, run-once schema migrations, recorded in {@code schema_version}.
+ *
+ * Everything runs on one connection in one transaction: a failing migration rolls the whole
+ * upgrade back and the server refuses to start instead of running on a half-migrated DB.
+ * Databases created before {@code schema_version} existed start at version 0; the column
+ * migrations check {@code PRAGMA table_info} first, so they apply cleanly whatever subset of
+ * the old ad-hoc ALTERs such a DB already went through.
+ *
+ * Append new migrations at the end with the next version number; never edit a released one.
+ */
+final class SchemaMigrations {
+
+    @FunctionalInterface
+    interface Step {
+        void apply(Statement st) throws SQLException;
+    }
+
+    record Migration(int version, String description, Step step) {}
+
+    static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "base schema", st -> st.executeUpdate("""
+                    CREATE TABLE IF NOT EXISTS users (
+                      id INTEGER PRIMARY KEY AUTOINCREMENT,
+                      username TEXT NOT NULL UNIQUE,
+                      password_hash TEXT NOT NULL,
+                      enabled INTEGER NOT NULL DEFAULT 1,
+                      rate_limit INTEGER,
+                      upload_speed INTEGER,
+                      download_speed INTEGER
+                    );
+
+                    CREATE TABLE IF NOT EXISTS permissions (
+                      user_id INTEGER PRIMARY KEY,
+                      r INTEGER NOT NULL DEFAULT 1,
+                      w INTEGER NOT NULL DEFAULT 1,
+                      e INTEGER NOT NULL DEFAULT 1,
+                      FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+                    );
+
+                    CREATE TABLE IF NOT EXISTS stats (
+                      user_id INTEGER PRIMARY KEY,
+                      logins INTEGER NOT NULL DEFAULT 0,
+                      bytes_uploaded INTEGER NOT NULL DEFAULT 0,
+                      bytes_downloaded INTEGER NOT NULL DEFAULT 0,
+                      last_login TEXT,
+                      FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+                    );
+
+                    CREATE TABLE IF NOT EXISTS folders (
+                      id INTEGER PRIMARY KEY AUTOINCREMENT,
+                      path TEXT NOT NULL UNIQUE,
+                      owner_user_id INTEGER,
+                      is_global INTEGER NOT NULL DEFAULT 1,
+                      FOREIGN KEY (owner_user_id) REFERENCES users(id) ON DELETE SET NULL
+                    );
+
+                    CREATE TABLE IF NOT EXISTS folder_permissions (
+                      user_id INTEGER NOT NULL,
+                      folder_id INTEGER NOT NULL,
+                      r INTEGER NOT NULL DEFAULT 0,
+                      w INTEGER NOT NULL DEFAULT 0,
+                      e INTEGER NOT NULL DEFAULT 0,
+                      PRIMARY KEY (user_id, folder_id),
+                      FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+                      FOREIGN KEY (folder_id) REFERENCES folders(id) ON DELETE CASCADE
+                    );
+
+                    CREATE TABLE IF NOT EXISTS shared_folders (
+                      id INTEGER PRIMARY KEY AUTOINCREMENT,
+                      owner_user_id INTEGER NOT NULL,
+                      user_to_share_id INTEGER NOT NULL,
+                      folder_name TEXT NOT NULL,
+                      folder_path TEXT NOT NULL,
+                      r INTEGER NOT NULL DEFAULT 1,
+                      w INTEGER NOT NULL DEFAULT 0,
+                      e INTEGER NOT NULL DEFAULT 0,
+                      FOREIGN KEY (owner_user_id) REFERENCES users(id) ON DELETE CASCADE,
+                      FOREIGN KEY (user_to_share_id) REFERENCES users(id) ON DELETE CASCADE
+                    );
+
+                    CREATE TABLE IF NOT EXISTS server_settings (
+                      id INTEGER PRIMARY KEY CHECK (id = 1),
+                      global_max_connections INTEGER NOT NULL DEFAULT 20,
+                      global_rate_limit INTEGER NOT NULL DEFAULT 200000,
+                      global_upload_limit INTEGER NOT NULL DEFAULT 200000,
+                      global_download_limit INTEGER NOT NULL DEFAULT 200000,
+                      admin_token TEXT
+                    );
+                    """)),
+
+            new Migration(2, "shared_folders r/w/e flags", st -> {
+                addColumnIfMissing(st, "shared_folders", "r", "INTEGER NOT NULL DEFAULT 1");
+                addColumnIfMissing(st, "shared_folders", "w", "INTEGER NOT NULL DEFAULT 0");
+                addColumnIfMissing(st, "shared_folders", "e", "INTEGER NOT NULL DEFAULT 0");
+            }),
+
+            new Migration(3, "per-direction user speed limits", st -> {
+                addColumnIfMissing(st, "users", "upload_speed", "INTEGER");
+                addColumnIfMissing(st, "users", "download_speed", "INTEGER");
+                // Carry the legacy single limit over to both directions
+                st.executeUpdate("UPDATE users SET upload_speed = rate_limit WHERE upload_speed IS NULL AND rate_limit IS NOT NULL AND rate_limit > 0");
+                st.executeUpdate("UPDATE users SET download_speed = rate_limit WHERE download_speed IS NULL AND rate_limit IS NOT NULL AND rate_limit > 0");
+            }),
+
+            new Migration(4, "per-direction global limits", st -> {
+                // Nullable: SQLite cannot add a NOT NULL column to an existing table
+                addColumnIfMissing(st, "server_settings", "global_upload_limit", "INTEGER");
+                addColumnIfMissing(st, "server_settings", "global_download_limit", "INTEGER");
+                st.executeUpdate("UPDATE server_settings SET global_upload_limit = 200000 WHERE global_upload_limit IS NULL");
+                st.executeUpdate("UPDATE server_settings SET global_download_limit = 200000 WHERE global_download_limit IS NULL");
+            }),
+
+            new Migration(5, "admin token", st ->
+                    addColumnIfMissing(st, "server_settings", "admin_token", "TEXT")),
+
+            // After the column migrations: on a pre-versioning DB the columns only exist from here on
+            new Migration(6, "default settings and root folders", st -> st.executeUpdate("""
+                    INSERT OR IGNORE INTO server_settings(id, global_max_connections, global_rate_limit, global_upload_limit, global_download_limit)
+                    VALUES (1, 20, 200000, 200000, 200000);
+
+                    INSERT OR IGNORE INTO folders(path, owner_user_id, is_global) VALUES ('/', NULL, 1);
+                    INSERT OR IGNORE INTO folders(path, owner_user_id, is_global) VALUES ('/shared', NULL, 1);
+                    """)),
+
+            // Keyset pagination of /api/stats in its "most recent login first" order
+            new Migration(7, "stats recency index", st -> st.executeUpdate(
+                    "CREATE INDEX IF NOT EXISTS idx_stats_recent ON stats(COALESCE(last_login, ''), user_id)")),
+
+            // Time-series rollups (see TrafficRollup): one row per resolution, user and bucket
+            new Migration(8, "traffic rollups", st -> st.executeUpdate("""
+                    CREATE TABLE IF NOT EXISTS traffic (
+                        res        INTEGER NOT NULL,
+                        user_id    INTEGER NOT NULL,
+                        ts         INTEGER NOT NULL,
+                        bytes_up   INTEGER NOT NULL DEFAULT 0,
+                        bytes_down INTEGER NOT NULL DEFAULT 0,
+                        transfers  INTEGER NOT NULL DEFAULT 0,
+                        logins     INTEGER NOT NULL DEFAULT 0,
+                        errors     INTEGER NOT NULL DEFAULT 0,
+                        peak_up    INTEGER NOT NULL DEFAULT 0,
+                        peak_down  INTEGER NOT NULL DEFAULT 0,
+                        PRIMARY KEY (res, user_id, ts)
+                    ) WITHOUT ROWID;
+                    """)),
+
+            // Per-transfer ledger (see TransferLedger); username rather than user_id so that rows
+            // outlive the account. The rowid breaks ties between transfers of the same millisecond
+            new Migration(9, "transfer ledger", st -> st.executeUpdate("""
+                    CREATE TABLE IF NOT EXISTS transfers (
+                        id          INTEGER PRIMARY KEY,
+                        username    TEXT NOT NULL,
+                        path        TEXT NOT NULL,
+                        direction   TEXT NOT NULL,
+                        bytes       INTEGER NOT NULL,
+                        started_at  INTEGER NOT NULL,
+                        duration_ms INTEGER NOT NULL,
+                        outcome     TEXT NOT NULL,
+                        remote_addr TEXT
+                    );
+
+                    CREATE INDEX IF NOT EXISTS idx_transfers_user_time ON transfers(username, started_at);
+                    CREATE INDEX IF NOT EXISTS idx_transfers_time ON transfers(started_at);
+                    """)),
+
+            // Quotas (NULL = unlimited) and the last known usage of every users/<name> tree (see DiskUsage)
+            new Migration(10, "disk quotas and usage", st -> {
+                addColumnIfMissing(st, "users", "quota_bytes", "INTEGER");
+                st.executeUpdate("""
+                        CREATE TABLE IF NOT EXISTS disk_usage (
+                            user_id    INTEGER PRIMARY KEY,
+                            bytes      INTEGER NOT NULL DEFAULT 0,
+                            files      INTEGER NOT NULL DEFAULT 0,
+                            dirs       INTEGER NOT NULL DEFAULT 0,
+                            updated_at INTEGER NOT NULL,
+                            FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+                        );
+                        """);
+            })
+    );
+
+    private SchemaMigrations() {
+    }
+
+    /**
+     * Brings the DB to the latest version.
+     *
+     * @return number of migrations applied
+     */
+    static int migrate(Connection c) throws SQLException {
+        boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try (Statement st = c.createStatement()) {
+            st.executeUpdate("""
+                    CREATE TABLE IF NOT EXISTS schema_version (
+                      version INTEGER PRIMARY KEY,
+                      description TEXT NOT NULL,
+                      applied_at TEXT NOT NULL
+                    )
+                    """);
+            int current = currentVersion(st);
+
+            int applied = 0;
+            try (PreparedStatement record = c.prepareStatement(
+                    "INSERT INTO schema_version(version, description, applied_at) VALUES (?, ?, ?)")) {
+                for (Migration m : MIGRATIONS) {
+                    if (m.version() <= current) continue;
+                    m.step().apply(st);
+                    record.setInt(1, m.version());
+                    record.setString(2, m.description());
+                    record.setString(3, Instant.now().toString());
+                    record.executeUpdate();
+                    applied++;
+                }
+            }
+
+            // Not a migration but an invariant: every user has a global permissions row
+            // (accounts created straight through the repositories, e.g. by tools, get one here)
+            st.executeUpdate("""
+                    INSERT INTO permissions(user_id, r, w, e)
+                    SELECT u.id, 1, 1, 1
+                    FROM users u
+                    WHERE NOT EXISTS (
+                        SELECT 1 FROM permissions p WHERE p.user_id = u.id
+                    )
+                    """);
+
+            c.commit();
+            if (applied > 0) {
+                System.out.println("DB schema: v" + current + " -> v" + latestVersion());
+            }
+            return applied;
+        } catch (SQLException | RuntimeException e) {
+            c.rollback();
+            throw e;
+        } finally {
+            c.setAutoCommit(autoCommit);
+        }
+    }
+
+    static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+    }
+
+    private static int currentVersion(Statement st) throws SQLException {
+        try (ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void addColumnIfMissing(Statement st, String table, String column, String definition) throws SQLException {
+        try (ResultSet rs = st.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) return;
+            }
+        }
+        st.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+    }
+}
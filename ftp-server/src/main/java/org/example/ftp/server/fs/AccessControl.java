@@ -80,6 +80,30 @@ public final class AccessControl {
         
         return hasSharePermission;
     }
-}
 
+    /**
+     * Whether {@link #can} answers for everything below {@code resolvedPath} as it does for the
+     * path itself: in the user's home (always allowed) and in /shared (global permissions). A
+     * recursive listing of such a tree needs no check per subdirectory.
+     */
+    public static boolean sameBelow(FtpSession session, Path resolvedPath) {
+        Path resolved = resolvedPath.normalize().toAbsolutePath();
+        return resolved.startsWith(session.getHomeDirectory().normalize().toAbsolutePath())
+                || resolved.startsWith(session.getSharedDirectory().normalize().toAbsolutePath());
+    }
 
+    /**
+     * The FTP root, {@code users/}, a home directory or /shared: part of the layout, so never
+     * renamed or removed, whatever the permissions say.
+     */
+    public static boolean isFixed(FtpSession session, Path resolvedPath) {
+        Path resolved = resolvedPath.normalize().toAbsolutePath();
+        Path ftpRoot = session.getFtpRoot().normalize().toAbsolutePath();
+        Path usersDir = ftpRoot.resolve("users").normalize().toAbsolutePath();
+        return !resolved.startsWith(ftpRoot)
+                || resolved.getNameCount() <= ftpRoot.getNameCount()
+                || resolved.equals(usersDir)
+                || usersDir.equals(resolved.getParent())
+                || resolved.equals(session.getSharedDirectory().normalize().toAbsolutePath());
+    }
+}
@@ -0,0 +1,301 @@
+package org.example.ftp.server.fs;
+
+import org.example.ftp.server.fs.db.SqliteDiskUsageRepository;
+import org.example.ftp.server.fs.db.SqliteDiskUsageRepository.Row;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Bytes, files and directories under every {@code <ftp-root>/users/<name>} tree, and the
+ * per-user quotas ({@code users.quota_bytes}) they are checked against.
+ *
+ * Usage is kept in memory and updated by the commands that change a tree (STOR, DELE, MKD, RMD,
+ * RNTO, SITE COPY/RMTREE), so a quota check is a couple of atomic reads. Uploads are charged to the
+ * owner of the tree they land in, which for a shared folder is the user who shares it;
+ * {@code shared/} is not charged to anyone. Counters start from the values stored in
+ * {@code disk_usage} and are corrected by a walk of all trees (one task per user,
+ * {@code ftp.quota.reconcileThreads}, default one per CPU) at startup and every
+ * {@code ftp.quota.reconcileMinutes} (default 60), which also picks up changes made outside the
+ * server. Changes racing a walk are carried over on top of its result. Counters are saved every
+ * {@code ftp.quota.flushMs} (default 30000) if they changed. {@code ftp.quota.enabled=false} turns
+ * accounting and quotas off.
+ */
+public final class DiskUsage {
+
+    public record Usage(long bytes, long files, long dirs, Long quota) {}
+
+    private static final class Account {
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicLong files = new AtomicLong();
+        final AtomicLong dirs = new AtomicLong();
+        // <= 0: unlimited
+        volatile long quota;
+        volatile boolean dirty;
+    }
+
+    private final Path usersDir;
+    private final SqliteDiskUsageRepository repository;
+    private final long reconcileMillis;
+    private final int reconcileThreads;
+    private final long flushMillis;
+    private final ConcurrentHashMap<String, Account> accounts = new ConcurrentHashMap<>();
+
+    // Guarded by 'this'
+    private ScheduledExecutorService scheduler;
+
+    public DiskUsage(Path ftpRoot, SqliteDiskUsageRepository repository, long reconcileMillis,
+                     int reconcileThreads, long flushMillis) {
+        this.usersDir = ftpRoot == null ? null : ftpRoot.resolve("users").toAbsolutePath().normalize();
+        this.repository = repository;
+        this.reconcileMillis = Math.max(60_000, reconcileMillis);
+        this.reconcileThreads = Math.max(1, reconcileThreads);
+        this.flushMillis = Math.max(1000, flushMillis);
+    }
+
+    public static DiskUsage fromSystemProperties(Path ftpRoot, SqliteDiskUsageRepository repository) {
+        if (!Boolean.parseBoolean(System.getProperty("ftp.quota.enabled", "true"))) {
+            return disabled();
+        }
+        return new DiskUsage(
+                ftpRoot,
+                repository,
+                TimeUnit.MINUTES.toMillis(Long.getLong("ftp.quota.reconcileMinutes", 60L)),
+                Integer.getInteger("ftp.quota.reconcileThreads", Runtime.getRuntime().availableProcessors()),
+                Long.getLong("ftp.quota.flushMs", 30_000L)
+        );
+    }
+
+    /** Counts nothing and enforces no quota (benchmarks, tools). */
+    public static DiskUsage disabled() {
+        return new DiskUsage(null, null, 0, 1, 0);
+    }
+
+    public boolean isEnabled() {
+        return usersDir != null && repository != null;
+    }
+
+    /** Loads quotas and saved usage, then starts the reconciliation walks and the saver. */
+    public synchronized void start() {
+        if (!isEnabled() || scheduler != null) return;
+        for (Row r : repository.loadAll()) {
+            Account a = account(r.username());
+            a.bytes.set(r.bytes());
+            a.files.set(r.files());
+            a.dirs.set(r.dirs());
+            a.quota = r.quota() == null ? 0 : r.quota();
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "disk-usage");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::reconcileSafely, 0, reconcileMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::flushSafely, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "disk-usage-close"));
+    }
+
+    public synchronized void close() {
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        try {
+            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        scheduler = null;
+        flushSafely();
+    }
+
+    // ---- accounting (any thread) ----
+
+    /** The user whose tree {@code path} is in, or null if it is outside {@code users/}. */
+    public String ownerOf(Path path) {
+        if (usersDir == null) return null;
+        Path p = path.toAbsolutePath().normalize();
+        if (!p.startsWith(usersDir) || p.getNameCount() <= usersDir.getNameCount()) return null;
+        return p.getName(usersDir.getNameCount()).toString();
+    }
+
+    /**
+     * Bytes {@code owner} may still add before reaching the quota (negative once over it);
+     * Long.MAX_VALUE without a quota or owner.
+     */
+    public long remaining(String owner) {
+        if (owner == null) return Long.MAX_VALUE;
+        Account a = accounts.get(owner);
+        if (a == null || a.quota <= 0) return Long.MAX_VALUE;
+        return a.quota - a.bytes.get();
+    }
+
+    /**
+     * Applies a change to {@code owner}'s tree (negative values for removals).
+     *
+     * @return what {@link #remaining} is after the change
+     */
+    public long add(String owner, long bytes, long files, long dirs) {
+        if (owner == null) return Long.MAX_VALUE;
+        Account a = account(owner);
+        long used = bytes == 0 ? a.bytes.get() : a.bytes.addAndGet(bytes);
+        if (files != 0) a.files.addAndGet(files);
+        if (dirs != 0) a.dirs.addAndGet(dirs);
+        a.dirty = true;
+        return a.quota <= 0 ? Long.MAX_VALUE : a.quota - used;
+    }
+
+    /** null if nothing is known about the user (no tree, no quota). */
+    public Usage usage(String username) {
+        Account a = accounts.get(username);
+        if (a == null) return null;
+        return new Usage(a.bytes.get(), a.files.get(), a.dirs.get(), a.quota <= 0 ? null : a.quota);
+    }
+
+    /**
+     * Stores and applies a quota.
+     *
+     * @param quota null or &lt;= 0 for unlimited
+     * @return false if there is no such user
+     */
+    public boolean setQuota(String username, Long quota) {
+        if (!isEnabled() || !repository.updateQuota(username, quota)) return false;
+        account(username).quota = quota == null ? 0 : quota;
+        return true;
+    }
+
+    /** Directories {@code Files.createDirectories(dir)} would create, for {@link #add}. */
+    public static int missingDirs(Path dir) {
+        int n = 0;
+        for (Path p = dir; p != null && !Files.exists(p); p = p.getParent()) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Walks {@code dir}: bytes and regular files below it and its subdirectories, not counting
+     * {@code dir} itself. Symbolic links are not followed.
+     */
+    public static Usage measure(Path dir) throws IOException {
+        long[] walked = new long[3];
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) {
+                if (!d.equals(dir)) walked[2]++;
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    walked[0] += attrs.size();
+                    walked[1]++;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // Deleted while walking
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return new Usage(walked[0], walked[1], walked[2], null);
+    }
+
+    private Account account(String username) {
+        Account a = accounts.get(username);
+        return a != null ? a : accounts.computeIfAbsent(username, k -> new Account());
+    }
+
+    // ---- background work (scheduler thread) ----
+
+    private void reconcileSafely() {
+        try {
+            long start = System.nanoTime();
+            int users = reconcile();
+            System.out.println("Disk usage: reconciled " + users + " user trees in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        } catch (Exception e) {
+            System.out.println("Disk usage reconciliation failed: " + e);
+        }
+        flushSafely();
+    }
+
+    int reconcile() throws Exception {
+        if (!Files.isDirectory(usersDir)) return 0;
+        List<Path> homes;
+        try (Stream<Path> s = Files.list(usersDir)) {
+            homes = s.filter(Files::isDirectory).toList();
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>(homes.size());
+        for (Path home : homes) {
+            tasks.add(() -> {
+                reconcile(home.getFileName().toString(), home);
+                return null;
+            });
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(reconcileThreads, Math.max(1, homes.size())), r -> {
+            Thread t = new Thread(r, "disk-usage-walk");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            pool.invokeAll(tasks);
+        } finally {
+            pool.shutdownNow();
+        }
+        return homes.size();
+    }
+
+    private void reconcile(String owner, Path home) throws IOException {
+        Account a = account(owner);
+        long bytesBefore = a.bytes.get();
+        long filesBefore = a.files.get();
+        long dirsBefore = a.dirs.get();
+
+        Usage walked = measure(home);
+
+        // Whatever changed while walking is kept on top of the walk's result
+        long drift = walked.bytes() - bytesBefore;
+        a.bytes.addAndGet(drift);
+        a.files.addAndGet(walked.files() - filesBefore);
+        a.dirs.addAndGet(walked.dirs() - dirsBefore);
+        if (drift != 0 || walked.files() != filesBefore || walked.dirs() != dirsBefore) {
+            a.dirty = true;
+        }
+    }
+
+    private void flushSafely() {
+        if (repository == null) return;
+        List<Row> rows = new ArrayList<>();
+        List<Account> flushed = new ArrayList<>();
+        accounts.forEach((name, a) -> {
+            if (!a.dirty) return;
+            a.dirty = false;
+            flushed.add(a);
+            rows.add(new Row(name, null, a.bytes.get(), a.files.get(), a.dirs.get()));
+        });
+        try {
+            repository.saveAll(rows);
+        } catch (RuntimeException e) {
+            flushed.forEach(a -> a.dirty = true);
+            System.out.println("Disk usage save failed: " + e);
+        }
+    }
+}
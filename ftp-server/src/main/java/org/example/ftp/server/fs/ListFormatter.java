@@ -2,6 +2,7 @@ package org.example.ftp.server.fs;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.time.Instant;
 import java.time.ZoneId;
@@ -18,26 +19,31 @@ public final class ListFormatter {
 
     public static String format(Path path) {
         try {
-            boolean isDir = Files.isDirectory(path);
-            long size = isDir ? 0 : Files.size(path);
-
-            FileTime time = Files.getLastModifiedTime(path);
-            String date = DATE.format(Instant.ofEpochMilli(time.toMillis()));
-
-            String perms = isDir ? "drwxr-xr-x" : "-rw-r--r--";
-
-            return String.format(
-                    "%s 1 user group %8d %s %s",
-                    perms,
-                    size,
-                    date,
-                    path.getFileName().toString()
-            );
+            return format(path.getFileName().toString(), Files.readAttributes(path, BasicFileAttributes.class));
         } catch (Exception e) {
             return path.getFileName().toString();
         }
     }
 
+    /** Same line from attributes that were already read (recursive listings). */
+    public static String format(String name, BasicFileAttributes attrs) {
+        boolean isDir = attrs.isDirectory();
+        long size = isDir ? 0 : attrs.size();
+
+        FileTime time = attrs.lastModifiedTime();
+        String date = DATE.format(Instant.ofEpochMilli(time.toMillis()));
+
+        String perms = isDir ? "drwxr-xr-x" : "-rw-r--r--";
+
+        return String.format(
+                "%s 1 user group %8d %s %s",
+                perms,
+                size,
+                date,
+                name
+        );
+    }
+
     /**
      * Formats a virtual directory (doesn't exist on disk, e.g., shared folders).
      */
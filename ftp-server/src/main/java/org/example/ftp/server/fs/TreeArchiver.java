@@ -0,0 +1,345 @@
+package org.example.ftp.server.fs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a directory tree as a ZIP or tar archive to a stream while {@link TreeWalker} walks it,
+ * for {@code RETR} of a directory: nothing is staged on disk, and what is held in memory is one
+ * copy buffer, the walker's prefetched listings and, for ZIP, the central directory (about 100
+ * bytes per entry, so {@code ftp.archive.maxEntries}, default 200000, also bounds it).
+ *
+ * Entries are named below the directory's own name ("docs/a/b.txt"). ZIP entries are deflated
+ * at {@code ftp.archive.level} (default 1: the archive is made while the client waits), except
+ * files that are already compressed ({@code ftp.archive.storeExtensions}, jpg, zip, mp4 and the
+ * like), which are stored as they are; ZIP wants the CRC of a stored entry before its data, so
+ * those are read twice (the second read usually comes from the page cache). Tar is never
+ * compressed. Symbolic links are left out: they may point outside what the user can see.
+ */
+public final class TreeArchiver {
+
+    public enum Format {
+        ZIP(".zip"), TAR(".tar");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        /** The format a virtual "dir.zip"/"dir.tar" name asks for, or null. */
+        public static Format ofName(String name) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            for (Format f : values()) {
+                if (lower.endsWith(f.extension) && lower.length() > f.extension.length()) return f;
+            }
+            return null;
+        }
+    }
+
+    /** @param truncated the walk hit the depth or entry limit, so the archive is incomplete */
+    public record Result(long files, long dirs, long bytes, boolean truncated) {}
+
+    static final String DEFAULT_STORE_EXTENSIONS = "zip,gz,tgz,bz2,xz,zst,7z,rar,jar,war,apk,"
+            + "docx,xlsx,pptx,odt,ods,epub,jpg,jpeg,png,gif,webp,heic,avif,"
+            + "mp3,aac,ogg,opus,flac,m4a,mp4,m4v,mkv,webm,avi,mov";
+
+    private static final int BUFFER = 64 * 1024;
+
+    private final Format format;
+    private final int level;
+    private final Set<String> storeExtensions;
+    private final TreeWalker walker;
+
+    public TreeArchiver(Format format, int level, Set<String> storeExtensions, TreeWalker walker) {
+        this.format = format;
+        this.level = Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION, level));
+        this.storeExtensions = storeExtensions;
+        this.walker = walker;
+    }
+
+    public static TreeArchiver fromSystemProperties(Format format) {
+        Set<String> store = Arrays.stream(System.getProperty("ftp.archive.storeExtensions", DEFAULT_STORE_EXTENSIONS)
+                        .split(","))
+                .map(s -> s.trim().toLowerCase(Locale.ROOT))
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        return new TreeArchiver(
+                format,
+                Integer.getInteger("ftp.archive.level", 1),
+                store,
+                new TreeWalker(
+                        Integer.getInteger("ftp.list.maxDepth", 32),
+                        Long.getLong("ftp.archive.maxEntries", 200_000L),
+                        Integer.getInteger("ftp.list.walkPrefetch", 8)
+                )
+        );
+    }
+
+    /**
+     * Writes {@code dir} and everything below it to {@code out}, which is finished (ZIP central
+     * directory, tar end blocks) but not closed.
+     *
+     * @param enter whether a subdirectory may be entered (checked on the calling thread); those
+     *              it refuses are left out
+     * @param stop  checked before every file; true ends the archive with an IOException
+     * @throws IOException if {@code dir} cannot be listed, a file shrinks while it is read,
+     *                     or {@code out} fails; files that cannot be opened are skipped
+     */
+    public Result write(Path dir, Predicate<Path> enter, OutputStream out, BooleanSupplier stop) throws IOException {
+        String top = dir.getFileName() == null ? "root" : dir.getFileName().toString();
+        EntryWriter writer = format == Format.ZIP ? new ZipWriter(out) : new TarWriter(out);
+        byte[] buffer = new byte[BUFFER];
+        long[] counts = new long[3];
+
+        TreeWalker.Result walked = walker.walk(dir, p -> true, enter, listing -> {
+            String prefix = listing.relative().isEmpty() ? top + "/" : top + "/" + listing.relative() + "/";
+            writer.directory(prefix, attributesOf(listing.dir()));
+            counts[1]++;
+            for (TreeWalker.Entry e : listing.entries()) {
+                if (e.symlink() || !e.attrs().isRegularFile()) continue;
+                if (stop.getAsBoolean()) {
+                    throw new IOException("Archive aborted");
+                }
+                InputStream in;
+                try {
+                    in = Files.newInputStream(e.path());
+                } catch (IOException unreadable) {
+                    continue; // removed meanwhile, or no permission on the server
+                }
+                try (in) {
+                    writer.file(prefix + e.name(), e, in, buffer);
+                }
+                counts[0]++;
+                counts[2] += e.attrs().size();
+            }
+        });
+        writer.finish();
+        return new Result(counts[0], counts[1], counts[2], walked.truncated());
+    }
+
+    private static BasicFileAttributes attributesOf(Path dir) {
+        try {
+            return Files.readAttributes(dir, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private boolean isCompressed(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && storeExtensions.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Copies the {@code size} bytes the entry was announced with: a file that grew since it was
+     * listed (an upload in progress) is cut there, one that shrank is an error.
+     */
+    private static void copy(InputStream in, OutputStream out, long size, byte[] buffer, String name) throws IOException {
+        long left = size;
+        while (left > 0) {
+            int n = in.read(buffer, 0, (int) Math.min(buffer.length, left));
+            if (n < 0) break;
+            out.write(buffer, 0, n);
+            left -= n;
+        }
+        if (left != 0) {
+            throw new IOException(name + " shrank while it was archived");
+        }
+    }
+
+    private interface EntryWriter {
+        /** @param attrs null if they could not be read */
+        void directory(String name, BasicFileAttributes attrs) throws IOException;
+
+        void file(String name, TreeWalker.Entry entry, InputStream in, byte[] buffer) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    private final class ZipWriter implements EntryWriter {
+        private final ZipOutputStream zip;
+
+        ZipWriter(OutputStream out) {
+            // Not closed by write(): that would close the caller's stream
+            this.zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+            zip.setLevel(level);
+        }
+
+        @Override
+        public void directory(String name, BasicFileAttributes attrs) throws IOException {
+            ZipEntry ze = new ZipEntry(name);
+            ze.setMethod(ZipEntry.STORED);
+            ze.setSize(0);
+            ze.setCrc(0);
+            if (attrs != null) ze.setLastModifiedTime(attrs.lastModifiedTime());
+            zip.putNextEntry(ze);
+            zip.closeEntry();
+        }
+
+        @Override
+        public void file(String name, TreeWalker.Entry entry, InputStream in, byte[] buffer) throws IOException {
+            long size = entry.attrs().size();
+            ZipEntry ze = new ZipEntry(name);
+            ze.setLastModifiedTime(entry.attrs().lastModifiedTime());
+            if (isCompressed(entry.name()) || level == Deflater.NO_COMPRESSION) {
+                ze.setMethod(ZipEntry.STORED);
+                ze.setSize(size);
+                ze.setCompressedSize(size);
+                ze.setCrc(crc(entry.path(), size, buffer));
+            } else {
+                ze.setMethod(ZipEntry.DEFLATED);
+            }
+            zip.putNextEntry(ze);
+            copy(in, zip, size, buffer, name);
+            zip.closeEntry();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            zip.finish();
+        }
+
+        private static long crc(Path file, long size, byte[] buffer) throws IOException {
+            CRC32 crc = new CRC32();
+            try (InputStream in = Files.newInputStream(file)) {
+                long left = size;
+                int n;
+                while (left > 0 && (n = in.read(buffer, 0, (int) Math.min(buffer.length, left))) > 0) {
+                    crc.update(buffer, 0, n);
+                    left -= n;
+                }
+            }
+            return crc.getValue();
+        }
+    }
+
+    /**
+     * POSIX ustar; a name longer than 100 bytes or a file of 8 GiB or more gets a pax header
+     * ({@code path=}, {@code size=}) first, which GNU tar, bsdtar and 7-Zip all read.
+     */
+    private static final class TarWriter implements EntryWriter {
+        private static final int BLOCK = 512;
+        private static final long MAX_OCTAL_SIZE = 077777777777L;
+        private static final byte[] MAGIC = {'u', 's', 't', 'a', 'r', 0, '0', '0'};
+        private static final byte[] ZEROS = new byte[BLOCK];
+
+        private final OutputStream out;
+        private final byte[] header = new byte[BLOCK];
+
+        TarWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void directory(String name, BasicFileAttributes attrs) throws IOException {
+            FileTime time = attrs == null ? FileTime.fromMillis(System.currentTimeMillis()) : attrs.lastModifiedTime();
+            header(name, 0, time, '5', 0755);
+        }
+
+        @Override
+        public void file(String name, TreeWalker.Entry entry, InputStream in, byte[] buffer) throws IOException {
+            long size = entry.attrs().size();
+            header(name, size, entry.attrs().lastModifiedTime(), '0', 0644);
+            copy(in, out, size, buffer, name);
+            pad(size);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            out.write(ZEROS);
+            out.write(ZEROS);
+        }
+
+        private void header(String name, long size, FileTime time, char type, int mode) throws IOException {
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            boolean longName = nameBytes.length > 100;
+            boolean bigFile = size > MAX_OCTAL_SIZE;
+            if (longName || bigFile) {
+                StringBuilder pax = new StringBuilder();
+                if (longName) pax.append(paxRecord("path", name));
+                if (bigFile) pax.append(paxRecord("size", Long.toString(size)));
+                byte[] body = pax.toString().getBytes(StandardCharsets.UTF_8);
+                block("PaxHeader/" + Math.abs(name.hashCode()), body.length, time, 'x', 0644);
+                out.write(body);
+                pad(body.length);
+            }
+            block(longName ? truncate(name) : name, bigFile ? 0 : size, time, type, mode);
+        }
+
+        private void block(String name, long size, FileTime time, char type, int mode) throws IOException {
+            Arrays.fill(header, (byte) 0);
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(nameBytes, 0, header, 0, Math.min(100, nameBytes.length));
+            octal(mode, 100, 8);
+            octal(0, 108, 8);
+            octal(0, 116, 8);
+            octal(size, 124, 12);
+            octal(Math.max(0, time.toMillis() / 1000), 136, 12);
+            header[156] = (byte) type;
+            System.arraycopy(MAGIC, 0, header, 257, MAGIC.length);
+
+            // Checksum: sum of the header with the checksum field taken as spaces
+            Arrays.fill(header, 148, 156, (byte) ' ');
+            long sum = 0;
+            for (byte b : header) {
+                sum += b & 0xff;
+            }
+            octal(sum, 148, 7);
+            header[155] = ' ';
+            out.write(header);
+        }
+
+        // NUL-terminated, zero-padded octal
+        private void octal(long value, int offset, int length) {
+            String s = Long.toOctalString(value);
+            int digits = length - 1;
+            for (int i = 0; i < digits; i++) {
+                int from = s.length() - digits + i;
+                header[offset + i] = (byte) (from < 0 ? '0' : s.charAt(from));
+            }
+            header[offset + digits] = 0;
+        }
+
+        private void pad(long size) throws IOException {
+            int rest = (int) (size % BLOCK);
+            if (rest != 0) out.write(ZEROS, 0, BLOCK - rest);
+        }
+
+        // "%d path=value\n" where the length counts itself
+        private static String paxRecord(String key, String value) {
+            int body = key.length() + 1 + value.getBytes(StandardCharsets.UTF_8).length + 1;
+            int len = body + 1;
+            while (len != body + 1 + Integer.toString(len).length()) {
+                len = body + 1 + Integer.toString(len).length();
+            }
+            return len + " " + key + "=" + value + "\n";
+        }
+
+        // What an old reader that ignores the pax header extracts it as: the first 100 bytes
+        private static String truncate(String name) {
+            byte[] b = name.getBytes(StandardCharsets.UTF_8);
+            return new String(b, 0, 100, StandardCharsets.UTF_8).replace("\uFFFD", "");
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package org.example.ftp.server.fs;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Deletes a directory tree ({@code SITE RMTREE}) post-order on a fork/join pool shared by all
+ * sessions ({@code ftp.rmtree.threads}, default twice the CPUs, at least 4): each directory is
+ * a task that deletes its files in batches of {@value #FILE_BATCH} (so a flat directory with
+ * 200k files is spread over the pool too), forks one task per subdirectory and removes itself
+ * once they are done. Symbolic links are deleted, never followed.
+ *
+ * The counters can be read while the deletion runs; {@link #abort()} makes every task stop at
+ * its next entry, leaving whatever was not deleted yet.
+ */
+public final class TreeDeleter {
+
+    /** Files (anything that is not a directory) deleted per task. */
+    static final int FILE_BATCH = 512;
+
+    private static final class Pool {
+        static final ForkJoinPool INSTANCE = new ForkJoinPool(
+                Math.max(1, Integer.getInteger("ftp.rmtree.threads",
+                        Math.max(4, 2 * Runtime.getRuntime().availableProcessors()))),
+                pool -> {
+                    var t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    t.setName("rmtree-" + t.getPoolIndex());
+                    t.setDaemon(true);
+                    return t;
+                },
+                null,
+                false
+        );
+    }
+
+    private record Doomed(Path path, BasicFileAttributes attrs) {}
+
+    private final Path root;
+    private final Predicate<Path> mayEnter;
+
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong dirs = new AtomicLong();
+    private final AtomicLong others = new AtomicLong();
+    private final AtomicLong kept = new AtomicLong();
+    private volatile boolean aborted;
+    private ForkJoinTask<?> task;
+
+    /**
+     * @param mayEnter whether a subdirectory may be deleted (and so entered); called from pool
+     *                 threads. Subdirectories it refuses are kept, and with them their parents.
+     */
+    public TreeDeleter(Path root, Predicate<Path> mayEnter) {
+        this.root = root;
+        this.mayEnter = mayEnter;
+    }
+
+    public synchronized void start() {
+        if (task == null) {
+            task = Pool.INSTANCE.submit(new DirTask(root, false));
+        }
+    }
+
+    /**
+     * Waits for the deletion to finish.
+     *
+     * @return false if it is still running after {@code millis}
+     */
+    public boolean await(long millis) throws InterruptedException {
+        try {
+            task.get(millis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            // DirTask handles its I/O errors; anything else ends up in kept()
+            kept.incrementAndGet();
+        }
+        return true;
+    }
+
+    /** Waits for the deletion to finish, ignoring interrupts (after {@link #abort()} that is quick). */
+    public void join() {
+        task.quietlyJoin();
+    }
+
+    public void abort() {
+        aborted = true;
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    /** Regular files deleted. */
+    public long files() {
+        return files.get();
+    }
+
+    /** Bytes of the regular files deleted. */
+    public long bytes() {
+        return bytes.get();
+    }
+
+    /** Directories deleted, the root included. */
+    public long dirs() {
+        return dirs.get();
+    }
+
+    /** Everything deleted: files, directories, links and other entries. */
+    public long entries() {
+        return files.get() + dirs.get() + others.get();
+    }
+
+    /** Entries left in place: could not be deleted, were not allowed to be, or are directories above those. */
+    public long kept() {
+        return kept.get();
+    }
+
+    private final class DirTask extends RecursiveAction {
+        private final Path dir;
+        private final boolean checkAccess;
+
+        DirTask(Path dir, boolean checkAccess) {
+            this.dir = dir;
+            this.checkAccess = checkAccess;
+        }
+
+        @Override
+        protected void compute() {
+            if (aborted) return;
+            if (checkAccess && mayEnter != null && !mayEnter.test(dir)) {
+                kept.incrementAndGet();
+                return;
+            }
+
+            List<ForkJoinTask<?>> subtasks = new ArrayList<>();
+            List<Doomed> batch = new ArrayList<>();
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+                for (Path p : ds) {
+                    if (aborted) break;
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue; // gone already
+                    }
+                    if (attrs.isDirectory()) {
+                        subtasks.add(new DirTask(p, true).fork());
+                    } else {
+                        batch.add(new Doomed(p, attrs));
+                        if (batch.size() == FILE_BATCH) {
+                            subtasks.add(new FileTask(batch).fork());
+                            batch = new ArrayList<>();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                kept.incrementAndGet();
+                return;
+            }
+            // The last batch is deleted here rather than forked
+            new FileTask(batch).compute();
+            for (ForkJoinTask<?> t : subtasks) {
+                t.join();
+            }
+
+            if (aborted) return;
+            try {
+                Files.delete(dir);
+                dirs.incrementAndGet();
+            } catch (IOException e) {
+                // Typically not empty: something below was kept
+                kept.incrementAndGet();
+            }
+        }
+    }
+
+    private final class FileTask extends RecursiveAction {
+        private final List<Doomed> batch;
+
+        FileTask(List<Doomed> batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        protected void compute() {
+            for (Doomed d : batch) {
+                if (aborted) return;
+                try {
+                    if (!Files.deleteIfExists(d.path())) continue;
+                    if (d.attrs().isRegularFile()) {
+                        files.incrementAndGet();
+                        bytes.addAndGet(d.attrs().size());
+                    } else {
+                        others.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    kept.incrementAndGet();
+                }
+            }
+        }
+    }
+}
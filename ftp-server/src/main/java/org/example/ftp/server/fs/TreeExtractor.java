@@ -0,0 +1,504 @@
+package org.example.ftp.server.fs;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Extracts a ZIP or tar archive into a directory as it is read from a stream, for
+ * {@code SITE UNZIP}/{@code SITE UNTAR}: entries are written as they arrive, the archive itself
+ * is never stored. A tar may be gzip-compressed. ZIP is read front to back through the local
+ * headers, so a stored (uncompressed) entry written with a data descriptor cannot be read; zip
+ * tools only do that when writing to a pipe.
+ *
+ * Entry names are checked before anything is written: absolute names, drive letters and ".."
+ * are refused, backslashes count as separators, and names deeper than {@code ftp.list.maxDepth}
+ * (default 32) are refused so that what is extracted can be listed and archived again. Links,
+ * devices and other special entries are skipped, so nothing written can point outside the
+ * directory. At most {@code ftp.extract.maxEntries} (default 200000) entries are extracted.
+ */
+public final class TreeExtractor {
+
+    public enum Reason {
+        /** Unsafe or unusable entry name. */
+        NAME,
+        /** The caller's check refused a directory. */
+        PERMISSION,
+        /** The budget ran out. */
+        QUOTA,
+        /** Too many entries. */
+        LIMIT
+    }
+
+    /** An entry the extraction stopped at; {@link #reason()} says why. */
+    public static final class RejectedException extends IOException {
+        private final Reason reason;
+
+        RejectedException(Reason reason, String message) {
+            super(message);
+            this.reason = reason;
+        }
+
+        public Reason reason() {
+            return reason;
+        }
+    }
+
+    /** Space for what is written, taken as it is written (negative values give back). */
+    @FunctionalInterface
+    public interface Budget {
+        /** @return false if it is exceeded, which stops the extraction */
+        boolean charge(long bytes, long files, long dirs);
+    }
+
+    /** What was extracted: regular files, directories created (not counting the target) and bytes. */
+    public record Result(long files, long dirs, long bytes) {}
+
+    private static final int BUFFER = 64 * 1024;
+
+    private final TreeArchiver.Format format;
+    private final int maxDepth;
+    private final long maxEntries;
+
+    public TreeExtractor(TreeArchiver.Format format, int maxDepth, long maxEntries) {
+        this.format = format;
+        this.maxDepth = Math.max(1, maxDepth);
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    public static TreeExtractor fromSystemProperties(TreeArchiver.Format format) {
+        return new TreeExtractor(
+                format,
+                Integer.getInteger("ftp.list.maxDepth", 32),
+                Long.getLong("ftp.extract.maxEntries", 200_000L)
+        );
+    }
+
+    /**
+     * Extracts {@code in} into {@code dir}, which must exist. On an exception whatever was
+     * extracted so far stays (and stays charged); the caller removes it.
+     *
+     * @param mayWrite whether entries may be written into a directory, given by its path
+     *                 relative to {@code dir} ("" for {@code dir} itself); null allows all
+     * @param stop     checked before every entry; true ends the extraction with an IOException
+     * @throws RejectedException on an entry that may not be extracted
+     * @throws IOException       if the archive is malformed or the stream or a write fails
+     */
+    public Result extract(InputStream in, Path dir, Predicate<Path> mayWrite, Budget budget,
+                          BooleanSupplier stop) throws IOException {
+        Run run = new Run(dir, mayWrite, budget);
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER);
+        if (format == TreeArchiver.Format.ZIP) {
+            extractZip(buffered, run, stop);
+        } else {
+            extractTar(gunzipIfCompressed(buffered), run, stop);
+        }
+        return new Result(run.files, run.dirs, run.bytes);
+    }
+
+    private void extractZip(BufferedInputStream in, Run run, BooleanSupplier stop) throws IOException {
+        // ZipInputStream takes anything else for an archive without entries
+        in.mark(4);
+        byte[] signature = in.readNBytes(4);
+        in.reset();
+        if (signature.length < 4 || signature[0] != 'P' || signature[1] != 'K'
+                || !((signature[2] == 3 && signature[3] == 4) || (signature[2] == 5 && signature[3] == 6))) {
+            throw new IOException("Not a ZIP archive");
+        }
+        ZipInputStream zip = new ZipInputStream(in, StandardCharsets.UTF_8);
+        while (true) {
+            ZipEntry ze;
+            try {
+                ze = zip.getNextEntry();
+            } catch (IllegalArgumentException e) {
+                // A name that is not UTF-8 (old tools write the DOS code page)
+                throw new RejectedException(Reason.NAME, "Entry name is not UTF-8");
+            }
+            if (ze == null) break;
+            if (stop.getAsBoolean()) throw new IOException("Extraction aborted");
+            run.count();
+            if (ze.isDirectory()) {
+                run.directory(ze.getName());
+            } else {
+                run.file(ze.getName(), zip, -1, ze.getLastModifiedTime());
+            }
+        }
+    }
+
+    private void extractTar(InputStream in, Run run, BooleanSupplier stop) throws IOException {
+        TarReader tar = new TarReader(in);
+        TarReader.Header h;
+        while ((h = tar.next()) != null) {
+            if (stop.getAsBoolean()) throw new IOException("Extraction aborted");
+            run.count();
+            switch (h.type()) {
+                case '0', '\0', '7' -> run.file(h.name(), in, h.size(), h.mtime());
+                case '5' -> {
+                    run.directory(h.name());
+                    tar.skip(h.size());
+                }
+                // Links, devices, FIFOs: not extracted
+                default -> tar.skip(h.size());
+            }
+            tar.skipPadding(h.size());
+        }
+    }
+
+    private static InputStream gunzipIfCompressed(BufferedInputStream in) throws IOException {
+        in.mark(2);
+        int b1 = in.read();
+        int b2 = in.read();
+        in.reset();
+        return b1 == 0x1f && b2 == 0x8b ? new GZIPInputStream(in, BUFFER) : in;
+    }
+
+    /** State of one extraction. */
+    private final class Run {
+        final Path dir;
+        final Predicate<Path> mayWrite;
+        final Budget budget;
+        final byte[] buffer = new byte[BUFFER];
+        // Directories checked with mayWrite, by relative path
+        final Map<Path, Boolean> allowed = new HashMap<>();
+        Path lastParent;
+        long entries;
+        long files;
+        long dirs;
+        long bytes;
+
+        Run(Path dir, Predicate<Path> mayWrite, Budget budget) {
+            this.dir = dir;
+            this.mayWrite = mayWrite;
+            this.budget = budget;
+        }
+
+        void count() throws RejectedException {
+            if (++entries > maxEntries) {
+                throw new RejectedException(Reason.LIMIT, "More than " + maxEntries + " entries");
+            }
+        }
+
+        void directory(String name) throws IOException {
+            Path relative = relative(name);
+            if (relative == null) return; // "./"
+            makeDirectories(relative);
+        }
+
+        /** @param size bytes to copy from {@code in}, -1 for all of it */
+        void file(String name, InputStream in, long size, FileTime mtime) throws IOException {
+            Path relative = relative(name);
+            if (relative == null) {
+                throw new RejectedException(Reason.NAME, "File entry without a name");
+            }
+            Path parent = relative.getParent();
+            if (parent != null) makeDirectories(parent);
+            check(parent);
+
+            Path target = dir.resolve(relative);
+            try (OutputStream out = create(target, name)) {
+                budget.charge(0, 1, 0);
+                files++;
+                long left = size < 0 ? Long.MAX_VALUE : size;
+                while (left > 0) {
+                    int n = in.read(buffer, 0, (int) Math.min(buffer.length, left));
+                    if (n < 0) {
+                        if (size >= 0) throw new EOFException("Archive ends inside " + name);
+                        break;
+                    }
+                    out.write(buffer, 0, n);
+                    left -= n;
+                    bytes += n;
+                    if (!budget.charge(n, 0, 0)) {
+                        throw new RejectedException(Reason.QUOTA, "Quota exceeded at " + name);
+                    }
+                }
+            }
+            if (mtime != null) {
+                Files.setLastModifiedTime(target, mtime);
+            }
+        }
+
+        // New files are the rule; only a clash costs the extra stat
+        private OutputStream create(Path target, String name) throws IOException {
+            try {
+                return Files.newOutputStream(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            } catch (FileAlreadyExistsException e) {
+                if (Files.isDirectory(target, LinkOption.NOFOLLOW_LINKS)) {
+                    throw new RejectedException(Reason.NAME, name + ": a directory of that name was extracted before");
+                }
+            }
+            // A later entry with the same name replaces the earlier one, as tar does
+            long replaced = Files.size(target);
+            budget.charge(-replaced, -1, 0);
+            files--;
+            bytes -= replaced;
+            return Files.newOutputStream(target, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+
+        private void makeDirectories(Path relative) throws IOException {
+            if (relative.equals(lastParent)) return;
+            Path target = dir.resolve(relative);
+            if (!Files.isDirectory(target, LinkOption.NOFOLLOW_LINKS)) {
+                // Created top down, each checked, so the first refused one is reported
+                Path sub = null;
+                for (Path part : relative) {
+                    sub = sub == null ? part : sub.resolve(part);
+                    Path p = dir.resolve(sub);
+                    if (Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)) continue;
+                    check(sub.getParent());
+                    try {
+                        Files.createDirectory(p);
+                    } catch (FileAlreadyExistsException e) {
+                        throw new RejectedException(Reason.NAME, sub + ": a file of that name was extracted before");
+                    }
+                    dirs++;
+                    budget.charge(0, 0, 1);
+                }
+            }
+            lastParent = relative;
+        }
+
+        // May entries be written into this directory (null: dir itself)?
+        private void check(Path relativeDir) throws RejectedException {
+            if (mayWrite == null) return;
+            Path key = relativeDir == null ? Path.of("") : relativeDir;
+            if (!allowed.computeIfAbsent(key, mayWrite::test)) {
+                throw new RejectedException(Reason.PERMISSION, "Permission denied: " + key);
+            }
+        }
+
+        /** The entry's path below {@code dir}; null for the directory itself ("./"). */
+        private Path relative(String name) throws RejectedException {
+            String n = name.replace('\\', '/');
+            if (n.startsWith("/") || (n.length() > 1 && n.charAt(1) == ':') || n.indexOf('\0') >= 0) {
+                throw new RejectedException(Reason.NAME, "Unsafe entry name: " + name);
+            }
+            Path relative = null;
+            int depth = 0;
+            for (String part : n.split("/")) {
+                if (part.isEmpty() || part.equals(".")) continue;
+                if (part.equals("..")) {
+                    throw new RejectedException(Reason.NAME, "Unsafe entry name: " + name);
+                }
+                if (++depth > maxDepth) {
+                    throw new RejectedException(Reason.NAME, "Entry nested too deep: " + name);
+                }
+                try {
+                    relative = relative == null ? Path.of(part) : relative.resolve(part);
+                } catch (InvalidPathException e) {
+                    throw new RejectedException(Reason.NAME, "Invalid entry name: " + name);
+                }
+            }
+            // Belt and braces: whatever the platform makes of the name, it stays below dir
+            if (relative != null && !dir.resolve(relative).normalize().startsWith(dir.normalize())) {
+                throw new RejectedException(Reason.NAME, "Unsafe entry name: " + name);
+            }
+            return relative;
+        }
+    }
+
+    /**
+     * Reads ustar headers, with the pax ({@code path}, {@code size}, {@code mtime}) and GNU
+     * long name extensions that GNU tar, bsdtar and 7-Zip write for long names and big files.
+     */
+    static final class TarReader {
+        private static final int BLOCK = 512;
+        // pax and GNU long name records are small; anything bigger is not a sane archive
+        private static final int MAX_META = 1 << 20;
+
+        record Header(String name, long size, char type, FileTime mtime) {}
+
+        private final InputStream in;
+        private final byte[] block = new byte[BLOCK];
+
+        TarReader(InputStream in) {
+            this.in = in;
+        }
+
+        // An empty upload is no archive; end blocks alone are one without entries
+        private boolean started;
+
+        /** The next entry, its data left unread; null at the end of the archive. */
+        Header next() throws IOException {
+            String longName = null;
+            Long paxSize = null;
+            FileTime paxTime = null;
+            while (true) {
+                int n = in.readNBytes(block, 0, BLOCK);
+                if (n == 0 && !started) throw new IOException("Not a tar archive (empty)");
+                started = true;
+                if (n == 0) return null; // no end blocks; some writers leave them out
+                if (n < BLOCK) throw new EOFException("Archive ends inside a header");
+                if (isZeros(block)) return null;
+                if (!checksumOk()) throw new IOException("Not a tar archive (bad header checksum)");
+
+                char type = (char) block[156];
+                long size = number(124, 12);
+                if (size < 0) throw new IOException("Malformed tar header (negative size)");
+                if (type == 'x' || type == 'L') {
+                    if (size > MAX_META) throw new IOException("Oversized tar extension header");
+                    byte[] meta = in.readNBytes((int) size);
+                    if (meta.length < size) throw new EOFException("Archive ends inside a header");
+                    skipPadding(size);
+                    if (type == 'L') {
+                        longName = cString(meta, 0, meta.length);
+                        continue;
+                    }
+                    for (String[] r : paxRecords(meta)) {
+                        switch (r[0]) {
+                            case "path" -> longName = r[1];
+                            case "size" -> paxSize = paxSize(r[1]);
+                            case "mtime" -> paxTime = paxTime(r[1]);
+                            default -> { }
+                        }
+                    }
+                    continue;
+                }
+                if (type == 'g' || type == 'K') {
+                    // Global pax header, GNU long link name: nothing needed from them
+                    skip(size);
+                    skipPadding(size);
+                    continue;
+                }
+
+                String name = longName;
+                if (name == null) {
+                    name = cString(block, 0, 100);
+                    String prefix = isUstar() ? cString(block, 345, 155) : "";
+                    if (!prefix.isEmpty()) name = prefix + "/" + name;
+                }
+                return new Header(
+                        name,
+                        paxSize != null ? paxSize : size,
+                        type,
+                        paxTime != null ? paxTime : FileTime.fromMillis(number(136, 12) * 1000)
+                );
+            }
+        }
+
+        void skip(long size) throws IOException {
+            long left = size;
+            while (left > 0) {
+                long n = in.skip(left);
+                if (n <= 0) {
+                    if (in.read() < 0) throw new EOFException("Archive ends inside an entry");
+                    n = 1;
+                }
+                left -= n;
+            }
+        }
+
+        void skipPadding(long size) throws IOException {
+            int rest = (int) (size % BLOCK);
+            if (rest != 0) skip(BLOCK - rest);
+        }
+
+        private boolean checksumOk() {
+            long sum = 0;
+            for (int i = 0; i < BLOCK; i++) {
+                sum += (i >= 148 && i < 156) ? ' ' : block[i] & 0xff;
+            }
+            return sum == number(148, 8);
+        }
+
+        private boolean isUstar() {
+            return block[257] == 'u' && block[258] == 's' && block[259] == 't'
+                    && block[260] == 'a' && block[261] == 'r';
+        }
+
+        // Octal, space or NUL terminated; or GNU base-256 for big values (high bit of the first byte)
+        private long number(int offset, int length) {
+            if ((block[offset] & 0x80) != 0) {
+                long v = block[offset] & 0x7f;
+                for (int i = 1; i < length; i++) {
+                    v = (v << 8) | (block[offset + i] & 0xff);
+                }
+                return v;
+            }
+            long v = 0;
+            for (int i = offset; i < offset + length; i++) {
+                byte b = block[i];
+                if (b == 0 || b == ' ') {
+                    if (v == 0) continue;
+                    break;
+                }
+                if (b < '0' || b > '7') break;
+                v = (v << 3) + (b - '0');
+            }
+            return v;
+        }
+
+        private static boolean isZeros(byte[] b) {
+            for (byte x : b) {
+                if (x != 0) return false;
+            }
+            return true;
+        }
+
+        private static String cString(byte[] b, int offset, int length) {
+            int end = offset;
+            while (end < offset + length && b[end] != 0) end++;
+            return new String(b, offset, end - offset, StandardCharsets.UTF_8);
+        }
+
+        private static long paxSize(String value) throws IOException {
+            try {
+                long size = Long.parseLong(value);
+                if (size >= 0) return size;
+            } catch (NumberFormatException ignored) {
+            }
+            throw new IOException("Malformed pax header (size)");
+        }
+
+        // Seconds since the epoch, optionally with a fraction
+        private static FileTime paxTime(String value) throws IOException {
+            try {
+                double seconds = Double.parseDouble(value);
+                if (Double.isFinite(seconds)) return FileTime.fromMillis((long) (seconds * 1000));
+            } catch (NumberFormatException ignored) {
+            }
+            throw new IOException("Malformed pax header (mtime)");
+        }
+
+        // "%d key=value\n" records; the length counts itself, the space and the newline
+        private static List<String[]> paxRecords(byte[] meta) throws IOException {
+            List<String[]> records = new ArrayList<>();
+            int i = 0;
+            while (i < meta.length) {
+                int space = i;
+                while (space < meta.length && meta[space] >= '0' && meta[space] <= '9') space++;
+                if (space == i || space - i > 9 || space == meta.length || meta[space] != ' ') {
+                    throw new IOException("Malformed pax header");
+                }
+                int len = Integer.parseInt(new String(meta, i, space - i, StandardCharsets.US_ASCII));
+                if (len < space - i + 2 || len > meta.length - i || meta[i + len - 1] != '\n') {
+                    throw new IOException("Malformed pax header");
+                }
+                String record = new String(meta, space + 1, i + len - space - 2, StandardCharsets.UTF_8);
+                int eq = record.indexOf('=');
+                if (eq > 0) records.add(new String[]{record.substring(0, eq), record.substring(eq + 1)});
+                i += len;
+            }
+            return records;
+        }
+    }
+}
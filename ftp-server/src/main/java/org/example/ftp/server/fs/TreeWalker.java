@@ -0,0 +1,224 @@
+package org.example.ftp.server.fs;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Walks a directory tree for the recursive listings ({@code LIST -R}, {@code MLSD -R}) and hands
+ * it to a {@link Sink} one directory at a time, in {@code ls -R} order: a directory, then each of
+ * its subdirectories (by name) with everything below it.
+ *
+ * The consumer writes to the data connection while the next few directories on the walk are
+ * already being listed and stat-ed by a pool shared by all sessions ({@code ftp.list.walkThreads},
+ * default twice the CPUs, at least 4). Each step of a walk starts the listings of the next
+ * {@code ftp.list.walkPrefetch} (default 8) directories still to visit, so one huge tree cannot
+ * take the whole pool. A listing started ahead is kept until its directory is reached; entering a
+ * subtree leaves up to that many started siblings behind on each level, so a walk holds at most
+ * {@code walkPrefetch} listings per level of the current path, {@code walkPrefetch * maxDepth}
+ * (256 with the defaults) in the worst case. Symbolic links are listed but never followed.
+ *
+ * Limits: directories deeper than {@code ftp.list.maxDepth} (default 32) below the listed one are
+ * shown but not entered; the walk stops after {@code ftp.list.maxEntries} (default 500000) entries.
+ * Either way {@link Result#truncated()} says the listing is incomplete.
+ */
+public final class TreeWalker {
+
+    /** One directory entry, with the attributes read while listing (of the link itself for a dangling link). */
+    public record Entry(Path path, String name, BasicFileAttributes attrs, boolean symlink) {
+
+        public boolean isDirectory() {
+            return attrs.isDirectory();
+        }
+    }
+
+    /**
+     * The entries of one directory, sorted by name.
+     *
+     * @param relative path below the listed directory, "" for the listed directory itself
+     * @param depth    0 for the listed directory
+     */
+    public record Listing(Path dir, String relative, int depth, List<Entry> entries) {}
+
+    @FunctionalInterface
+    public interface Sink {
+        void accept(Listing listing) throws IOException;
+    }
+
+    /** @param truncated the entry budget ran out, or there were directories below the depth limit */
+    public record Result(long entries, long dirs, boolean truncated) {}
+
+    private static final Comparator<Entry> BY_NAME = Comparator.comparing(Entry::name);
+
+    private static final class Pool {
+        static final ExecutorService INSTANCE = newPool(
+                Integer.getInteger("ftp.list.walkThreads", Math.max(4, 2 * Runtime.getRuntime().availableProcessors())));
+
+        private static ExecutorService newPool(int threads) {
+            AtomicInteger n = new AtomicInteger();
+            return Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+                Thread t = new Thread(r, "list-walk-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    // A directory that is on the walk but not emitted yet; listed ahead of time once near the top
+    private static final class Pending {
+        final Path dir;
+        final String relative;
+        final int depth;
+        CompletableFuture<List<Entry>> listing;
+
+        Pending(Path dir, String relative, int depth) {
+            this.dir = dir;
+            this.relative = relative;
+            this.depth = depth;
+        }
+
+        void start() {
+            if (listing == null) {
+                listing = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return list(dir);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, Pool.INSTANCE);
+            }
+        }
+
+        List<Entry> await() throws IOException {
+            start();
+            try {
+                return listing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+                throw e;
+            }
+        }
+    }
+
+    private final int maxDepth;
+    private final long maxEntries;
+    private final int prefetch;
+
+    public TreeWalker(int maxDepth, long maxEntries, int prefetch) {
+        this.maxDepth = Math.max(0, maxDepth);
+        this.maxEntries = Math.max(1, maxEntries);
+        this.prefetch = Math.max(1, prefetch);
+    }
+
+    public static TreeWalker fromSystemProperties() {
+        return new TreeWalker(
+                Integer.getInteger("ftp.list.maxDepth", 32),
+                Long.getLong("ftp.list.maxEntries", 500_000L),
+                Integer.getInteger("ftp.list.walkPrefetch", 8)
+        );
+    }
+
+    /**
+     * @param rootFilter which entries of {@code root} itself are shown
+     * @param enter      whether a subdirectory may be entered (checked on the calling thread)
+     * @throws IOException if {@code root} cannot be listed or the sink fails; subdirectories
+     *                     that cannot be listed (removed meanwhile, no access) are skipped
+     */
+    public Result walk(Path root, Predicate<Path> rootFilter, Predicate<Path> enter, Sink sink) throws IOException {
+        Deque<Pending> stack = new ArrayDeque<>();
+        stack.push(new Pending(root, "", 0));
+        long entries = 0;
+        long dirs = 0;
+        boolean truncated = false;
+        boolean budgetSpent = false;
+        try {
+            while (!stack.isEmpty()) {
+                Iterator<Pending> ahead = stack.iterator();
+                for (int i = 0; i < prefetch && ahead.hasNext(); i++) {
+                    ahead.next().start();
+                }
+
+                Pending next = stack.pop();
+                List<Entry> list;
+                try {
+                    list = next.await();
+                } catch (IOException e) {
+                    if (next.depth == 0) throw e;
+                    continue;
+                }
+                if (next.depth == 0) {
+                    list = list.stream().filter(e -> rootFilter.test(e.path())).toList();
+                }
+                if (list.size() > maxEntries - entries) {
+                    list = list.subList(0, (int) (maxEntries - entries));
+                    budgetSpent = true;
+                }
+                entries += list.size();
+                dirs++;
+                sink.accept(new Listing(next.dir, next.relative, next.depth, list));
+                if (budgetSpent) break;
+
+                // Pushed last to first, so that the first subdirectory is the next one out
+                for (int i = list.size() - 1; i >= 0; i--) {
+                    Entry e = list.get(i);
+                    if (!e.isDirectory() || e.symlink()) continue;
+                    if (next.depth >= maxDepth) {
+                        truncated = true;
+                        continue;
+                    }
+                    if (enter.test(e.path())) {
+                        String rel = next.relative.isEmpty() ? e.name() : next.relative + "/" + e.name();
+                        stack.push(new Pending(e.path(), rel, next.depth + 1));
+                    }
+                }
+            }
+        } finally {
+            // Listings started ahead of an aborted walk are not needed any more
+            for (Pending p : stack) {
+                if (p.listing != null) p.listing.cancel(false);
+            }
+        }
+        return new Result(entries, dirs, truncated || budgetSpent);
+    }
+
+    private static List<Entry> list(Path dir) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException e) {
+                    continue; // removed meanwhile
+                }
+                boolean symlink = attrs.isSymbolicLink();
+                if (symlink) {
+                    try {
+                        attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                    } catch (IOException ignored) {
+                        // Dangling: shown with the link's own attributes
+                    }
+                }
+                entries.add(new Entry(p, p.getFileName().toString(), attrs, symlink));
+            }
+        }
+        entries.sort(BY_NAME);
+        return entries;
+    }
+}
@@ -0,0 +1,84 @@
+package org.example.ftp.server.fs.db;
+
+import org.example.ftp.server.db.Db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * {@code users.quota_bytes} and the {@code disk_usage} table: the last usage DiskUsage knew of
+ * for every user, so that quotas hold from the first upload after a restart instead of only
+ * once the reconciliation walk is done.
+ */
+public class SqliteDiskUsageRepository {
+
+    /** {@code quota} null = unlimited; the counters are 0 for users without a usage row yet. */
+    public record Row(String username, Long quota, long bytes, long files, long dirs) {}
+
+    private static final String UPSERT = """
+            INSERT INTO disk_usage(user_id, bytes, files, dirs, updated_at)
+            SELECT id, ?, ?, ?, ? FROM users WHERE username = ?
+            ON CONFLICT(user_id) DO UPDATE SET
+                bytes = excluded.bytes,
+                files = excluded.files,
+                dirs = excluded.dirs,
+                updated_at = excluded.updated_at
+            """;
+
+    private final Db db;
+
+    public SqliteDiskUsageRepository(Db db) {
+        this.db = db;
+    }
+
+    public List<Row> loadAll() {
+        return db.queryList("""
+                SELECT u.username, u.quota_bytes, COALESCE(d.bytes, 0), COALESCE(d.files, 0), COALESCE(d.dirs, 0)
+                FROM users u
+                LEFT JOIN disk_usage d ON d.user_id = u.id
+                """, rs -> {
+            long quota = rs.getLong(2);
+            return new Row(rs.getString(1), rs.wasNull() ? null : quota, rs.getLong(3), rs.getLong(4), rs.getLong(5));
+        });
+    }
+
+    /** Stores usage counters in one transaction; rows of unknown (deleted) users are skipped. */
+    public void saveAll(List<Row> rows) {
+        if (rows.isEmpty()) return;
+
+        long now = System.currentTimeMillis();
+        try (Connection c = db.getConnection()) {
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement(UPSERT)) {
+                for (Row r : rows) {
+                    ps.setLong(1, r.bytes());
+                    ps.setLong(2, r.files());
+                    ps.setLong(3, r.dirs());
+                    ps.setLong(4, now);
+                    ps.setString(5, r.username());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param quota null or &lt;= 0 for unlimited
+     * @return false if there is no such user
+     */
+    public boolean updateQuota(String username, Long quota) {
+        return db.execute("UPDATE users SET quota_bytes = ? WHERE username = ?",
+                quota == null || quota <= 0 ? null : quota, username) > 0;
+    }
+}
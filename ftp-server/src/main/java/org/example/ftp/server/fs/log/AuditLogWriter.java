@@ -0,0 +1,400 @@
+package org.example.ftp.server.fs.log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Append-only audit log persisted under {@code <ftp-root>/audit}.
+ *
+ * Callers only enqueue (never block, never touch the disk); a single writer thread drains the
+ * queue in batches into a memory-mapped segment file. Segments are rotated by size, named after
+ * the timestamp of their first record ({@code audit-<epochMillis>.log}) and deleted after the
+ * retention period.
+ *
+ * Record format (one per line, UTF-8): {@code <epochMillis>\t<message>\n}.
+ *
+ * Tunables (system properties):
+ * -Dftp.audit.enabled=true
+ * -Dftp.audit.segmentBytes=16777216
+ * -Dftp.audit.retentionDays=30
+ * -Dftp.audit.queue=65536
+ * -Dftp.audit.fsync=interval|batch|none   (interval = force() every ftp.audit.fsyncMs)
+ * -Dftp.audit.fsyncMs=1000
+ */
+public class AuditLogWriter {
+
+    public record Record(long timestamp, String message) {}
+
+    private static final String PREFIX = "audit-";
+    private static final String SUFFIX = ".log";
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final long retentionMillis;
+    private final String fsyncPolicy;
+    private final long fsyncIntervalMs;
+
+    private final BlockingQueue<Record> queue;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+
+    // Writer-thread state (only touched by the writer thread and under 'this' for queries/close)
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private Path currentSegment;
+    private boolean dirty;
+    private long lastForce = System.currentTimeMillis();
+
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    public static AuditLogWriter open(Path dir) throws IOException {
+        return new AuditLogWriter(
+                dir,
+                Integer.getInteger("ftp.audit.segmentBytes", 16 * 1024 * 1024),
+                Integer.getInteger("ftp.audit.retentionDays", 30),
+                Integer.getInteger("ftp.audit.queue", 65_536),
+                System.getProperty("ftp.audit.fsync", "interval"),
+                Long.getLong("ftp.audit.fsyncMs", 1000L)
+        );
+    }
+
+    public AuditLogWriter(
+            Path dir,
+            int segmentBytes,
+            int retentionDays,
+            int queueCapacity,
+            String fsyncPolicy,
+            long fsyncIntervalMs
+    ) throws IOException {
+        this.dir = dir.toAbsolutePath().normalize();
+        this.segmentBytes = Math.max(64 * 1024, segmentBytes);
+        this.retentionMillis = TimeUnit.DAYS.toMillis(Math.max(1, retentionDays));
+        this.fsyncPolicy = fsyncPolicy == null ? "interval" : fsyncPolicy.toLowerCase();
+        this.fsyncIntervalMs = Math.max(10, fsyncIntervalMs);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1024, queueCapacity));
+
+        Files.createDirectories(this.dir);
+        reopenLastSegment();
+        purgeExpired();
+
+        this.writerThread = new Thread(this::writerLoop, "audit-log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "audit-log-close"));
+    }
+
+    /**
+     * Non-blocking: if the writer can't keep up, the record is dropped and counted.
+     */
+    public void append(long timestamp, String message) {
+        if (!queue.offer(new Record(timestamp, message))) {
+            dropped.increment();
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    /**
+     * Records with {@code from <= timestamp < to}, oldest first, at most {@code limit}.
+     * Optional {@code contains} filters by substring (case-sensitive).
+     */
+    public List<Record> query(long from, long to, int limit, String contains) throws IOException {
+        List<Record> out = new ArrayList<>();
+        if (limit <= 0 || from >= to) return out;
+
+        List<Path> segments = listSegments();
+        for (int i = 0; i < segments.size() && out.size() < limit; i++) {
+            Path segment = segments.get(i);
+            long segStart = segmentStart(segment);
+            long segEnd = i + 1 < segments.size() ? segmentStart(segments.get(i + 1)) : Long.MAX_VALUE;
+            if (segEnd <= from || segStart >= to) continue;
+
+            // Live segment: only snapshot the mapping and its written end under the lock, scan outside
+            // it. Rotation truncates the file to its used size, which is never below that snapshot.
+            ByteBuffer live = null;
+            int liveEnd = 0;
+            synchronized (this) {
+                if (segment.equals(currentSegment) && mapped != null) {
+                    live = mapped.duplicate();
+                    liveEnd = mapped.position();
+                }
+            }
+            if (live != null) {
+                scan(live, liveEnd, from, to, limit, contains, out);
+            } else {
+                scanSegment(segment, from, to, limit, contains, out);
+            }
+        }
+        return out;
+    }
+
+    public void close() {
+        if (!running) return;
+        running = false;
+        writerThread.interrupt();
+        try {
+            writerThread.join(2000);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            List<Record> batch = new ArrayList<>();
+            while (!queue.isEmpty()) {
+                drainOnce(batch);
+            }
+            closeSegment(true);
+        }
+    }
+
+    // ===== writer thread =====
+
+    private void writerLoop() {
+        List<Record> batch = new ArrayList<>(1024);
+        long lastPurge = System.currentTimeMillis();
+        while (running) {
+            try {
+                Record first = queue.poll(fsyncIntervalMs, TimeUnit.MILLISECONDS);
+                synchronized (this) {
+                    if (first != null) {
+                        batch.add(first);
+                    }
+                    drainOnce(batch);
+                    maybeForce();
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastPurge > TimeUnit.HOURS.toMillis(1)) {
+                    lastPurge = now;
+                    purgeExpired();
+                }
+            } catch (InterruptedException e) {
+                if (!running) return;
+            } catch (Exception e) {
+                // Never let the writer die; a broken segment is rotated away on next write
+                e.printStackTrace();
+                synchronized (this) {
+                    closeSegment(false);
+                }
+            }
+        }
+    }
+
+    private void drainOnce(List<Record> batch) {
+        queue.drainTo(batch, 4096);
+        if (batch.isEmpty()) return;
+        for (Record r : batch) {
+            try {
+                writeRecord(r);
+            } catch (IOException e) {
+                dropped.increment();
+            }
+        }
+        batch.clear();
+        if ("batch".equals(fsyncPolicy)) {
+            force();
+        }
+    }
+
+    private void writeRecord(Record r) throws IOException {
+        byte[] bytes = encode(r);
+        if (bytes.length > segmentBytes) {
+            dropped.increment();
+            return;
+        }
+        if (mapped == null || mapped.remaining() < bytes.length) {
+            rotate(r.timestamp());
+        }
+        mapped.put(bytes);
+        dirty = true;
+        written.increment();
+    }
+
+    private void maybeForce() {
+        if (!"interval".equals(fsyncPolicy)) return;
+        long now = System.currentTimeMillis();
+        if (now - lastForce >= fsyncIntervalMs) {
+            force();
+        }
+    }
+
+    private void force() {
+        lastForce = System.currentTimeMillis();
+        if (mapped != null && dirty) {
+            mapped.force();
+            dirty = false;
+        }
+    }
+
+    private void rotate(long firstTimestamp) throws IOException {
+        closeSegment(true);
+        Path p = dir.resolve(PREFIX + firstTimestamp + SUFFIX);
+        // Same millisecond as an existing segment: bump the name, ordering stays by name
+        while (Files.exists(p)) {
+            firstTimestamp++;
+            p = dir.resolve(PREFIX + firstTimestamp + SUFFIX);
+        }
+        openSegment(p, 0);
+    }
+
+    private void openSegment(Path p, int position) throws IOException {
+        channel = FileChannel.open(p, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        mapped.position(position);
+        currentSegment = p;
+    }
+
+    /**
+     * Flushes and truncates the current segment to its written size (mapped files are pre-sized).
+     */
+    private void closeSegment(boolean truncate) {
+        if (channel == null) return;
+        try {
+            int used = mapped.position();
+            if (dirty) mapped.force();
+            dirty = false;
+            mapped = null;
+            if (truncate) {
+                channel.truncate(used);
+            }
+        } catch (Exception ignored) {
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+            currentSegment = null;
+        }
+    }
+
+    private void reopenLastSegment() throws IOException {
+        List<Path> segments = listSegments();
+        if (segments.isEmpty()) return;
+        Path last = segments.get(segments.size() - 1);
+        long size = Files.size(last);
+        if (size >= segmentBytes) return;
+
+        // A previous run may have died without truncating: find the end of written data
+        int end = (int) size;
+        try (FileChannel ch = FileChannel.open(last, StandardOpenOption.READ)) {
+            if (size > 0) {
+                MappedByteBuffer ro = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                end = 0;
+                for (int i = 0; i < size; i++) {
+                    if (ro.get(i) == 0) break;
+                    if (ro.get(i) == '\n') end = i + 1;
+                }
+            }
+        }
+        openSegment(last, end);
+    }
+
+    private void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        try {
+            List<Path> segments = listSegments();
+            // A segment may be dropped once the *next* one starts before the cutoff
+            for (int i = 0; i + 1 < segments.size(); i++) {
+                if (segmentStart(segments.get(i + 1)) >= cutoff) break;
+                Path p = segments.get(i);
+                synchronized (this) {
+                    if (!p.equals(currentSegment)) {
+                        Files.deleteIfExists(p);
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    // ===== reading =====
+
+    private void scanSegment(Path segment, long from, long to, int limit, String contains, List<Record> out)
+            throws IOException {
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size == 0) return;
+            scan(ch.map(FileChannel.MapMode.READ_ONLY, 0, size), (int) size, from, to, limit, contains, out);
+        }
+    }
+
+    private static void scan(ByteBuffer buf, int size, long from, long to, int limit, String contains,
+                             List<Record> out) {
+        int lineStart = 0;
+        for (int i = 0; i < size && out.size() < limit; i++) {
+            byte b = buf.get(i);
+            if (b == 0) break; // unwritten tail of a segment that was not truncated
+            if (b != '\n') continue;
+
+            Record r = decode(buf, lineStart, i);
+            lineStart = i + 1;
+            if (r == null || r.timestamp() < from || r.timestamp() >= to) continue;
+            if (contains != null && !contains.isEmpty() && !r.message().contains(contains)) continue;
+            out.add(r);
+        }
+    }
+
+    private static Record decode(ByteBuffer buf, int start, int end) {
+        long ts = 0;
+        int i = start;
+        for (; i < end; i++) {
+            byte b = buf.get(i);
+            if (b == '\t') break;
+            if (b < '0' || b > '9') return null;
+            ts = ts * 10 + (b - '0');
+        }
+        if (i >= end) return null;
+        byte[] msg = new byte[end - i - 1];
+        buf.get(i + 1, msg);
+        return new Record(ts, new String(msg, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] encode(Record r) {
+        String msg = r.message() == null ? "" : r.message().replace('\n', ' ').replace('\r', ' ');
+        return (r.timestamp() + "\t" + msg + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> {
+                        String n = p.getFileName().toString();
+                        return n.startsWith(PREFIX) && n.endsWith(SUFFIX) && segmentStart(p) >= 0;
+                    })
+                    .sorted((a, b) -> Long.compare(segmentStart(a), segmentStart(b)))
+                    .toList();
+        }
+    }
+
+    private static long segmentStart(Path p) {
+        String n = p.getFileName().toString();
+        try {
+            return Long.parseLong(n.substring(PREFIX.length(), n.length() - SUFFIX.length()));
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
@@ -3,34 +3,126 @@ package org.example.ftp.server.fs.log;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedDeque;
 
 public class ServerLogService {
 
-    private static final ConcurrentLinkedDeque<String> LOGS = new ConcurrentLinkedDeque<>();
+    /** One buffered log line together with its monotonically increasing sequence number (starts at 1). */
+    public record Entry(long seq, String line) {}
 
     // Tunables (system properties):
     // -Dftp.log.max=2000
     // -Dftp.log.console=true/false
-    private static final int MAX_LOGS = Integer.getInteger("ftp.log.max", 2000);
+    private static final int MAX_LOGS = Math.max(1, Integer.getInteger("ftp.log.max", 2000));
     private static final boolean CONSOLE = Boolean.parseBoolean(System.getProperty("ftp.log.console", "true"));
 
+    // Fixed-size ring buffer: slot = seq % MAX_LOGS. Guarded by LOCK (also used for long-poll waits).
+    private static final Object LOCK = new Object();
+    private static final String[] RING = new String[MAX_LOGS];
+    private static long lastSeq = 0;
+
+    // Optional persistent sink (see AuditLogWriter); append() only enqueues, it never blocks.
+    private static volatile AuditLogWriter auditLog;
+
+    public static void setAuditLog(AuditLogWriter writer) {
+        auditLog = writer;
+    }
+
+    public static AuditLogWriter getAuditLog() {
+        return auditLog;
+    }
+
     public static void log(String message) {
-        String line = "[" + Instant.now() + "] " + message;
+        Instant now = Instant.now();
+        String line = "[" + now + "] " + message;
+
+        AuditLogWriter audit = auditLog;
+        if (audit != null) {
+            audit.append(now.toEpochMilli(), message);
+        }
 
         if (CONSOLE) {
             System.out.println(line);
         }
 
-        LOGS.addLast(line);
-        // best-effort ring buffer trim
-        while (LOGS.size() > MAX_LOGS) {
-            LOGS.pollFirst();
+        synchronized (LOCK) {
+            lastSeq++;
+            RING[(int) (lastSeq % MAX_LOGS)] = line;
+            LOCK.notifyAll();
         }
-
     }
 
     public static List<String> getLogs() {
-        return new ArrayList<>(LOGS); // copy snapshot
+        synchronized (LOCK) {
+            long first = firstSeqLocked();
+            List<String> out = new ArrayList<>((int) (lastSeq - first + 1));
+            for (long s = first; s <= lastSeq; s++) {
+                out.add(RING[(int) (s % MAX_LOGS)]);
+            }
+            return out; // copy snapshot
+        }
+    }
+
+    /** Sequence number of the newest buffered line (0 if nothing was logged yet). */
+    public static long getLastSeq() {
+        synchronized (LOCK) {
+            return lastSeq;
+        }
+    }
+
+    /** Sequence number of the oldest line still held in the buffer. */
+    public static long getFirstSeq() {
+        synchronized (LOCK) {
+            return firstSeqLocked();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} lines with seq &gt; {@code since}, oldest first.
+     * If {@code since} is older than the buffer, reading starts from the oldest line still available.
+     */
+    public static List<Entry> getSince(long since, int limit) {
+        synchronized (LOCK) {
+            return sinceLocked(since, limit);
+        }
+    }
+
+    /**
+     * Latest {@code limit} lines (tail of the buffer), oldest first.
+     */
+    public static List<Entry> getTail(int limit) {
+        synchronized (LOCK) {
+            return sinceLocked(Math.max(0, lastSeq - Math.max(0, limit)), limit);
+        }
+    }
+
+    /**
+     * Blocks until a line with seq &gt; {@code since} exists or the timeout elapses.
+     *
+     * @return the newest sequence number at the time of return
+     */
+    public static long awaitNewerThan(long since, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + Math.max(0, timeoutMs);
+        synchronized (LOCK) {
+            while (lastSeq <= since) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) break;
+                LOCK.wait(left);
+            }
+            return lastSeq;
+        }
+    }
+
+    private static List<Entry> sinceLocked(long since, int limit) {
+        long from = Math.max(since + 1, firstSeqLocked());
+        long to = Math.min(lastSeq, from + Math.max(0, limit) - 1);
+        List<Entry> out = new ArrayList<>((int) Math.max(0, to - from + 1));
+        for (long s = from; s <= to; s++) {
+            out.add(new Entry(s, RING[(int) (s % MAX_LOGS)]));
+        }
+        return out;
+    }
+
+    private static long firstSeqLocked() {
+        return Math.max(1, lastSeq - MAX_LOGS + 1);
     }
 }
@@ -0,0 +1,306 @@
+package org.example.ftp.server.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.example.ftp.server.connection.ConnectionLimiter;
+import org.example.ftp.server.http.handler.LiveStatsHandler;
+import org.example.ftp.server.http.handler.SessionsHandler;
+import org.example.ftp.server.metrics.ServerMetrics;
+import org.example.ftp.server.session.ActiveSessionRegistry;
+import org.example.ftp.server.session.SessionInfo;
+import org.example.ftp.server.stats.StatsService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-Sent Events fan-out for the web admin (/api/events).
+ *
+ * One producer thread samples sessions, counters and per-user stats once per tick and publishes
+ * only what changed. Every event is an idempotent "latest state" upsert keyed by what it describes
+ * (a session id, "counters", "users"), so per subscriber only the newest pending value per key is
+ * kept: a slow client simply skips intermediate updates. A subscriber can therefore hold at most
+ * one pending event per live session plus a few fixed keys; only when more than maxPending extra
+ * keys pile up (sessions closed while the client was stalled) is its backlog dropped and replaced
+ * by one full snapshot.
+ *
+ * Every subscriber has its own sender thread, so a client that stops reading (a laptop asleep
+ * with its connection still open) blocks only its own stream until TCP gives up on it. They are
+ * platform threads: the JDK server's stream writes inside a monitor, which would pin a virtual
+ * thread's carrier for as long as the write blocks.
+ *
+ * Event types: snapshot, session, session-closed, counters, users.
+ */
+public class AdminEventHub {
+
+    // Tunables (system properties):
+    // -Dftp.events.tickMs=1000
+    // -Dftp.events.maxPending=64   (pending keys allowed on top of one per live session)
+    private static final long TICK_MS = Math.max(100, Long.getLong("ftp.events.tickMs", 1000));
+    private static final int MAX_PENDING = Math.max(4, Integer.getInteger("ftp.events.maxPending", 64));
+    private static final long HEARTBEAT_MS = 15_000;
+
+    private final ActiveSessionRegistry sessionRegistry;
+    private final ConnectionLimiter connectionLimiter;
+    private final StatsService statsService;
+
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicInteger senderSeq = new AtomicInteger();
+
+    // Per-subscriber overflow threshold, resized by the producer every tick from the session count
+    private volatile int pendingLimit = MAX_PENDING;
+
+    // Producer state (written by the producer thread only)
+    private final Map<Long, String> lastSessions = new HashMap<>();
+    private volatile String lastCounters;
+    private long lastStatsVersion = -1;
+    private long lastUsersSignature = -1;
+    private long lastBytesUp = -1;
+    private long lastBytesDown = -1;
+    private long lastTickNanos;
+    private long lastHeartbeat;
+
+    // Also read by sender threads (snapshot): usersJson, lastCounters
+    private volatile String usersJson;
+
+    private static final class Subscriber {
+        final HttpExchange exchange;
+        final OutputStream out;
+        // key -> framed event; guarded by "this"
+        final LinkedHashMap<String, String> pending = new LinkedHashMap<>();
+        boolean needSnapshot = true;
+        volatile boolean closed;
+
+        Subscriber(HttpExchange exchange) {
+            this.exchange = exchange;
+            this.out = exchange.getResponseBody();
+        }
+    }
+
+    public AdminEventHub(ActiveSessionRegistry sessionRegistry, ConnectionLimiter connectionLimiter, StatsService statsService) {
+        this.sessionRegistry = sessionRegistry;
+        this.connectionLimiter = connectionLimiter;
+        this.statsService = statsService;
+
+        Thread t = new Thread(this::produceLoop, "admin-events-producer");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Takes over the exchange: sends the SSE headers and returns immediately,
+     * so the HTTP worker thread is not held for the life of the stream.
+     */
+    public void subscribe(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().add("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(200, 0);
+
+        Subscriber sub = new Subscriber(exchange);
+        subscribers.add(sub);
+        Thread t = new Thread(() -> send(sub), "admin-events-sender-" + senderSeq.incrementAndGet());
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    // ===== producer =====
+
+    private void produceLoop() {
+        while (true) {
+            try {
+                Thread.sleep(TICK_MS);
+                if (!subscribers.isEmpty()) {
+                    produce();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void produce() {
+        // Sessions: upsert changed/new, report closed
+        List<SessionInfo> sessions = sessionRegistry.list();
+        pendingLimit = MAX_PENDING + sessions.size();
+        Map<Long, String> seen = new HashMap<>(sessions.size() * 2);
+        StringBuilder sb = new StringBuilder(512);
+        for (SessionInfo s : sessions) {
+            sb.setLength(0);
+            SessionsHandler.appendSession(sb, s);
+            String json = sb.toString();
+            seen.put(s.getId(), json);
+            if (!json.equals(lastSessions.get(s.getId()))) {
+                publish("session:" + s.getId(), frame("session", json));
+            }
+        }
+        for (Iterator<Long> it = lastSessions.keySet().iterator(); it.hasNext(); ) {
+            Long id = it.next();
+            if (!seen.containsKey(id)) {
+                publish("session:" + id, frame("session-closed", "{\"id\":" + id + "}"));
+            }
+        }
+        lastSessions.clear();
+        lastSessions.putAll(seen);
+
+        // Counters
+        String counters = countersJson();
+        if (!counters.equals(lastCounters)) {
+            lastCounters = counters;
+            publish("counters", frame("counters", counters));
+        }
+
+        // Per-user stats: one SELECT for all subscribers, and only after a login/transfer/disconnect
+        long version = statsService.getVersion();
+        long signature = connectionLimiter.getCurrentConnections() * 31L + connectionLimiter.getConnectedUsersCount();
+        if (version != lastStatsVersion || signature != lastUsersSignature || usersJson == null) {
+            lastStatsVersion = version;
+            lastUsersSignature = signature;
+            String users = LiveStatsHandler.buildJson(statsService, connectionLimiter);
+            if (!users.equals(usersJson)) {
+                usersJson = users;
+                publish("users", frame("users", users));
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - lastHeartbeat >= HEARTBEAT_MS) {
+            lastHeartbeat = now;
+            publish("heartbeat", ": ping\n\n");
+        }
+    }
+
+    private String countersJson() {
+        long up = ServerMetrics.BYTES_UPLOADED.sum();
+        long down = ServerMetrics.BYTES_DOWNLOADED.sum();
+        long now = System.nanoTime();
+        long upRate = 0;
+        long downRate = 0;
+        if (lastBytesUp >= 0 && now > lastTickNanos) {
+            double seconds = (now - lastTickNanos) / 1e9;
+            upRate = (long) ((up - lastBytesUp) / seconds);
+            downRate = (long) ((down - lastBytesDown) / seconds);
+        }
+        lastBytesUp = up;
+        lastBytesDown = down;
+        lastTickNanos = now;
+
+        return "{\"controlConnections\":" + sessionRegistry.size()
+                + ",\"totalConnections\":" + connectionLimiter.getCurrentConnections()
+                + ",\"connectedUsers\":" + connectionLimiter.getConnectedUsersCount()
+                + ",\"uploadsInFlight\":" + ServerMetrics.UPLOADS_IN_FLIGHT.get()
+                + ",\"downloadsInFlight\":" + ServerMetrics.DOWNLOADS_IN_FLIGHT.get()
+                + ",\"bytesUploaded\":" + up
+                + ",\"bytesDownloaded\":" + down
+                + ",\"uploadBytesPerSecond\":" + Math.max(0, upRate)
+                + ",\"downloadBytesPerSecond\":" + Math.max(0, downRate)
+                + "}";
+    }
+
+    private String snapshot() {
+        String users = usersJson;
+        if (users == null) {
+            users = LiveStatsHandler.buildJson(statsService, connectionLimiter);
+            usersJson = users;
+        }
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("{\"sessions\":[");
+        boolean first = true;
+        for (SessionInfo s : sessionRegistry.list()) {
+            if (!first) sb.append(',');
+            first = false;
+            SessionsHandler.appendSession(sb, s);
+        }
+        sb.append("],\"users\":").append(users);
+        String counters = lastCounters;
+        if (counters != null) {
+            sb.append(",\"counters\":").append(counters);
+        }
+        sb.append('}');
+        return "retry: 2000\n" + frame("snapshot", sb.toString());
+    }
+
+    private static String frame(String event, String json) {
+        return "event: " + event + "\ndata: " + json + "\n\n";
+    }
+
+    // ===== fan-out =====
+
+    private void publish(String key, String framed) {
+        int limit = pendingLimit;
+        for (Subscriber sub : subscribers) {
+            synchronized (sub) {
+                if (sub.closed || sub.needSnapshot) {
+                    continue; // the pending snapshot already covers this
+                }
+                sub.pending.remove(key);
+                sub.pending.put(key, framed);
+                if (sub.pending.size() > limit) {
+                    sub.pending.clear();
+                    sub.needSnapshot = true;
+                }
+                sub.notify();
+            }
+        }
+    }
+
+    /** The subscriber's sender thread: waits for pending events and writes them, until the stream fails. */
+    private void send(Subscriber sub) {
+        try {
+            while (true) {
+                String batch;
+                boolean snapshot;
+                synchronized (sub) {
+                    while (!sub.closed && !sub.needSnapshot && sub.pending.isEmpty()) {
+                        sub.wait();
+                    }
+                    if (sub.closed) return;
+                    snapshot = sub.needSnapshot;
+                    sub.needSnapshot = false;
+                    if (snapshot) {
+                        sub.pending.clear();
+                        batch = null;
+                    } else {
+                        StringBuilder sb = new StringBuilder();
+                        for (String s : sub.pending.values()) sb.append(s);
+                        sub.pending.clear();
+                        batch = sb.toString();
+                    }
+                }
+                if (snapshot) {
+                    batch = snapshot();
+                }
+                // May block on a slow client; meanwhile publish() keeps coalescing into "pending"
+                sub.out.write(batch.getBytes(StandardCharsets.UTF_8));
+                sub.out.flush();
+            }
+        } catch (Exception e) {
+            close(sub);
+        }
+    }
+
+    private void close(Subscriber sub) {
+        synchronized (sub) {
+            sub.closed = true;
+            sub.pending.clear();
+            sub.notify();
+        }
+        subscribers.remove(sub);
+        try {
+            sub.exchange.close();
+        } catch (Exception ignored) {
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.example.ftp.server.http;
 
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import org.example.ftp.server.auth.AuthService;
 import org.example.ftp.server.auth.PermissionService;
@@ -8,15 +10,20 @@ import org.example.ftp.server.auth.db.SqliteFolderRepository;
 import org.example.ftp.server.auth.db.SqliteSharedFolderRepository;
 import org.example.ftp.server.auth.db.SqliteUserRepository;
 import org.example.ftp.server.connection.ConnectionLimiter;
+import org.example.ftp.server.connection.OverloadController;
 import org.example.ftp.server.db.SqliteServerSettingsRepository;
+import org.example.ftp.server.fs.DiskUsage;
 import org.example.ftp.server.http.handler.*;
+import org.example.ftp.server.metrics.PrometheusExporter;
 import org.example.ftp.server.session.ActiveSessionRegistry;
 import org.example.ftp.server.stats.StatsService;
 import org.example.ftp.server.transfer.RateLimiter;
 
 import java.net.InetSocketAddress;
 import java.net.BindException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AdminHttpServer {
 
@@ -54,7 +61,9 @@ public class AdminHttpServer {
                 sharedFolderRepo,
                 settingsRepo,
                 ftpRoot,
-                9090
+                9090,
+                OverloadController.disabled(),
+                DiskUsage.disabled()
         );
     }
 
@@ -75,7 +84,9 @@ public class AdminHttpServer {
             SqliteServerSettingsRepository settingsRepo,
             java.nio.file.Path ftpRoot,
 
-            int port
+            int port,
+            OverloadController overloadController,
+            DiskUsage diskUsage
     ) throws Exception {
 
         HttpServer server;
@@ -85,123 +96,206 @@ public class AdminHttpServer {
             throw new BindException("Admin HTTP port " + port + " is already in use. " +
                     "Stop the previous server instance or run with -Dadmin.port=<freePort>.");
         }
+        // Also completes parked log long-polls
+        ExecutorService executor = createExecutor();
 
-        server.createContext(
+        context(server,
                 "/api/admin-token",
                 new AdminTokenHandler(settingsRepo, adminTokenService)
         );
 
-        server.createContext(
+        context(server,
                 "/api/bootstrap",
                 new BootstrapHandler(adminTokenService)
         );
 
-        server.createContext(
+        context(server,
                 "/api/runtime-info",
                 new RuntimeInfoHandler(ftpRoot, adminTokenService)
         );
 
         var userAuthFilter = new UserAuthFilter(authService);
 
-        server.createContext(
+        context(server,
                 "/api/users",
-                new UsersHandler(authService, permissionService)
+                new UsersHandler(authService, permissionService, diskUsage)
         );
 
-        server.createContext(
+        context(server,
                 "/api/user-permissions",
                 new PermissionsHandler(permissionService)
         );
 
-        server.createContext(
+        context(server,
                 "/api/limits",
-                new LimitsHandler(connectionLimiter, uploadRateLimiter, downloadRateLimiter, settingsRepo, sessionRegistry)
+                new LimitsHandler(connectionLimiter, uploadRateLimiter, downloadRateLimiter, settingsRepo, sessionRegistry, overloadController)
         );
 
-        server.createContext(
+        context(server,
                 "/api/stats",
-                new StatsHandler(statsService)
+                new StatsHandler(statsService, diskUsage)
         );
 
-        server.createContext(
+        context(server,
                 "/api/stats/live",
                 new LiveStatsHandler(statsService, connectionLimiter)
         );
 
-        server.createContext(
+        // Traffic over time: /api/stats/series?from=&to=&step=&user=
+        context(server,
+                "/api/stats/series",
+                new TrafficSeriesHandler(statsService.getTraffic())
+        );
+
+        // Per-transfer ledger: /api/transfers?user=&q=&from=&to=&direction=&outcome=&limit=&cursor=
+        context(server,
+                "/api/transfers",
+                new TransfersHandler(statsService.getTransferLedger())
+        );
+
+        // Dashboard push channel (SSE): sessions, transfer progress, counters, per-user stats
+        context(server,
+                "/api/events",
+                new EventsHandler(new AdminEventHub(sessionRegistry, connectionLimiter, statsService))
+        );
+
+        // Live sessions (list / DELETE /api/sessions/{id} to kill)
+        context(server,
+                "/api/sessions",
+                new SessionsHandler(sessionRegistry)
+        );
+
+        context(server,
                 "/api/folders",
                 new FoldersHandler(folderRepo)
         );
 
-        server.createContext(
+        context(server,
                 "/api/folders/permissions",
                 new FolderPermissionsGetHandler(userRepo, folderRepo, folderPermRepo)
         );
 
-        server.createContext(
+        context(server,
                 "/api/folders/permissions/save",
                 new FolderPermissionsPostHandler(userRepo, folderRepo, folderPermRepo)
         );
 
         // Admin endpoint: view all shared folders from database
-        server.createContext(
+        context(server,
                 "/api/shared-folders/all",
-                new SharedFoldersAdminHandler(userRepo, sharedFolderRepo)
+                new SharedFoldersAdminHandler(sharedFolderRepo)
         );
 
         // Admin endpoint: delete shared folders from database (no auth required)
-        server.createContext(
+        context(server,
                 "/api/shared-folders/all/delete",
                 new SharedFoldersAdminDeleteHandler(sharedFolderRepo)
         );
 
         // User endpoints (require user authentication via Basic Auth)
-        server.createContext(
+        context(server,
                 "/api/shared-folders",
                 new SharedFoldersGetHandler(userRepo, sharedFolderRepo)
         ).getFilters().add(userAuthFilter);
 
-        server.createContext(
+        context(server,
                 "/api/shared-folders/share",
                 new SharedFoldersPostHandler(userRepo, sharedFolderRepo)
         ).getFilters().add(userAuthFilter);
 
-        server.createContext(
+        context(server,
                 "/api/shared-folders/delete",
                 new SharedFoldersDeleteHandler(userRepo, sharedFolderRepo)
         ).getFilters().add(userAuthFilter);
 
         RootHandler rootHandler = new RootHandler(ftpRoot);
-        server.createContext(
+        context(server,
                 "/api/root",
                 rootHandler
         );
-        server.createContext(
+        context(server,
                 "/api/root/create",
                 rootHandler
         );
 
-        server.createContext(
+        context(server,
                 "/api/metrics",
                 new MetricsHandler()
         );
 
-        server.createContext(
+        context(server,
                 "/api/metrics/reset",
                 new MetricsHandler()
         );
 
+        // Prometheus scrape target
+        context(server,
+                "/metrics",
+                new PrometheusHandler(new PrometheusExporter(
+                        connectionLimiter, sessionRegistry, uploadRateLimiter, downloadRateLimiter))
+        );
+
+        // Incremental log tail: /api/logs?since=<seq>[&limit=<n>][&wait=<ms>] (wait => long-poll)
+        context(server,
+                "/api/logs",
+                new LogsHandler(executor)
+        );
+
+        // Persistent audit history: /api/audit?from=<ms|ISO>&to=<ms|ISO>[&limit=<n>][&q=<text>]
+        context(server,
+                "/api/audit",
+                new AuditHandler()
+        );
+
         // Static web admin UI (served from classpath: /admin-ui/*)
         // Longest-prefix match ensures /api/* handlers win over "/".
-        server.createContext(
+        context(server,
                 "/",
                 new StaticAdminUiHandler()
         );
 
-        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.setExecutor(executor);
         server.start();
 
-        System.out.println("Admin HTTP API started on port " + port);
+        System.out.println("Admin HTTP API started on port " + server.getAddress().getPort());
+    }
+
+    // Every context negotiates gzip for its larger JSON responses
+    private static HttpContext context(HttpServer server, String path, HttpHandler handler) {
+        HttpContext ctx = server.createContext(path, handler);
+        ctx.getFilters().add(GzipFilter.INSTANCE);
+        return ctx;
+    }
+
+    /**
+     * {@code ftp.admin.executor=virtual} (default): a virtual thread per request, so slow requests
+     * (big exports, slow clients) never queue the others; needs Java 21, otherwise falls back to
+     * {@code fixed}, a pool of {@code ftp.admin.threads} (default 16) platform threads.
+     */
+    private static ExecutorService createExecutor() {
+        String kind = System.getProperty("ftp.admin.executor", "virtual");
+        if (kind.equalsIgnoreCase("virtual")) {
+            try {
+                // Reflective: the server is built for Java 17
+                ExecutorService ex = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                System.out.println("Admin HTTP executor: virtual threads");
+                return ex;
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                System.out.println("Admin HTTP executor: virtual threads unavailable on Java "
+                        + Runtime.version().feature() + ", using a fixed pool");
+            }
+        } else if (!kind.equalsIgnoreCase("fixed")) {
+            throw new IllegalStateException("ftp.admin.executor must be virtual or fixed, got: " + kind);
+        }
+        int threads = Math.max(1, Integer.getInteger("ftp.admin.threads", 16));
+        AtomicInteger seq = new AtomicInteger();
+        System.out.println("Admin HTTP executor: fixed pool of " + threads + " threads");
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "admin-http-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,137 @@
+package org.example.ftp.server.http;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * gzip for API responses the client accepts it for: JSON and plain text bodies of at least
+ * {@code ftp.admin.gzipMinBytes} (default 8192), and streamed ones of unknown length (which
+ * {@link JsonWriter} only produces once a body outgrows its buffer). Small replies, SSE and
+ * responses that already carry a Content-Encoding (precompressed static assets) pass untouched.
+ */
+public final class GzipFilter extends Filter {
+
+    public static final GzipFilter INSTANCE = new GzipFilter(Integer.getInteger("ftp.admin.gzipMinBytes", 8192));
+
+    private final int minBytes;
+
+    public GzipFilter(int minBytes) {
+        this.minBytes = minBytes;
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        if (minBytes < 0 || !acceptsGzip(exchange.getRequestHeaders())) {
+            chain.doFilter(exchange);
+            return;
+        }
+        chain.doFilter(new Compressing(exchange));
+    }
+
+    @Override
+    public String description() {
+        return "gzip response encoding";
+    }
+
+    public static boolean acceptsGzip(Headers requestHeaders) {
+        List<String> values = requestHeaders.get("Accept-Encoding");
+        if (values == null) return false;
+        for (String value : values) {
+            for (String coding : value.split(",")) {
+                String[] parts = coding.split(";");
+                if (!parts[0].trim().equalsIgnoreCase("gzip")) continue;
+                double q = 1;
+                for (int i = 1; i < parts.length; i++) {
+                    String param = parts[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            q = Double.parseDouble(param.substring(2));
+                        } catch (NumberFormatException e) {
+                            q = 0;
+                        }
+                    }
+                }
+                return q > 0;
+            }
+        }
+        return false;
+    }
+
+    private boolean compressible(Headers responseHeaders, long length) {
+        if (responseHeaders.containsKey("Content-Encoding")) return false;
+        if (length < 0 || (length > 0 && length < minBytes)) return false;
+        String type = responseHeaders.getFirst("Content-Type");
+        return type != null && (type.startsWith("application/json") || type.startsWith("text/plain"));
+    }
+
+    /** Delegates everything, switching the body to gzip when the handler sends headers for one. */
+    private final class Compressing extends HttpExchange {
+        private final HttpExchange delegate;
+        private OutputStream body;
+
+        Compressing(HttpExchange delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+            if (rCode == 200 && compressible(delegate.getResponseHeaders(), responseLength)) {
+                delegate.getResponseHeaders().set("Content-Encoding", "gzip");
+                delegate.getResponseHeaders().add("Vary", "Accept-Encoding");
+                delegate.sendResponseHeaders(rCode, 0);
+                body = new GZIPOutputStream(delegate.getResponseBody(), 8192) {
+                    {
+                        // Compressed per request: most of the size win for a fraction of the CPU
+                        def.setLevel(Deflater.BEST_SPEED);
+                    }
+                };
+                return;
+            }
+            delegate.sendResponseHeaders(rCode, responseLength);
+        }
+
+        @Override
+        public OutputStream getResponseBody() {
+            return body != null ? body : delegate.getResponseBody();
+        }
+
+        @Override
+        public void close() {
+            if (body != null) {
+                try {
+                    body.close(); // writes the gzip trailer
+                } catch (IOException ignored) {
+                    // peer went away; closing the exchange below cleans up
+                }
+            }
+            delegate.close();
+        }
+
+        @Override public Headers getRequestHeaders() { return delegate.getRequestHeaders(); }
+        @Override public Headers getResponseHeaders() { return delegate.getResponseHeaders(); }
+        @Override public URI getRequestURI() { return delegate.getRequestURI(); }
+        @Override public String getRequestMethod() { return delegate.getRequestMethod(); }
+        @Override public HttpContext getHttpContext() { return delegate.getHttpContext(); }
+        @Override public InputStream getRequestBody() { return delegate.getRequestBody(); }
+        @Override public InetSocketAddress getRemoteAddress() { return delegate.getRemoteAddress(); }
+        @Override public int getResponseCode() { return delegate.getResponseCode(); }
+        @Override public InetSocketAddress getLocalAddress() { return delegate.getLocalAddress(); }
+        @Override public String getProtocol() { return delegate.getProtocol(); }
+        @Override public Object getAttribute(String name) { return delegate.getAttribute(name); }
+        @Override public void setAttribute(String name, Object value) { delegate.setAttribute(name, value); }
+        @Override public void setStreams(InputStream i, OutputStream o) { delegate.setStreams(i, o); }
+        @Override public HttpPrincipal getPrincipal() { return delegate.getPrincipal(); }
+    }
+}
@@ -0,0 +1,240 @@
+package org.example.ftp.server.http;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming JSON encoder for admin API responses: UTF-8 straight into a small buffer that is
+ * flushed to the exchange as it fills, so a response never exists as one String or byte[].
+ *
+ * Commas are tracked by the writer; callers only nest begin/end calls and name fields:
+ * <pre>
+ * try (JsonWriter w = JsonWriter.respond(exchange, 200)) {
+ *     w.beginObject().field("count", n).name("items").beginArray();
+ *     ...
+ *     w.endArray().endObject();
+ * }
+ * </pre>
+ */
+public final class JsonWriter implements Closeable {
+
+    private static final int BUFFER = 8 * 1024;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    @FunctionalInterface
+    public interface JsonBody {
+        void write(JsonWriter w) throws IOException;
+    }
+
+    private OutputStream out;
+    // Set while the response headers are not sent yet (see respond)
+    private HttpExchange exchange;
+    private int status;
+    private final byte[] buf = new byte[BUFFER];
+    private int pos;
+    // A value was just completed at the current level: the next one needs a comma
+    private boolean comma;
+
+    public JsonWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Returns a writer over the response body; closing it ends the response. Headers go out
+     * lazily: a body that fits the buffer is sent with its Content-Length, a larger one with
+     * chunked transfer encoding as soon as the buffer first fills (and may then be gzipped, see
+     * {@link GzipFilter}).
+     */
+    public static JsonWriter respond(HttpExchange exchange, int status) {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        JsonWriter w = new JsonWriter(null);
+        w.exchange = exchange;
+        w.status = status;
+        return w;
+    }
+
+    private void sendHeaders(long length) throws IOException {
+        exchange.sendResponseHeaders(status, length);
+        out = exchange.getResponseBody();
+        exchange = null;
+    }
+
+    /** For payloads that are kept as a String (e.g. SSE frames). */
+    public static String toString(JsonBody body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        try (JsonWriter w = new JsonWriter(bytes)) {
+            body.write(w);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // not thrown by ByteArrayOutputStream
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        separate();
+        put((byte) '{');
+        comma = false;
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        put((byte) '}');
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        separate();
+        put((byte) '[');
+        comma = false;
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        put((byte) ']');
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        string(name);
+        put((byte) ':');
+        comma = false;
+        return this;
+    }
+
+    /** null is written as JSON null. */
+    public JsonWriter value(String s) throws IOException {
+        separate();
+        if (s == null) {
+            ascii("null");
+        } else {
+            string(s);
+        }
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter value(long v) throws IOException {
+        separate();
+        ascii(Long.toString(v));
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter value(boolean v) throws IOException {
+        separate();
+        ascii(v ? "true" : "false");
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        separate();
+        ascii("null");
+        comma = true;
+        return this;
+    }
+
+    public JsonWriter field(String name, String v) throws IOException {
+        return name(name).value(v);
+    }
+
+    public JsonWriter field(String name, long v) throws IOException {
+        return name(name).value(v);
+    }
+
+    public JsonWriter field(String name, boolean v) throws IOException {
+        return name(name).value(v);
+    }
+
+    /** A nullable number. */
+    public JsonWriter field(String name, Long v) throws IOException {
+        name(name);
+        return v == null ? nullValue() : value(v.longValue());
+    }
+
+    private void separate() throws IOException {
+        if (comma) put((byte) ',');
+    }
+
+    private void string(String s) throws IOException {
+        put((byte) '"');
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    put((byte) '\\');
+                    put((byte) c);
+                } else if (c < 0x20) {
+                    put((byte) '\\');
+                    put((byte) 'u');
+                    put((byte) '0');
+                    put((byte) '0');
+                    put(HEX[c >> 4]);
+                    put(HEX[c & 0xF]);
+                } else {
+                    put((byte) c);
+                }
+            } else if (c < 0x800) {
+                put((byte) (0xC0 | (c >> 6)));
+                put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                put((byte) (0xF0 | (cp >> 18)));
+                put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                put((byte) '?'); // lone surrogate, as String.getBytes(UTF_8) does
+            } else {
+                put((byte) (0xE0 | (c >> 12)));
+                put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        put((byte) '"');
+    }
+
+    private void ascii(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            put((byte) s.charAt(i));
+        }
+    }
+
+    private void put(byte b) throws IOException {
+        if (pos == buf.length) {
+            if (exchange != null) sendHeaders(0);
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+        buf[pos++] = b;
+    }
+
+    public void flush() throws IOException {
+        if (exchange != null) sendHeaders(0);
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (exchange != null) sendHeaders(pos == 0 ? -1 : pos);
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+}
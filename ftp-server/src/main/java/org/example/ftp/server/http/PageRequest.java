@@ -0,0 +1,120 @@
+package org.example.ftp.server.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.example.ftp.server.db.Page;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * {@code ?limit=&cursor=&q=} of a list endpoint.
+ *
+ * Without {@code limit} the endpoint answers with its old plain array (streamed in pages
+ * internally); with it, with {@code {"items":[...],"nextCursor":...}} where nextCursor is null on
+ * the last page. Cursors are opaque to clients (base64url of the last row's sort key), so
+ * pages stay stable while rows are added or removed. {@code q} is a prefix of the username.
+ */
+public record PageRequest(Integer limit, String after, String prefix) {
+
+    /** A keyset query: rows after {@code after} whose username is in [prefix, upper). */
+    @FunctionalInterface
+    public interface Source<T> {
+        Page<T> fetch(String prefix, String upper, String after, int limit);
+    }
+
+    @FunctionalInterface
+    public interface ItemWriter<T> {
+        void write(JsonWriter w, T item) throws IOException;
+    }
+
+    public static final int MAX_LIMIT = 1000;
+    /** Page size used internally when a client asks for everything. */
+    public static final int STREAM_PAGE = 500;
+
+    public static PageRequest from(URI uri) {
+        String query = uri.getRawQuery();
+        Integer limit = null;
+        String after = null;
+        String prefix = null;
+        if (query != null) {
+            for (String part : query.split("&")) {
+                int eq = part.indexOf('=');
+                if (eq <= 0) continue;
+                String key = part.substring(0, eq);
+                String value = URLDecoder.decode(part.substring(eq + 1), StandardCharsets.UTF_8);
+                switch (key) {
+                    case "limit" -> limit = Math.max(1, Math.min(MAX_LIMIT, Integer.parseInt(value.trim())));
+                    case "cursor" -> after = value.isEmpty() ? null : decodeCursor(value);
+                    case "q" -> prefix = value.isEmpty() ? null : value;
+                    default -> {
+                    }
+                }
+            }
+        }
+        return new PageRequest(limit, after, prefix);
+    }
+
+    public boolean paged() {
+        return limit != null;
+    }
+
+    /**
+     * Answers the request from {@code source}. The first page is read before the headers go out,
+     * so a failing query still gets a proper error status.
+     */
+    public <T> void respond(HttpExchange exchange, Source<T> source, ItemWriter<T> item) throws IOException {
+        String upper = prefix == null ? null : prefixUpperBound(prefix);
+        int size = paged() ? limit : STREAM_PAGE;
+        Page<T> page = source.fetch(prefix, upper, after, size);
+
+        try (JsonWriter w = JsonWriter.respond(exchange, 200)) {
+            if (paged()) {
+                w.beginObject().name("items").beginArray();
+                for (T t : page.items()) item.write(w, t);
+                w.endArray();
+                w.field("nextCursor", page.nextKey() == null ? null : encodeCursor(page.nextKey()));
+                w.endObject();
+                return;
+            }
+            w.beginArray();
+            while (true) {
+                for (T t : page.items()) item.write(w, t);
+                if (page.nextKey() == null) break;
+                page = source.fetch(prefix, upper, page.nextKey(), size);
+            }
+            w.endArray();
+        }
+    }
+
+    public static String encodeCursor(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Exclusive upper bound for a prefix range scan ({@code col >= prefix AND col < bound}), which
+     * SQLite answers from the column's index unlike LIKE. null if the prefix has no upper bound.
+     */
+    public static String prefixUpperBound(String prefix) {
+        int end = prefix.length();
+        while (end > 0) {
+            int cp = prefix.codePointBefore(end);
+            int start = end - Character.charCount(cp);
+            if (cp < Character.MAX_CODE_POINT) {
+                int next = cp + 1;
+                if (next >= Character.MIN_SURROGATE && next <= Character.MAX_SURROGATE) {
+                    next = Character.MAX_SURROGATE + 1;
+                }
+                return prefix.substring(0, start) + new String(Character.toChars(next));
+            }
+            end = start;
+        }
+        return null;
+    }
+}
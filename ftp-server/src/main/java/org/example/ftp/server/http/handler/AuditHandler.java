@@ -0,0 +1,130 @@
+package org.example.ftp.server.http.handler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.example.ftp.server.fs.log.AuditLogWriter;
+import org.example.ftp.server.fs.log.ServerLogService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * GET /api/audit?from=&lt;ms|ISO-8601&gt;&amp;to=&lt;ms|ISO-8601&gt;&amp;limit=&lt;n&gt;&amp;q=&lt;text&gt;
+ *
+ * Time-range query over the persistent audit log. Defaults: last hour, 1000 records.
+ */
+public class AuditHandler implements HttpHandler {
+
+    private static final int DEFAULT_LIMIT = 1000;
+    private static final int MAX_LIMIT = 10_000;
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            AuditLogWriter audit = ServerLogService.getAuditLog();
+            if (audit == null) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            String query = exchange.getRequestURI().getRawQuery();
+            long now = System.currentTimeMillis();
+            long from;
+            long to;
+            int limit;
+            try {
+                to = parseTime(urlDecode(extractQueryParam(query, "to")), now + 1);
+                from = parseTime(urlDecode(extractQueryParam(query, "from")), to - 3_600_000L);
+                String rawLimit = extractQueryParam(query, "limit");
+                limit = rawLimit == null ? DEFAULT_LIMIT : Math.min(Integer.parseInt(rawLimit), MAX_LIMIT);
+            } catch (Exception e) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            String contains = urlDecode(extractQueryParam(query, "q"));
+
+            List<AuditLogWriter.Record> records = audit.query(from, to, limit, contains);
+
+            StringBuilder json = new StringBuilder(64 + records.size() * 96);
+            json.append("{\"from\":").append(from)
+                    .append(",\"to\":").append(to)
+                    .append(",\"dropped\":").append(audit.getDroppedCount())
+                    .append(",\"records\":[");
+            boolean first = true;
+            for (AuditLogWriter.Record r : records) {
+                if (!first) json.append(',');
+                first = false;
+                json.append("{\"ts\":\"").append(Instant.ofEpochMilli(r.timestamp()))
+                        .append("\",\"message\":\"").append(escapeJson(r.message())).append("\"}");
+            }
+            json.append("]}");
+
+            byte[] data = json.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, data.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(data);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            byte[] msg = ("ERROR: " + e.getMessage()).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(500, msg.length);
+            exchange.getResponseBody().write(msg);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static long parseTime(String value, long def) {
+        if (value == null || value.isBlank()) return def;
+        String v = value.trim();
+        if (v.chars().allMatch(Character::isDigit)) {
+            return Long.parseLong(v);
+        }
+        return Instant.parse(v).toEpochMilli();
+    }
+
+    private String extractQueryParam(String query, String key) {
+        if (query == null) return null;
+        for (String part : query.split("&")) {
+            String[] kv = part.split("=", 2);
+            if (kv.length == 2 && kv[0].equals(key)) return kv[1];
+        }
+        return null;
+    }
+
+    private String urlDecode(String s) {
+        if (s == null) return null;
+        try {
+            return URLDecoder.decode(s, StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            return s;
+        }
+    }
+
+    private static String escapeJson(String s) {
+        if (s == null) return "";
+        StringBuilder sb = new StringBuilder(s.length() + 8);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.ftp.server.http.handler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.example.ftp.server.http.AdminEventHub;
+
+import java.io.IOException;
+
+/**
+ * GET /api/events - Server-Sent Events stream for the web admin dashboard (see AdminEventHub).
+ */
+public class EventsHandler implements HttpHandler {
+
+    private final AdminEventHub hub;
+
+    public EventsHandler(AdminEventHub hub) {
+        this.hub = hub;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        // The hub owns the exchange from here on (and closes it when the client goes away)
+        hub.subscribe(exchange);
+    }
+}
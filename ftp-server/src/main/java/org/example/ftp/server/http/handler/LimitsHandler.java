@@ -3,13 +3,16 @@ package org.example.ftp.server.http.handler;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import org.example.ftp.server.connection.ConnectionLimiter;
+import org.example.ftp.server.connection.OverloadController;
 import org.example.ftp.server.db.SqliteServerSettingsRepository;
+import org.example.ftp.server.metrics.ServerMetrics;
 import org.example.ftp.server.session.ActiveSessionRegistry;
 import org.example.ftp.server.transfer.RateLimiter;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Locale;
 
 public class LimitsHandler implements HttpHandler {
 
@@ -18,19 +21,22 @@ public class LimitsHandler implements HttpHandler {
     private final RateLimiter downloadRateLimiter;
     private final SqliteServerSettingsRepository settingsRepo;
     private final ActiveSessionRegistry sessionRegistry;
+    private final OverloadController overloadController;
 
     public LimitsHandler(
             ConnectionLimiter connectionLimiter,
             RateLimiter uploadRateLimiter,
             RateLimiter downloadRateLimiter,
             SqliteServerSettingsRepository settingsRepo,
-            ActiveSessionRegistry sessionRegistry
+            ActiveSessionRegistry sessionRegistry,
+            OverloadController overloadController
     ) {
         this.connectionLimiter = connectionLimiter;
         this.uploadRateLimiter = uploadRateLimiter;
         this.downloadRateLimiter = downloadRateLimiter;
         this.settingsRepo = settingsRepo;
         this.sessionRegistry = sessionRegistry;
+        this.overloadController = overloadController;
     }
 
     @Override
@@ -59,19 +65,43 @@ public class LimitsHandler implements HttpHandler {
         Long uploadLimitJson = uploadLimit == 200000 ? null : uploadLimit;
         Long downloadLimitJson = downloadLimit == 200000 ? null : downloadLimit;
 
-        String json = String.format(
+        String json = String.format(Locale.ROOT,
                 """
                 {
                   "globalMaxConnections": %d,
                   "globalRateLimit": %d,
                   "globalUploadLimit": %s,
-                  "globalDownloadLimit": %s
+                  "globalDownloadLimit": %s,
+                  "overload": {
+                    "state": "%s",
+                    "admitFraction": %.3f,
+                    "retryAfterSeconds": %d,
+                    "commandSlowRatio": %.4f,
+                    "dbSlowRatio": %.4f,
+                    "transfersInFlight": %d,
+                    "commandP99ThresholdMs": %d,
+                    "dbP99ThresholdMs": %d,
+                    "maxTransfers": %d,
+                    "shedLogins": %d,
+                    "shedUploads": %d
+                  }
                 }
                 """,
                 maxConn,
                 rateLimit,
                 uploadLimitJson != null ? String.valueOf(uploadLimitJson) : "null",
-                downloadLimitJson != null ? String.valueOf(downloadLimitJson) : "null"
+                downloadLimitJson != null ? String.valueOf(downloadLimitJson) : "null",
+                overloadController.getState(),
+                overloadController.getAdmitFraction(),
+                overloadController.retryAfterSeconds(),
+                overloadController.getCommandSlowRatio(),
+                overloadController.getDbSlowRatio(),
+                overloadController.getTransfersInFlight(),
+                overloadController.getCommandThresholdMillis(),
+                overloadController.getDbThresholdMillis(),
+                overloadController.getMaxTransfers(),
+                ServerMetrics.SHED_LOGINS.sum(),
+                ServerMetrics.SHED_UPLOADS.sum()
         );
 
         byte[] data = json.getBytes(StandardCharsets.UTF_8);
@@ -3,17 +3,26 @@ package org.example.ftp.server.http.handler;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import org.example.ftp.server.connection.ConnectionLimiter;
+import org.example.ftp.server.db.Page;
+import org.example.ftp.server.http.JsonWriter;
+import org.example.ftp.server.http.PageRequest;
 import org.example.ftp.server.stats.StatsService;
 import org.example.ftp.server.stats.model.UserStats;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.*;
-
+import java.util.Map;
 
+/**
+ * GET /api/stats/live: per-user totals merged with current connection counts, most recent login
+ * first. Supports ?limit=&cursor=&q= (see {@link PageRequest}); with limit the object gets a
+ * nextCursor, without it every page is streamed into "users".
+ */
 public class LiveStatsHandler implements HttpHandler {
 
+    /** Users carried by each /api/events "users" event. */
+    private static final int EVENT_USERS = PageRequest.MAX_LIMIT;
+
     private final StatsService statsService;
     private final ConnectionLimiter connectionLimiter;
 
@@ -30,58 +39,18 @@ public class LiveStatsHandler implements HttpHandler {
                 return;
             }
 
-            Map<String, Integer> perUser = connectionLimiter.snapshotPerUserConnections();
-            int connectedUsers = connectionLimiter.getConnectedUsersCount();
-            int totalConnections = connectionLimiter.getCurrentConnections();
-
-            List<UserStats> base = statsService.getAllUserStats();
-            Map<String, UserStats> byUser = new HashMap<>();
-            for (UserStats s : base) {
-                byUser.put(s.username(), s);
+            PageRequest page;
+            try {
+                page = PageRequest.from(exchange.getRequestURI());
+            } catch (IllegalArgumentException e) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
             }
 
-            for (String u : perUser.keySet()) {
-                byUser.putIfAbsent(u, new UserStats(u, 0, 0L, 0L, null));
-            }
-
-            List<String> usernames = new ArrayList<>(byUser.keySet());
-            usernames.sort(String::compareToIgnoreCase);
-
-            StringBuilder usersJson = new StringBuilder();
-            usersJson.append("[");
-            boolean first = true;
-            for (String u : usernames) {
-                UserStats s = byUser.get(u);
-                int connections = perUser.getOrDefault(u, 0);
-                boolean connected = connections > 0;
-
-                if (!first) usersJson.append(",");
-                first = false;
-
-                usersJson.append(String.format(
-                        "{\"username\":\"%s\",\"connected\":%s,\"connections\":%d,\"bytesUploaded\":%d,\"bytesDownloaded\":%d,\"lastLogin\":\"%s\"}",
-                        escapeJson(u),
-                        connected,
-                        connections,
-                        s.bytesUploaded(),
-                        s.bytesDownloaded(),
-                        s.lastLogin() == null ? "" : escapeJson(String.valueOf(s.lastLogin()))
-                ));
-            }
-            usersJson.append("]");
-
-            String json = String.format(
-                    "{\"connectedUsers\":%d,\"totalConnections\":%d,\"users\":%s}",
-                    connectedUsers,
-                    totalConnections,
-                    usersJson
-            );
-
-            byte[] data = json.getBytes(StandardCharsets.UTF_8);
-            exchange.getResponseHeaders().add("Content-Type", "application/json");
-            exchange.sendResponseHeaders(200, data.length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(data);
+            // First page is read before the headers go out, so a failing query still gets a 500
+            Page<UserStats> first = firstPage(statsService, page);
+            try (JsonWriter w = JsonWriter.respond(exchange, 200)) {
+                writeJson(w, statsService, connectionLimiter, page, first);
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -94,10 +63,52 @@ public class LiveStatsHandler implements HttpHandler {
         }
     }
 
-    private static String escapeJson(String s) {
-        if (s == null) return "";
-        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    /**
+     * Shared with the /api/events producer, which calls it once per change for all subscribers.
+     * Carries the {@link #EVENT_USERS} most recently active users; nextCursor says whether more exist.
+     */
+    public static String buildJson(StatsService statsService, ConnectionLimiter connectionLimiter) {
+        PageRequest page = new PageRequest(EVENT_USERS, null, null);
+        return JsonWriter.toString(w ->
+                writeJson(w, statsService, connectionLimiter, page, firstPage(statsService, page)));
     }
-}
 
+    private static Page<UserStats> firstPage(StatsService statsService, PageRequest page) {
+        return statsService.getUserStatsPage(page.prefix(), upper(page), page.after(),
+                page.paged() ? page.limit() : PageRequest.STREAM_PAGE);
+    }
+
+    private static String upper(PageRequest page) {
+        return page.prefix() == null ? null : PageRequest.prefixUpperBound(page.prefix());
+    }
 
+    private static void writeJson(JsonWriter w, StatsService statsService, ConnectionLimiter connectionLimiter,
+                                  PageRequest page, Page<UserStats> rows) throws IOException {
+        Map<String, Integer> perUser = connectionLimiter.snapshotPerUserConnections();
+
+        w.beginObject()
+                .field("connectedUsers", connectionLimiter.getConnectedUsersCount())
+                .field("totalConnections", connectionLimiter.getCurrentConnections())
+                .name("users").beginArray();
+        while (true) {
+            for (UserStats s : rows.items()) {
+                int connections = perUser.getOrDefault(s.username(), 0);
+                w.beginObject()
+                        .field("username", s.username())
+                        .field("connected", connections > 0)
+                        .field("connections", connections)
+                        .field("bytesUploaded", s.bytesUploaded())
+                        .field("bytesDownloaded", s.bytesDownloaded())
+                        .field("lastLogin", s.lastLogin() == null ? "" : String.valueOf(s.lastLogin()))
+                        .endObject();
+            }
+            if (page.paged() || rows.nextKey() == null) break;
+            rows = statsService.getUserStatsPage(page.prefix(), upper(page), rows.nextKey(), PageRequest.STREAM_PAGE);
+        }
+        w.endArray();
+        if (page.paged()) {
+            w.field("nextCursor", rows.nextKey() == null ? null : PageRequest.encodeCursor(rows.nextKey()));
+        }
+        w.endObject();
+    }
+}
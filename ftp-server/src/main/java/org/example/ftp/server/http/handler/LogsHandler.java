@@ -0,0 +1,194 @@
+package org.example.ftp.server.http.handler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.example.ftp.server.fs.log.ServerLogService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * GET /api/logs?since=&lt;seq&gt;&amp;limit=&lt;n&gt;&amp;wait=&lt;ms&gt;
+ *
+ * Returns only log lines newer than the cursor. With wait &gt; 0 the request is parked
+ * (long-poll) until a new line arrives or the wait elapses; parked requests do not hold
+ * an HTTP worker thread - a single background thread notices when they are due and hands
+ * each reply to the admin executor, so one client that stops reading delays nobody else.
+ * At most ftp.log.maxWaiters (default 256) requests are parked; beyond that the answer is
+ * 503 with Retry-After.
+ */
+public class LogsHandler implements HttpHandler {
+
+    private static final int DEFAULT_LIMIT = 500;
+    private static final int MAX_LIMIT = Integer.getInteger("ftp.log.max", 2000);
+    private static final long MAX_WAIT_MS = 30_000;
+    private static final long POLL_TICK_MS = 500;
+    private static final int MAX_WAITERS = Math.max(1, Integer.getInteger("ftp.log.maxWaiters", 256));
+
+    private record Waiter(HttpExchange exchange, long since, int limit, long deadline) {}
+
+    private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    // waiters.size() walks the queue
+    private final AtomicInteger parked = new AtomicInteger();
+    private final Executor executor;
+
+    public LogsHandler(Executor executor) {
+        this.executor = executor;
+        Thread t = new Thread(this::completeWaitersLoop, "logs-long-poll");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+
+        long since;
+        int limit;
+        long waitMs;
+        try {
+            String query = exchange.getRequestURI().getQuery();
+            since = parseLong(extractQueryParam(query, "since"), 0);
+            limit = (int) Math.min(parseLong(extractQueryParam(query, "limit"), DEFAULT_LIMIT), MAX_LIMIT);
+            waitMs = Math.min(parseLong(extractQueryParam(query, "wait"), 0), MAX_WAIT_MS);
+        } catch (NumberFormatException e) {
+            exchange.sendResponseHeaders(400, -1);
+            exchange.close();
+            return;
+        }
+
+        if (since < 0 || limit < 1) {
+            exchange.sendResponseHeaders(400, -1);
+            exchange.close();
+            return;
+        }
+
+        // Server restarted (sequence numbers start over): let the client resync from the beginning
+        if (since > ServerLogService.getLastSeq()) {
+            since = 0;
+        }
+
+        if (waitMs > 0 && since >= ServerLogService.getLastSeq()) {
+            if (parked.incrementAndGet() > MAX_WAITERS) {
+                parked.decrementAndGet();
+                exchange.getResponseHeaders().add("Retry-After", "2");
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            waiters.add(new Waiter(exchange, since, limit, System.currentTimeMillis() + waitMs));
+            return;
+        }
+
+        respond(exchange, since, limit);
+    }
+
+    private void completeWaitersLoop() {
+        long observed = ServerLogService.getLastSeq();
+        while (true) {
+            try {
+                observed = ServerLogService.awaitNewerThan(observed, POLL_TICK_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+                Waiter w = it.next();
+                if (observed > w.since() || now >= w.deadline()) {
+                    it.remove();
+                    parked.decrementAndGet();
+                    try {
+                        executor.execute(() -> {
+                            try {
+                                respond(w.exchange(), w.since(), w.limit());
+                            } catch (Exception ignored) {
+                                // client went away while parked
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        w.exchange().close();
+                    }
+                }
+            }
+        }
+    }
+
+    private void respond(HttpExchange exchange, long since, int limit) throws IOException {
+        try {
+            List<ServerLogService.Entry> entries = ServerLogService.getSince(since, limit);
+            long next = entries.isEmpty() ? since : entries.get(entries.size() - 1).seq();
+
+            StringBuilder json = new StringBuilder(64 + entries.size() * 96);
+            json.append("{\"first\":").append(ServerLogService.getFirstSeq())
+                    .append(",\"last\":").append(ServerLogService.getLastSeq())
+                    .append(",\"next\":").append(next)
+                    .append(",\"entries\":[");
+            boolean first = true;
+            for (ServerLogService.Entry e : entries) {
+                if (!first) json.append(',');
+                first = false;
+                json.append("{\"seq\":").append(e.seq()).append(",\"line\":\"");
+                appendEscaped(json, e.line());
+                json.append("\"}");
+            }
+            json.append("]}");
+
+            byte[] data = json.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("Cache-Control", "no-store");
+            exchange.sendResponseHeaders(200, data.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(data);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void appendEscaped(StringBuilder sb, String s) {
+        if (s == null) return;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+    }
+
+    private static long parseLong(String value, long def) {
+        if (value == null || value.isBlank()) return def;
+        return Long.parseLong(value.trim());
+    }
+
+    private String extractQueryParam(String query, String key) {
+        if (query == null) return null;
+        for (String part : query.split("&")) {
+            String[] kv = part.split("=", 2);
+            if (kv.length == 2 && kv[0].equals(key)) return kv[1];
+        }
+        return null;
+    }
+}
@@ -3,12 +3,19 @@ package org.example.ftp.server.http.handler;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import org.example.ftp.server.command.visitor.MetricsVisitor;
+import org.example.ftp.server.metrics.LatencyHistogram;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.TreeSet;
 
+/**
+ * GET  /api/metrics[?window=true]  - per-command counts, latency and time-to-first-byte (microseconds).
+ *                                     window=true reports only what happened since the previous
+ *                                     windowed read (reset-on-read); otherwise totals since start/reset.
+ * POST /api/metrics/reset          - clears everything.
+ */
 public class MetricsHandler implements HttpHandler {
 
     @Override
@@ -30,16 +37,38 @@ public class MetricsHandler implements HttpHandler {
     }
 
     private void handleGet(HttpExchange exchange) throws IOException {
-        Map<String, Long> metrics = MetricsVisitor.snapshot();
+        boolean window = "true".equalsIgnoreCase(extractQueryParam(exchange.getRequestURI().getQuery(), "window"));
 
-        String json = metrics.entrySet().stream()
-                .map(e -> String.format("{\"command\":\"%s\",\"count\":%d}",
-                        escape(e.getKey()),
-                        e.getValue()
-                ))
-                .collect(Collectors.joining(",", "[", "]"));
+        Map<String, Long> counts = MetricsVisitor.snapshot();
+        Map<String, LatencyHistogram.Snapshot> latency = MetricsVisitor.latencySnapshot(window);
+        Map<String, LatencyHistogram.Snapshot> ttfb = MetricsVisitor.timeToFirstByteSnapshot(window);
 
-        byte[] data = json.getBytes(StandardCharsets.UTF_8);
+        TreeSet<String> commands = new TreeSet<>(counts.keySet());
+        commands.addAll(latency.keySet());
+
+        StringBuilder json = new StringBuilder(64 + commands.size() * 256);
+        json.append('[');
+        boolean first = true;
+        for (String cmd : commands) {
+            if (!first) json.append(',');
+            first = false;
+            json.append("{\"command\":\"").append(escape(cmd))
+                    .append("\",\"count\":").append(counts.getOrDefault(cmd, 0L));
+            LatencyHistogram.Snapshot l = latency.get(cmd);
+            if (l != null) {
+                json.append(",\"latency\":");
+                appendSummary(json, l);
+            }
+            LatencyHistogram.Snapshot t = ttfb.get(cmd);
+            if (t != null) {
+                json.append(",\"ttfb\":");
+                appendSummary(json, t);
+            }
+            json.append('}');
+        }
+        json.append(']');
+
+        byte[] data = json.toString().getBytes(StandardCharsets.UTF_8);
 
         exchange.getResponseHeaders().add("Content-Type", "application/json");
         exchange.sendResponseHeaders(200, data.length);
@@ -47,13 +76,32 @@ public class MetricsHandler implements HttpHandler {
         exchange.close();
     }
 
+    private static void appendSummary(StringBuilder json, LatencyHistogram.Snapshot s) {
+        json.append("{\"count\":").append(s.getCount())
+                .append(",\"meanUs\":").append(Math.round(s.getMeanMicros()))
+                .append(",\"p50Us\":").append(s.percentileMicros(0.50))
+                .append(",\"p90Us\":").append(s.percentileMicros(0.90))
+                .append(",\"p99Us\":").append(s.percentileMicros(0.99))
+                .append(",\"maxUs\":").append(s.getMaxMicros())
+                .append('}');
+    }
+
     private void handleReset(HttpExchange exchange) throws IOException {
         MetricsVisitor.reset();
         exchange.sendResponseHeaders(204, -1);
         exchange.close();
     }
 
+    private String extractQueryParam(String query, String key) {
+        if (query == null) return null;
+        for (String part : query.split("&")) {
+            String[] kv = part.split("=", 2);
+            if (kv.length == 2 && kv[0].equals(key)) return kv[1];
+        }
+        return null;
+    }
+
     private String escape(String s) {
         return s.replace("\\", "\\\\").replace("\"", "\\\"");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,39 @@
+package org.example.ftp.server.http.handler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.example.ftp.server.metrics.PrometheusExporter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * GET /metrics - Prometheus text exposition format.
+ */
+public class PrometheusHandler implements HttpHandler {
+
+    private final PrometheusExporter exporter;
+
+    public PrometheusHandler(PrometheusExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] data = exporter.scrape();
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, data.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(data);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
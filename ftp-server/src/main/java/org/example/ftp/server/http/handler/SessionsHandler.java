@@ -0,0 +1,139 @@
+package org.example.ftp.server.http.handler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.example.ftp.server.session.ActiveSessionRegistry;
+import org.example.ftp.server.session.SessionInfo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * GET    /api/sessions           - live control connections with in-flight transfer progress
+ * DELETE /api/sessions/{id}      - kill one session (also accepts ?id=)
+ */
+public class SessionsHandler implements HttpHandler {
+
+    private final ActiveSessionRegistry sessionRegistry;
+
+    public SessionsHandler(ActiveSessionRegistry sessionRegistry) {
+        this.sessionRegistry = sessionRegistry;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            switch (exchange.getRequestMethod()) {
+                case "GET" -> handleGet(exchange);
+                case "DELETE" -> handleDelete(exchange);
+                default -> exchange.sendResponseHeaders(405, -1);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            byte[] msg = ("ERROR: " + e.getMessage()).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(500, msg.length);
+            exchange.getResponseBody().write(msg);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleGet(HttpExchange exchange) throws IOException {
+        List<SessionInfo> sessions = sessionRegistry.list();
+        long now = System.currentTimeMillis();
+
+        StringBuilder json = new StringBuilder(64 + sessions.size() * 320);
+        json.append("{\"now\":").append(now).append(",\"sessions\":[");
+        boolean first = true;
+        for (SessionInfo s : sessions) {
+            if (!first) json.append(',');
+            first = false;
+            appendSession(json, s);
+        }
+        json.append("]}");
+
+        byte[] data = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.getResponseHeaders().add("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(200, data.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(data);
+        }
+    }
+
+    /** One session descriptor as JSON (also used by the /api/events producer). */
+    public static void appendSession(StringBuilder json, SessionInfo s) {
+        json.append("{\"id\":").append(s.getId())
+                .append(",\"remoteAddress\":").append(quote(s.getRemoteAddress()))
+                .append(",\"username\":").append(quote(s.getUsername()))
+                .append(",\"connectedAt\":").append(s.getConnectedAtMillis())
+                .append(",\"cwd\":").append(quote(s.getCwd()))
+                .append(",\"currentCommand\":").append(quote(s.getCurrentCommand()))
+                .append(",\"lastCommand\":").append(quote(s.getLastCommand()))
+                .append(",\"commandStartedAt\":").append(s.getCommandStartedAtMillis())
+                .append(",\"bytesUploaded\":").append(s.getBytesUploaded())
+                .append(",\"bytesDownloaded\":").append(s.getBytesDownloaded())
+                .append(",\"transfer\":");
+
+        String transferCommand = s.getTransferCommand();
+        if (transferCommand == null) {
+            json.append("null");
+        } else {
+            json.append("{\"command\":").append(quote(transferCommand))
+                    .append(",\"file\":").append(quote(s.getTransferFile()))
+                    .append(",\"size\":").append(s.getTransferSize())
+                    .append(",\"bytes\":").append(s.getTransferBytes())
+                    .append(",\"bytesPerSecond\":").append(s.getBytesPerSecond())
+                    .append(",\"startedAt\":").append(s.getTransferStartedAtMillis())
+                    .append('}');
+        }
+        json.append('}');
+    }
+
+    private void handleDelete(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String raw = extractQueryParam(exchange.getRequestURI().getQuery(), "id");
+        if (raw == null) {
+            int slash = path.lastIndexOf('/');
+            raw = slash >= 0 ? path.substring(slash + 1) : null;
+        }
+
+        long id;
+        try {
+            id = Long.parseLong(raw);
+        } catch (Exception e) {
+            exchange.sendResponseHeaders(400, -1);
+            return;
+        }
+
+        exchange.sendResponseHeaders(sessionRegistry.kill(id) ? 204 : 404, -1);
+    }
+
+    private static String quote(String s) {
+        if (s == null) return "null";
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private String extractQueryParam(String query, String key) {
+        if (query == null) return null;
+        for (String part : query.split("&")) {
+            String[] kv = part.split("=", 2);
+            if (kv.length == 2 && kv[0].equals(key)) return kv[1];
+        }
+        return null;
+    }
+}
@@ -3,7 +3,7 @@ package org.example.ftp.server.http.handler;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import org.example.ftp.server.auth.db.SqliteSharedFolderRepository;
-import org.example.ftp.server.auth.db.SqliteUserRepository;
+import org.example.ftp.server.http.JsonWriter;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -14,14 +14,9 @@ import java.nio.charset.StandardCharsets;
  */
 public class SharedFoldersAdminHandler implements HttpHandler {
 
-    private final SqliteUserRepository userRepo;
     private final SqliteSharedFolderRepository sharedFolderRepo;
 
-    public SharedFoldersAdminHandler(
-            SqliteUserRepository userRepo,
-            SqliteSharedFolderRepository sharedFolderRepo
-    ) {
-        this.userRepo = userRepo;
+    public SharedFoldersAdminHandler(SqliteSharedFolderRepository sharedFolderRepo) {
         this.sharedFolderRepo = sharedFolderRepo;
     }
 
@@ -33,53 +28,26 @@ public class SharedFoldersAdminHandler implements HttpHandler {
                 return;
             }
 
-            var sharedFolders = sharedFolderRepo.findAll();
-
-            StringBuilder json = new StringBuilder();
-            json.append("[");
-            boolean first = true;
-
-            for (var folder : sharedFolders) {
-                if (!first) json.append(",");
-                first = false;
-
-                String ownerUsername = userRepo.findById(folder.ownerUserId())
-                        .map(u -> u.username())
-                        .orElse("unknown");
-                String userToShareUsername = userRepo.findById(folder.userToShareId())
-                        .map(u -> u.username())
-                        .orElse("unknown");
-
-                json.append("""
-                    {
-                      "id":%d,
-                      "folderName":"%s",
-                      "folderPath":"%s",
-                      "ownerUsername":"%s",
-                      "userToShareUsername":"%s",
-                      "read":%s,
-                      "write":%s,
-                      "execute":%s
-                    }
-                    """.formatted(
-                        folder.id(),
-                        escapeJson(folder.folderName()),
-                        escapeJson(folder.folderPath()),
-                        escapeJson(ownerUsername),
-                        escapeJson(userToShareUsername),
-                        folder.read(),
-                        folder.write(),
-                        folder.execute()
-                ));
+            var sharedFolders = sharedFolderRepo.findAllNamed();
+
+            try (JsonWriter w = JsonWriter.respond(exchange, 200)) {
+                w.beginArray();
+                for (var named : sharedFolders) {
+                    var folder = named.folder();
+                    w.beginObject()
+                            .field("id", folder.id())
+                            .field("folderName", folder.folderName())
+                            .field("folderPath", folder.folderPath())
+                            .field("ownerUsername", named.ownerUsername() == null ? "unknown" : named.ownerUsername())
+                            .field("userToShareUsername", named.userToShareUsername() == null ? "unknown" : named.userToShareUsername())
+                            .field("read", folder.read())
+                            .field("write", folder.write())
+                            .field("execute", folder.execute())
+                            .endObject();
+                }
+                w.endArray();
             }
 
-            json.append("]");
-
-            byte[] data = json.toString().getBytes(StandardCharsets.UTF_8);
-            exchange.getResponseHeaders().add("Content-Type", "application/json");
-            exchange.sendResponseHeaders(200, data.length);
-            exchange.getResponseBody().write(data);
-
         } catch (Exception e) {
             e.printStackTrace();
             byte[] msg = ("ERROR: " + e.getMessage()).getBytes(StandardCharsets.UTF_8);
@@ -90,10 +58,4 @@ public class SharedFoldersAdminHandler implements HttpHandler {
             exchange.close();
         }
     }
-
-    private static String escapeJson(String s) {
-        if (s == null) return "";
-        return s.replace("\\", "\\\\").replace("\"", "\\\"");
-    }
 }
-
@@ -2,6 +2,7 @@ package org.example.ftp.server.http.handler;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import org.example.ftp.server.http.GzipFilter;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -15,17 +16,41 @@ import java.awt.image.BufferedImage;
 import javax.imageio.ImageIO;
 import java.nio.file.Files;
 import java.nio.file.Path;
- 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves the web admin UI from the classpath (admin-ui/*). Each asset is read once and kept in
+ * memory with its gzip variant (text types only, if smaller) and a strong ETag, so repeat visits
+ * are answered with 304 and first visits move the compressed bytes. Assets are revalidated on
+ * every use (Cache-Control: no-cache) because their names carry no version.
+ */
 public class StaticAdminUiHandler implements HttpHandler {
 
     private static final String ROOT = "admin-ui/";
     private static final String LOGO_JPG = "logo.jpg";
 
+    private record Asset(String contentType, byte[] body, byte[] gzip, String etag, String gzipEtag) {}
+
+    // Only resources that exist are cached, so arbitrary request paths cannot grow it
+    private final Map<String, Asset> assets = new ConcurrentHashMap<>();
+
     @Override
     public void handle(HttpExchange exchange) throws IOException {
+        try {
+            serve(exchange);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
         if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
             exchange.sendResponseHeaders(405, -1);
-            exchange.close();
             return;
         }
 
@@ -34,13 +59,11 @@ public class StaticAdminUiHandler implements HttpHandler {
 
         if (path.startsWith("/api/")) {
             exchange.sendResponseHeaders(404, -1);
-            exchange.close();
             return;
         }
 
         if (path.contains("..")) {
             exchange.sendResponseHeaders(400, -1);
-            exchange.close();
             return;
         }
 
@@ -50,61 +73,99 @@ public class StaticAdminUiHandler implements HttpHandler {
 
         String normalized = stripLeadingSlash(path);
 
-        if (LOGO_JPG.equals(normalized)) {
-            byte[] body = readResourceBytes(ROOT + LOGO_JPG);
-            if (body == null) {
-                body = readLogoFromFs();
-            }
-            if (body == null) {
-                body = generateLogoJpeg();
-            }
-
-            if (body == null) {
-                exchange.sendResponseHeaders(404, -1);
-                exchange.close();
-                return;
-            }
+        Asset asset = LOGO_JPG.equals(normalized) ? asset(LOGO_JPG) : asset(ROOT + normalized);
+        if (asset == null) {
+            asset = asset(ROOT + "index.html");
+        }
+        if (asset == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
 
-            exchange.getResponseHeaders().add("Content-Type", "image/jpeg");
-            exchange.getResponseHeaders().add("Cache-Control", "no-store");
+        boolean gzip = asset.gzip() != null && GzipFilter.acceptsGzip(exchange.getRequestHeaders());
+        String etag = gzip ? asset.gzipEtag() : asset.etag();
 
-            if ("HEAD".equals(exchange.getRequestMethod())) {
-                exchange.sendResponseHeaders(200, -1);
-                exchange.close();
-                return;
-            }
+        var headers = exchange.getResponseHeaders();
+        headers.set("ETag", etag);
+        headers.set("Cache-Control", "no-cache");
+        if (asset.gzip() != null) headers.set("Vary", "Accept-Encoding");
 
-            exchange.sendResponseHeaders(200, body.length);
-            exchange.getResponseBody().write(body);
-            exchange.close();
+        if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), asset)) {
+            exchange.sendResponseHeaders(304, -1);
             return;
         }
 
-        String resource = ROOT + normalized;
-        byte[] body = readResourceBytes(resource);
-        if (body == null) {
-            body = readResourceBytes(ROOT + "index.html");
-            if (body == null) {
-                exchange.sendResponseHeaders(404, -1);
-                exchange.close();
-                return;
-            }
-            resource = ROOT + "index.html";
-        }
-
-        String contentType = guessContentType(resource);
-        exchange.getResponseHeaders().add("Content-Type", contentType);
-        exchange.getResponseHeaders().add("Cache-Control", "no-store");
+        headers.set("Content-Type", asset.contentType());
+        byte[] body = gzip ? asset.gzip() : asset.body();
+        if (gzip) headers.set("Content-Encoding", "gzip");
 
         if ("HEAD".equals(exchange.getRequestMethod())) {
             exchange.sendResponseHeaders(200, -1);
-            exchange.close();
             return;
         }
 
         exchange.sendResponseHeaders(200, body.length);
         exchange.getResponseBody().write(body);
-        exchange.close();
+    }
+
+    // Either variant's tag validates: both stand for the same file
+    private static boolean matches(String ifNoneMatch, Asset asset) {
+        if (ifNoneMatch == null) return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            String t = tag.trim();
+            if (t.startsWith("W/")) t = t.substring(2);
+            if (t.equals("*") || t.equals(asset.etag()) || t.equals(asset.gzipEtag())) return true;
+        }
+        return false;
+    }
+
+    private Asset asset(String key) throws IOException {
+        Asset cached = assets.get(key);
+        if (cached != null) return cached;
+
+        byte[] body;
+        if (key.equals(LOGO_JPG)) {
+            body = readResourceBytes(ROOT + LOGO_JPG);
+            if (body == null) {
+                body = readLogoFromFs();
+            }
+            if (body == null) {
+                body = generateLogoJpeg();
+            }
+        } else {
+            body = readResourceBytes(key);
+        }
+        if (body == null) return null;
+
+        String contentType = guessContentType(key);
+        byte[] gzip = compressible(contentType) ? gzip(body) : null;
+        if (gzip != null && gzip.length >= body.length) gzip = null;
+        String etag = "\"" + digest(body) + "\"";
+        Asset asset = new Asset(contentType, body, gzip, etag, etag.substring(0, etag.length() - 1) + "-gz\"");
+        assets.putIfAbsent(key, asset);
+        return asset;
+    }
+
+    private static boolean compressible(String contentType) {
+        return contentType.startsWith("text/") || contentType.contains("javascript")
+                || contentType.contains("json") || contentType.contains("svg");
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static String digest(byte[] data) {
+        try {
+            byte[] sha = MessageDigest.getInstance("SHA-256").digest(data);
+            return HexFormat.of().formatHex(sha, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     private static String stripLeadingSlash(String s) {
@@ -2,22 +2,27 @@ package org.example.ftp.server.http.handler;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import org.example.ftp.server.fs.DiskUsage;
+import org.example.ftp.server.http.PageRequest;
 import org.example.ftp.server.stats.StatsService;
-import org.example.ftp.server.stats.model.ConnectionStat;
-import org.example.ftp.server.stats.model.UserStats;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
-import java.util.stream.Collectors;
 
+/**
+ * GET /api/stats: per-user totals, most recent login first. Supports ?limit=&cursor=&q= (see
+ * {@link PageRequest}); lastLogin is null for users that never logged in. usedBytes/usedFiles/
+ * usedDirs come from {@link DiskUsage}'s in-memory index; quotaBytes is null without a quota.
+ */
 public class StatsHandler implements HttpHandler {
 
     private final StatsService statsService;
+    private final DiskUsage diskUsage;
 
-    public StatsHandler(StatsService statsService) {
+    public StatsHandler(StatsService statsService, DiskUsage diskUsage) {
         this.statsService = statsService;
+        this.diskUsage = diskUsage;
     }
 
     @Override
@@ -29,27 +34,27 @@ public class StatsHandler implements HttpHandler {
                 return;
             }
 
-            var stats = statsService.getAllUserStats();
-
-            String json = stats.stream()
-                    .map(s -> String.format(
-                            "{\"username\":\"%s\",\"logins\":%d,\"bytesUploaded\":%d,\"bytesDownloaded\":%d,\"lastLogin\":\"%s\"}",
-                            s.username(),
-                            s.logins(),
-                            s.bytesUploaded(),
-                            s.bytesDownloaded(),
-                            s.lastLogin()
-                    ))
-                    .collect(Collectors.joining(",", "[", "]"));
-
-            byte[] data = json.getBytes(StandardCharsets.UTF_8);
-
-            exchange.getResponseHeaders().add("Content-Type", "application/json");
-            exchange.sendResponseHeaders(200, data.length);
-
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(data);
+            PageRequest page;
+            try {
+                page = PageRequest.from(exchange.getRequestURI());
+            } catch (IllegalArgumentException e) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
             }
+            page.respond(exchange, statsService::getUserStatsPage, (w, s) -> {
+                DiskUsage.Usage usage = diskUsage.usage(s.username());
+                w.beginObject()
+                        .field("username", s.username())
+                        .field("logins", s.logins())
+                        .field("bytesUploaded", s.bytesUploaded())
+                        .field("bytesDownloaded", s.bytesDownloaded())
+                        .field("lastLogin", s.lastLogin() == null ? null : s.lastLogin().toString())
+                        .field("usedBytes", usage == null ? 0 : usage.bytes())
+                        .field("usedFiles", usage == null ? 0 : usage.files())
+                        .field("usedDirs", usage == null ? 0 : usage.dirs())
+                        .field("quotaBytes", usage == null ? null : usage.quota())
+                        .endObject();
+            });
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -61,6 +66,8 @@ public class StatsHandler implements HttpHandler {
             try (OutputStream os = exchange.getResponseBody()) {
                 os.write(msg);
             }
+        } finally {
+            exchange.close();
         }
     }
 
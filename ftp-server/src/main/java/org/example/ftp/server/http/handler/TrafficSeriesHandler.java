@@ -0,0 +1,158 @@
+package org.example.ftp.server.http.handler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.example.ftp.server.http.JsonWriter;
+import org.example.ftp.server.stats.TrafficRollup;
+import org.example.ftp.server.stats.db.SqliteTrafficRepository.Point;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * GET /api/stats/series?from=&lt;ms|ISO-8601&gt;&amp;to=&lt;ms|ISO-8601&gt;&amp;step=&lt;60|5m|1h|1d|1w&gt;&amp;user=&lt;name&gt;
+ *
+ * Traffic over time from {@link TrafficRollup}: one point per step (empty steps as zeros), for
+ * one user or, without {@code user}, the whole server. Defaults: the last 24 hours, a step that
+ * gives at most ~720 points. peakUpBps/peakDownBps are the busiest minute of the step in bytes/s.
+ */
+public class TrafficSeriesHandler implements HttpHandler {
+
+    private final TrafficRollup traffic;
+
+    public TrafficSeriesHandler(TrafficRollup traffic) {
+        this.traffic = traffic;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (!traffic.isEnabled()) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            String query = exchange.getRequestURI().getRawQuery();
+            String user = urlDecode(extractQueryParam(query, "user"));
+            long now = System.currentTimeMillis();
+            long from;
+            long to;
+            long step;
+            try {
+                to = parseTime(urlDecode(extractQueryParam(query, "to")), now);
+                from = parseTime(urlDecode(extractQueryParam(query, "from")), to - 86_400_000L);
+                step = parseStep(urlDecode(extractQueryParam(query, "step")));
+            } catch (Exception e) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            long userId = 0;
+            if (user != null && !user.isBlank()) {
+                Long id = traffic.userId(user);
+                if (id == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                userId = id;
+            } else {
+                user = null;
+            }
+
+            TrafficRollup.Series series;
+            try {
+                series = traffic.series(from, to, step, userId);
+            } catch (IllegalArgumentException e) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            try (JsonWriter w = JsonWriter.respond(exchange, 200)) {
+                w.beginObject()
+                        .field("from", series.from() * 1000)
+                        .field("to", series.to() * 1000)
+                        .field("step", series.step())
+                        .field("resolution", series.resolution())
+                        .field("user", user)
+                        .name("points").beginArray();
+
+                List<Point> points = series.points();
+                int next = 0;
+                for (long t = series.from(); t < series.to(); t += series.step()) {
+                    Point p = next < points.size() && points.get(next).ts() == t ? points.get(next++) : null;
+                    w.beginObject().field("t", t * 1000);
+                    if (p == null) {
+                        w.field("bytesUp", 0).field("bytesDown", 0).field("transfers", 0)
+                                .field("logins", 0).field("errors", 0)
+                                .field("peakUpBps", 0).field("peakDownBps", 0);
+                    } else {
+                        w.field("bytesUp", p.bytesUp()).field("bytesDown", p.bytesDown())
+                                .field("transfers", p.transfers()).field("logins", p.logins())
+                                .field("errors", p.errors())
+                                .field("peakUpBps", p.peakUp() / 60).field("peakDownBps", p.peakDown() / 60);
+                    }
+                    w.endObject();
+                }
+                w.endArray().endObject();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            byte[] msg = ("ERROR: " + e.getMessage()).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(500, msg.length);
+            exchange.getResponseBody().write(msg);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /** Seconds, or a number with an s/m/h/d/w suffix; null or empty = automatic (0). */
+    static long parseStep(String value) {
+        if (value == null || value.isBlank()) return 0;
+        String v = value.trim().toLowerCase();
+        long unit = switch (v.charAt(v.length() - 1)) {
+            case 's' -> 1;
+            case 'm' -> 60;
+            case 'h' -> 3600;
+            case 'd' -> 86400;
+            case 'w' -> 7 * 86400;
+            default -> 0;
+        };
+        if (unit == 0) return Long.parseLong(v);
+        return Math.multiplyExact(Long.parseLong(v.substring(0, v.length() - 1)), unit);
+    }
+
+    private static long parseTime(String value, long def) {
+        if (value == null || value.isBlank()) return def;
+        String v = value.trim();
+        if (v.chars().allMatch(Character::isDigit)) {
+            return Long.parseLong(v);
+        }
+        return Instant.parse(v).toEpochMilli();
+    }
+
+    private String extractQueryParam(String query, String key) {
+        if (query == null) return null;
+        for (String part : query.split("&")) {
+            String[] kv = part.split("=", 2);
+            if (kv.length == 2 && kv[0].equals(key)) return kv[1];
+        }
+        return null;
+    }
+
+    private String urlDecode(String s) {
+        if (s == null) return null;
+        try {
+            return URLDecoder.decode(s, StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            return s;
+        }
+    }
+}
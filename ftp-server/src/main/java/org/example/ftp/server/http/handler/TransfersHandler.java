@@ -0,0 +1,152 @@
+package org.example.ftp.server.http.handler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.example.ftp.server.db.Page;
+import org.example.ftp.server.http.JsonWriter;
+import org.example.ftp.server.http.PageRequest;
+import org.example.ftp.server.stats.TransferLedger;
+import org.example.ftp.server.stats.db.SqliteTransferRepository;
+import org.example.ftp.server.stats.db.SqliteTransferRepository.Filter;
+import org.example.ftp.server.stats.db.SqliteTransferRepository.Transfer;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * GET /api/transfers?user=&lt;name&gt;&amp;q=&lt;username prefix&gt;&amp;from=&lt;ms|ISO-8601&gt;&amp;to=&lt;ms|ISO-8601&gt;
+ * &amp;direction=&lt;up|down&gt;&amp;outcome=&lt;ok|aborted|failed&gt;&amp;limit=&lt;n&gt;&amp;cursor=&lt;c&gt;
+ *
+ * Search of the transfer ledger, newest first, always paged ({@code limit} defaults to 100; see
+ * {@link PageRequest} for cursors). {@code ledger} reports the writer queue and its counters:
+ * transfers still queued are not searchable yet, dropped ones never will be.
+ */
+public class TransfersHandler implements HttpHandler {
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final Set<String> DIRECTIONS = Set.of(SqliteTransferRepository.UP, SqliteTransferRepository.DOWN);
+    private static final Set<String> OUTCOMES = Set.of(
+            SqliteTransferRepository.OK, SqliteTransferRepository.ABORTED, SqliteTransferRepository.FAILED);
+
+    private final TransferLedger ledger;
+
+    public TransfersHandler(TransferLedger ledger) {
+        this.ledger = ledger;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (!ledger.isEnabled()) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            String query = exchange.getRequestURI().getRawQuery();
+            PageRequest page;
+            Filter filter;
+            try {
+                page = PageRequest.from(exchange.getRequestURI());
+                String user = blankToNull(urlDecode(extractQueryParam(query, "user")));
+                String from = urlDecode(extractQueryParam(query, "from"));
+                String to = urlDecode(extractQueryParam(query, "to"));
+                String direction = blankToNull(urlDecode(extractQueryParam(query, "direction")));
+                String outcome = blankToNull(urlDecode(extractQueryParam(query, "outcome")));
+                if ((direction != null && !DIRECTIONS.contains(direction))
+                        || (outcome != null && !OUTCOMES.contains(outcome))) {
+                    throw new IllegalArgumentException("direction/outcome");
+                }
+                filter = new Filter(user, parseTime(from), parseTime(to), direction, outcome);
+            } catch (Exception e) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            int limit = page.paged() ? page.limit() : DEFAULT_LIMIT;
+            String upper = page.prefix() == null ? null : PageRequest.prefixUpperBound(page.prefix());
+            Page<Transfer> result;
+            try {
+                result = ledger.search(filter, page.prefix(), upper, page.after(), limit);
+            } catch (IllegalArgumentException e) {
+                exchange.sendResponseHeaders(400, -1); // bad cursor
+                return;
+            }
+            TransferLedger.Status status = ledger.status();
+
+            try (JsonWriter w = JsonWriter.respond(exchange, 200)) {
+                w.beginObject().name("items").beginArray();
+                for (Transfer t : result.items()) {
+                    w.beginObject()
+                            .field("id", t.id())
+                            .field("user", t.username())
+                            .field("path", t.path())
+                            .field("direction", t.direction())
+                            .field("bytes", t.bytes())
+                            .field("startedAt", t.startedAt())
+                            .field("durationMs", t.durationMs())
+                            .field("bytesPerSecond", t.bytesPerSecond())
+                            .field("outcome", t.outcome())
+                            .field("remoteAddr", t.remoteAddr())
+                            .endObject();
+                }
+                w.endArray();
+                w.field("nextCursor", result.nextKey() == null ? null : PageRequest.encodeCursor(result.nextKey()));
+                w.name("ledger").beginObject()
+                        .field("queued", status.queued())
+                        .field("capacity", status.capacity())
+                        .field("overflow", status.overflow().toString())
+                        .field("written", status.written())
+                        .field("dropped", status.dropped())
+                        .field("writeErrors", status.writeErrors())
+                        .endObject();
+                w.endObject();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            byte[] msg = ("ERROR: " + e.getMessage()).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(500, msg.length);
+            exchange.getResponseBody().write(msg);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Long parseTime(String value) {
+        if (value == null || value.isBlank()) return null;
+        String v = value.trim();
+        if (v.chars().allMatch(Character::isDigit)) {
+            return Long.parseLong(v);
+        }
+        return Instant.parse(v).toEpochMilli();
+    }
+
+    private static String blankToNull(String s) {
+        return s == null || s.isBlank() ? null : s;
+    }
+
+    private String extractQueryParam(String query, String key) {
+        if (query == null) return null;
+        for (String part : query.split("&")) {
+            String[] kv = part.split("=", 2);
+            if (kv.length == 2 && kv[0].equals(key)) return kv[1];
+        }
+        return null;
+    }
+
+    private String urlDecode(String s) {
+        if (s == null) return null;
+        try {
+            return URLDecoder.decode(s, StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            return s;
+        }
+    }
+}
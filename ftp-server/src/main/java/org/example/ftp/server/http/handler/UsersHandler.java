@@ -5,22 +5,24 @@ import com.sun.net.httpserver.HttpHandler;
 import org.example.ftp.server.auth.AuthService;
 import org.example.ftp.server.auth.PermissionService;
 import org.example.ftp.server.auth.User;
+import org.example.ftp.server.fs.DiskUsage;
+import org.example.ftp.server.http.JsonWriter;
+import org.example.ftp.server.http.PageRequest;
 
 import java.io.IOException;
-import java.io.OutputStream;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
-import java.util.stream.Collectors;
 
 public class UsersHandler implements HttpHandler {
 
     private final AuthService authService;
     private final PermissionService permissionService;
+    private final DiskUsage diskUsage;
 
-    public UsersHandler(AuthService authService, PermissionService permissionService) {
+    public UsersHandler(AuthService authService, PermissionService permissionService, DiskUsage diskUsage) {
         this.authService = authService;
         this.permissionService = permissionService;
+        this.diskUsage = diskUsage;
     }
 
     @Override
@@ -49,9 +51,7 @@ public class UsersHandler implements HttpHandler {
         
         // Если есть username в пути - возвращаем информацию о конкретном пользователе
         if (username != null && !username.isBlank()) {
-            var userOpt = authService.getAllUsers().stream()
-                    .filter(u -> u.username().equals(username))
-                    .findFirst();
+            var userOpt = authService.findUser(username);
             
             if (userOpt.isEmpty()) {
                 exchange.sendResponseHeaders(404, -1);
@@ -60,41 +60,32 @@ public class UsersHandler implements HttpHandler {
             
             User user = userOpt.get();
             Long rateLimit = authService.getRateLimit(username);
-            
-            String json = String.format(
-                    "{\"username\":\"%s\",\"enabled\":%s,\"rateLimit\":%s}",
-                    escapeJson(user.username()),
-                    user.enabled(),
-                    rateLimit == null ? "null" : String.valueOf(rateLimit)
-            );
-            
-            byte[] data = json.getBytes(StandardCharsets.UTF_8);
-            exchange.getResponseHeaders().add("Content-Type", "application/json");
-            exchange.sendResponseHeaders(200, data.length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(data);
+            DiskUsage.Usage usage = diskUsage.usage(username);
+
+            try (JsonWriter w = JsonWriter.respond(exchange, 200)) {
+                w.beginObject()
+                        .field("username", user.username())
+                        .field("enabled", user.enabled())
+                        .field("rateLimit", rateLimit)
+                        .field("quotaBytes", usage == null ? null : usage.quota())
+                        .field("usedBytes", usage == null ? 0 : usage.bytes())
+                        .endObject();
             }
             return;
         }
         
-        // Иначе возвращаем список всех пользователей
-        List<User> users = authService.getAllUsers();
-
-        String json = users.stream()
-                .map(u -> String.format(
-                        "{\"username\":\"%s\",\"enabled\":%s}",
-                        escapeJson(u.username()),
-                        u.enabled()
-                ))
-                .collect(Collectors.joining(",", "[", "]"));
-
-        byte[] data = json.getBytes(StandardCharsets.UTF_8);
-
-        exchange.getResponseHeaders().add("Content-Type", "application/json");
-        exchange.sendResponseHeaders(200, data.length);
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(data);
+        // Иначе - список пользователей (?limit=&cursor=&q=, см. PageRequest)
+        PageRequest page;
+        try {
+            page = PageRequest.from(exchange.getRequestURI());
+        } catch (IllegalArgumentException e) {
+            exchange.sendResponseHeaders(400, -1);
+            return;
         }
+        page.respond(exchange, authService::findUsersPage, (w, u) -> w.beginObject()
+                .field("username", u.username())
+                .field("enabled", u.enabled())
+                .endObject());
     }
 
     private void handlePost(HttpExchange exchange) throws IOException {
@@ -142,13 +133,28 @@ public class UsersHandler implements HttpHandler {
 
         Boolean enabled = extractBoolean(body, "enabled");
         Long rateLimit = extractLong(body, "rateLimit");
+        // "quotaBytes": 0 (or null) removes the quota; a PUT may carry only this field
+        boolean hasQuota = body.contains("\"quotaBytes\":");
+        Long quota = extractLong(body, "quotaBytes");
 
-        if (enabled == null) {
+        if (enabled == null && !hasQuota) {
             exchange.sendResponseHeaders(400, -1);
             return;
         }
 
-        authService.updateUser(username, enabled, rateLimit);
+        if (hasQuota) {
+            if (!diskUsage.isEnabled()) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            if (!diskUsage.setQuota(username, quota)) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+        }
+        if (enabled != null) {
+            authService.updateUser(username, enabled, rateLimit);
+        }
         exchange.sendResponseHeaders(200, -1);
     }
 
@@ -205,9 +211,4 @@ public class UsersHandler implements HttpHandler {
             return null;
         }
     }
-
-    private static String escapeJson(String s) {
-        if (s == null) return "";
-        return s.replace("\\", "\\\\").replace("\"", "\\\"");
-    }
-}
\ No newline at end of file
+}
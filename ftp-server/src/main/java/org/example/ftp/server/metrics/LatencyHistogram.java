@@ -0,0 +1,196 @@
+package org.example.ftp.server.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear latency histogram (microsecond resolution).
+ *
+ * Every power of two is split into {@value #SUB_BUCKETS} linear sub-buckets, so any recorded
+ * value is reported with at most 12.5% relative error, from 1 us up to ~2^40 us.
+ * Recording is a couple of shifts plus one atomic increment; no locks, no allocation.
+ *
+ * Counts are cumulative. {@link #snapshotWindow()} returns only what was recorded since the
+ * previous window read (reset-on-read) without disturbing the cumulative totals.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXP = 40;
+    static final int BUCKETS = (MAX_EXP - SUB_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sumMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator windowMaxMicros = new LongAccumulator(Math::max, 0);
+
+    // Previous window cut (guarded by "this"; only touched by readers)
+    private long[] windowBase = new long[BUCKETS];
+    private long windowBaseSum;
+
+    public void recordNanos(long nanos) {
+        recordMicros(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void recordMicros(long micros) {
+        long v = Math.max(0, micros);
+        counts.incrementAndGet(bucketOf(v));
+        sumMicros.add(v);
+        maxMicros.accumulate(v);
+        windowMaxMicros.accumulate(v);
+    }
+
+    /** Everything recorded since start (or the last {@link #reset()}). */
+    public Snapshot snapshot() {
+        long[] c = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            c[i] = counts.get(i);
+        }
+        return new Snapshot(c, sumMicros.sum(), maxMicros.get());
+    }
+
+    /** Only what was recorded since the previous call of this method. */
+    public synchronized Snapshot snapshotWindow() {
+        long max = windowMaxMicros.getThenReset();
+        Snapshot total = snapshot();
+        long[] delta = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            delta[i] = Math.max(0, total.counts[i] - windowBase[i]);
+        }
+        long sum = Math.max(0, total.sumMicros - windowBaseSum);
+        windowBase = total.counts;
+        windowBaseSum = total.sumMicros;
+        return new Snapshot(delta, sum, max);
+    }
+
+    /**
+     * Allocation-free read for exporters: fills {@code out[i]} with the cumulative count of values
+     * &lt;= {@code boundsMicros[i]} (ascending bounds). A bucket only counts once the whole of it is
+     * at or below the bound, so a bound inside a bucket undercounts; pass {@code edge - 1} for an
+     * edge from {@link #nearestEdge} to get exact counts.
+     *
+     * @return total count (the "+Inf" bucket)
+     */
+    public long cumulativeCounts(long[] boundsMicros, long[] out) {
+        long seen = 0;
+        int b = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long upper = upperBoundOf(i);
+            while (b < boundsMicros.length && upper > boundsMicros[b]) {
+                out[b++] = seen;
+            }
+            seen += counts.get(i);
+        }
+        while (b < boundsMicros.length) {
+            out[b++] = seen;
+        }
+        return seen;
+    }
+
+    public long sumMicros() {
+        return sumMicros.sum();
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        sumMicros.reset();
+        maxMicros.reset();
+        windowMaxMicros.reset();
+        windowBase = new long[BUCKETS];
+        windowBaseSum = 0;
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(micros);
+        if (exp > MAX_EXP) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (micros >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * The bucket edge nearest to {@code micros}: every value below it lands in a different bucket
+     * than every value from it on, so "&lt; edge" can be counted exactly.
+     */
+    static long nearestEdge(long micros) {
+        int b = bucketOf(Math.max(0, micros));
+        long below = b == 0 ? 0 : upperBoundOf(b - 1) + 1;
+        long above = upperBoundOf(b) + 1;
+        return micros - below <= above - micros ? below : above;
+    }
+
+    /** Largest value (inclusive) that lands in the given bucket. */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exp = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (exp - SUB_BITS)) - 1;
+    }
+
+    /** Immutable copy of the bucket counts; all values are in microseconds. */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sumMicros;
+        private final long maxMicros;
+
+        Snapshot(long[] counts, long sumMicros, long maxMicros) {
+            this.counts = counts;
+            long n = 0;
+            for (long c : counts) n += c;
+            this.count = n;
+            this.sumMicros = sumMicros;
+            this.maxMicros = maxMicros;
+        }
+
+        public long getCount() { return count; }
+
+        public long getSumMicros() { return sumMicros; }
+
+        public long getMaxMicros() { return maxMicros; }
+
+        public double getMeanMicros() {
+            return count == 0 ? 0 : (double) sumMicros / count;
+        }
+
+        /**
+         * Upper bound of the bucket holding the given quantile (0..1), capped at the observed max.
+         */
+        public long percentileMicros(double quantile) {
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(quantile * count);
+            if (rank < 1) rank = 1;
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    long upper = upperBoundOf(i);
+                    return maxMicros > 0 ? Math.min(upper, maxMicros) : upper;
+                }
+            }
+            return maxMicros;
+        }
+
+        /** Cumulative count of values &lt;= {@code micros} (bucket granularity). */
+        public long countAtOrBelow(long micros) {
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (upperBoundOf(i) > micros) break;
+                seen += counts[i];
+            }
+            return seen;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package org.example.ftp.server.metrics;
+
+import org.example.ftp.server.command.visitor.MetricsVisitor;
+import org.example.ftp.server.connection.ConnectionLimiter;
+import org.example.ftp.server.session.ActiveSessionRegistry;
+import org.example.ftp.server.transfer.RateLimiter;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Renders all server metrics in the Prometheus text exposition format (version 0.0.4).
+ *
+ * Everything is read straight from the live metric objects (MetricsVisitor, ServerMetrics,
+ * limiters, MXBeans); the text is built in a reused StringBuilder and byte buffer, so a scrape
+ * costs one response array plus the MXBean snapshots.
+ */
+public class PrometheusExporter {
+
+    // Histogram "le" bounds exposed to Prometheus, near these (internal buckets are finer). Each
+    // is moved to the nearest internal bucket edge, so its count is exact: 100 us is exported as
+    // le="0.000096", 1 s as le="0.98304", and so on.
+    private static final long[] NOMINAL_BOUNDS_MICROS = {
+            100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000,
+            250_000, 500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000, 30_000_000, 60_000_000
+    };
+    // Inclusive, as LatencyHistogram.cumulativeCounts takes them
+    private static final long[] BOUNDS_MICROS = new long[NOMINAL_BOUNDS_MICROS.length];
+    private static final String[] BOUNDS_LABEL = new String[NOMINAL_BOUNDS_MICROS.length];
+
+    static {
+        for (int i = 0; i < NOMINAL_BOUNDS_MICROS.length; i++) {
+            long edge = LatencyHistogram.nearestEdge(NOMINAL_BOUNDS_MICROS[i]);
+            // Values are recorded in whole microseconds: "<= edge - 1 us" is "< edge"
+            BOUNDS_MICROS[i] = edge - 1;
+            BOUNDS_LABEL[i] = BigDecimal.valueOf(edge, 6).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    private final ConnectionLimiter connectionLimiter;
+    private final ActiveSessionRegistry sessionRegistry;
+    private final RateLimiter uploadRateLimiter;
+    private final RateLimiter downloadRateLimiter;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    private final long startMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    // Scrape state, guarded by "this"
+    private final StringBuilder text = new StringBuilder(16 * 1024);
+    private final long[] cumulative = new long[BOUNDS_MICROS.length];
+    private byte[] buffer = new byte[16 * 1024];
+    private final RateGauge uploadRate = new RateGauge();
+    private final RateGauge downloadRate = new RateGauge();
+
+    public PrometheusExporter(
+            ConnectionLimiter connectionLimiter,
+            ActiveSessionRegistry sessionRegistry,
+            RateLimiter uploadRateLimiter,
+            RateLimiter downloadRateLimiter
+    ) {
+        this.connectionLimiter = connectionLimiter;
+        this.sessionRegistry = sessionRegistry;
+        this.uploadRateLimiter = uploadRateLimiter;
+        this.downloadRateLimiter = downloadRateLimiter;
+    }
+
+    /** @return a fresh copy of the exposition text (ASCII/UTF-8) */
+    public synchronized byte[] scrape() {
+        StringBuilder sb = text;
+        sb.setLength(0);
+
+        // ===== commands =====
+        header(sb, "ftp_commands_total", "counter", "FTP commands dispatched, by verb.");
+        for (Map.Entry<String, LongAdder> e : MetricsVisitor.counters().entrySet()) {
+            sb.append("ftp_commands_total{command=\"").append(e.getKey()).append("\"} ")
+                    .append(e.getValue().sum()).append('\n');
+        }
+        header(sb, "ftp_command_duration_seconds", "histogram", "Command duration including any data transfer.");
+        for (Map.Entry<String, LatencyHistogram> e : MetricsVisitor.latencyHistograms().entrySet()) {
+            histogram(sb, "ftp_command_duration_seconds", "command", e.getKey(), e.getValue());
+        }
+        header(sb, "ftp_command_ttfb_seconds", "histogram", "Command start to first data-connection byte.");
+        for (Map.Entry<String, LatencyHistogram> e : MetricsVisitor.timeToFirstByteHistograms().entrySet()) {
+            histogram(sb, "ftp_command_ttfb_seconds", "command", e.getKey(), e.getValue());
+        }
+
+        // ===== sessions =====
+        gauge(sb, "ftp_control_connections", "Open control connections (authenticated or not).",
+                sessionRegistry == null ? 0 : sessionRegistry.size());
+        gauge(sb, "ftp_sessions_authenticated", "Logged-in sessions holding a connection slot.",
+                connectionLimiter.getCurrentConnections());
+        gauge(sb, "ftp_sessions_users", "Distinct logged-in users.", connectionLimiter.getConnectedUsersCount());
+        gauge(sb, "ftp_sessions_max", "Configured global connection limit.", connectionLimiter.getMaxConnections());
+        gauge(sb, "ftp_connections_pre_auth", "Admitted connections that have not logged in yet.",
+                ServerMetrics.PRE_AUTH_CONNECTIONS.get());
+        header(sb, "ftp_connections_rejected_total", "counter", "Connections refused right after accept, by reason.");
+        reason(sb, "ftp_connections_rejected_total", "pre_auth_full", ServerMetrics.REJECTED_PRE_AUTH.sum());
+        reason(sb, "ftp_connections_rejected_total", "per_ip_connections", ServerMetrics.REJECTED_PER_IP.sum());
+        reason(sb, "ftp_connections_rejected_total", "per_ip_rate", ServerMetrics.REJECTED_RATE.sum());
+        header(sb, "ftp_overload_shed_total", "counter", "New logins/uploads refused by the overload controller.");
+        sb.append("ftp_overload_shed_total{kind=\"login\"} ").append(ServerMetrics.SHED_LOGINS.sum()).append('\n');
+        sb.append("ftp_overload_shed_total{kind=\"upload\"} ").append(ServerMetrics.SHED_UPLOADS.sum()).append('\n');
+        header(sb, "ftp_login_timeouts_total", "counter", "Connections closed for not logging in in time.");
+        sb.append("ftp_login_timeouts_total ").append(ServerMetrics.LOGIN_TIMEOUTS.sum()).append('\n');
+        header(sb, "ftp_timeouts_total", "counter", "Connections and listeners closed by the idle reaper, by kind.");
+        sb.append("ftp_timeouts_total{kind=\"control_idle\"} ").append(ServerMetrics.IDLE_TIMEOUTS.sum()).append('\n');
+        sb.append("ftp_timeouts_total{kind=\"data_connect\"} ").append(ServerMetrics.DATA_CONNECT_TIMEOUTS.sum()).append('\n');
+        sb.append("ftp_timeouts_total{kind=\"data_stall\"} ").append(ServerMetrics.DATA_STALL_TIMEOUTS.sum()).append('\n');
+
+        // ===== transfers =====
+        long up = ServerMetrics.BYTES_UPLOADED.sum();
+        long down = ServerMetrics.BYTES_DOWNLOADED.sum();
+        long now = System.nanoTime();
+
+        header(sb, "ftp_transfers_in_flight", "gauge", "Data transfers currently moving bytes.");
+        directional(sb, "ftp_transfers_in_flight", "upload", ServerMetrics.UPLOADS_IN_FLIGHT.get());
+        directional(sb, "ftp_transfers_in_flight", "download", ServerMetrics.DOWNLOADS_IN_FLIGHT.get());
+        header(sb, "ftp_transfer_bytes_total", "counter", "Payload bytes moved over data connections.");
+        directional(sb, "ftp_transfer_bytes_total", "upload", up);
+        directional(sb, "ftp_transfer_bytes_total", "download", down);
+        header(sb, "ftp_transfer_bytes_per_second", "gauge", "Throughput since the previous scrape (>= 1s window).");
+        directional(sb, "ftp_transfer_bytes_per_second", "upload", uploadRate.update(up, now));
+        directional(sb, "ftp_transfer_bytes_per_second", "download", downloadRate.update(down, now));
+        header(sb, "ftp_rate_limit_bytes_per_second", "gauge", "Global rate limit (0 = unlimited).");
+        directional(sb, "ftp_rate_limit_bytes_per_second", "upload", uploadRateLimiter.getLimit());
+        directional(sb, "ftp_rate_limit_bytes_per_second", "download", downloadRateLimiter.getLimit());
+        header(sb, "ftp_rate_limiter_wait_seconds_total", "counter", "Time transfers spent throttled by rate limiters.");
+        sb.append("ftp_rate_limiter_wait_seconds_total ");
+        seconds(sb, ServerMetrics.RATE_LIMIT_WAIT_NANOS.sum() / 1_000);
+        sb.append('\n');
+
+        header(sb, "ftp_transfer_ledger_rows_total", "counter", "Transfer ledger rows by fate: written to the DB or dropped on a full queue.");
+        sb.append("ftp_transfer_ledger_rows_total{result=\"written\"} ").append(ServerMetrics.LEDGER_WRITTEN.sum()).append('\n');
+        sb.append("ftp_transfer_ledger_rows_total{result=\"dropped\"} ").append(ServerMetrics.LEDGER_DROPPED.sum()).append('\n');
+        header(sb, "ftp_transfer_ledger_write_errors_total", "counter", "Transfer ledger batches the DB refused (kept and retried).");
+        sb.append("ftp_transfer_ledger_write_errors_total ").append(ServerMetrics.LEDGER_WRITE_ERRORS.sum()).append('\n');
+
+        // ===== database =====
+        header(sb, "ftp_db_query_duration_seconds", "histogram", "SQLite connection checkout to close, per repository call.");
+        histogram(sb, "ftp_db_query_duration_seconds", null, null, ServerMetrics.DB_QUERY);
+
+        // ===== JVM =====
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        MemoryUsage nonHeap = memory.getNonHeapMemoryUsage();
+        header(sb, "jvm_memory_used_bytes", "gauge", "Used JVM memory.");
+        area(sb, "jvm_memory_used_bytes", "heap", heap.getUsed());
+        area(sb, "jvm_memory_used_bytes", "nonheap", nonHeap.getUsed());
+        header(sb, "jvm_memory_committed_bytes", "gauge", "Committed JVM memory.");
+        area(sb, "jvm_memory_committed_bytes", "heap", heap.getCommitted());
+        area(sb, "jvm_memory_committed_bytes", "nonheap", nonHeap.getCommitted());
+        header(sb, "jvm_memory_max_bytes", "gauge", "Max JVM memory (-1 = undefined).");
+        area(sb, "jvm_memory_max_bytes", "heap", heap.getMax());
+        area(sb, "jvm_memory_max_bytes", "nonheap", nonHeap.getMax());
+
+        header(sb, "jvm_gc_collections_total", "counter", "GC collections, by collector.");
+        for (GarbageCollectorMXBean gc : collectors) {
+            sb.append("jvm_gc_collections_total{gc=\"");
+            label(sb, gc.getName());
+            sb.append("\"} ").append(Math.max(0, gc.getCollectionCount())).append('\n');
+        }
+        header(sb, "jvm_gc_collection_seconds_total", "counter", "Accumulated GC time, by collector.");
+        for (GarbageCollectorMXBean gc : collectors) {
+            sb.append("jvm_gc_collection_seconds_total{gc=\"");
+            label(sb, gc.getName());
+            sb.append("\"} ");
+            seconds(sb, Math.max(0, gc.getCollectionTime()) * 1_000);
+            sb.append('\n');
+        }
+
+        gauge(sb, "jvm_threads_live", "Live JVM threads.", threads.getThreadCount());
+        // Sockets included: leaked control/data connections and PASV listeners show up here
+        if (os instanceof com.sun.management.UnixOperatingSystemMXBean unix) {
+            gauge(sb, "process_open_fds", "Open file descriptors.", unix.getOpenFileDescriptorCount());
+        }
+        header(sb, "process_uptime_seconds", "gauge", "Time since JVM start.");
+        sb.append("process_uptime_seconds ");
+        seconds(sb, (System.currentTimeMillis() - startMillis) * 1_000);
+        sb.append('\n');
+
+        return encode(sb);
+    }
+
+    private void histogram(StringBuilder sb, String name, String labelName, String labelValue, LatencyHistogram h) {
+        long sum = h.sumMicros();
+        long count = h.cumulativeCounts(BOUNDS_MICROS, cumulative);
+        for (int i = 0; i < BOUNDS_MICROS.length; i++) {
+            sb.append(name).append("_bucket{");
+            if (labelName != null) {
+                sb.append(labelName).append("=\"").append(labelValue).append("\",");
+            }
+            sb.append("le=\"").append(BOUNDS_LABEL[i]).append("\"} ").append(cumulative[i]).append('\n');
+        }
+        sb.append(name).append("_bucket{");
+        if (labelName != null) {
+            sb.append(labelName).append("=\"").append(labelValue).append("\",");
+        }
+        sb.append("le=\"+Inf\"} ").append(count).append('\n');
+
+        sb.append(name).append("_sum");
+        if (labelName != null) {
+            sb.append('{').append(labelName).append("=\"").append(labelValue).append("\"}");
+        }
+        sb.append(' ');
+        seconds(sb, sum);
+        sb.append('\n');
+
+        sb.append(name).append("_count");
+        if (labelName != null) {
+            sb.append('{').append(labelName).append("=\"").append(labelValue).append("\"}");
+        }
+        sb.append(' ').append(count).append('\n');
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void gauge(StringBuilder sb, String name, String help, long value) {
+        header(sb, name, "gauge", help);
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void directional(StringBuilder sb, String name, String direction, long value) {
+        sb.append(name).append("{direction=\"").append(direction).append("\"} ").append(value).append('\n');
+    }
+
+    private static void reason(StringBuilder sb, String name, String reason, long value) {
+        sb.append(name).append("{reason=\"").append(reason).append("\"} ").append(value).append('\n');
+    }
+
+    private static void area(StringBuilder sb, String name, String area, long value) {
+        sb.append(name).append("{area=\"").append(area).append("\"} ").append(value).append('\n');
+    }
+
+    /** Microseconds as decimal seconds, without going through Double.toString(). */
+    private static void seconds(StringBuilder sb, long micros) {
+        long whole = micros / 1_000_000;
+        long frac = micros % 1_000_000;
+        sb.append(whole).append('.');
+        for (long div = 100_000; div > 0; div /= 10) {
+            sb.append((char) ('0' + (frac / div) % 10));
+        }
+    }
+
+    private static void label(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                sb.append('\\').append(c);
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+
+    private byte[] encode(StringBuilder sb) {
+        int len = sb.length();
+        if (buffer.length < len * 3) {
+            buffer = new byte[len * 3];
+        }
+        int n = 0;
+        for (int i = 0; i < len; i++) {
+            char c = sb.charAt(i);
+            if (c < 0x80) {
+                buffer[n++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[n++] = (byte) (0xC0 | (c >> 6));
+                buffer[n++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                // BMP only; metric names/labels here never contain surrogate pairs
+                buffer[n++] = (byte) (0xE0 | (c >> 12));
+                buffer[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[n++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return Arrays.copyOf(buffer, n);
+    }
+
+    /** Bytes/sec between two scrapes that are at least one second apart. */
+    private static final class RateGauge {
+        private long lastTotal = -1;
+        private long lastNanos;
+        private long rate;
+
+        long update(long total, long nowNanos) {
+            if (lastTotal < 0) {
+                lastTotal = total;
+                lastNanos = nowNanos;
+                return 0;
+            }
+            long elapsed = nowNanos - lastNanos;
+            if (elapsed >= 1_000_000_000L) {
+                rate = Math.max(0, (long) ((total - lastTotal) * 1e9 / elapsed));
+                lastTotal = total;
+                lastNanos = nowNanos;
+            }
+            return rate;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.ftp.server.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide counters that are not tied to a single command.
+ * All of them are registered once and updated in place; readers (e.g. /metrics) never copy them.
+ */
+public final class ServerMetrics {
+
+    public static final AtomicInteger UPLOADS_IN_FLIGHT = new AtomicInteger();
+    public static final AtomicInteger DOWNLOADS_IN_FLIGHT = new AtomicInteger();
+
+    public static final LongAdder BYTES_UPLOADED = new LongAdder();
+    public static final LongAdder BYTES_DOWNLOADED = new LongAdder();
+
+    /** Time transfer threads spent sleeping/yielding inside RateLimiter.acquire(). */
+    public static final LongAdder RATE_LIMIT_WAIT_NANOS = new LongAdder();
+
+    /** Connections turned away right after accept() (see AdmissionController), by reason. */
+    public static final LongAdder REJECTED_PRE_AUTH = new LongAdder();
+    public static final LongAdder REJECTED_PER_IP = new LongAdder();
+    public static final LongAdder REJECTED_RATE = new LongAdder();
+    /** Connections closed because they did not log in within ftp.loginTimeoutMs. */
+    public static final LongAdder LOGIN_TIMEOUTS = new LongAdder();
+    /** Closed by IdleReaper: silent control connections, unused PASV listeners, stalled data connections. */
+    public static final LongAdder IDLE_TIMEOUTS = new LongAdder();
+    public static final LongAdder DATA_CONNECT_TIMEOUTS = new LongAdder();
+    public static final LongAdder DATA_STALL_TIMEOUTS = new LongAdder();
+    public static final AtomicInteger PRE_AUTH_CONNECTIONS = new AtomicInteger();
+
+    /** New logins/uploads refused by OverloadController. */
+    public static final LongAdder SHED_LOGINS = new LongAdder();
+    public static final LongAdder SHED_UPLOADS = new LongAdder();
+
+    /** TransferLedger: rows stored, rows lost to a full queue, batches the DB refused (retried). */
+    public static final LongAdder LEDGER_WRITTEN = new LongAdder();
+    public static final LongAdder LEDGER_DROPPED = new LongAdder();
+    public static final LongAdder LEDGER_WRITE_ERRORS = new LongAdder();
+
+    /** Connection checkout -> close for every Db connection (i.e. one repository call). */
+    public static final LatencyHistogram DB_QUERY = new LatencyHistogram();
+
+    private ServerMetrics() {
+    }
+}
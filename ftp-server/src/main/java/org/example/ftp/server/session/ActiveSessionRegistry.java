@@ -2,33 +2,59 @@ package org.example.ftp.server.session;
 
 import java.io.IOException;
 import java.net.Socket;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
- 
+/**
+ * Live control connections, each with a {@link SessionInfo} descriptor (admin API: list / kill).
+ */
 public class ActiveSessionRegistry {
 
-    private final Set<Socket> controlSockets = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<Long, SessionInfo> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
 
-    public void register(Socket controlSocket) {
-        if (controlSocket == null) return;
-        controlSockets.add(controlSocket);
+    public SessionInfo register(Socket controlSocket) {
+        if (controlSocket == null) return null;
+        SessionInfo info = new SessionInfo(nextId.incrementAndGet(), controlSocket);
+        sessions.put(info.getId(), info);
+        return info;
     }
 
-    public void unregister(Socket controlSocket) {
-        if (controlSocket == null) return;
-        controlSockets.remove(controlSocket);
+    public void unregister(SessionInfo info) {
+        if (info == null) return;
+        sessions.remove(info.getId());
+    }
+
+    /** Open control connections (authenticated or not). */
+    public int size() {
+        return sessions.size();
+    }
+
+    /** Snapshot ordered by connect time (oldest first). */
+    public List<SessionInfo> list() {
+        List<SessionInfo> out = new ArrayList<>(sessions.values());
+        out.sort(Comparator.comparingLong(SessionInfo::getId));
+        return out;
+    }
+
+    /** @return false if no such session */
+    public boolean kill(long id) {
+        SessionInfo info = sessions.get(id);
+        if (info == null) return false;
+        info.kill();
+        return true;
     }
 
     public void disconnectAll() {
-        for (Socket s : controlSockets) {
+        for (SessionInfo info : sessions.values()) {
             try {
-                s.close();
+                info.getControlSocket().close();
             } catch (IOException ignored) {
             }
         }
-        controlSockets.clear();
+        sessions.clear();
     }
 }
-
-
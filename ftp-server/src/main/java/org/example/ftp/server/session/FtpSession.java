@@ -1,5 +1,7 @@
 package org.example.ftp.server.session;
 
+import org.example.ftp.common.protocol.FtpCodec;
+import org.example.ftp.common.protocol.FtpCommand;
 import org.example.ftp.common.protocol.FtpResponse;
 import org.example.ftp.server.auth.AuthService;
 import org.example.ftp.server.auth.PermissionService;
@@ -9,22 +11,34 @@ import org.example.ftp.server.auth.db.SqliteSharedFolderRepository;
 import org.example.ftp.server.auth.db.SqliteUserRepository;
 import org.example.ftp.server.command.handler.CommandDispatcher;
 import org.example.ftp.server.connection.ConnectionLimiter;
+import org.example.ftp.server.connection.OverloadController;
+import org.example.ftp.server.fs.DiskUsage;
 import org.example.ftp.server.session.memento.SessionMemento;
 import org.example.ftp.server.stats.StatsService;
 import org.example.ftp.server.transfer.RateLimiter;
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.net.ServerSocket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
 public class FtpSession {
 
+    private static final int REPLY_BUFFER = 1024;
+    // Replies up to this size keep their grown buffer (LOGS, FEAT); bigger ones get a one-off
+    private static final int MAX_KEPT_REPLY_BUFFER = 64 * 1024;
+    // Input a long command holds while it looks for ABOR (pipelined commands are far below this)
+    private static final int READ_AHEAD_MAX = 64 * 1024;
+
     private String pendingUsername;
     private String username;
-    private boolean authenticated;
+    private volatile boolean authenticated;
 
     private final AuthService authService;
     private final PermissionService permissionService;
@@ -41,14 +55,30 @@ public class FtpSession {
     private Path homeDirectory;
     private Path currentDirectory;
     private boolean hasExplicitlyChangedDirectory = false; // Флаг, что директория была явно изменена через CWD
+    // Set by RNFR, consumed by the RNTO right after it
+    private Path renameFrom;
 
-    private ServerSocket passiveDataSocket;
+    private volatile ServerSocket passiveDataSocket;
 
     private SessionState state;
-    private final PrintWriter writer;
+    private final OutputStream output;
+    // Control connection input; only read here by abortSent(), the connection loop owns it
+    private InputStream input;
+    // Input not handled yet: handed over by the connection loop (pushBack) or read by abortSent(),
+    // given back to the loop by takeReadAhead(). Pending bytes are readAhead[readAheadStart, readAheadEnd)
+    private byte[] readAhead = new byte[0];
+    private int readAheadStart;
+    private int readAheadEnd;
+    // abortSent() looks only at bytes it has not seen yet: up to here, and whether that is a line start
+    private int abortScanned;
+    private boolean abortScanAtLineStart = true;
+    private final FtpCodec codec = new FtpCodec();
+    private ByteBuffer replyBuffer = ByteBuffer.allocate(REPLY_BUFFER);
     private final CommandDispatcher dispatcher = new CommandDispatcher();
 
     private final ConnectionLimiter connectionLimiter;
+    private final OverloadController overloadController;
+    private final DiskUsage diskUsage;
     private final RateLimiter globalUploadRateLimiter;
     private final RateLimiter globalDownloadRateLimiter;
     private RateLimiter uploadRateLimiter;
@@ -63,8 +93,23 @@ public class FtpSession {
     private volatile Socket activeDataConnection;
     private volatile Thread activeTransferThread;
 
+    // ===== timeouts (read by IdleReaper on its own thread) =====
+    private volatile boolean commandRunning;
+    private volatile long lastCommandNanos = System.nanoTime();
+    private volatile long passiveOpenedNanos;
+    private volatile boolean dataConnected;
+    private volatile long lastDataNanos;
+    private volatile FtpResponse expiryReply;
+
+    // Live descriptor for the admin API (null if the session is not in ActiveSessionRegistry)
+    private SessionInfo info;
+
+    // ===== command timing (metrics) =====
+    private long commandStartNanos;
+    private long firstDataByteNanos;
+
     public FtpSession(
-            PrintWriter writer,
+            OutputStream output,
             Path ftpRoot,
             AuthService authService,
             PermissionService permissionService,
@@ -75,14 +120,18 @@ public class FtpSession {
             SqliteUserRepository userRepository,
             SqliteFolderRepository folderRepository,
             SqliteFolderPermissionRepository folderPermissionRepository,
-            SqliteSharedFolderRepository sharedFolderRepository
+            SqliteSharedFolderRepository sharedFolderRepository,
+            OverloadController overloadController,
+            DiskUsage diskUsage
     ) {
-        this.writer = writer;
+        this.output = output;
         this.ftpRoot = ftpRoot;
         this.authService = authService;
         this.permissionService = permissionService;
         this.statsService = statsService;
         this.connectionLimiter = connectionLimiter;
+        this.overloadController = overloadController;
+        this.diskUsage = diskUsage;
         this.globalUploadRateLimiter = globalUploadRateLimiter;
         this.globalDownloadRateLimiter = globalDownloadRateLimiter;
         this.userRepository = userRepository;
@@ -93,23 +142,38 @@ public class FtpSession {
         this.state = new UnauthenticatedState();
         this.authenticated = false;
 
+        // Created once at server start (FtpServer.start), not per connection
+        this.sharedDirectory = ftpRoot.resolve("shared").normalize().toAbsolutePath();
+    }
+
+    public void handle(FtpCommand command) {
+        commandRunning = true;
         try {
-            this.sharedDirectory = ftpRoot.resolve("shared").normalize().toAbsolutePath();
-            Files.createDirectories(this.sharedDirectory);
-        } catch (IOException e) {
-            throw new IllegalStateException("Failed to init shared directory", e);
+            sendResponse(dispatcher.dispatch(this, command));
+        } finally {
+            lastCommandNanos = System.nanoTime();
+            commandRunning = false;
         }
     }
 
-    public void handle(String commandLine) {
-        FtpResponse response = dispatcher.dispatch(this, commandLine);
-        writer.print(response.toProtocolString());
-        writer.flush();
-    }
-    
-    public void sendResponse(FtpResponse response) {
-        writer.print(response.toProtocolString());
-        writer.flush();
+    /**
+     * Encodes the reply into the session's buffer and writes it with a single write. Write errors
+     * are swallowed as the PrintWriter used to: a dead socket ends the session on the next read.
+     */
+    public synchronized void sendResponse(FtpResponse response) {
+        ByteBuffer buf = replyBuffer;
+        buf.clear();
+        while (!codec.encodeReply(response, buf)) {
+            buf = ByteBuffer.allocate(buf.capacity() * 2);
+        }
+        if (buf.capacity() <= MAX_KEPT_REPLY_BUFFER) {
+            replyBuffer = buf;
+        }
+        try {
+            output.write(buf.array(), 0, buf.position());
+            output.flush();
+        } catch (IOException ignored) {
+        }
     }
 
     public void authenticate(String username) {
@@ -122,6 +186,10 @@ public class FtpSession {
             homeDirectory = ftpRoot.resolve("users").resolve(username).normalize().toAbsolutePath();
             Files.createDirectories(homeDirectory);
             currentDirectory = homeDirectory;
+            if (info != null) {
+                info.setUsername(username);
+            }
+            publishCwd();
 
         
             Long legacyRateLimit = authService.getRateLimit(username);
@@ -248,6 +316,172 @@ public class FtpSession {
         return closeRequested;
     }
 
+    public boolean isCommandRunning() { return commandRunning; }
+
+    /** System.nanoTime() at the end of the last command (or session creation). */
+    public long getLastCommandNanos() { return lastCommandNanos; }
+
+    public long getPassiveOpenedNanos() { return passiveOpenedNanos; }
+
+    /** Whether the current passive listener has handed out its data connection. */
+    public boolean isDataConnected() { return dataConnected; }
+
+    public long getLastDataNanos() { return lastDataNanos; }
+
+    public Socket getActiveDataConnection() { return activeDataConnection; }
+
+    /** Called by data commands for every chunk moved, so a slow transfer is not taken for a stalled one. */
+    public void markDataActivity() {
+        lastDataNanos = System.nanoTime();
+    }
+
+    /** Set by IdleReaper before it shuts the control input: the reply to send on the way out. */
+    public void expireWith(FtpResponse reply) {
+        this.expiryReply = reply;
+    }
+
+    /** null unless the session was timed out. */
+    public FtpResponse getExpiryReply() {
+        return expiryReply;
+    }
+
+    void attachInput(InputStream input) {
+        this.input = input;
+    }
+
+    /**
+     * Called by the connection loop before each command with the input it has read but not
+     * decoded yet (commands pipelined behind this one), so {@link #abortSent} sees an ABOR that
+     * is already out of the socket. It comes back through {@link #takeReadAhead}, in order.
+     */
+    public void pushBack(byte[] src, int offset, int length) {
+        int pending = readAheadEnd - readAheadStart;
+        if (length > 0) {
+            byte[] dst = readAhead.length >= pending + length ? readAhead : new byte[pending + length];
+            System.arraycopy(readAhead, readAheadStart, dst, length, pending);
+            System.arraycopy(src, offset, dst, 0, length);
+            readAhead = dst;
+            readAheadStart = 0;
+            readAheadEnd = pending + length;
+        }
+        // What follows a decoded command starts a line
+        abortScanned = readAheadStart;
+        abortScanAtLineStart = true;
+    }
+
+    /**
+     * For commands that run long without a data connection (SITE RMTREE): whether the client
+     * has sent ABOR since the command started. Whatever the client sent is kept and handled by
+     * the connection loop (through {@link #takeReadAhead}) once the command has replied, so
+     * the ABOR itself is still answered and no other command is lost. At most 64 KB is held: a
+     * client that sends more than that meanwhile is taken to want the command stopped, and the
+     * rest stays in the socket.
+     */
+    public boolean abortSent() {
+        InputStream in = input;
+        if (in == null) return false;
+        int pending = readAheadEnd - readAheadStart;
+        if (pending >= READ_AHEAD_MAX) return true;
+        try {
+            int n = Math.min(in.available(), READ_AHEAD_MAX - pending);
+            if (n > 0) {
+                if (readAheadEnd + n > readAhead.length) {
+                    byte[] dst = pending + n > readAhead.length
+                            ? new byte[Math.min(READ_AHEAD_MAX, Math.max(pending + n, 2 * readAhead.length))]
+                            : readAhead;
+                    System.arraycopy(readAhead, readAheadStart, dst, 0, pending);
+                    abortScanned -= readAheadStart;
+                    readAhead = dst;
+                    readAheadStart = 0;
+                    readAheadEnd = pending;
+                }
+                readAheadEnd += in.readNBytes(readAhead, readAheadEnd, n);
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        // Only the bytes not looked at yet
+        while (abortScanned < readAheadEnd) {
+            if (abortScanAtLineStart) {
+                // Skip the Telnet IP/Synch a client may put before ABOR
+                int j = abortScanned;
+                while (j < readAheadEnd && (readAhead[j] & 0x80) != 0) j++;
+                if (j + 4 > readAheadEnd) return false; // the rest of this line start is still on its way
+                if (new String(readAhead, j, 4, StandardCharsets.US_ASCII).equalsIgnoreCase("ABOR")) {
+                    return true;
+                }
+                abortScanAtLineStart = false;
+            }
+            if (readAhead[abortScanned++] == '\n') abortScanAtLineStart = true;
+        }
+        return false;
+    }
+
+    /** Moves input held by the session into {@code dst}; 0 if there is none. */
+    public int takeReadAhead(byte[] dst, int offset, int length) {
+        int n = Math.min(length, readAheadEnd - readAheadStart);
+        if (n <= 0) return 0;
+        System.arraycopy(readAhead, readAheadStart, dst, offset, n);
+        readAheadStart += n;
+        if (readAheadStart == readAheadEnd) {
+            readAheadStart = 0;
+            readAheadEnd = 0;
+        }
+        return n;
+    }
+
+    void attachInfo(SessionInfo info) {
+        this.info = info;
+        info.attach(this);
+    }
+
+    /** @return live descriptor, or null if this session is not in the ActiveSessionRegistry */
+    public SessionInfo getInfo() {
+        return info;
+    }
+
+    private void publishCwd() {
+        SessionInfo i = info;
+        if (i == null) return;
+        if (currentDirectory == null) {
+            i.setCwd(null);
+            return;
+        }
+        Path root = ftpRoot.toAbsolutePath().normalize();
+        Path cwd = currentDirectory.toAbsolutePath().normalize();
+        i.setCwd(cwd.startsWith(root) ? "/" + root.relativize(cwd).toString().replace('\\', '/') : cwd.toString());
+    }
+
+    /**
+     * Marks the start of a command and clears the first-data-byte mark.
+     *
+     * @return the start timestamp (System.nanoTime())
+     */
+    public long beginCommand() {
+        commandStartNanos = System.nanoTime();
+        firstDataByteNanos = 0;
+        return commandStartNanos;
+    }
+
+    /**
+     * Called by data commands when the first byte crosses the data connection.
+     * Only the first call per command counts.
+     */
+    public void markFirstDataByte() {
+        if (firstDataByteNanos == 0) {
+            firstDataByteNanos = System.nanoTime();
+        }
+    }
+
+    /** 0 if the current command did not move any data yet. */
+    public long getFirstDataByteNanos() {
+        return firstDataByteNanos;
+    }
+
+    public long getCommandStartNanos() {
+        return commandStartNanos;
+    }
+
     // ===== getters / setters =====
 
     public boolean isAuthenticated() { return authenticated; }
@@ -266,6 +500,10 @@ public class FtpSession {
 
     public ConnectionLimiter getConnectionLimiter() { return connectionLimiter; }
 
+    public OverloadController getOverloadController() { return overloadController; }
+
+    public DiskUsage getDiskUsage() { return diskUsage; }
+
     public Path getSharedDirectory() { return sharedDirectory; }
     
     public Path getFtpRoot() { return ftpRoot; }
@@ -274,7 +512,10 @@ public class FtpSession {
 
     public Path getCurrentDirectory() { return currentDirectory; }
 
-    public void setCurrentDirectory(Path p) { currentDirectory = p; }
+    public void setCurrentDirectory(Path p) {
+        currentDirectory = p;
+        publishCwd();
+    }
     
     public void markDirectoryChanged() { hasExplicitlyChangedDirectory = true; }
     
@@ -290,21 +531,52 @@ public class FtpSession {
             closePassiveDataSocket();
         } catch (IOException ignored) {}
 
-        passiveDataSocket = new ServerSocket(0);
-        passiveDataSocket.setReuseAddress(true);
-        // Avoid indefinite hangs: data connection must arrive within timeout
-        try {
-            passiveDataSocket.setSoTimeout(Integer.getInteger("ftp.data.timeoutMs", 15000));
-        } catch (Exception ignored) {}
+        ServerSocket s = new ServerSocket(0);
+        s.setReuseAddress(true);
+        // No accept timeout here: IdleReaper closes a listener nobody connects to
+        passiveOpenedNanos = System.nanoTime();
+        dataConnected = false;
+        passiveDataSocket = s;
+    }
+
+    /**
+     * Accepts the data connection on the passive listener and makes it the active one, so ABOR
+     * and the stall timeout can reach it.
+     */
+    public Socket acceptDataConnection() throws IOException {
+        ServerSocket s = passiveDataSocket;
+        if (s == null) {
+            throw new SocketException("No passive data socket");
+        }
+        Socket data = s.accept();
+        lastDataNanos = System.nanoTime();
+        dataConnected = true;
+        activeDataConnection = data;
+        return data;
     }
 
     public void closePassiveDataSocket() throws IOException {
-        if (passiveDataSocket != null) {
-            passiveDataSocket.close();
+        ServerSocket s = passiveDataSocket;
+        if (s != null) {
             passiveDataSocket = null;
+            s.close();
         }
     }
 
+    /** Session end: whatever data sockets are still open go with it. */
+    public void closeDataChannels() {
+        Socket s = activeDataConnection;
+        if (s != null) {
+            activeDataConnection = null;
+            try {
+                s.close();
+            } catch (IOException ignored) {}
+        }
+        try {
+            closePassiveDataSocket();
+        } catch (IOException ignored) {}
+    }
+
     public SessionState getState() { return state; }
 
     public void setState(SessionState s) { state = s; }
@@ -316,6 +588,17 @@ public class FtpSession {
 
     // ===== memento =====
 
+    public void setRenameFrom(Path path) {
+        this.renameFrom = path;
+    }
+
+    /** The RNFR path, if the previous command was RNFR; cleared either way. */
+    public Path takeRenameFrom() {
+        Path p = renameFrom;
+        renameFrom = null;
+        return p;
+    }
+
     public SessionMemento save() {
         return new SessionMemento(
                 state,
@@ -334,5 +617,9 @@ public class FtpSession {
         authenticated = m.isAuthenticated();
         currentDirectory = m.getCurrentDirectory();
         homeDirectory = m.getHomeDirectory();
+        if (info != null) {
+            info.setUsername(username);
+        }
+        publishCwd();
     }
 }
\ No newline at end of file
@@ -7,10 +7,13 @@ import org.example.ftp.server.auth.db.SqliteFolderRepository;
 import org.example.ftp.server.auth.db.SqliteSharedFolderRepository;
 import org.example.ftp.server.auth.db.SqliteUserRepository;
 import org.example.ftp.server.connection.ConnectionLimiter;
+import org.example.ftp.server.connection.OverloadController;
+import org.example.ftp.server.fs.DiskUsage;
 import org.example.ftp.server.stats.StatsService;
 import org.example.ftp.server.transfer.RateLimiter;
 
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Path;
 
 /**
@@ -18,7 +21,8 @@ import java.nio.file.Path;
  */
 public final class FtpSessionBuilder {
 
-    private PrintWriter writer;
+    private OutputStream output;
+    private InputStream input;
     private Path ftpRoot;
     private AuthService authService;
     private PermissionService permissionService;
@@ -30,12 +34,18 @@ public final class FtpSessionBuilder {
     private SqliteFolderRepository folderRepository;
     private SqliteFolderPermissionRepository folderPermissionRepository;
     private SqliteSharedFolderRepository sharedFolderRepository;
+    private SessionInfo sessionInfo;
+    private OverloadController overloadController;
+    private DiskUsage diskUsage;
 
     public static FtpSessionBuilder create() {
         return new FtpSessionBuilder();
     }
 
-    public FtpSessionBuilder writer(PrintWriter writer) { this.writer = writer; return this; }
+    /** Control connection output; replies are written unbuffered, one write per reply. */
+    public FtpSessionBuilder output(OutputStream output) { this.output = output; return this; }
+    /** Optional: control connection input, so that long commands can notice an ABOR (see FtpSession#abortSent). */
+    public FtpSessionBuilder input(InputStream input) { this.input = input; return this; }
     public FtpSessionBuilder ftpRoot(Path ftpRoot) { this.ftpRoot = ftpRoot; return this; }
     public FtpSessionBuilder authService(AuthService authService) { this.authService = authService; return this; }
     public FtpSessionBuilder permissionService(PermissionService permissionService) { this.permissionService = permissionService; return this; }
@@ -47,9 +57,15 @@ public final class FtpSessionBuilder {
     public FtpSessionBuilder folderRepository(SqliteFolderRepository repo) { this.folderRepository = repo; return this; }
     public FtpSessionBuilder folderPermissionRepository(SqliteFolderPermissionRepository repo) { this.folderPermissionRepository = repo; return this; }
     public FtpSessionBuilder sharedFolderRepository(SqliteSharedFolderRepository repo) { this.sharedFolderRepository = repo; return this; }
+    /** Optional: live descriptor from ActiveSessionRegistry. */
+    public FtpSessionBuilder sessionInfo(SessionInfo info) { this.sessionInfo = info; return this; }
+    /** Optional: without one, logins and uploads are never shed. */
+    public FtpSessionBuilder overloadController(OverloadController controller) { this.overloadController = controller; return this; }
+    /** Optional: without one, usage is not tracked and no quota is enforced. */
+    public FtpSessionBuilder diskUsage(DiskUsage diskUsage) { this.diskUsage = diskUsage; return this; }
 
     public FtpSession build() {
-        if (writer == null) throw new IllegalStateException("writer is required");
+        if (output == null) throw new IllegalStateException("output is required");
         if (ftpRoot == null) throw new IllegalStateException("ftpRoot is required");
         if (authService == null) throw new IllegalStateException("authService is required");
         if (permissionService == null) throw new IllegalStateException("permissionService is required");
@@ -62,8 +78,8 @@ public final class FtpSessionBuilder {
         if (folderPermissionRepository == null) throw new IllegalStateException("folderPermissionRepository is required");
         if (sharedFolderRepository == null) throw new IllegalStateException("sharedFolderRepository is required");
 
-        return new FtpSession(
-                writer,
+        FtpSession session = new FtpSession(
+                output,
                 ftpRoot,
                 authService,
                 permissionService,
@@ -74,8 +90,17 @@ public final class FtpSessionBuilder {
                 userRepository,
                 folderRepository,
                 folderPermissionRepository,
-                sharedFolderRepository
+                sharedFolderRepository,
+                overloadController != null ? overloadController : OverloadController.disabled(),
+                diskUsage != null ? diskUsage : DiskUsage.disabled()
         );
+        if (sessionInfo != null) {
+            session.attachInfo(sessionInfo);
+        }
+        if (input != null) {
+            session.attachInput(input);
+        }
+        return session;
     }
 }
 
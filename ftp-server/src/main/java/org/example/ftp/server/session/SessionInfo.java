@@ -0,0 +1,167 @@
+package org.example.ftp.server.session;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live descriptor of one control connection, readable from any thread (admin API).
+ *
+ * Written only by the session's own thread with plain volatile stores / LongAdder adds,
+ * so the command and transfer paths never take a lock for it.
+ */
+public class SessionInfo {
+
+    // Transfer rate is re-sampled at most this often (by the transfer thread itself)
+    private static final long RATE_SAMPLE_NANOS = 250_000_000L;
+    // No bytes for this long -> the reported rate drops to 0
+    private static final long RATE_STALE_NANOS = 2_000_000_000L;
+
+    private final long id;
+    private final Socket controlSocket;
+    private final String remoteAddress;
+    private final long connectedAtMillis;
+
+    private volatile FtpSession session;
+    private volatile String username;
+    private volatile String cwd;
+    private volatile String currentCommand;
+    private volatile String lastCommand;
+    private volatile long commandStartedAtMillis;
+
+    // ===== active transfer =====
+    private volatile String transferCommand;
+    private volatile String transferFile;
+    private volatile long transferSize = -1;
+    private volatile long transferStartedAtMillis;
+    private final LongAdder transferBytes = new LongAdder();
+    private long rateSampleBytes;
+    private volatile long rateSampleNanos;
+    private volatile long bytesPerSecond;
+
+    private final LongAdder bytesUploaded = new LongAdder();
+    private final LongAdder bytesDownloaded = new LongAdder();
+
+    SessionInfo(long id, Socket controlSocket) {
+        this.id = id;
+        this.controlSocket = controlSocket;
+        this.remoteAddress = String.valueOf(controlSocket.getRemoteSocketAddress());
+        this.connectedAtMillis = System.currentTimeMillis();
+    }
+
+    // ===== updates (session thread) =====
+
+    void attach(FtpSession session) {
+        this.session = session;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public void setCwd(String cwd) {
+        this.cwd = cwd;
+    }
+
+    public void onCommandStart(String safeCommandLine) {
+        this.commandStartedAtMillis = System.currentTimeMillis();
+        this.currentCommand = safeCommandLine;
+    }
+
+    public void onCommandEnd() {
+        this.lastCommand = currentCommand;
+        this.currentCommand = null;
+    }
+
+    /**
+     * @param size expected size in bytes, or -1 if unknown (uploads)
+     */
+    public void beginTransfer(String command, String file, long size) {
+        transferBytes.reset();
+        rateSampleBytes = 0;
+        rateSampleNanos = System.nanoTime();
+        bytesPerSecond = 0;
+        transferSize = size;
+        transferStartedAtMillis = System.currentTimeMillis();
+        transferFile = file;
+        transferCommand = command;
+    }
+
+    public void onTransferBytes(int n, boolean upload) {
+        transferBytes.add(n);
+        (upload ? bytesUploaded : bytesDownloaded).add(n);
+
+        long now = System.nanoTime();
+        long elapsed = now - rateSampleNanos;
+        if (elapsed >= RATE_SAMPLE_NANOS) {
+            long total = transferBytes.sum();
+            bytesPerSecond = (long) ((total - rateSampleBytes) * 1e9 / elapsed);
+            rateSampleBytes = total;
+            rateSampleNanos = now;
+        }
+    }
+
+    public void endTransfer() {
+        transferCommand = null;
+        transferFile = null;
+        transferSize = -1;
+        bytesPerSecond = 0;
+    }
+
+    // ===== admin actions (any thread) =====
+
+    /**
+     * Aborts any running transfer and closes the control connection;
+     * the session thread then unwinds through its normal cleanup.
+     */
+    public void kill() {
+        FtpSession s = session;
+        if (s != null) {
+            s.requestClose();
+            s.requestTransferAbort();
+        }
+        try {
+            controlSocket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // ===== reads (any thread) =====
+
+    public long getId() { return id; }
+
+    Socket getControlSocket() { return controlSocket; }
+
+    public String getRemoteAddress() { return remoteAddress; }
+
+    public long getConnectedAtMillis() { return connectedAtMillis; }
+
+    public String getUsername() { return username; }
+
+    public String getCwd() { return cwd; }
+
+    public String getCurrentCommand() { return currentCommand; }
+
+    public String getLastCommand() { return lastCommand; }
+
+    public long getCommandStartedAtMillis() { return commandStartedAtMillis; }
+
+    public String getTransferCommand() { return transferCommand; }
+
+    public String getTransferFile() { return transferFile; }
+
+    public long getTransferSize() { return transferSize; }
+
+    public long getTransferStartedAtMillis() { return transferStartedAtMillis; }
+
+    public long getTransferBytes() { return transferBytes.sum(); }
+
+    public long getBytesPerSecond() {
+        if (transferCommand == null) return 0;
+        return System.nanoTime() - rateSampleNanos > RATE_STALE_NANOS ? 0 : bytesPerSecond;
+    }
+
+    public long getBytesUploaded() { return bytesUploaded.sum(); }
+
+    public long getBytesDownloaded() { return bytesDownloaded.sum(); }
+}
@@ -1,34 +1,81 @@
 package org.example.ftp.server.stats;
 
+import org.example.ftp.server.db.Page;
 import org.example.ftp.server.stats.db.SqliteStatsRepository;
+import org.example.ftp.server.stats.db.SqliteTransferRepository.Transfer;
 import org.example.ftp.server.stats.model.ConnectionStat;
 import org.example.ftp.server.stats.model.UserStats;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class StatsService {
 
     private final SqliteStatsRepository repository;
+    private final TrafficRollup traffic;
+    private final TransferLedger ledger;
+
+    // Bumped on every write so pollers (e.g. /api/events) only re-read stats when something changed
+    private final AtomicLong version = new AtomicLong();
 
     public StatsService(SqliteStatsRepository repository) {
+        this(repository, TrafficRollup.disabled(), TransferLedger.disabled());
+    }
+
+    public StatsService(SqliteStatsRepository repository, TrafficRollup traffic, TransferLedger ledger) {
         this.repository = repository;
+        this.traffic = traffic;
+        this.ledger = ledger;
     }
 
     public void onLogin(String username) {
+        traffic.login(username);
         repository.insertConnection(username);
+        version.incrementAndGet();
     }
     public void onUpload(String username, long bytes) {
+        traffic.upload(username, bytes);
         repository.addUploadedBytes(username, bytes);
+        version.incrementAndGet();
     }
     public List<UserStats> getAllUserStats() {
         return repository.findAllUserStats();
     }
 
+    /** See {@link SqliteStatsRepository#findUserStatsPage}. */
+    public Page<UserStats> getUserStatsPage(String prefix, String upper, String after, int limit) {
+        return repository.findUserStatsPage(prefix, upper, after, limit);
+    }
+
 
 
 
     public void onDownload(String username, long bytes) {
+        traffic.download(username, bytes);
         repository.insertDownload(username, bytes);
+        version.incrementAndGet();
+    }
+
+    /** A command answered with a 4xx/5xx reply (only counted in the traffic series). */
+    public void onCommandFailed(String username) {
+        traffic.error(username);
+    }
+
+    /** Every RETR/STOR that got past its checks, whatever the outcome (only kept in the ledger). */
+    public void onTransfer(Transfer transfer) {
+        ledger.record(transfer);
+    }
+
+    public TrafficRollup getTraffic() {
+        return traffic;
+    }
+
+    public TransferLedger getTransferLedger() {
+        return ledger;
+    }
+
+    public long getVersion() {
+        return version.get();
     }
 
 
@@ -0,0 +1,340 @@
+package org.example.ftp.server.stats;
+
+import org.example.ftp.server.stats.db.SqliteTrafficRepository;
+import org.example.ftp.server.stats.db.SqliteTrafficRepository.Point;
+import org.example.ftp.server.stats.db.SqliteTrafficRepository.Sample;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.example.ftp.server.stats.db.SqliteTrafficRepository.RESOLUTIONS;
+
+/**
+ * Per-minute traffic counters (bytes up/down, transfers, logins, failed commands) per user and
+ * for the whole server, kept in memory and appended to the {@code traffic} table in batches.
+ *
+ * Recording is a couple of LongAdder increments in the bucket of the current minute. Every
+ * {@code ftp.traffic.flushMs} (default 10000) a background thread writes the minutes that ended
+ * at least 5 s ago (writers may still be finishing an increment into them) in one transaction,
+ * which also adds them to their hour and day rows. Once an hour, rows past their retention are
+ * deleted: {@code ftp.traffic.minuteRetentionDays} (default 2), {@code ftp.traffic.hourRetentionDays}
+ * (90) and {@code ftp.traffic.dayRetentionDays} (1825). {@code ftp.traffic.enabled=false} turns
+ * it off. Series therefore lag real time by up to flushMs + 5 s.
+ */
+public final class TrafficRollup {
+
+    /** A series as stored: sparse points, in buckets of {@code step} seconds from {@code from}. */
+    public record Series(long from, long to, long step, int resolution, List<Point> points) {}
+
+    public static final int MAX_POINTS = 10_000;
+
+    private static final long GRACE_MILLIS = 5_000;
+    private static final long PURGE_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    // Samples kept for retry while the DB refuses writes; beyond this they are dropped
+    private static final int MAX_PENDING = 100_000;
+    // Candidate steps for a series without one, aiming at no more than AUTO_POINTS points
+    private static final long[] AUTO_STEPS = {60, 300, 900, 3600, 6 * 3600, 86400, 7 * 86400};
+    private static final int AUTO_POINTS = 720;
+
+    private static final class Counters {
+        final LongAdder bytesUp = new LongAdder();
+        final LongAdder bytesDown = new LongAdder();
+        final LongAdder transfers = new LongAdder();
+        final LongAdder logins = new LongAdder();
+        final LongAdder errors = new LongAdder();
+    }
+
+    private static final class Bucket {
+        final long minute;
+        final Counters global = new Counters();
+        final ConcurrentHashMap<String, Counters> users = new ConcurrentHashMap<>();
+
+        Bucket(long minute) {
+            this.minute = minute;
+        }
+
+        Counters user(String username) {
+            Counters c = users.get(username);
+            return c != null ? c : users.computeIfAbsent(username, k -> new Counters());
+        }
+    }
+
+    private final boolean enabled;
+    private final SqliteTrafficRepository repository;
+    private final long flushMillis;
+    private final long[] retentionSeconds;
+
+    private volatile Bucket current = new Bucket(minuteOf(System.currentTimeMillis()));
+    private final Queue<Bucket> sealed = new ConcurrentLinkedQueue<>();
+
+    // Flusher thread only (and the shutdown hook, after the flusher stopped)
+    private List<Sample> pending = new ArrayList<>();
+    private long lastPurge;
+
+    // Guarded by 'lifecycle' (not 'this': the flusher needs 'this' in advance() while close() waits for it)
+    private final Object lifecycle = new Object();
+    private ScheduledExecutorService flusher;
+
+    public TrafficRollup(boolean enabled, SqliteTrafficRepository repository, long flushMillis,
+                         int minuteRetentionDays, int hourRetentionDays, int dayRetentionDays) {
+        this.enabled = enabled && repository != null;
+        this.repository = repository;
+        this.flushMillis = Math.max(1000, flushMillis);
+        this.retentionSeconds = new long[]{
+                TimeUnit.DAYS.toSeconds(Math.max(1, minuteRetentionDays)),
+                TimeUnit.DAYS.toSeconds(Math.max(1, hourRetentionDays)),
+                TimeUnit.DAYS.toSeconds(Math.max(1, dayRetentionDays))
+        };
+    }
+
+    public static TrafficRollup fromSystemProperties(SqliteTrafficRepository repository) {
+        return new TrafficRollup(
+                Boolean.parseBoolean(System.getProperty("ftp.traffic.enabled", "true")),
+                repository,
+                Long.getLong("ftp.traffic.flushMs", 10_000L),
+                Integer.getInteger("ftp.traffic.minuteRetentionDays", 2),
+                Integer.getInteger("ftp.traffic.hourRetentionDays", 90),
+                Integer.getInteger("ftp.traffic.dayRetentionDays", 1825)
+        );
+    }
+
+    /** Records nothing (benchmarks, tools). */
+    public static TrafficRollup disabled() {
+        return new TrafficRollup(false, null, 10_000, 1, 1, 1);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void start() {
+        synchronized (lifecycle) {
+            if (!enabled || flusher != null) return;
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "traffic-rollup");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flushSafely, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "traffic-rollup-close"));
+    }
+
+    /** Stops the flusher and writes everything still in memory, the current minute included. */
+    public void close() {
+        synchronized (lifecycle) {
+            if (flusher == null) return;
+            flusher.shutdown();
+            try {
+                if (!flusher.awaitTermination(5, TimeUnit.SECONDS)) return; // still writing; don't race it
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            flusher = null;
+            try {
+                flush(true);
+            } catch (RuntimeException e) {
+                System.out.println("Traffic rollup final flush failed: " + e);
+            }
+        }
+    }
+
+    // ---- recording (any thread, never blocks) ----
+
+    public void login(String username) {
+        if (!enabled) return;
+        Bucket b = bucket();
+        b.global.logins.increment();
+        if (username != null) b.user(username).logins.increment();
+    }
+
+    public void upload(String username, long bytes) {
+        if (!enabled) return;
+        Bucket b = bucket();
+        b.global.bytesUp.add(bytes);
+        b.global.transfers.increment();
+        if (username != null) {
+            Counters c = b.user(username);
+            c.bytesUp.add(bytes);
+            c.transfers.increment();
+        }
+    }
+
+    public void download(String username, long bytes) {
+        if (!enabled) return;
+        Bucket b = bucket();
+        b.global.bytesDown.add(bytes);
+        b.global.transfers.increment();
+        if (username != null) {
+            Counters c = b.user(username);
+            c.bytesDown.add(bytes);
+            c.transfers.increment();
+        }
+    }
+
+    public void error(String username) {
+        if (!enabled) return;
+        Bucket b = bucket();
+        b.global.errors.increment();
+        if (username != null) b.user(username).errors.increment();
+    }
+
+    private Bucket bucket() {
+        long minute = minuteOf(System.currentTimeMillis());
+        Bucket b = current;
+        return b.minute == minute ? b : advance(minute);
+    }
+
+    // A clock that went backwards keeps counting into the current bucket
+    private synchronized Bucket advance(long minute) {
+        Bucket b = current;
+        if (b.minute < minute) {
+            sealed.add(b);
+            b = new Bucket(minute);
+            current = b;
+        }
+        return b;
+    }
+
+    private static long minuteOf(long millis) {
+        return Math.floorDiv(millis, 60_000L) * 60;
+    }
+
+    // ---- flushing (flusher thread) ----
+
+    private void flushSafely() {
+        try {
+            flush(false);
+        } catch (RuntimeException e) {
+            // A failed flush must not cancel the schedule; the samples are retried next time
+            System.out.println("Traffic rollup flush failed: " + e);
+        }
+    }
+
+    void flush(boolean all) {
+        long now = System.currentTimeMillis();
+        advance(minuteOf(now));
+
+        Bucket b;
+        while ((b = sealed.peek()) != null && (all || now - (b.minute + 60) * 1000 >= GRACE_MILLIS)) {
+            sealed.poll();
+            collect(b, pending);
+        }
+        if (all) collect(current, pending);
+
+        if (!pending.isEmpty()) {
+            List<Sample> batch = pending;
+            pending = new ArrayList<>();
+            try {
+                repository.append(batch);
+            } catch (RuntimeException e) {
+                if (batch.size() <= MAX_PENDING) {
+                    pending = batch;
+                } else {
+                    System.out.println("Traffic rollup: dropped " + batch.size() + " samples after repeated write failures");
+                }
+                throw e;
+            }
+        }
+
+        if (now - lastPurge >= PURGE_INTERVAL_MILLIS) {
+            lastPurge = now;
+            long nowSeconds = now / 1000;
+            for (int i = 0; i < RESOLUTIONS.length; i++) {
+                repository.purge(RESOLUTIONS[i], nowSeconds - retentionSeconds[i]);
+            }
+        }
+    }
+
+    private static void collect(Bucket b, List<Sample> out) {
+        add(out, b.minute, null, b.global);
+        for (Map.Entry<String, Counters> e : b.users.entrySet()) {
+            add(out, b.minute, e.getKey(), e.getValue());
+        }
+    }
+
+    private static void add(List<Sample> out, long minute, String username, Counters c) {
+        long up = c.bytesUp.sum();
+        long down = c.bytesDown.sum();
+        long transfers = c.transfers.sum();
+        long logins = c.logins.sum();
+        long errors = c.errors.sum();
+        if ((up | down | transfers | logins | errors) == 0) return;
+        out.add(new Sample(minute, username, up, down, transfers, logins, errors));
+    }
+
+    // ---- queries ----
+
+    /** @return the user's id for {@link #series}, or null if there is no such user */
+    public Long userId(String username) {
+        return repository.findUserId(username);
+    }
+
+    /**
+     * Traffic between two instants in buckets of {@code stepSeconds} (0 = chosen so the range has
+     * at most ~720 points). Read from the coarsest stored resolution that divides the step and
+     * still holds data as old as {@code fromMillis}; the step is rounded up to that resolution
+     * if it has to be. Buckets are aligned to multiples of the step since the epoch (UTC).
+     *
+     * @param userId 0 for the whole server
+     * @throws IllegalArgumentException for an empty range or more than {@link #MAX_POINTS} points
+     */
+    public Series series(long fromMillis, long toMillis, long stepSeconds, long userId) {
+        if (!enabled) throw new IllegalStateException("Traffic rollups are disabled");
+        long from = Math.floorDiv(fromMillis, 1000L);
+        long to = Math.floorDiv(toMillis + 999, 1000L);
+        if (to <= from) throw new IllegalArgumentException("'to' must be after 'from'");
+
+        long step = stepSeconds > 0 ? stepSeconds : autoStep(to - from);
+        if (step < RESOLUTIONS[0]) throw new IllegalArgumentException("step must be at least " + RESOLUTIONS[0] + " s");
+
+        long oldest = System.currentTimeMillis() / 1000 - from;
+        int res = 0;
+        for (int i = RESOLUTIONS.length - 1; i >= 0; i--) {
+            if (step % RESOLUTIONS[i] == 0 && covers(i, oldest)) {
+                res = RESOLUTIONS[i];
+                break;
+            }
+        }
+        if (res == 0) {
+            // Finest resolution still covering 'from' (or the coarsest there is)
+            res = RESOLUTIONS[RESOLUTIONS.length - 1];
+            for (int i = 0; i < RESOLUTIONS.length; i++) {
+                if (covers(i, oldest)) {
+                    res = RESOLUTIONS[i];
+                    break;
+                }
+            }
+            step = (step + res - 1) / res * res;
+        }
+
+        from = Math.floorDiv(from, step) * step;
+        to = Math.floorDiv(to + step - 1, step) * step;
+        if ((to - from) / step > MAX_POINTS) {
+            throw new IllegalArgumentException("More than " + MAX_POINTS + " points; use a larger step");
+        }
+        return new Series(from, to, step, res, repository.series(res, userId, from, to, step));
+    }
+
+    // With some slack, so that "the last 90 days" still reads 90-day hourly data
+    private boolean covers(int resolutionIndex, long ageSeconds) {
+        long retention = retentionSeconds[resolutionIndex];
+        return ageSeconds <= retention + retention / 10;
+    }
+
+    private static long autoStep(long rangeSeconds) {
+        for (long s : AUTO_STEPS) {
+            if (rangeSeconds / s <= AUTO_POINTS) return s;
+        }
+        return AUTO_STEPS[AUTO_STEPS.length - 1];
+    }
+}
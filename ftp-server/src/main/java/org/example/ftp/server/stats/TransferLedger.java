@@ -0,0 +1,229 @@
+package org.example.ftp.server.stats;
+
+import org.example.ftp.server.db.Page;
+import org.example.ftp.server.metrics.ServerMetrics;
+import org.example.ftp.server.stats.db.SqliteTransferRepository;
+import org.example.ftp.server.stats.db.SqliteTransferRepository.Filter;
+import org.example.ftp.server.stats.db.SqliteTransferRepository.Transfer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@code transfers} row per finished RETR/STOR (see {@link SqliteTransferRepository}).
+ *
+ * Transfer threads only enqueue: {@link #record} never blocks and never touches the DB. A single
+ * writer thread drains the queue into one transaction per batch, so rows arriving while a commit
+ * is in progress share the next one. When the DB refuses a batch it is kept and retried with
+ * backoff (up to 30 s between attempts), topped up from the queue to a full batch; meanwhile the
+ * queue fills up and the overflow policy decides which rows are lost. Rows written, rows dropped
+ * and failed batches are counted in ServerMetrics (and so on /metrics); {@link #status()} adds
+ * the current queue depth.
+ *
+ * Tunables (system properties):
+ * -Dftp.transfers.enabled=true
+ * -Dftp.transfers.queue=16384
+ * -Dftp.transfers.batch=512
+ * -Dftp.transfers.overflow=drop-newest|drop-oldest
+ * -Dftp.transfers.retentionDays=90
+ */
+public final class TransferLedger {
+
+    public enum Overflow {
+        /** Keep what is queued, lose the row being recorded. */
+        DROP_NEWEST,
+        /** Make room by discarding the oldest queued row. */
+        DROP_OLDEST;
+
+        static Overflow parse(String value) {
+            return switch (value == null ? "" : value.trim().toLowerCase()) {
+                case "", "drop-newest" -> DROP_NEWEST;
+                case "drop-oldest" -> DROP_OLDEST;
+                default -> throw new IllegalStateException(
+                        "ftp.transfers.overflow must be drop-newest or drop-oldest: " + value);
+            };
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase().replace('_', '-');
+        }
+    }
+
+    public record Status(boolean enabled, Overflow overflow, int queued, int capacity,
+                         long written, long dropped, long writeErrors) {}
+
+    private static final long MIN_BACKOFF_MILLIS = 250;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final long PURGE_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int PURGE_CHUNK = 10_000;
+
+    private final boolean enabled;
+    private final SqliteTransferRepository repository;
+    private final BlockingQueue<Transfer> queue;
+    private final int capacity;
+    private final int batchSize;
+    private final Overflow overflow;
+    private final long retentionMillis;
+
+    // Writer thread only (and close(), once the writer has stopped)
+    private final List<Transfer> batch = new ArrayList<>();
+    private long lastPurge;
+
+    // Guarded by 'this'
+    private Thread writer;
+    private volatile boolean running;
+
+    public TransferLedger(boolean enabled, SqliteTransferRepository repository, int queueCapacity,
+                          int batchSize, Overflow overflow, int retentionDays) {
+        this.enabled = enabled && repository != null;
+        this.repository = repository;
+        this.capacity = Math.max(16, queueCapacity);
+        this.queue = new ArrayBlockingQueue<>(this.enabled ? capacity : 1);
+        this.batchSize = Math.max(1, batchSize);
+        this.overflow = overflow;
+        this.retentionMillis = TimeUnit.DAYS.toMillis(Math.max(1, retentionDays));
+    }
+
+    public static TransferLedger fromSystemProperties(SqliteTransferRepository repository) {
+        return new TransferLedger(
+                Boolean.parseBoolean(System.getProperty("ftp.transfers.enabled", "true")),
+                repository,
+                Integer.getInteger("ftp.transfers.queue", 16_384),
+                Integer.getInteger("ftp.transfers.batch", 512),
+                Overflow.parse(System.getProperty("ftp.transfers.overflow")),
+                Integer.getInteger("ftp.transfers.retentionDays", 90)
+        );
+    }
+
+    /** Records nothing (benchmarks, tools). */
+    public static TransferLedger disabled() {
+        return new TransferLedger(false, null, 16, 1, Overflow.DROP_NEWEST, 1);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized void start() {
+        if (!enabled || writer != null) return;
+        running = true;
+        writer = new Thread(this::writerLoop, "transfer-ledger");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "transfer-ledger-close"));
+    }
+
+    /** Stops the writer and stores what is still queued, if the DB takes it. */
+    public synchronized void close() {
+        if (writer == null) return;
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (writer.isAlive()) return; // stuck in a write; don't race it
+        writer = null;
+
+        queue.drainTo(batch);
+        try {
+            write();
+        } catch (RuntimeException e) {
+            System.out.println("Transfer ledger: " + batch.size() + " rows lost on shutdown: " + e);
+        }
+    }
+
+    /**
+     * Queues a finished transfer. Non-blocking: on a full queue a row is dropped per the overflow
+     * policy.
+     */
+    public void record(Transfer transfer) {
+        if (!enabled) return;
+        if (queue.offer(transfer)) return;
+        if (overflow == Overflow.DROP_OLDEST && queue.poll() != null) {
+            ServerMetrics.LEDGER_DROPPED.increment();
+            if (queue.offer(transfer)) return;
+        }
+        ServerMetrics.LEDGER_DROPPED.increment();
+    }
+
+    public Status status() {
+        return new Status(enabled, overflow, queue.size(), enabled ? capacity : 0,
+                ServerMetrics.LEDGER_WRITTEN.sum(), ServerMetrics.LEDGER_DROPPED.sum(),
+                ServerMetrics.LEDGER_WRITE_ERRORS.sum());
+    }
+
+    /** See {@link SqliteTransferRepository#search}; rows still queued are not visible yet. */
+    public Page<Transfer> search(Filter filter, String prefix, String upper, String after, int limit) {
+        return repository.search(filter, prefix, upper, after, limit);
+    }
+
+    // ---- writer thread ----
+
+    private void writerLoop() {
+        long backoff = MIN_BACKOFF_MILLIS;
+        boolean failing = false;
+        while (running) {
+            try {
+                if (batch.isEmpty()) {
+                    Transfer first = queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        purgeIfDue();
+                        continue;
+                    }
+                    batch.add(first);
+                }
+                // A batch being retried is topped up too
+                queue.drainTo(batch, Math.max(0, batchSize - batch.size()));
+                try {
+                    write();
+                    if (failing) {
+                        System.out.println("Transfer ledger: writes resumed");
+                    }
+                    failing = false;
+                    backoff = MIN_BACKOFF_MILLIS;
+                } catch (RuntimeException e) {
+                    // The batch stays and is retried; new rows wait in (or overflow) the queue
+                    ServerMetrics.LEDGER_WRITE_ERRORS.increment();
+                    if (!failing) {
+                        System.out.println("Transfer ledger write failed, retrying: " + e);
+                    }
+                    failing = true;
+                    Thread.sleep(backoff);
+                    backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+                    continue;
+                }
+                purgeIfDue();
+            } catch (InterruptedException e) {
+                if (!running) return;
+            } catch (RuntimeException e) {
+                // Purge failures end up here; never let the writer die
+                System.out.println("Transfer ledger: " + e);
+            }
+        }
+    }
+
+    private void write() {
+        if (batch.isEmpty()) return;
+        repository.insertBatch(batch);
+        ServerMetrics.LEDGER_WRITTEN.add(batch.size());
+        batch.clear();
+    }
+
+    private void purgeIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - lastPurge < PURGE_INTERVAL_MILLIS) return;
+        lastPurge = now;
+        long cutoff = now - retentionMillis;
+        // Chunked, so that one long delete does not lock other DB writers out
+        while (running && repository.purge(cutoff, PURGE_CHUNK) == PURGE_CHUNK) {
+            Thread.yield();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.example.ftp.server.stats.db;
 
 import org.example.ftp.server.db.Db;
+import org.example.ftp.server.db.Page;
 import org.example.ftp.server.stats.model.UserStats;
 
 import java.sql.Connection;
@@ -228,6 +229,67 @@ public class SqliteStatsRepository {
     }
 
 
+    /**
+     * Keyset page in the same order as {@link #findAllUserStats()} (most recent login first),
+     * walking the (COALESCE(last_login, ''), user_id) index; the key is "lastLogin NUL userId".
+     *
+     * @param prefix username prefix, or null; {@code upper} its exclusive bound (see PageRequest)
+     * @param after  key of the previous page's last row, or null for the first page
+     */
+    public Page<UserStats> findUserStatsPage(String prefix, String upper, String after, int limit) {
+        StringBuilder sql = new StringBuilder("""
+            SELECT s.user_id,
+                   u.username,
+                   s.logins,
+                   s.bytes_uploaded,
+                   s.bytes_downloaded,
+                   COALESCE(s.last_login, '') AS last_login
+            FROM stats s
+            JOIN users u ON u.id = s.user_id
+            WHERE 1 = 1
+            """);
+        List<Object> params = new ArrayList<>();
+        if (prefix != null) {
+            sql.append(" AND u.username >= ?");
+            params.add(prefix);
+            if (upper != null) {
+                sql.append(" AND u.username < ?");
+                params.add(upper);
+            }
+        }
+        if (after != null) {
+            int sep = after.lastIndexOf('\0');
+            if (sep < 0) throw new IllegalArgumentException("Bad cursor");
+            // Spelled out instead of a row value "(a, b) < (?, ?)", which SQLite does not turn into an index range
+            String lastLogin = after.substring(0, sep);
+            sql.append(" AND COALESCE(s.last_login, '') <= ? AND (COALESCE(s.last_login, '') < ? OR s.user_id < ?)");
+            params.add(lastLogin);
+            params.add(lastLogin);
+            params.add(Long.parseLong(after.substring(sep + 1)));
+        }
+        sql.append(" ORDER BY COALESCE(s.last_login, '') DESC, s.user_id DESC LIMIT ?");
+        params.add(limit + 1);
+
+        List<Keyed> rows = db.queryList(sql.toString(), rs -> {
+            String ts = rs.getString("last_login");
+            return new Keyed(
+                    new UserStats(
+                            rs.getString("username"),
+                            rs.getInt("logins"),
+                            rs.getLong("bytes_uploaded"),
+                            rs.getLong("bytes_downloaded"),
+                            ts.isEmpty() ? null : parseSqliteInstant(ts)
+                    ),
+                    ts + '\0' + rs.getLong("user_id")
+            );
+        }, params.toArray());
+
+        Page<Keyed> page = Page.of(rows, limit, Keyed::key);
+        return new Page<>(page.items().stream().map(Keyed::stats).toList(), page.nextKey());
+    }
+
+    private record Keyed(UserStats stats, String key) {}
+
     private Long getUserId(Connection c, String username) throws SQLException {
 
         String sql = "SELECT id FROM users WHERE username = ?";
@@ -0,0 +1,168 @@
+package org.example.ftp.server.stats.db;
+
+import org.example.ftp.server.db.Db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code traffic} table: per-minute, per-hour and per-day counters for every user
+ * ({@code user_id} = its id) and for the whole server ({@code user_id} = 0).
+ *
+ * Rows are keyed (res, user_id, ts), so a series for one user and resolution is a single index
+ * range. Coarser rows are maintained on write (every minute sample is added to its hour and day
+ * too) rather than recomputed from finer ones, so retention can drop minutes without losing them.
+ * peak_up/peak_down are the largest per-minute byte counts within a bucket.
+ */
+public class SqliteTrafficRepository {
+
+    /** Bucket lengths in seconds, finest first. */
+    public static final int MINUTE = 60;
+    public static final int HOUR = 3600;
+    public static final int DAY = 86400;
+    public static final int[] RESOLUTIONS = {MINUTE, HOUR, DAY};
+
+    /** One minute of counters; {@code username} null for the server-wide row. */
+    public record Sample(long minute, String username, long bytesUp, long bytesDown,
+                        long transfers, long logins, long errors) {}
+
+    /** One bucket of a series; {@code ts} is its start in epoch seconds. */
+    public record Point(long ts, long bytesUp, long bytesDown, long transfers, long logins, long errors,
+                        long peakUp, long peakDown) {}
+
+    private static final String COLUMNS =
+            "res, user_id, ts, bytes_up, bytes_down, transfers, logins, errors, peak_up, peak_down";
+
+    // A minute row is only ever added to; its peak is its own byte count
+    private static final String ON_CONFLICT = """
+             ON CONFLICT(res, user_id, ts) DO UPDATE SET
+                bytes_up   = bytes_up + excluded.bytes_up,
+                bytes_down = bytes_down + excluded.bytes_down,
+                transfers  = transfers + excluded.transfers,
+                logins     = logins + excluded.logins,
+                errors     = errors + excluded.errors,
+                peak_up    = CASE WHEN res = 60 THEN bytes_up + excluded.bytes_up ELSE MAX(peak_up, excluded.peak_up) END,
+                peak_down  = CASE WHEN res = 60 THEN bytes_down + excluded.bytes_down ELSE MAX(peak_down, excluded.peak_down) END
+            """;
+
+    private static final String UPSERT_GLOBAL =
+            "INSERT INTO traffic(" + COLUMNS + ") VALUES (?, 0, ?, ?, ?, ?, ?, ?, ?, ?)" + ON_CONFLICT;
+
+    // Samples of unknown (e.g. deleted) users insert nothing; they are still in the global row
+    private static final String UPSERT_USER =
+            "INSERT INTO traffic(" + COLUMNS + ") SELECT ?, id, ?, ?, ?, ?, ?, ?, ?, ? FROM users WHERE username = ?" + ON_CONFLICT;
+
+    private final Db db;
+
+    public SqliteTrafficRepository(Db db) {
+        this.db = db;
+    }
+
+    /** Adds minute samples to their minute, hour and day rows, all in one transaction. */
+    public void append(List<Sample> samples) {
+        if (samples.isEmpty()) return;
+
+        try (Connection c = db.getConnection()) {
+            c.setAutoCommit(false);
+            try (PreparedStatement global = c.prepareStatement(UPSERT_GLOBAL);
+                 PreparedStatement user = c.prepareStatement(UPSERT_USER)) {
+
+                for (Sample s : samples) {
+                    PreparedStatement ps = s.username() == null ? global : user;
+                    for (int res : RESOLUTIONS) {
+                        int i = 1;
+                        ps.setInt(i++, res);
+                        ps.setLong(i++, s.minute() - Math.floorMod(s.minute(), res));
+                        ps.setLong(i++, s.bytesUp());
+                        ps.setLong(i++, s.bytesDown());
+                        ps.setLong(i++, s.transfers());
+                        ps.setLong(i++, s.logins());
+                        ps.setLong(i++, s.errors());
+                        ps.setLong(i++, s.bytesUp());
+                        ps.setLong(i++, s.bytesDown());
+                        if (s.username() != null) ps.setString(i, s.username());
+                        ps.addBatch();
+                    }
+                }
+                global.executeBatch();
+                user.executeBatch();
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Deletes rows of resolution {@code res} older than {@code beforeTs}. Walks the user ids with
+     * index seeks so that each delete is a range of the primary key instead of a table scan.
+     *
+     * @return rows deleted
+     */
+    public int purge(int res, long beforeTs) {
+        String nextUser = "SELECT MIN(user_id) FROM traffic WHERE res = ? AND user_id > ?";
+        String delete = "DELETE FROM traffic WHERE res = ? AND user_id = ? AND ts < ?";
+
+        int deleted = 0;
+        try (Connection c = db.getConnection();
+             PreparedStatement next = c.prepareStatement(nextUser);
+             PreparedStatement del = c.prepareStatement(delete)) {
+
+            long userId = -1;
+            while (true) {
+                next.setInt(1, res);
+                next.setLong(2, userId);
+                try (ResultSet rs = next.executeQuery()) {
+                    if (!rs.next()) break;
+                    userId = rs.getLong(1);
+                    if (rs.wasNull()) break;
+                }
+                del.setInt(1, res);
+                del.setLong(2, userId);
+                del.setLong(3, beforeTs);
+                deleted += del.executeUpdate();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return deleted;
+    }
+
+    /**
+     * Rows of resolution {@code res} with {@code fromTs <= ts < toTs}, summed into buckets of
+     * {@code step} seconds (a multiple of {@code res}), oldest first. Empty buckets are absent.
+     *
+     * @param userId 0 for the whole server
+     */
+    public List<Point> series(int res, long userId, long fromTs, long toTs, long step) {
+        String sql = """
+            SELECT (ts / ?) * ? AS bucket,
+                   SUM(bytes_up), SUM(bytes_down), SUM(transfers), SUM(logins), SUM(errors),
+                   MAX(peak_up), MAX(peak_down)
+            FROM traffic
+            WHERE res = ? AND user_id = ? AND ts >= ? AND ts < ?
+            GROUP BY bucket
+            ORDER BY bucket
+            """;
+        return db.queryList(sql, rs -> new Point(
+                rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getLong(5), rs.getLong(6),
+                rs.getLong(7), rs.getLong(8)
+        ), step, step, res, userId, fromTs, toTs);
+    }
+
+    /** @return the user's id, or null if there is no such user */
+    public Long findUserId(String username) {
+        return db.queryOne("SELECT id FROM users WHERE username = ?", rs -> rs.getLong(1), username);
+    }
+}
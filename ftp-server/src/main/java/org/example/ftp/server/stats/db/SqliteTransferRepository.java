@@ -0,0 +1,155 @@
+package org.example.ftp.server.stats.db;
+
+import org.example.ftp.server.db.Db;
+import org.example.ftp.server.db.Page;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code transfers} table: one row per RETR/STOR, written in batches by TransferLedger.
+ *
+ * Searches run newest first over (started_at, id), from idx_transfers_user_time when they are
+ * for one user or a username prefix and from idx_transfers_time otherwise.
+ */
+public class SqliteTransferRepository {
+
+    public static final String UP = "up";
+    public static final String DOWN = "down";
+
+    public static final String OK = "ok";
+    /** Cancelled by the client: ABOR, or the data connection closed before the end of the file. */
+    public static final String ABORTED = "aborted";
+    /** No data connection, or a local I/O error. */
+    public static final String FAILED = "failed";
+
+    /** One finished transfer; {@code id} is 0 until it has been stored. */
+    public record Transfer(long id, String username, String path, String direction, long bytes,
+                           long startedAt, long durationMs, String outcome, String remoteAddr) {
+
+        /** Average bytes/s over the whole transfer, data connection setup included. */
+        public long bytesPerSecond() {
+            return durationMs <= 0 ? bytes * 1000 : bytes * 1000 / durationMs;
+        }
+    }
+
+    /** Optional filters of {@link #search}; null matches everything. */
+    public record Filter(String username, Long from, Long to, String direction, String outcome) {}
+
+    private static final String INSERT = """
+            INSERT INTO transfers(username, path, direction, bytes, started_at, duration_ms, outcome, remote_addr)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final Db db;
+
+    public SqliteTransferRepository(Db db) {
+        this.db = db;
+    }
+
+    /** Inserts all rows in one transaction: either every row is stored or none is. */
+    public void insertBatch(List<Transfer> rows) {
+        if (rows.isEmpty()) return;
+
+        try (Connection c = db.getConnection()) {
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement(INSERT)) {
+                for (Transfer t : rows) {
+                    ps.setString(1, t.username());
+                    ps.setString(2, t.path());
+                    ps.setString(3, t.direction());
+                    ps.setLong(4, t.bytes());
+                    ps.setLong(5, t.startedAt());
+                    ps.setLong(6, t.durationMs());
+                    ps.setString(7, t.outcome());
+                    ps.setString(8, t.remoteAddr());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Transfers matching {@code filter} whose username is in [prefix, upper) when a prefix is
+     * given, newest first, continuing after the key {@code after} ("startedAt\0id").
+     */
+    public Page<Transfer> search(Filter filter, String prefix, String upper, String after, int limit) {
+        StringBuilder sql = new StringBuilder("""
+            SELECT id, username, path, direction, bytes, started_at, duration_ms, outcome, remote_addr
+            FROM transfers
+            WHERE 1 = 1
+            """);
+        List<Object> params = new ArrayList<>();
+        if (filter.username() != null) {
+            sql.append(" AND username = ?");
+            params.add(filter.username());
+        } else if (prefix != null) {
+            sql.append(" AND username >= ?");
+            params.add(prefix);
+            if (upper != null) {
+                sql.append(" AND username < ?");
+                params.add(upper);
+            }
+        }
+        if (filter.from() != null) {
+            sql.append(" AND started_at >= ?");
+            params.add(filter.from());
+        }
+        if (filter.to() != null) {
+            sql.append(" AND started_at < ?");
+            params.add(filter.to());
+        }
+        if (filter.direction() != null) {
+            sql.append(" AND direction = ?");
+            params.add(filter.direction());
+        }
+        if (filter.outcome() != null) {
+            sql.append(" AND outcome = ?");
+            params.add(filter.outcome());
+        }
+        if (after != null) {
+            int sep = after.indexOf('\0');
+            if (sep < 0) throw new IllegalArgumentException("Bad cursor");
+            // Spelled out for the same reason as in SqliteStatsRepository#findUserStatsPage
+            long startedAt = Long.parseLong(after.substring(0, sep));
+            sql.append(" AND started_at <= ? AND (started_at < ? OR id < ?)");
+            params.add(startedAt);
+            params.add(startedAt);
+            params.add(Long.parseLong(after.substring(sep + 1)));
+        }
+        sql.append(" ORDER BY started_at DESC, id DESC LIMIT ?");
+        params.add(limit + 1);
+
+        List<Transfer> rows = db.queryList(sql.toString(), rs -> new Transfer(
+                rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getLong(5),
+                rs.getLong(6), rs.getLong(7), rs.getString(8), rs.getString(9)
+        ), params.toArray());
+        return Page.of(rows, limit, t -> t.startedAt() + "\0" + t.id());
+    }
+
+    /**
+     * Deletes transfers that started before {@code beforeMillis}, at most {@code maxRows} of them
+     * (oldest first), so that a large backlog is purged in short transactions.
+     *
+     * @return rows deleted
+     */
+    public int purge(long beforeMillis, int maxRows) {
+        return db.execute("""
+                DELETE FROM transfers WHERE id IN (
+                    SELECT id FROM transfers WHERE started_at < ? ORDER BY started_at LIMIT ?
+                )
+                """, beforeMillis, maxRows);
+    }
+}
@@ -1,5 +1,7 @@
 package org.example.ftp.server.transfer;
 
+import org.example.ftp.server.metrics.ServerMetrics;
+
 public class RateLimiter {
 
 
@@ -49,6 +51,7 @@ public class RateLimiter {
                 bytesToWait = chunk - available;
             }
             
+            long waitStart = System.nanoTime();
             try {
                 long nanosToWait = bytesToWait * 1_000_000_000L / bytesPerSecond;
                 long millisToWait = nanosToWait / 1_000_000;
@@ -61,6 +64,8 @@ public class RateLimiter {
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 return;
+            } finally {
+                ServerMetrics.RATE_LIMIT_WAIT_NANOS.add(System.nanoTime() - waitStart);
             }
         }
     }
@@ -16,7 +16,8 @@ public class ThrottledOutputStream extends FilterOutputStream {
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
         limiter.acquire(len);
-        super.write(b, off, len);
+        // Not super.write(): FilterOutputStream writes an array one byte at a time, through write(int)
+        out.write(b, off, len);
     }
 
     @Override
@@ -169,6 +169,7 @@ function route() {
     case "permissions": return renderPermissions();
     case "root": return renderRoot();
     case "stats": return renderStats();
+    case "logs": return renderLogs();
     default:
       location.hash = "#/users";
       return;
@@ -761,11 +762,144 @@ async function renderStats() {
             <tbody id="statsTbody"></tbody>
           </table>
         </div>
+        <div class="block">
+          <div class="sectiontitle">Live sessions</div>
+          <div class="hint" id="sessionsHint">Loading...</div>
+        </div>
+        <div class="block tablewrap">
+          <table>
+            <thead>
+              <tr>
+                <th>User</th>
+                <th>Remote</th>
+                <th>Directory</th>
+                <th>Command</th>
+                <th style="width: 34%;">Transfer</th>
+                <th></th>
+              </tr>
+            </thead>
+            <tbody id="sessionsTbody"></tbody>
+          </table>
+        </div>
       </div>
     </section>
   `);
   qs("#refreshStatsBtn").addEventListener("click", loadStats);
-  await loadStats();
+  qs("#sessionsTbody").addEventListener("click", (ev) => {
+    const btn = ev.target.closest("button[data-action='kill']");
+    if (btn) killSession(btn.dataset.id);
+  });
+  // Everything below is kept current by /api/events; fetch once only if nothing was pushed yet
+  if (live.users) {
+    renderLive();
+  } else {
+    await loadStats();
+  }
+}
+
+function renderSessions(sessions) {
+  const tbody = qs("#sessionsTbody");
+  const hint = qs("#sessionsHint");
+  if (!tbody || !hint) return;
+  hint.textContent = sessions.length ? `${sessions.length} control connection(s)` : "No open connections";
+  tbody.innerHTML = sessions.map(s => {
+    const t = s.transfer;
+    let transfer = `<span class="muted">idle</span>`;
+    if (t) {
+      const pct = t.size > 0 ? Math.min(100, (t.bytes * 100) / t.size) : null;
+      const total = t.size >= 0 ? ` / ${fmtBytes(t.size)}` : "";
+      transfer = `
+        <div>${escapeHtml(t.command)} ${escapeHtml(t.file || "")}</div>
+        ${pct === null ? "" : `<div class="progress"><div class="progress-bar" style="width:${pct.toFixed(1)}%"></div></div>`}
+        <div class="muted">${fmtBytes(t.bytes)}${total} &middot; ${fmtBytes(t.bytesPerSecond)}/s</div>`;
+    }
+    const cmd = s.currentCommand
+      ? escapeHtml(s.currentCommand)
+      : `<span class="muted">${escapeHtml(s.lastCommand || "")}</span>`;
+    return `
+      <tr>
+        <td>${escapeHtml(s.username || "(not logged in)")}</td>
+        <td>${escapeHtml(s.remoteAddress || "")}</td>
+        <td>${escapeHtml(s.cwd || "")}</td>
+        <td>${cmd}</td>
+        <td>${transfer}</td>
+        <td class="cell-actions"><button class="btn btn-danger" data-action="kill" data-id="${Number(s.id)}" type="button">Kill</button></td>
+      </tr>`;
+  }).join("");
+}
+
+/* =========================
+ * LIVE EVENTS (SSE)
+ * ========================= */
+
+// One EventSource per tab replaces interval polling. The server pushes coalesced "latest state"
+// events (snapshot, session, session-closed, counters, users); the browser reconnects by itself.
+const live = { sessions: new Map(), users: null, counters: null, renderQueued: false };
+
+function connectEvents() {
+  const es = new EventSource("/api/events");
+  es.addEventListener("open", () => {
+    if (offline) {
+      setOfflineState(false);
+      bootstrapAuth().finally(() => route());
+    }
+  });
+  es.addEventListener("error", () => {
+    setOfflineState(true, "The server is offline. Start it again to continue.");
+    // CLOSED means the browser gave up (e.g. non-200 reply); otherwise it is already retrying
+    if (es.readyState === EventSource.CLOSED) {
+      setTimeout(connectEvents, 2000);
+    }
+  });
+  es.addEventListener("snapshot", (ev) => {
+    const d = JSON.parse(ev.data);
+    live.sessions = new Map((d.sessions || []).map(s => [s.id, s]));
+    live.users = d.users || null;
+    live.counters = d.counters || live.counters;
+    scheduleRenderLive();
+  });
+  es.addEventListener("session", (ev) => {
+    const s = JSON.parse(ev.data);
+    live.sessions.set(s.id, s);
+    scheduleRenderLive();
+  });
+  es.addEventListener("session-closed", (ev) => {
+    live.sessions.delete(JSON.parse(ev.data).id);
+    scheduleRenderLive();
+  });
+  es.addEventListener("counters", (ev) => {
+    live.counters = JSON.parse(ev.data);
+    scheduleRenderLive();
+  });
+  es.addEventListener("users", (ev) => {
+    live.users = JSON.parse(ev.data);
+    scheduleRenderLive();
+  });
+}
+
+function scheduleRenderLive() {
+  if (live.renderQueued) return;
+  live.renderQueued = true;
+  requestAnimationFrame(() => {
+    live.renderQueued = false;
+    renderLive();
+  });
+}
+
+function renderLive() {
+  if (!qs("#sessionsTbody")) return; // Stats page not open
+  renderSessions([...live.sessions.values()].sort((a, b) => a.id - b.id));
+  if (live.users) renderUserStats(live.users);
+}
+
+async function killSession(id) {
+  if (!confirm(`Disconnect session #${id}?`)) return;
+  try {
+    await apiFetch(`/api/sessions/${encodeURIComponent(id)}`, { method: "DELETE" });
+    showBanner("ok", `Session #${id} disconnected`);
+  } catch (e) {
+    showBanner("err", `Failed to disconnect session: ${e.message}`);
+  }
 }
 
 async function loadStats() {
@@ -777,28 +911,8 @@ async function loadStats() {
   connectedNow.textContent = "";
   tbody.innerHTML = "";
   try {
-    const live = await apiFetch("/api/stats/live");
-    const users = live?.users || [];
-    const connectedUsers = Number(live?.connectedUsers ?? 0);
-    const totalConnections = Number(live?.totalConnections ?? 0);
-
-    hint.textContent = users.length ? "" : "No data";
-    connectedNow.textContent = `Connected now: ${connectedUsers} users (${totalConnections} connections)`;
-
-    tbody.innerHTML = users.map(s => `
-      <tr>
-        <td>
-          <span class="nick">
-            <span class="dot ${s.connected ? "dot-green" : "dot-red"}"></span>
-            <span>${escapeHtml(s.username)}</span>
-          </span>
-        </td>
-        <td>${Number(s.connections || 0)}</td>
-        <td>${fmtBytes(s.bytesUploaded || 0)}</td>
-        <td>${fmtBytes(s.bytesDownloaded || 0)}</td>
-        <td>${escapeHtml(s.lastLogin || "")}</td>
-      </tr>
-    `).join("");
+    live.users = await apiFetch("/api/stats/live?limit=1000");
+    renderLive();
   } catch (e) {
     hint.textContent = "No data";
     connectedNow.textContent = "";
@@ -806,6 +920,102 @@ async function loadStats() {
   }
 }
 
+function renderUserStats(stats) {
+  const hint = qs("#statsHint");
+  const connectedNow = qs("#statsConnectedNow");
+  const tbody = qs("#statsTbody");
+  if (!hint || !connectedNow || !tbody) return;
+  const users = stats?.users || [];
+  const connectedUsers = Number(stats?.connectedUsers ?? 0);
+  const totalConnections = Number(stats?.totalConnections ?? 0);
+  const c = live.counters;
+  const rates = c ? ` \u2014 up ${fmtBytes(c.uploadBytesPerSecond)}/s, down ${fmtBytes(c.downloadBytesPerSecond)}/s` : "";
+
+  hint.textContent = users.length ? "" : "No data";
+  connectedNow.textContent = `Connected now: ${connectedUsers} users (${totalConnections} connections)${rates}`;
+
+  tbody.innerHTML = users.map(s => `
+    <tr>
+      <td>
+        <span class="nick">
+          <span class="dot ${s.connected ? "dot-green" : "dot-red"}"></span>
+          <span>${escapeHtml(s.username)}</span>
+        </span>
+      </td>
+      <td>${Number(s.connections || 0)}</td>
+      <td>${fmtBytes(s.bytesUploaded || 0)}</td>
+      <td>${fmtBytes(s.bytesDownloaded || 0)}</td>
+      <td>${escapeHtml(s.lastLogin || "")}</td>
+    </tr>
+  `).join("");
+}
+
+/* =========================
+ * LOGS
+ * ========================= */
+
+// Tail state: only lines newer than `cursor` are requested; the server parks the request (long-poll)
+// until something new is logged, so an idle tab costs one small request per ~25s.
+const LOG_MAX_LINES = 2000;
+let logTail = { gen: 0, cursor: 0 };
+
+async function renderLogs() {
+  setView(`
+    <section class="card">
+      <div class="cardhead">
+        <div>
+          <div class="cardtitle">Logs</div>
+          <div class="cardsub">Live server log (new lines are appended as they arrive)</div>
+        </div>
+        <div class="toolbar">
+          <button id="clearLogsBtn" class="btn" type="button">Clear</button>
+        </div>
+      </div>
+      <div class="cardbody">
+        <div class="block">
+          <div class="hint" id="logsHint">Loading...</div>
+          <pre id="logView" class="logview"></pre>
+        </div>
+      </div>
+    </section>
+  `);
+  qs("#clearLogsBtn").addEventListener("click", () => { qs("#logView").textContent = ""; });
+  tailLogs(++logTail.gen);
+}
+
+async function tailLogs(gen) {
+  logTail.cursor = 0;
+  let wait = 0;
+  while (gen === logTail.gen && location.hash.startsWith("#/logs")) {
+    try {
+      const page = await apiFetch(`/api/logs?since=${logTail.cursor}&limit=500&wait=${wait}`);
+      if (gen !== logTail.gen) return;
+      appendLogLines(page?.entries || []);
+      if (typeof page?.next === "number") logTail.cursor = page.next;
+      const hint = qs("#logsHint");
+      if (hint) hint.textContent = `Showing up to ${LOG_MAX_LINES} lines (server buffer: #${page?.first ?? 0} .. #${page?.last ?? 0})`;
+      // Catch up in pages without waiting; once up to date switch to long-poll
+      wait = (page?.entries?.length || 0) >= 500 ? 0 : 25000;
+    } catch (e) {
+      if (gen !== logTail.gen) return;
+      const hint = qs("#logsHint");
+      if (hint) hint.textContent = `Failed to load logs: ${e.message}`;
+      await new Promise(r => setTimeout(r, 3000));
+    }
+  }
+}
+
+function appendLogLines(entries) {
+  const view = qs("#logView");
+  if (!view || !entries.length) return;
+  const atBottom = view.scrollTop + view.clientHeight >= view.scrollHeight - 4;
+  view.appendChild(document.createTextNode(entries.map(e => e.line).join("\n") + "\n"));
+  while (view.childNodes.length > 1 && view.textContent.length > LOG_MAX_LINES * 200) {
+    view.removeChild(view.firstChild);
+  }
+  if (atBottom) view.scrollTop = view.scrollHeight;
+}
+
 /* =========================
  * ROOT
  * ========================= */
@@ -961,8 +1171,8 @@ function init() {
   // On entry: just verify server is online
   bootstrapAuth().finally(() => route());
 
-  // Keep checking server health; if it goes down, show offline overlay and block actions.
-  setInterval(() => pingServer(true), 2000);
+  // Server health and dashboard data both come from the SSE stream; if it drops, the offline overlay is shown.
+  connectEvents();
 }
 
 init();
@@ -0,0 +1,26 @@
+# Builds ftp-bench and runs the JMH benchmarks once per thread count.
+# Results: bench-results\<git-sha>[-dirty]-t<threads>.json (JMH JSON, for comparing commits).
+#
+#   .\run-bench.ps1
+#   .\run-bench.ps1 -Threads 1,8 -JmhArgs "PathResolver","-p","shares=100"
+param(
+  [int[]]$Threads = @(1, 4),
+  [string[]]$JmhArgs = @()
+)
+
+$root = Split-Path -Parent $MyInvocation.MyCommand.Path
+Set-Location $root
+
+$sha = (git rev-parse --short HEAD 2>$null)
+if (-not $sha) { $sha = "nogit" }
+if (git status --porcelain -- ftp-common ftp-server ftp-bench 2>$null) { $sha = "$sha-dirty" }
+
+& .\mvnw.cmd -q -DskipTests -pl ftp-bench -am package
+if ($LASTEXITCODE -ne 0) { exit $LASTEXITCODE }
+
+New-Item -ItemType Directory -Force -Path bench-results | Out-Null
+foreach ($t in $Threads) {
+  $out = "bench-results\$sha-t$t.json"
+  Write-Host "== threads=$t -> $out"
+  & java -jar ftp-bench\target\benchmarks.jar -t $t -rf json -rff $out @JmhArgs
+}
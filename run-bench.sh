@@ -0,0 +1,34 @@
+#!/usr/bin/env sh
+# Builds ftp-bench and runs the JMH benchmarks once per thread count.
+# Results: bench-results/<git-sha>[-dirty]-t<threads>.json (JMH JSON; compare two commits'
+# files side by side, or load both into any JMH result viewer).
+#
+# Usage: ./run-bench.sh [threads...] [-- extra JMH args]
+#   ./run-bench.sh                      # threads 1 and 4, all benchmarks
+#   ./run-bench.sh 1 8 -- PathResolver -p shares=100
+set -e
+
+ROOT=$(cd "$(dirname "$0")" && pwd)
+cd "$ROOT"
+
+THREADS=""
+while [ $# -gt 0 ] && [ "$1" != "--" ]; do
+  THREADS="$THREADS $1"
+  shift
+done
+[ "$1" = "--" ] && shift
+[ -z "$THREADS" ] && THREADS="1 4"
+
+SHA=$(git rev-parse --short HEAD 2>/dev/null || echo nogit)
+if [ -n "$(git status --porcelain -- ftp-common ftp-server ftp-bench 2>/dev/null)" ]; then
+  SHA="$SHA-dirty"
+fi
+
+sh ./mvnw -q -DskipTests -pl ftp-bench -am package
+
+mkdir -p bench-results
+for T in $THREADS; do
+  OUT="bench-results/$SHA-t$T.json"
+  echo "== threads=$T -> $OUT"
+  java -jar ftp-bench/target/benchmarks.jar -t "$T" -rf json -rff "$OUT" "$@"
+done